@@ -17,6 +17,7 @@ package com.reandroid.apk;
 
 import com.reandroid.archive.ArchiveBytes;
 import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.ArchiveStreamReader;
 import com.reandroid.archive.BlockInputSource;
 import com.reandroid.archive.FileInputSource;
 import com.reandroid.archive.InputSource;
@@ -24,9 +25,11 @@ import com.reandroid.archive.WriteProgress;
 import com.reandroid.archive.ZipEntryMap;
 import com.reandroid.archive.block.ApkSignatureBlock;
 import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.signer.ApkSigner;
 import com.reandroid.archive.writer.ApkByteWriter;
 import com.reandroid.archive.writer.ApkFileWriter;
 import com.reandroid.archive.writer.ApkStreamWriter;
+import com.reandroid.archive.writer.ApkUpdateWriter;
 import com.reandroid.archive.writer.ApkWriter;
 import com.reandroid.archive.writer.DataDescriptorFactory;
 import com.reandroid.arsc.ApkFile;
@@ -79,6 +82,7 @@ public class ApkModule implements ApkFile, Closeable {
     private APKLogger apkLogger;
     private ApkType mApkType;
     private ApkSignatureBlock apkSignatureBlock;
+    private ApkSigner apkSigner;
     private Integer preferredFramework;
     private Closeable mCloseable;
     private final List<TableBlock> mExternalFrameworks;
@@ -178,6 +182,16 @@ public class ApkModule implements ApkFile, Closeable {
         this.apkSignatureBlock = apkSignatureBlock;
     }
 
+    public ApkSigner getApkSigner() {
+        return apkSigner;
+    }
+    /**
+     * Signs (v2/v3) on writeApk to file or bytes, writing to OutputStream is not supported
+     * */
+    public void setApkSigner(ApkSigner apkSigner) {
+        this.apkSigner = apkSigner;
+    }
+
     public boolean hasSignatureBlock() {
         return getApkSignatureBlock() != null;
     }
@@ -503,6 +517,18 @@ public class ApkModule implements ApkFile, Closeable {
         writer.setWriteProgress(progress);
         writer.write();
     }
+    /**
+     * Writes back to the file this module is loaded from (or any existing apk file), keeps
+     * unchanged entries in-place and appends only modified ones. See {@link ApkUpdateWriter}
+     * */
+    public void updateApk(File file) throws IOException {
+        updateApk(file, null);
+    }
+    public void updateApk(File file, WriteProgress progress) throws IOException {
+        ApkUpdateWriter writer = createApkUpdateWriter(file);
+        writer.setWriteProgress(progress);
+        writer.write();
+    }
     public byte[] writeApkBytes() throws IOException {
         ApkByteWriter writer = createApkByteWriter();
         writer.write();
@@ -517,6 +543,12 @@ public class ApkModule implements ApkFile, Closeable {
         applyDefaultApkWriterSetting(writer);
         return writer;
     }
+    public ApkUpdateWriter createApkUpdateWriter(File file) throws IOException {
+        updateUncompressedFiles();
+        ApkUpdateWriter writer = new ApkUpdateWriter(file, getZipEntryMap().toArray(true));
+        applyDefaultApkWriterSetting(writer);
+        return writer;
+    }
     public ApkByteWriter createApkByteWriter() {
         updateUncompressedFiles();
         ApkByteWriter writer = new ApkByteWriter(getZipEntryMap().toArray(true));
@@ -533,6 +565,7 @@ public class ApkModule implements ApkFile, Closeable {
     private void applyDefaultApkWriterSetting(ApkWriter<?, ?> writer) {
         writer.setAPKLogger(getApkLogger());
         writer.setApkSignatureBlock(getApkSignatureBlock());
+        writer.setApkSigner(getApkSigner());
         writer.setArchiveInfo(getZipEntryMap().getArchiveInfo());
         writer.setDataDescriptorFactory(DataDescriptorFactory.NO_ACTION);
     }
@@ -1422,6 +1455,18 @@ public class ApkModule implements ApkFile, Closeable {
         }
         return apkModule;
     }
+    /**
+     * Loads apk from non-seekable stream (e.g. pipe) with bounded memory, entries are
+     * extracted to spillDir while reading. See {@link ArchiveStreamReader}
+     * */
+    public static ApkModule readApkStream(InputStream inputStream, File spillDir) throws IOException {
+        ArchiveStreamReader reader = new ArchiveStreamReader(inputStream);
+        ZipEntryMap zipEntryMap = reader.createZipEntryMap(spillDir);
+        reader.close();
+        ApkModule apkModule = new ApkModule(zipEntryMap);
+        apkModule.setModuleName("stream_" + System.currentTimeMillis());
+        return apkModule;
+    }
     public static ApkModule readApkBytes(byte[] bytes) throws IOException {
         ArchiveBytes archiveBytes = new ArchiveBytes(bytes);
         ApkModule apkModule = new ApkModule(archiveBytes.createZipEntryMap());
@@ -40,6 +40,7 @@ public class FrameworkApk extends ApkModule{
     private String packageName;
     private boolean mOptimizing;
     private boolean mDestroyed;
+    private boolean mCompactEntries;
     public FrameworkApk(String moduleName, ZipEntryMap zipEntryMap) {
         super(moduleName, zipEntryMap);
         super.setLoadDefaultFramework(false);
@@ -167,6 +168,9 @@ public class FrameworkApk extends ApkModule{
         InputStream inputStream = inputSource.openStream();
         FrameworkTable frameworkTable=FrameworkTable.load(inputStream);
         frameworkTable.setApkFile(this);
+        if(isCompactEntries()){
+            frameworkTable.compactEntries();
+        }
 
         BlockInputSource<FrameworkTable> blockInputSource=new BlockInputSource<>(inputSource.getName(), frameworkTable);
         blockInputSource.setMethod(inputSource.getMethod());
@@ -174,6 +178,18 @@ public class FrameworkApk extends ApkModule{
         archive.add(blockInputSource);
         return frameworkTable;
     }
+    public boolean isCompactEntries() {
+        return mCompactEntries;
+    }
+    /**
+     * When enabled, entries of the table are compacted right after loading
+     * (see {@link TableBlock#compactEntries()}), this reduces retained heap of
+     * the table at the cost of inflating type blocks again on first access.
+     * Must be set before the table is loaded.
+     * */
+    public void setCompactEntries(boolean compactEntries) {
+        this.mCompactEntries = compactEntries;
+    }
     public void optimize(){
         synchronized (mLock){
             if(mOptimizing){
@@ -231,7 +247,8 @@ public class FrameworkApk extends ApkModule{
         return loadApkFile(apkFile, false);
     }
     private static FrameworkApk loadApkFile(File apkFile, boolean addManifest) throws IOException {
-        ArchiveFile archive = new ArchiveFile(apkFile);
+        // only one or two entries are needed, skip reading local headers of the rest
+        IndexedArchiveFile archive = ArchiveFile.openIndexed(apkFile);
         InputSource table = archive.getEntrySource(TableBlock.FILE_NAME);
         if(table == null){
             throw new IOException("Missing " + TableBlock.FILE_NAME + ", on " + apkFile);
@@ -0,0 +1,284 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.apk;
+
+import com.reandroid.app.AndroidManifest;
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.IndexedArchiveFile;
+import com.reandroid.archive.InputSource;
+import com.reandroid.arsc.value.ValueType;
+import com.reandroid.arsc.view.BinaryXmlParser;
+import com.reandroid.utils.collection.ArrayCollection;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Minimal manifest info for bulk intake, read directly from AndroidManifest.xml bytes
+ * without building {@link com.reandroid.arsc.chunk.xml.AndroidManifestBlock} tree
+ * nor {@link ApkModule}. Only the central directory of the archive is parsed, android
+ * attributes are matched by their framework resource ids thus obfuscated attribute names
+ * are tolerated and no framework table is loaded.
+ * */
+public class ManifestSummary {
+
+    private String packageName;
+    private Integer versionCode;
+    private String versionName;
+    private Integer platformBuildVersionCode;
+    private Integer compileSdkVersion;
+    private String compileSdkVersionCodename;
+    private Integer minSdkVersion;
+    private Integer targetSdkVersion;
+    private String applicationClassName;
+    private String split;
+    private boolean featureSplit;
+    private final List<String> usesPermissions;
+    private final List<String> usesSplits;
+    private final List<String> activities;
+    private final List<String> services;
+    private final List<String> receivers;
+    private final List<String> providers;
+
+    private ManifestSummary() {
+        this.usesPermissions = new ArrayCollection<>();
+        this.usesSplits = new ArrayCollection<>();
+        this.activities = new ArrayCollection<>();
+        this.services = new ArrayCollection<>();
+        this.receivers = new ArrayCollection<>();
+        this.providers = new ArrayCollection<>();
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+    public Integer getVersionCode() {
+        return versionCode;
+    }
+    public String getVersionName() {
+        return versionName;
+    }
+    public Integer getPlatformBuildVersionCode() {
+        return platformBuildVersionCode;
+    }
+    public Integer getCompileSdkVersion() {
+        return compileSdkVersion;
+    }
+    public String getCompileSdkVersionCodename() {
+        return compileSdkVersionCodename;
+    }
+    public Integer getMinSdkVersion() {
+        return minSdkVersion;
+    }
+    public Integer getTargetSdkVersion() {
+        return targetSdkVersion;
+    }
+    public String getApplicationClassName() {
+        return fullClassName(applicationClassName);
+    }
+    public String getSplit() {
+        return split;
+    }
+    public boolean isSplit() {
+        return split != null;
+    }
+    public boolean isFeatureSplit() {
+        return featureSplit;
+    }
+    public List<String> getUsesPermissions() {
+        return usesPermissions;
+    }
+    public List<String> getUsesSplits() {
+        return usesSplits;
+    }
+    /**
+     * Class names of activity and activity-alias elements, in document order
+     * */
+    public List<String> getActivities() {
+        return activities;
+    }
+    public List<String> getServices() {
+        return services;
+    }
+    public List<String> getReceivers() {
+        return receivers;
+    }
+    public List<String> getProviders() {
+        return providers;
+    }
+    private String fullClassName(String name) {
+        String packageName = getPackageName();
+        if(name == null || packageName == null){
+            return name;
+        }
+        if(name.startsWith(".")){
+            return packageName + name;
+        }
+        if(name.indexOf('.') < 0){
+            return packageName + "." + name;
+        }
+        return name;
+    }
+    private void scan(BinaryXmlParser parser) throws IOException, XmlPullParserException {
+        int event = parser.next();
+        while (event != XmlPullParser.END_DOCUMENT) {
+            if(event == XmlPullParser.START_TAG){
+                onStartTag(parser, parser.getDepth(), parser.getName());
+            }
+            event = parser.next();
+        }
+    }
+    private void onStartTag(BinaryXmlParser parser, int depth, String tag) {
+        if(depth == 1){
+            if(AndroidManifest.TAG_manifest.equals(tag)){
+                onManifest(parser);
+            }
+        }else if(depth == 2){
+            if(AndroidManifest.TAG_uses_permission.equals(tag)){
+                addName(parser, usesPermissions);
+            }else if(AndroidManifest.TAG_uses_sdk.equals(tag)){
+                minSdkVersion = getInt(parser, AndroidManifest.ID_minSdkVersion);
+                targetSdkVersion = getInt(parser, AndroidManifest.ID_targetSdkVersion);
+            }else if(AndroidManifest.TAG_uses_split.equals(tag)){
+                addName(parser, usesSplits);
+            }else if(AndroidManifest.TAG_application.equals(tag)){
+                applicationClassName = getString(parser, AndroidManifest.ID_name);
+            }
+        }else if(depth == 3){
+            if(AndroidManifest.TAG_activity.equals(tag) || AndroidManifest.TAG_activity_alias.equals(tag)){
+                addName(parser, activities);
+            }else if(AndroidManifest.TAG_service.equals(tag)){
+                addName(parser, services);
+            }else if(AndroidManifest.TAG_receiver.equals(tag)){
+                addName(parser, receivers);
+            }else if(AndroidManifest.TAG_provider.equals(tag)){
+                addName(parser, providers);
+            }
+        }
+    }
+    private void onManifest(BinaryXmlParser parser) {
+        int count = parser.getAttributeCount();
+        for(int i = 0; i < count; i++){
+            int resourceId = parser.getAttributeNameResource(i);
+            if(resourceId == 0){
+                String name = parser.getAttributeName(i);
+                if(AndroidManifest.NAME_PACKAGE.equals(name)){
+                    if(parser.getAttributeValueType(i) == ValueType.STRING){
+                        packageName = parser.getAttributeValue(i);
+                    }
+                }else if(AndroidManifest.NAME_split.equals(name)){
+                    split = parser.getAttributeValue(i);
+                }else if(AndroidManifest.NAME_platformBuildVersionCode.equals(name)){
+                    platformBuildVersionCode = toInt(parser, i);
+                }
+            }else if(resourceId == AndroidManifest.ID_versionCode){
+                versionCode = toInt(parser, i);
+            }else if(resourceId == AndroidManifest.ID_versionName){
+                versionName = parser.getAttributeValue(i);
+            }else if(resourceId == AndroidManifest.ID_compileSdkVersion){
+                compileSdkVersion = toInt(parser, i);
+            }else if(resourceId == AndroidManifest.ID_compileSdkVersionCodename){
+                compileSdkVersionCodename = parser.getAttributeValue(i);
+            }else if(resourceId == AndroidManifest.ID_isFeatureSplit){
+                featureSplit = parser.getAttributeValueType(i) == ValueType.BOOLEAN
+                        && parser.getAttributeData(i) != 0;
+            }
+        }
+    }
+    private static void addName(BinaryXmlParser parser, List<String> results) {
+        String name = getString(parser, AndroidManifest.ID_name);
+        if(name != null){
+            results.add(name);
+        }
+    }
+    private static String getString(BinaryXmlParser parser, int resourceId) {
+        int i = indexOf(parser, resourceId);
+        if(i < 0){
+            return null;
+        }
+        return parser.getAttributeValue(i);
+    }
+    private static Integer getInt(BinaryXmlParser parser, int resourceId) {
+        int i = indexOf(parser, resourceId);
+        if(i < 0){
+            return null;
+        }
+        return toInt(parser, i);
+    }
+    private static Integer toInt(BinaryXmlParser parser, int index) {
+        ValueType valueType = parser.getAttributeValueType(index);
+        if(valueType != ValueType.DEC && valueType != ValueType.HEX){
+            return null;
+        }
+        return parser.getAttributeData(index);
+    }
+    private static int indexOf(BinaryXmlParser parser, int resourceId) {
+        int count = parser.getAttributeCount();
+        for(int i = 0; i < count; i++){
+            if(parser.getAttributeNameResource(i) == resourceId){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "package=" + getPackageName()
+                + ", versionCode=" + getVersionCode()
+                + ", versionName=" + getVersionName()
+                + ", minSdk=" + getMinSdkVersion()
+                + ", targetSdk=" + getTargetSdkVersion()
+                + ", permissions=" + getUsesPermissions().size()
+                + ", activities=" + getActivities().size();
+    }
+
+    /**
+     * Reads AndroidManifest.xml of apk file, returns null if the entry does not exist
+     * */
+    public static ManifestSummary read(File apkFile) throws IOException {
+        IndexedArchiveFile archive = ArchiveFile.openIndexed(apkFile);
+        try {
+            InputSource inputSource = archive.getEntrySource(AndroidManifest.FILE_NAME);
+            if(inputSource == null){
+                return null;
+            }
+            return read(inputSource);
+        } finally {
+            archive.close();
+        }
+    }
+    public static ManifestSummary read(InputSource inputSource) throws IOException {
+        return read(BinaryXmlParser.read(inputSource));
+    }
+    public static ManifestSummary of(byte[] manifestBytes) throws IOException {
+        return read(BinaryXmlParser.of(manifestBytes));
+    }
+    public static ManifestSummary read(BinaryXmlParser parser) throws IOException {
+        ManifestSummary summary = new ManifestSummary();
+        try {
+            summary.scan(parser);
+        } catch (XmlPullParserException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            parser.close();
+        }
+        return summary;
+    }
+}
@@ -21,6 +21,7 @@ import com.reandroid.utils.io.FileUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 public class ArchiveFile extends Archive<ZipFileInput>{
@@ -32,6 +33,29 @@ public class ArchiveFile extends Archive<ZipFileInput>{
         this(new ZipFileInput(file));
     }
 
+    /**
+     * Opens without parsing local headers, suitable to read a few entries of large archive
+     * */
+    public static IndexedArchiveFile openIndexed(File file) throws IOException {
+        return new IndexedArchiveFile(file);
+    }
+
+    /**
+     * Raw (possibly compressed) data of the entry, zero-copy slice if the input is MappedZipFileInput
+     * @throws IOException if the data is 2GB or larger
+     * */
+    public ByteBuffer getRawByteBuffer(ArchiveEntry archiveEntry) throws IOException {
+        return getZipInput().getByteBuffer(archiveEntry.getFileOffset(),
+                ZipFileInput.toBufferLength(archiveEntry.getDataSize()));
+    }
+    /**
+     * Local file header bytes of the entry, zero-copy slice if the input is MappedZipFileInput
+     * */
+    public ByteBuffer getLocalHeaderBuffer(ArchiveEntry archiveEntry) throws IOException {
+        return getZipInput().getByteBuffer(
+                archiveEntry.getCentralEntryHeader().getLocalRelativeOffset(),
+                archiveEntry.getLocalFileHeader().countBytes());
+    }
     @Override
     InputSource createInputSource(ArchiveEntry entry) {
         return new ArchiveFileEntrySource(getZipInput(), entry);
@@ -0,0 +1,441 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive;
+
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.utils.Crc32;
+import com.reandroid.utils.io.FileUtil;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Forward-only archive reader for non-seekable inputs (e.g. pipes), local headers are
+ * walked in order and data of each entry is streamed once, thus memory use is bounded
+ * irrespective of the archive size. The central directory (and apk signing block) are not
+ * read, walking stops at the first non local header signature.
+ * Entries with data descriptor (general purpose bit 3) are supported for DEFLATED data,
+ * the end of data is found by the inflater. Sizes of ZIP64 local headers and ZIP64 data
+ * descriptors are honored.
+ * */
+public class ArchiveStreamReader implements Closeable {
+
+    private final ForwardStream inputStream;
+    private final Inflater inflater;
+    private int entryCount;
+
+    public ArchiveStreamReader(InputStream inputStream){
+        this.inputStream = new ForwardStream(inputStream);
+        this.inflater = new Inflater(true);
+    }
+
+    /**
+     * Calls consumer for each entry with uncompressed data, the data stream is valid only
+     * during the call and needs not be fully read. Sizes and crc of lfh are not reliable
+     * for entries with data descriptor, data is verified against the values read after it.
+     * @return number of entries
+     * */
+    public int readAll(EntryConsumer consumer) throws IOException {
+        LocalFileHeader lfh;
+        while ((lfh = nextHeader()) != null){
+            readEntry(lfh, consumer);
+            entryCount ++;
+        }
+        return entryCount;
+    }
+    /**
+     * Spills uncompressed data of every file entry to dir, returns sources in archive order
+     * with the original compression method. Directory entries are skipped.
+     * */
+    public List<InputSource> readAll(File dir) throws IOException {
+        FileUtil.ensureParentDirectory(new File(dir, "entry"));
+        List<InputSource> results = new ArrayList<>();
+        readAll((lfh, inputStream) -> {
+            String name = lfh.getFileName();
+            if(name.endsWith("/")){
+                return;
+            }
+            File file = new File(dir, "entry_" + entryCount);
+            OutputStream outputStream = new FileOutputStream(file);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0){
+                outputStream.write(buffer, 0, read);
+            }
+            outputStream.close();
+            FileInputSource inputSource = new FileInputSource(file, name);
+            inputSource.setMethod(lfh.getMethod() == Archive.STORED ? Archive.STORED : Archive.DEFLATED);
+            results.add(inputSource);
+        });
+        return results;
+    }
+    public ZipEntryMap createZipEntryMap(File dir) throws IOException {
+        LinkedHashMap<String, InputSource> map = new LinkedHashMap<>();
+        for(InputSource inputSource : readAll(dir)){
+            map.put(inputSource.getAlias(), inputSource);
+        }
+        return new ZipEntryMap(map);
+    }
+    public int getEntryCount() {
+        return entryCount;
+    }
+    public long position(){
+        return inputStream.position();
+    }
+
+    private LocalFileHeader nextHeader() throws IOException {
+        if(inputStream.fill() <= 0){
+            return null;
+        }
+        LocalFileHeader lfh = new LocalFileHeader();
+        lfh.readBytes(inputStream);
+        if(!lfh.isValidSignature()){
+            return null;
+        }
+        return lfh;
+    }
+    private void readEntry(LocalFileHeader lfh, EntryConsumer consumer) throws IOException {
+        byte[] header = lfh.getBytes();
+        int method = lfh.getMethod();
+        long crc = getInt(header, OFFSET_crc);
+        long compressedSize = getInt(header, OFFSET_compressedSize);
+        long size = getInt(header, OFFSET_size);
+        byte[] extra = lfh.getExtra();
+        // streaming writers put zero sizes with a ZIP64 extra, the data descriptor
+        // then carries 8 byte sizes
+        boolean zip64 = findZip64Extra(extra) >= 0;
+        if(size == ZIP64_VALUE || compressedSize == ZIP64_VALUE){
+            long[] sizes = readZip64Sizes(extra, size, compressedSize);
+            size = sizes[0];
+            compressedSize = sizes[1];
+            zip64 = true;
+        }
+        boolean hasDataDescriptor = lfh.hasDataDescriptor();
+        if(method != Archive.STORED && method != Archive.DEFLATED){
+            throw new ZipException("Unsupported method " + method + ", " + lfh.getFileName());
+        }
+        if(hasDataDescriptor && method == Archive.STORED){
+            throw new ZipException("STORED entry with data descriptor can not be streamed: "
+                    + lfh.getFileName());
+        }
+        EntryStream entryStream;
+        if(method == Archive.STORED){
+            entryStream = new StoredStream(compressedSize);
+        }else if(hasDataDescriptor){
+            entryStream = new InflateStream(-1);
+        }else {
+            entryStream = new InflateStream(compressedSize);
+        }
+        consumer.accept(lfh, entryStream);
+        entryStream.drain();
+        if(hasDataDescriptor){
+            long[] values = readDataDescriptor(zip64);
+            crc = values[0];
+            compressedSize = values[1];
+            size = values[2];
+        }
+        entryStream.verify(lfh.getFileName(), crc, compressedSize, size);
+    }
+    private long[] readDataDescriptor(boolean zip64) throws IOException {
+        ForwardStream inputStream = this.inputStream;
+        long first = inputStream.readInt();
+        if(first == ZipSignature.DATA_DESCRIPTOR.getValue()){
+            first = inputStream.readInt();
+        }
+        long compressedSize;
+        long size;
+        if(zip64){
+            compressedSize = inputStream.readLong();
+            size = inputStream.readLong();
+        }else {
+            compressedSize = inputStream.readInt();
+            size = inputStream.readInt();
+        }
+        return new long[]{first, compressedSize, size};
+    }
+    private static long[] readZip64Sizes(byte[] extra, long size, long compressedSize) throws ZipException {
+        int offset = findZip64Extra(extra);
+        if(offset < 0){
+            throw new ZipException("Missing ZIP64 extra field");
+        }
+        int end = offset + 4 + getShort(extra, offset + 2);
+        offset += 4;
+        if(size == ZIP64_VALUE && offset + 8 <= end){
+            size = getLong(extra, offset);
+            offset += 8;
+        }
+        if(compressedSize == ZIP64_VALUE && offset + 8 <= end){
+            compressedSize = getLong(extra, offset);
+        }
+        return new long[]{size, compressedSize};
+    }
+    /**
+     * Returns offset of ZIP64 extra field (header id 0x0001) or -1 if absent
+     * */
+    private static int findZip64Extra(byte[] extra){
+        if(extra == null){
+            return -1;
+        }
+        int offset = 0;
+        int length = extra.length;
+        while (offset + 4 <= length){
+            if(getShort(extra, offset) == ZIP64_EXTRA_ID){
+                return offset;
+            }
+            offset += 4 + getShort(extra, offset + 2);
+        }
+        return -1;
+    }
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        inputStream.close();
+    }
+
+    private static int getShort(byte[] bytes, int offset){
+        return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8);
+    }
+    private static long getInt(byte[] bytes, int offset){
+        return (getShort(bytes, offset) | ((long) getShort(bytes, offset + 2) << 16)) & 0xffffffffL;
+    }
+    private static long getLong(byte[] bytes, int offset){
+        return getInt(bytes, offset) | (getInt(bytes, offset + 4) << 32);
+    }
+
+    public interface EntryConsumer {
+        void accept(LocalFileHeader lfh, InputStream inputStream) throws IOException;
+    }
+
+    private abstract class EntryStream extends InputStream {
+        final Crc32 crc32 = new Crc32();
+        long compressedSize;
+        long size;
+        @Override
+        public int read() throws IOException {
+            byte[] bytes = new byte[1];
+            int read = read(bytes, 0, 1);
+            if(read <= 0){
+                return -1;
+            }
+            return bytes[0] & 0xff;
+        }
+        void drain() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (read(buffer, 0, buffer.length) > 0){
+                // consume
+            }
+        }
+        void verify(String name, long crc, long compressedSize, long size) throws ZipException {
+            if(this.compressedSize != compressedSize || this.size != size){
+                throw new ZipException("Invalid entry size: " + name + ", expected = "
+                        + compressedSize + "/" + size + ", read = "
+                        + this.compressedSize + "/" + this.size);
+            }
+            if(crc32.getValue() != crc){
+                throw new ZipException("Invalid crc: " + name);
+            }
+        }
+        @Override
+        public void close(){
+        }
+    }
+    private class StoredStream extends EntryStream {
+        private final long length;
+        StoredStream(long length){
+            this.length = length;
+        }
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            long remaining = this.length - size;
+            if(remaining <= 0){
+                return -1;
+            }
+            if(length > remaining){
+                length = (int) remaining;
+            }
+            int read = inputStream.read(bytes, offset, length);
+            if(read < length){
+                throw new EOFException("Unexpected end of stream");
+            }
+            crc32.update(bytes, offset, read);
+            size += read;
+            compressedSize += read;
+            return read;
+        }
+    }
+    private class InflateStream extends EntryStream {
+        /** -1 if unknown (data descriptor) */
+        private final long length;
+        private boolean finished;
+        InflateStream(long length){
+            this.length = length;
+            inflater.reset();
+        }
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if(finished || length == 0){
+                return finished ? -1 : 0;
+            }
+            Inflater inflater = ArchiveStreamReader.this.inflater;
+            ForwardStream inputStream = ArchiveStreamReader.this.inputStream;
+            int result;
+            try{
+                while ((result = inflater.inflate(bytes, offset, length)) == 0){
+                    if(inflater.finished() || inflater.needsDictionary()){
+                        break;
+                    }
+                    if(inflater.needsInput()){
+                        int available = inputStream.fill();
+                        if(available <= 0){
+                            throw new EOFException("Unexpected end of deflated data");
+                        }
+                        if(this.length >= 0){
+                            long remaining = this.length - inflater.getBytesRead();
+                            if(remaining <= 0){
+                                throw new ZipException("Invalid deflated data");
+                            }
+                            if(available > remaining){
+                                available = (int) remaining;
+                            }
+                        }
+                        inputStream.feed(inflater, available);
+                    }
+                }
+            }catch (DataFormatException exception){
+                throw new ZipException(exception.getMessage());
+            }
+            if(inflater.finished()){
+                finished = true;
+                inputStream.giveBack(inflater.getRemaining());
+                this.compressedSize = inflater.getBytesRead();
+            }
+            if(result == 0 && finished){
+                this.size = inflater.getBytesWritten();
+                return -1;
+            }
+            crc32.update(bytes, offset, result);
+            this.size = inflater.getBytesWritten();
+            return result;
+        }
+    }
+
+    /**
+     * Buffered input which reads fully (blocks until requested length or end of stream)
+     * */
+    private static class ForwardStream extends InputStream {
+        private final InputStream inputStream;
+        private final byte[] buffer;
+        private int position;
+        private int limit;
+        private long consumed;
+
+        ForwardStream(InputStream inputStream){
+            this.inputStream = inputStream;
+            this.buffer = new byte[BUFFER_SIZE];
+        }
+        long position(){
+            return consumed;
+        }
+        /**
+         * Returns bytes available in buffer, refills if empty
+         * */
+        int fill() throws IOException {
+            int available = limit - position;
+            if(available > 0){
+                return available;
+            }
+            int read = inputStream.read(buffer, 0, buffer.length);
+            if(read <= 0){
+                return -1;
+            }
+            position = 0;
+            limit = read;
+            return read;
+        }
+        void feed(Inflater inflater, int length){
+            inflater.setInput(buffer, position, length);
+            position += length;
+            consumed += length;
+        }
+        void giveBack(int length){
+            position -= length;
+            consumed -= length;
+        }
+        long readInt() throws IOException {
+            byte[] bytes = new byte[4];
+            readFully(bytes);
+            return getInt(bytes, 0);
+        }
+        long readLong() throws IOException {
+            byte[] bytes = new byte[8];
+            readFully(bytes);
+            return getLong(bytes, 0);
+        }
+        private void readFully(byte[] bytes) throws IOException {
+            if(read(bytes, 0, bytes.length) != bytes.length){
+                throw new EOFException("Unexpected end of stream");
+            }
+        }
+        @Override
+        public int read() throws IOException {
+            if(fill() <= 0){
+                return -1;
+            }
+            consumed ++;
+            return buffer[position++] & 0xff;
+        }
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int result = 0;
+            while (length > 0){
+                int available = fill();
+                if(available <= 0){
+                    break;
+                }
+                if(available > length){
+                    available = length;
+                }
+                System.arraycopy(buffer, position, bytes, offset, available);
+                position += available;
+                consumed += available;
+                offset += available;
+                length -= available;
+                result += available;
+            }
+            if(result == 0 && length > 0){
+                return -1;
+            }
+            return result;
+        }
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1024 * 64;
+    private static final long ZIP64_VALUE = 0xffffffffL;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int OFFSET_crc = 14;
+    private static final int OFFSET_compressedSize = 18;
+    private static final int OFFSET_size = 22;
+}
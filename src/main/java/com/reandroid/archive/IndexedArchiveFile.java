@@ -0,0 +1,129 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive;
+
+import com.reandroid.archive.block.CentralEntryHeader;
+import com.reandroid.archive.block.EndRecord;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.model.CentralDirectoryIndex;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Indexed open mode of {@link ArchiveFile}, only the central directory is read on open
+ * (see {@link CentralDirectoryIndex}). Local file headers are read when an entry is first
+ * requested, thus reading a few entries of a huge archive costs no more than the
+ * central directory scan.
+ * */
+public class IndexedArchiveFile implements Closeable {
+
+    private final ZipFileInput zipInput;
+    private final EndRecord endRecord;
+    private final CentralDirectoryIndex index;
+    private final ArchiveEntry[] entries;
+
+    public IndexedArchiveFile(ZipFileInput zipInput) throws IOException {
+        this.zipInput = zipInput;
+        EndRecord endRecord = new EndRecord();
+        endRecord.findEndRecord(zipInput);
+        this.endRecord = endRecord;
+        this.index = CentralDirectoryIndex.read(zipInput, endRecord);
+        this.entries = new ArchiveEntry[index.count()];
+    }
+    public IndexedArchiveFile(File file) throws IOException {
+        this(new ZipFileInput(file));
+    }
+
+    public int size(){
+        return index.count();
+    }
+    public boolean contains(String path){
+        return index.indexOfFile(path) >= 0;
+    }
+    public InputSource getEntrySource(String path) throws IOException {
+        int i = index.indexOfFile(path);
+        if(i < 0){
+            return null;
+        }
+        return new ArchiveFileEntrySource(getZipInput(), getEntry(i));
+    }
+    public InputSource[] getInputSources() throws IOException {
+        CentralDirectoryIndex index = this.index;
+        int count = index.count();
+        List<InputSource> results = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            if(!index.isDirectory(i)){
+                results.add(new ArchiveFileEntrySource(getZipInput(), getEntry(i)));
+            }
+        }
+        return results.toArray(new InputSource[results.size()]);
+    }
+    public ArchiveEntry getEntry(int i) throws IOException {
+        ArchiveEntry entry = entries[i];
+        if(entry == null){
+            synchronized (entries){
+                entry = entries[i];
+                if(entry == null){
+                    entry = new ArchiveEntry(readLocalFileHeader(i));
+                    entries[i] = entry;
+                }
+            }
+        }
+        return entry;
+    }
+    public CentralDirectoryIndex getIndex() {
+        return index;
+    }
+    public EndRecord getEndRecord() {
+        return endRecord;
+    }
+    public ZipFileInput getZipInput() {
+        return zipInput;
+    }
+    private LocalFileHeader readLocalFileHeader(int i) throws IOException {
+        CentralEntryHeader ceh = index.readHeader(i);
+        long offset = ceh.getLocalRelativeOffset();
+        ZipFileInput zipInput = getZipInput();
+        InputStream inputStream = zipInput.getInputStream(offset, zipInput.getLength() - offset);
+        LocalFileHeader lfh = LocalFileHeader.read(inputStream);
+        inputStream.close();
+        if(lfh == null){
+            throw new ArchiveException("Error reading LFH at "
+                    + offset + ", for CEH = " + ceh.getFileName());
+        }
+        offset = offset + lfh.countBytes();
+        ceh.setFileOffset(offset);
+        lfh.setCentralEntryHeader(ceh);
+        lfh.updateDataDescriptor();
+        lfh.setIndex(i);
+        return lfh;
+    }
+    @Override
+    public void close() throws IOException {
+        zipInput.close();
+    }
+    @Override
+    public String toString(){
+        return "Indexed " + zipInput + ", entries = " + size();
+    }
+}
@@ -42,6 +42,15 @@ public class ArchiveEntrySource<T extends ZipInput> extends InputSource {
     public ArchiveEntry getArchiveEntry() {
         return archiveEntry;
     }
+    /**
+     * Opens the data as it is stored in the archive (i.e. compressed if deflated)
+     * */
+    public InputStream openRawStream() throws IOException {
+        ArchiveEntry archiveEntry = getArchiveEntry();
+        return getZipSource().getInputStream(
+                archiveEntry.getFileOffset(),
+                archiveEntry.getDataSize());
+    }
     @Override
     public InputStream openStream() throws IOException {
         boolean compressed = isCompressed();
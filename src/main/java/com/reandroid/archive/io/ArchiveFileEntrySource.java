@@ -18,11 +18,14 @@ package com.reandroid.archive.io;
 import com.reandroid.archive.Archive;
 import com.reandroid.archive.ArchiveEntry;
 import com.reandroid.utils.io.FileUtil;
+import com.reandroid.utils.io.IOUtil;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 public class ArchiveFileEntrySource extends ArchiveEntrySource<ZipFileInput> {
 
@@ -31,8 +34,28 @@ public class ArchiveFileEntrySource extends ArchiveEntrySource<ZipFileInput> {
         setSort(archiveEntry.getIndex());
     }
 
+    /**
+     * Returns the entry content, STORED entries are sliced directly from the zip input
+     * without copying if the input is MappedZipFileInput
+     * @throws IOException if the content is 2GB or larger, use {@link #openStream()} instead
+     * */
+    public ByteBuffer getByteBuffer() throws IOException {
+        ArchiveEntry archiveEntry = getArchiveEntry();
+        if(getMethod() == Archive.STORED){
+            return getZipSource().getByteBuffer(archiveEntry.getFileOffset(),
+                    ZipFileInput.toBufferLength(archiveEntry.getDataSize()));
+        }
+        ZipFileInput.toBufferLength(archiveEntry.getSize());
+        return ByteBuffer.wrap(IOUtil.readFully(openStream()));
+    }
     @Override
     public byte[] getBytes(int length) throws IOException {
+        if(getMethod() == Archive.STORED && getZipSource() instanceof MappedZipFileInput){
+            ByteBuffer buffer = getByteBuffer();
+            byte[] bytes = new byte[length];
+            buffer.get(bytes, 0, Math.min(length, buffer.remaining()));
+            return bytes;
+        }
         FileChannel fileChannel = getFileChannel();
         if(getMethod() != Archive.STORED || fileChannel == null){
             return super.getBytes(length);
@@ -43,6 +66,26 @@ public class ArchiveFileEntrySource extends ArchiveEntrySource<ZipFileInput> {
         return bytes;
     }
 
+    /**
+     * Transfers the data as it is stored in the archive (i.e. compressed if deflated),
+     * the position of the shared input channel is not changed
+     * */
+    public long transferRawTo(WritableByteChannel target) throws IOException {
+        FileChannel fileChannel = getZipSource().getFileChannel();
+        ArchiveEntry archiveEntry = getArchiveEntry();
+        long offset = archiveEntry.getFileOffset();
+        long remaining = archiveEntry.getDataSize();
+        long totalTransferred = 0;
+        while (remaining > 0) {
+            long transferred = fileChannel.transferTo(offset + totalTransferred, remaining, target);
+            if(transferred <= 0){
+                throw new EOFException("Finished reading: " + (offset + totalTransferred));
+            }
+            totalTransferred += transferred;
+            remaining -= transferred;
+        }
+        return totalTransferred;
+    }
     FileChannel getFileChannel() throws IOException {
         ZipFileInput zipInput = getZipSource();
         FileChannel fileChannel = zipInput.getFileChannel();
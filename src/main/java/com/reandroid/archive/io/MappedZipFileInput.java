@@ -0,0 +1,156 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.io;
+
+import com.reandroid.common.ByteBufferInputStream;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory mapped ZipFileInput, the file is mapped in windows of {@link #getWindowSize()}
+ * bytes (archives above 2GB need more than one window). Each window overlaps the next by
+ * {@link #WINDOW_OVERLAP} bytes, thus local headers never straddle two windows.
+ * Regions are handed out as ByteBuffer slices without copying and, unlike the
+ * channel based {@link ZipFileInput}, concurrent reads don't share any position.
+ * */
+public class MappedZipFileInput extends ZipFileInput {
+
+    private final int windowSize;
+    private MappedByteBuffer[] mWindows;
+
+    public MappedZipFileInput(File file, int windowSize){
+        super(file);
+        if(windowSize <= WINDOW_OVERLAP){
+            throw new IllegalArgumentException("Window size too small: " + windowSize);
+        }
+        if(windowSize > MAX_WINDOW_SIZE){
+            windowSize = MAX_WINDOW_SIZE;
+        }
+        this.windowSize = windowSize;
+    }
+    public MappedZipFileInput(File file){
+        this(file, MAX_WINDOW_SIZE);
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Returns read-only slice of the mapped file, a region crossing window boundary
+     * gets its own mapping
+     * */
+    @Override
+    public ByteBuffer getByteBuffer(long offset, int length) throws IOException {
+        long fileLength = getLength();
+        if(offset < 0 || length < 0 || offset + length > fileLength){
+            throw new EOFException("Out of bounds: offset = " + offset
+                    + ", length = " + length + ", file length = " + fileLength);
+        }
+        MappedByteBuffer[] windows = getWindows();
+        int index = (int) (offset / windowSize);
+        long windowStart = (long) index * windowSize;
+        int start = (int) (offset - windowStart);
+        if(index < windows.length){
+            MappedByteBuffer window = windows[index];
+            if(start + length <= window.capacity()){
+                return slice(window, start, length);
+            }
+        }
+        return getFileChannel().map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+    @Override
+    public InputStream getInputStream(long offset, long length) throws IOException {
+        if(length > windowSize){
+            return super.getInputStream(offset, length);
+        }
+        return new ByteBufferInputStream(getByteBuffer(offset, (int) length));
+    }
+    @Override
+    public byte[] getFooter(int minLength) throws IOException {
+        long position = getLength();
+        if(minLength > position){
+            minLength = (int) position;
+        }
+        position = position - minLength;
+        byte[] bytes = new byte[minLength];
+        getByteBuffer(position, minLength).get(bytes);
+        return bytes;
+    }
+    private MappedByteBuffer[] getWindows() throws IOException {
+        MappedByteBuffer[] windows = this.mWindows;
+        if(windows != null){
+            return windows;
+        }
+        synchronized (this){
+            windows = this.mWindows;
+            if(windows != null){
+                return windows;
+            }
+            windows = mapWindows();
+            this.mWindows = windows;
+            return windows;
+        }
+    }
+    private MappedByteBuffer[] mapWindows() throws IOException {
+        FileChannel fileChannel = getFileChannel();
+        long fileLength = fileChannel.size();
+        int windowSize = this.windowSize;
+        int count = (int) ((fileLength + windowSize - 1) / windowSize);
+        MappedByteBuffer[] windows = new MappedByteBuffer[count];
+        for(int i = 0; i < count; i++){
+            long start = (long) i * windowSize;
+            long size = fileLength - start;
+            long max = (long) windowSize + WINDOW_OVERLAP;
+            if(size > max){
+                size = max;
+            }
+            windows[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+        return windows;
+    }
+    @Override
+    public void close() throws IOException {
+        synchronized (this){
+            this.mWindows = null;
+        }
+        super.close();
+    }
+    @Override
+    public String toString(){
+        return "Mapped " + super.toString();
+    }
+
+    private static ByteBuffer slice(ByteBuffer window, int start, int length){
+        ByteBuffer buffer = window.duplicate();
+        ((Buffer) buffer).position(start);
+        ((Buffer) buffer).limit(start + length);
+        return buffer.slice();
+    }
+
+    /**
+     * Enough to cover the largest local header (30 + 0xffff name + 0xffff extra)
+     * */
+    public static final int WINDOW_OVERLAP = 1024 * 132;
+    public static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - WINDOW_OVERLAP;
+}
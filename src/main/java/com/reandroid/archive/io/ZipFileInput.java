@@ -19,6 +19,7 @@ import com.reandroid.common.FileChannelInputStream;
 import com.reandroid.utils.io.FileUtil;
 
 import java.io.*;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
@@ -54,9 +55,10 @@ public class ZipFileInput extends ZipInput {
     public InputStream getInputStream(long offset, long length) throws IOException {
         closeCurrentInputStream();
         FileChannel fileChannel = getFileChannel();
-        fileChannel.position(offset);
-        mCurrentInputStream = new FileChannelInputStream(fileChannel, length);
-        return mCurrentInputStream;
+        InputStream inputStream = new FileChannelInputStream(fileChannel, offset, length,
+                FileChannelInputStream.DEFAULT_BUFFER_SIZE);
+        mCurrentInputStream = inputStream;
+        return inputStream;
     }
 
     @Override
@@ -72,6 +74,33 @@ public class ZipFileInput extends ZipInput {
         fileChannel.read(buffer);
         return buffer.array();
     }
+    /**
+     * Checks the length fits in a single ByteBuffer
+     * @throws IOException if length is negative or larger than Integer.MAX_VALUE
+     * */
+    public static int toBufferLength(long length) throws IOException {
+        if(length < 0 || length > Integer.MAX_VALUE){
+            throw new IOException("Too large for a single buffer: " + length);
+        }
+        return (int) length;
+    }
+    /**
+     * Reads the given region into heap buffer, see MappedZipFileInput for zero-copy
+     * */
+    public ByteBuffer getByteBuffer(long offset, int length) throws IOException {
+        FileChannel fileChannel = getFileChannel();
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        long position = offset;
+        while (buffer.hasRemaining()){
+            int read = fileChannel.read(buffer, position);
+            if(read < 0){
+                throw new EOFException("Finished reading: " + position);
+            }
+            position += read;
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
     public FileChannel getFileChannel() throws IOException {
         FileChannel fileChannel = this.fileChannel;
         if(fileChannel != null){
@@ -17,19 +17,33 @@ package com.reandroid.archive.io;
 
 import com.reandroid.utils.io.FileUtil;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 public class ZipFileOutput extends ZipOutput{
     private final File file;
+    private final boolean truncate;
     private FileChannel fileChannel;
     private FileChannelOutputStream outputStream;
-    public ZipFileOutput(File file) throws IOException {
-        initFile(file);
+    /**
+     * @param truncate if false, existing file is opened for read/write as it is (in-place update)
+     * */
+    public ZipFileOutput(File file, boolean truncate) throws IOException {
+        if(truncate){
+            initFile(file);
+        }else if(!file.isFile()){
+            throw new IOException("No such file: " + file);
+        }
         this.file = file;
+        this.truncate = truncate;
+    }
+    public ZipFileOutput(File file) throws IOException {
+        this(file, true);
     }
     public File getFile() {
         return file;
@@ -50,6 +64,38 @@ public class ZipFileOutput extends ZipOutput{
         fileChannel.position(pos + totalTransferred);
     }
 
+    /**
+     * Transfers region of the input channel without changing its position
+     * */
+    public void write(FileChannel input, long offset, long length) throws IOException{
+        FileChannel fileChannel = getFileChannel();
+        long totalTransferred = 0;
+        long remaining = length;
+
+        while (remaining > 0) {
+            long transferred = input.transferTo(offset + totalTransferred, remaining, fileChannel);
+            if(transferred <= 0){
+                throw new EOFException("Finished reading: " + (offset + totalTransferred));
+            }
+            totalTransferred += transferred;
+            remaining -= transferred;
+        }
+    }
+    /**
+     * Writes remaining bytes of the buffer at current position
+     * */
+    public void write(ByteBuffer buffer) throws IOException {
+        FileChannel fileChannel = getFileChannel();
+        while (buffer.hasRemaining()){
+            fileChannel.write(buffer);
+        }
+    }
+    /**
+     * Discards bytes beyond size, used when an existing file is updated in-place
+     * */
+    public void truncate(long size) throws IOException {
+        getFileChannel().truncate(size);
+    }
     @Override
     public long position() throws IOException {
         return getFileChannel().position();
@@ -79,7 +125,12 @@ public class ZipFileOutput extends ZipOutput{
             return fileChannel;
         }
         synchronized (this){
-            fileChannel = FileUtil.openWriteChannel(file);
+            if(truncate){
+                fileChannel = FileUtil.openWriteChannel(file);
+            }else {
+                fileChannel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
             this.fileChannel = fileChannel;
             return fileChannel;
         }
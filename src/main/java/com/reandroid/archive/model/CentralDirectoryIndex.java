@@ -0,0 +1,266 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.model;
+
+import com.reandroid.archive.ZipSignature;
+import com.reandroid.archive.block.CentralEntryHeader;
+import com.reandroid.archive.block.EndRecord;
+import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.io.ZipInput;
+import com.reandroid.common.ByteBufferInputStream;
+import com.reandroid.utils.io.IOUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact index of central directory, entries are kept as parallel primitive arrays
+ * (name hash, header offsets and sizes) over the raw directory bytes. Nothing is decoded
+ * up front, names and {@link CentralEntryHeader}s are created only on request and lookup
+ * by name is a single hash probe.
+ * */
+public class CentralDirectoryIndex {
+
+    private final ByteBuffer directory;
+    private final int count;
+    private final int[] headerOffsets;
+    private final int[] nameHashes;
+    private final int[] methods;
+    private final long[] localOffsets;
+    private final long[] compressedSizes;
+    private final long[] sizes;
+    private final int[] hashTable;
+
+    private CentralDirectoryIndex(ByteBuffer directory, int count){
+        this.directory = directory;
+        this.count = count;
+        this.headerOffsets = new int[count];
+        this.nameHashes = new int[count];
+        this.methods = new int[count];
+        this.localOffsets = new long[count];
+        this.compressedSizes = new long[count];
+        this.sizes = new long[count];
+        this.hashTable = new int[tableSize(count)];
+    }
+
+    public int count(){
+        return count;
+    }
+    public String getName(int index){
+        int offset = headerOffsets[index];
+        int length = getNameLength(offset);
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = directory.duplicate();
+        ((Buffer) buffer).position(offset + HEADER_SIZE);
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    public int getMethod(int index){
+        return methods[index];
+    }
+    public long getLocalOffset(int index){
+        return localOffsets[index];
+    }
+    public long getCompressedSize(int index){
+        return compressedSizes[index];
+    }
+    public long getSize(int index){
+        return sizes[index];
+    }
+    public boolean isDirectory(int index){
+        int offset = headerOffsets[index];
+        int length = getNameLength(offset);
+        return length != 0 && compressedSizes[index] == 0
+                && directory.get(offset + HEADER_SIZE + length - 1) == '/';
+    }
+    /**
+     * Returns index of the first entry named exactly as path, or -1
+     * */
+    public int indexOf(String path){
+        return indexOf(path, false);
+    }
+    /**
+     * Returns index of the first file (non-directory) entry named exactly as path, or -1
+     * */
+    public int indexOfFile(String path){
+        return indexOf(path, true);
+    }
+    private int indexOf(String path, boolean filesOnly){
+        if(path == null || count == 0){
+            return -1;
+        }
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(name);
+        int[] hashTable = this.hashTable;
+        int mask = hashTable.length - 1;
+        int slot = hash & mask;
+        int value;
+        while ((value = hashTable[slot]) != 0){
+            int index = value - 1;
+            if(nameHashes[index] == hash && nameEquals(index, name)
+                    && (!filesOnly || !isDirectory(index))){
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    /**
+     * Decodes full header of the entry, the returned object is not cached
+     * */
+    public CentralEntryHeader readHeader(int index) throws IOException {
+        ByteBuffer buffer = directory.duplicate();
+        ((Buffer) buffer).position(headerOffsets[index]);
+        InputStream inputStream = new ByteBufferInputStream(buffer);
+        CentralEntryHeader ceh = new CentralEntryHeader();
+        ceh.readBytes(inputStream);
+        ceh.setIndex(index);
+        return ceh;
+    }
+    private boolean nameEquals(int index, byte[] name){
+        int offset = headerOffsets[index];
+        int length = name.length;
+        if(getNameLength(offset) != length){
+            return false;
+        }
+        ByteBuffer directory = this.directory;
+        offset = offset + HEADER_SIZE;
+        for(int i = 0; i < length; i++){
+            if(directory.get(offset + i) != name[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+    private int getNameLength(int headerOffset){
+        return directory.getShort(headerOffset + OFFSET_fileNameLength) & 0xffff;
+    }
+
+    private void build() throws IOException {
+        ByteBuffer directory = this.directory;
+        int[] hashTable = this.hashTable;
+        int mask = hashTable.length - 1;
+        int offset = 0;
+        for(int i = 0; i < count; i++){
+            headerOffsets[i] = offset;
+            int nameLength = getNameLength(offset);
+            int hash = hash(directory, offset + HEADER_SIZE, nameLength);
+            nameHashes[i] = hash;
+            methods[i] = directory.getShort(offset + OFFSET_method) & 0xffff;
+            long compressedSize = directory.getInt(offset + OFFSET_compressedSize) & 0xffffffffL;
+            long size = directory.getInt(offset + OFFSET_size) & 0xffffffffL;
+            long localOffset = directory.getInt(offset + OFFSET_localRelativeOffset) & 0xffffffffL;
+            if(compressedSize == ZIP64_VALUE || size == ZIP64_VALUE || localOffset == ZIP64_VALUE){
+                CentralEntryHeader ceh = readHeader(i);
+                compressedSize = ceh.getCompressedSize();
+                size = ceh.getSize();
+                localOffset = ceh.getLocalRelativeOffset();
+            }
+            compressedSizes[i] = compressedSize;
+            sizes[i] = size;
+            localOffsets[i] = localOffset;
+            int slot = hash & mask;
+            while (hashTable[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            hashTable[slot] = i + 1;
+            offset = offset + headerLength(directory, offset);
+        }
+    }
+
+    public static CentralDirectoryIndex read(ZipInput zipInput, EndRecord endRecord) throws IOException {
+        long length = endRecord.getLengthOfCentralDirectory();
+        if(length > Integer.MAX_VALUE){
+            throw new IOException("Central directory too large: " + length);
+        }
+        ByteBuffer directory = readDirectory(zipInput,
+                endRecord.getOffsetOfCentralDirectory(), (int) length);
+        CentralDirectoryIndex index = new CentralDirectoryIndex(directory, countHeaders(directory));
+        index.build();
+        return index;
+    }
+    private static ByteBuffer readDirectory(ZipInput zipInput, long offset, int length) throws IOException {
+        ByteBuffer buffer;
+        if(zipInput instanceof ZipFileInput){
+            buffer = ((ZipFileInput) zipInput).getByteBuffer(offset, length);
+        }else {
+            InputStream inputStream = zipInput.getInputStream(offset, length);
+            buffer = ByteBuffer.wrap(IOUtil.readFully(inputStream));
+            inputStream.close();
+        }
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+    private static int countHeaders(ByteBuffer directory){
+        int limit = directory.limit();
+        int offset = 0;
+        int count = 0;
+        while (offset + HEADER_SIZE <= limit
+                && directory.getInt(offset) == ZipSignature.CENTRAL_FILE.getValue()){
+            int length = headerLength(directory, offset);
+            if(offset + length > limit){
+                break;
+            }
+            offset += length;
+            count ++;
+        }
+        return count;
+    }
+    private static int headerLength(ByteBuffer directory, int offset){
+        return HEADER_SIZE
+                + (directory.getShort(offset + OFFSET_fileNameLength) & 0xffff)
+                + (directory.getShort(offset + OFFSET_extraLength) & 0xffff)
+                + (directory.getShort(offset + OFFSET_commentLength) & 0xffff);
+    }
+    private static int hash(ByteBuffer buffer, int offset, int length){
+        int hash = 0;
+        for(int i = 0; i < length; i++){
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        return mix(hash);
+    }
+    private static int hash(byte[] bytes){
+        int hash = 0;
+        for(byte b : bytes){
+            hash = 31 * hash + b;
+        }
+        return mix(hash);
+    }
+    private static int mix(int hash){
+        return hash ^ (hash >>> 16);
+    }
+    private static int tableSize(int count){
+        int size = 2;
+        while (size < count * 2 && size < (1 << 30)){
+            size = size << 1;
+        }
+        return size;
+    }
+
+    private static final long ZIP64_VALUE = 0xffffffffL;
+
+    private static final int HEADER_SIZE = 46;
+    private static final int OFFSET_method = 10;
+    private static final int OFFSET_compressedSize = 20;
+    private static final int OFFSET_size = 24;
+    private static final int OFFSET_fileNameLength = 28;
+    private static final int OFFSET_extraLength = 30;
+    private static final int OFFSET_commentLength = 32;
+    private static final int OFFSET_localRelativeOffset = 42;
+}
@@ -0,0 +1,344 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.signer;
+
+import com.reandroid.archive.block.ApkSignatureBlock;
+import com.reandroid.archive.block.SignatureId;
+import com.reandroid.archive.block.SignatureInfo;
+import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.utils.io.IOUtil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Signs apk with signature scheme v2 and v3 (without key rotation, thus no v3.1).
+ * Content digests are computed by {@link ChunkedDigest} over the three sections, i.e. the
+ * zip entries, central directory and end record (with central directory offset pointing
+ * to the start of signature block). Set on {@link com.reandroid.archive.writer.ApkWriter}
+ * to sign while writing.
+ * */
+public class ApkSigner {
+
+    private final PrivateKey privateKey;
+    private final List<X509Certificate> certificates;
+    private SignatureAlgorithm signatureAlgorithm;
+    private boolean v2SigningEnabled = true;
+    private boolean v3SigningEnabled = true;
+    private int v3MinSdkVersion = V3_MIN_SDK_VERSION;
+    private ForkJoinPool forkJoinPool;
+
+    public ApkSigner(PrivateKey privateKey, List<X509Certificate> certificates){
+        if(certificates.isEmpty()){
+            throw new IllegalArgumentException("Empty certificates");
+        }
+        this.privateKey = privateKey;
+        this.certificates = new ArrayList<>(certificates);
+        this.signatureAlgorithm = SignatureAlgorithm.forKey(certificates.get(0).getPublicKey());
+    }
+    public ApkSigner(PrivateKey privateKey, X509Certificate ... certificates){
+        this(privateKey, Arrays.asList(certificates));
+    }
+
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+    public List<X509Certificate> getCertificates() {
+        return certificates;
+    }
+    public SignatureAlgorithm getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+    public void setSignatureAlgorithm(SignatureAlgorithm signatureAlgorithm) {
+        String keyAlgorithm = certificates.get(0).getPublicKey().getAlgorithm();
+        if(!signatureAlgorithm.getKeyAlgorithm().equalsIgnoreCase(keyAlgorithm)){
+            throw new IllegalArgumentException("Algorithm " + signatureAlgorithm
+                    + " can not be used with key " + keyAlgorithm);
+        }
+        this.signatureAlgorithm = signatureAlgorithm;
+    }
+    public boolean isV2SigningEnabled() {
+        return v2SigningEnabled;
+    }
+    public void setV2SigningEnabled(boolean v2SigningEnabled) {
+        this.v2SigningEnabled = v2SigningEnabled;
+    }
+    public boolean isV3SigningEnabled() {
+        return v3SigningEnabled;
+    }
+    public void setV3SigningEnabled(boolean v3SigningEnabled) {
+        this.v3SigningEnabled = v3SigningEnabled;
+    }
+    public int getV3MinSdkVersion() {
+        return v3MinSdkVersion;
+    }
+    public void setV3MinSdkVersion(int v3MinSdkVersion) {
+        this.v3MinSdkVersion = v3MinSdkVersion;
+    }
+    /**
+     * Pool to digest chunks on, default is the common pool
+     * */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+    public ForkJoinPool getForkJoinPool() {
+        ForkJoinPool forkJoinPool = this.forkJoinPool;
+        if(forkJoinPool == null){
+            forkJoinPool = ForkJoinPool.commonPool();
+        }
+        return forkJoinPool;
+    }
+
+    /**
+     * Computes content digest and signs, v2/v3/v3.1 and source stamp signatures of
+     * signatureBlock are replaced, others are kept as they are
+     * @param signatureBlock existing signature block to update, if null a new one is created
+     * */
+    public ApkSignatureBlock sign(DigestSection entries, DigestSection centralDirectory,
+                                  DigestSection endRecord, ApkSignatureBlock signatureBlock) throws IOException {
+        if(!isV2SigningEnabled() && !isV3SigningEnabled()){
+            throw new IOException("Both v2 and v3 signing disabled");
+        }
+        SignatureAlgorithm algorithm = getSignatureAlgorithm();
+        ChunkedDigest chunkedDigest = new ChunkedDigest(algorithm.getDigestAlgorithm(),
+                entries, centralDirectory, endRecord);
+        byte[] digest = chunkedDigest.compute(getForkJoinPool());
+        if(signatureBlock == null){
+            signatureBlock = new ApkSignatureBlock();
+        }
+        removeSignatures(signatureBlock);
+        try{
+            if(isV2SigningEnabled()){
+                signatureBlock.add(toSignatureInfo(SignatureId.V2, encodeV2Block(digest)));
+            }
+            if(isV3SigningEnabled()){
+                signatureBlock.add(toSignatureInfo(SignatureId.V3, encodeV3Block(digest)));
+            }
+        }catch (GeneralSecurityException e){
+            throw new IOException("Failed to sign: " + e.getMessage(), e);
+        }
+        signatureBlock.sortSignatures();
+        return signatureBlock;
+    }
+    private byte[] encodeV2Block(byte[] digest) throws GeneralSecurityException {
+        LengthPrefixedEncoder attributes = new LengthPrefixedEncoder();
+        if(isV3SigningEnabled()){
+            // stripping protection: tells v3 aware platforms to reject apk without v3 block
+            attributes.putPrefixed(new LengthPrefixedEncoder()
+                    .putInt(STRIPPING_PROTECTION_ATTR_ID)
+                    .putInt(STRIPPING_PROTECTION_V3)
+                    .toByteArray());
+        }
+        byte[] signedData = new LengthPrefixedEncoder()
+                .putSequence(encodeDigest(digest))
+                .putSequence(encodeCertificates())
+                .putPrefixed(attributes.toByteArray())
+                .toByteArray();
+        byte[] signer = new LengthPrefixedEncoder()
+                .putPrefixed(signedData)
+                .putSequence(encodeSignature(signedData))
+                .putPrefixed(encodePublicKey())
+                .toByteArray();
+        return new LengthPrefixedEncoder()
+                .putSequence(signer)
+                .toByteArray();
+    }
+    private byte[] encodeV3Block(byte[] digest) throws GeneralSecurityException {
+        int minSdk = getV3MinSdkVersion();
+        int maxSdk = Integer.MAX_VALUE;
+        byte[] signedData = new LengthPrefixedEncoder()
+                .putSequence(encodeDigest(digest))
+                .putSequence(encodeCertificates())
+                .putInt(minSdk)
+                .putInt(maxSdk)
+                .putSequence()
+                .toByteArray();
+        byte[] signer = new LengthPrefixedEncoder()
+                .putPrefixed(signedData)
+                .putInt(minSdk)
+                .putInt(maxSdk)
+                .putSequence(encodeSignature(signedData))
+                .putPrefixed(encodePublicKey())
+                .toByteArray();
+        return new LengthPrefixedEncoder()
+                .putSequence(signer)
+                .toByteArray();
+    }
+    private byte[] encodeDigest(byte[] digest){
+        return new LengthPrefixedEncoder()
+                .putInt(getSignatureAlgorithm().getId())
+                .putPrefixed(digest)
+                .toByteArray();
+    }
+    private byte[][] encodeCertificates() throws GeneralSecurityException {
+        List<X509Certificate> certificates = getCertificates();
+        int size = certificates.size();
+        byte[][] results = new byte[size][];
+        for(int i = 0; i < size; i++){
+            results[i] = certificates.get(i).getEncoded();
+        }
+        return results;
+    }
+    private byte[] encodeSignature(byte[] signedData) throws GeneralSecurityException {
+        SignatureAlgorithm algorithm = getSignatureAlgorithm();
+        Signature signature = algorithm.initSign(getPrivateKey());
+        signature.update(signedData);
+        byte[] signatureBytes = signature.sign();
+        Signature verifier = algorithm.initVerify(getCertificates().get(0).getPublicKey());
+        verifier.update(signedData);
+        if(!verifier.verify(signatureBytes)){
+            throw new SignatureException("Private key does not match certificate");
+        }
+        return new LengthPrefixedEncoder()
+                .putInt(algorithm.getId())
+                .putPrefixed(signatureBytes)
+                .toByteArray();
+    }
+    private byte[] encodePublicKey(){
+        return getCertificates().get(0).getPublicKey().getEncoded();
+    }
+    private static SignatureInfo toSignatureInfo(SignatureId signatureId, byte[] scheme) throws IOException {
+        byte[] bytes = new LengthPrefixedEncoder()
+                .putLong(4 + scheme.length)
+                .putInt(signatureId.getId())
+                .putBytes(scheme)
+                .toByteArray();
+        SignatureInfo signatureInfo = new SignatureInfo();
+        signatureInfo.readBytes(new BlockReader(bytes));
+        return signatureInfo;
+    }
+    private static void removeSignatures(ApkSignatureBlock signatureBlock){
+        List<SignatureInfo> signatureInfoList = new ArrayList<>(signatureBlock.getElements());
+        for(SignatureInfo signatureInfo : signatureInfoList){
+            SignatureId id = signatureInfo.getId();
+            if(id == SignatureId.V2 || id == SignatureId.V3 || id == SignatureId.V31
+                    || id == SignatureId.STAMP_V1 || id == SignatureId.STAMP_V2){
+                signatureBlock.remove(signatureInfo);
+            }
+        }
+    }
+
+    /**
+     * Loads key entry from keystore (PKCS12 or JKS)
+     * @param alias key alias, if null the first key entry
+     * @param keyPassword if null storePassword is used
+     * */
+    public static ApkSigner fromKeyStore(File file, char[] storePassword,
+                                         String alias, char[] keyPassword) throws IOException {
+        if(keyPassword == null){
+            keyPassword = storePassword;
+        }
+        KeyStore keyStore = loadKeyStore(file, storePassword);
+        try{
+            if(alias == null){
+                alias = findKeyAlias(keyStore);
+            }
+            Key key = keyStore.getKey(alias, keyPassword);
+            if(!(key instanceof PrivateKey)){
+                throw new IOException("No private key entry '" + alias + "' in: " + file);
+            }
+            Certificate[] chain = keyStore.getCertificateChain(alias);
+            if(chain == null || chain.length == 0){
+                throw new IOException("No certificate for '" + alias + "' in: " + file);
+            }
+            List<X509Certificate> certificates = new ArrayList<>(chain.length);
+            for(Certificate certificate : chain){
+                certificates.add((X509Certificate) certificate);
+            }
+            return new ApkSigner((PrivateKey) key, certificates);
+        }catch (GeneralSecurityException e){
+            throw new IOException("Failed to load key '" + alias + "' from: " + file, e);
+        }
+    }
+    /**
+     * Loads unencrypted PKCS#8 private key (DER or PEM) and X.509 certificate(s)
+     * (DER or PEM), e.g. testkey.pk8 and testkey.x509.pem
+     * */
+    public static ApkSigner fromPKCS8(File privateKeyFile, File certificateFile) throws IOException {
+        byte[] keyBytes = decodePem(IOUtil.readFully(privateKeyFile));
+        List<X509Certificate> certificates = new ArrayList<>();
+        try(InputStream inputStream = new FileInputStream(certificateFile)){
+            CertificateFactory factory = CertificateFactory.getInstance("X.509");
+            for(Certificate certificate : factory.generateCertificates(inputStream)){
+                certificates.add((X509Certificate) certificate);
+            }
+        }catch (GeneralSecurityException e){
+            throw new IOException("Invalid certificate: " + certificateFile, e);
+        }
+        if(certificates.isEmpty()){
+            throw new IOException("No certificate found: " + certificateFile);
+        }
+        String keyAlgorithm = certificates.get(0).getPublicKey().getAlgorithm();
+        PrivateKey privateKey;
+        try{
+            privateKey = KeyFactory.getInstance(keyAlgorithm)
+                    .generatePrivate(new PKCS8EncodedKeySpec(keyBytes));
+        }catch (NoSuchAlgorithmException | InvalidKeySpecException e){
+            throw new IOException("Invalid PKCS#8 " + keyAlgorithm + " key: " + privateKeyFile, e);
+        }
+        return new ApkSigner(privateKey, certificates);
+    }
+    private static KeyStore loadKeyStore(File file, char[] storePassword) throws IOException {
+        IOException lastError = null;
+        for(String type : KEY_STORE_TYPES){
+            try(InputStream inputStream = new FileInputStream(file)){
+                KeyStore keyStore = KeyStore.getInstance(type);
+                keyStore.load(inputStream, storePassword);
+                return keyStore;
+            }catch (GeneralSecurityException e){
+                lastError = new IOException("Failed to load keystore: " + file, e);
+            }catch (IOException e){
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+    private static String findKeyAlias(KeyStore keyStore) throws GeneralSecurityException, IOException {
+        Enumeration<String> aliases = keyStore.aliases();
+        while (aliases.hasMoreElements()){
+            String alias = aliases.nextElement();
+            if(keyStore.isKeyEntry(alias)){
+                return alias;
+            }
+        }
+        throw new IOException("No key entry in keystore");
+    }
+    private static byte[] decodePem(byte[] bytes){
+        String text = new String(bytes, StandardCharsets.US_ASCII);
+        int start = text.indexOf("-----BEGIN");
+        if(start < 0){
+            return bytes;
+        }
+        start = text.indexOf('\n', start);
+        int end = text.indexOf("-----END", start);
+        String base64 = text.substring(start + 1, end).replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+
+    public static final int V3_MIN_SDK_VERSION = 28;
+
+    private static final int STRIPPING_PROTECTION_ATTR_ID = 0xbeeff00d;
+    private static final int STRIPPING_PROTECTION_V3 = 3;
+    private static final String[] KEY_STORE_TYPES = new String[]{"PKCS12", "JKS"};
+}
@@ -0,0 +1,285 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.signer;
+
+import com.reandroid.archive.block.*;
+import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.model.CentralFileDirectory;
+import com.reandroid.arsc.io.BlockReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.*;
+import java.security.cert.X509Certificate;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Verifies apk signature scheme v2, v3 and v3.1 signatures. Only the central directory,
+ * end record and signature block are loaded, the entries are read once chunk by chunk
+ * (see {@link ChunkedDigest}) for each distinct content digest algorithm, which is shared
+ * by all schemes and signers. Nothing is extracted.
+ * */
+public class ApkVerifier {
+
+    private final ZipFileInput zipFileInput;
+    private ForkJoinPool forkJoinPool;
+
+    public ApkVerifier(ZipFileInput zipFileInput){
+        this.zipFileInput = zipFileInput;
+    }
+
+    /**
+     * Pool to digest chunks on, default is the common pool
+     * */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+    public ForkJoinPool getForkJoinPool() {
+        ForkJoinPool forkJoinPool = this.forkJoinPool;
+        if(forkJoinPool == null){
+            forkJoinPool = ForkJoinPool.commonPool();
+        }
+        return forkJoinPool;
+    }
+
+    public VerifyResult verify() throws IOException {
+        VerifyResult result = new VerifyResult();
+        ZipFileInput zipFileInput = this.zipFileInput;
+        CentralFileDirectory cfd = new CentralFileDirectory();
+        cfd.visit(zipFileInput);
+        EndRecord endRecord = cfd.getEndRecord();
+        if(endRecord.getZip64Record() != null){
+            result.addError("ZIP64 archive can not be signed with v2+ schemes");
+            return result;
+        }
+        SignatureFooter footer = cfd.getSignatureFooter();
+        if(footer == null || !footer.isValid()){
+            result.addError("No APK signature block");
+            return result;
+        }
+        long cdOffset = endRecord.getOffsetOfCentralDirectory();
+        long cdLength = endRecord.getLengthOfCentralDirectory();
+        long blockLength = footer.getSignatureSize() + 8;
+        long blockOffset = cdOffset - blockLength;
+        if(blockOffset < 0){
+            result.addError("Invalid APK signature block size: " + footer.getSignatureSize());
+            return result;
+        }
+        ApkSignatureBlock signatureBlock = new ApkSignatureBlock(footer);
+        signatureBlock.readBytes(new BlockReader(zipFileInput.getInputStream(blockOffset, blockLength)));
+
+        setEntries(result, cfd);
+
+        List<SignatureInfo> signatureInfoList = new ArrayList<>();
+        for(SignatureInfo signatureInfo : signatureBlock){
+            SignatureId id = signatureInfo.getId();
+            if(id == SignatureId.V2 || id == SignatureId.V3 || id == SignatureId.V31){
+                signatureInfoList.add(signatureInfo);
+            }
+        }
+        if(signatureInfoList.isEmpty()){
+            result.addError("No v2/v3/v3.1 signature found");
+            return result;
+        }
+        for(SignatureInfo signatureInfo : signatureInfoList){
+            result.add(verifySigners(signatureInfo));
+        }
+
+        long endOffset = cdOffset + cdLength;
+        DigestSection entries = DigestSection.of(zipFileInput, 0, blockOffset);
+        DigestSection centralDirectory = DigestSection.of(zipFileInput, cdOffset, cdLength);
+        DigestSection endSection = DigestSection.of(readEndRecord(endOffset, blockOffset));
+        for(VerifyResult.SchemeResult schemeResult : result.getSchemeResults()){
+            String algorithm = schemeResult.getDigestAlgorithm();
+            if(algorithm == null){
+                continue;
+            }
+            ChunkedDigest chunkedDigest = result.getChunkedDigest(algorithm);
+            if(chunkedDigest == null){
+                chunkedDigest = new ChunkedDigest(algorithm, entries, centralDirectory, endSection);
+                chunkedDigest.compute(getForkJoinPool());
+                result.putChunkedDigest(chunkedDigest);
+            }
+            boolean verified = MessageDigest.isEqual(schemeResult.getExpectedDigest(),
+                    chunkedDigest.getDigest());
+            schemeResult.setDigestVerified(verified);
+            if(!verified){
+                schemeResult.addError(algorithm + " content digest mismatch");
+            }
+        }
+        return result;
+    }
+    private VerifyResult.SchemeResult verifySigners(SignatureInfo signatureInfo){
+        SignatureId signatureId = signatureInfo.getId();
+        VerifyResult.SchemeResult schemeResult = new VerifyResult.SchemeResult(signatureId);
+        try{
+            LengthPrefixedDecoder signers = new LengthPrefixedDecoder(
+                    signatureInfo.getSignatureScheme().getBytes()).getPrefixed();
+            if(!signers.hasRemaining()){
+                schemeResult.addError("No signers");
+            }
+            int index = 0;
+            while (signers.hasRemaining()){
+                verifySigner(schemeResult, index, signers.getPrefixed());
+                index ++;
+            }
+        }catch (IOException e){
+            schemeResult.addError("Malformed " + signatureId + " block: " + e.getMessage());
+        }
+        return schemeResult;
+    }
+    private void verifySigner(VerifyResult.SchemeResult schemeResult, int index,
+                              LengthPrefixedDecoder signer) throws IOException {
+        boolean v3 = schemeResult.getSignatureId() != SignatureId.V2;
+        String prefix = "signer #" + index + ": ";
+        byte[] signedDataBytes = signer.getPrefixedBytes();
+        int minSdk = 0;
+        int maxSdk = 0;
+        if(v3){
+            minSdk = signer.getInt();
+            maxSdk = signer.getInt();
+        }
+        LengthPrefixedDecoder signatures = signer.getPrefixed();
+        byte[] publicKeyBytes = signer.getPrefixedBytes();
+
+        List<Integer> signatureIds = new ArrayList<>();
+        SignatureAlgorithm bestAlgorithm = null;
+        byte[] bestSignature = null;
+        while (signatures.hasRemaining()){
+            LengthPrefixedDecoder signature = signatures.getPrefixed();
+            int id = signature.getInt();
+            byte[] signatureBytes = signature.getPrefixedBytes();
+            signatureIds.add(id);
+            SignatureAlgorithm algorithm = SignatureAlgorithm.valueOf(id);
+            if(algorithm == null){
+                continue;
+            }
+            if(bestAlgorithm == null || algorithm.getStrength() > bestAlgorithm.getStrength()){
+                bestAlgorithm = algorithm;
+                bestSignature = signatureBytes;
+            }
+        }
+        if(bestAlgorithm == null){
+            schemeResult.addError(prefix + "no supported signature in: " + signatureIds);
+            return;
+        }
+        try{
+            PublicKey publicKey = KeyFactory.getInstance(bestAlgorithm.getKeyAlgorithm())
+                    .generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+            Signature signature = bestAlgorithm.initVerify(publicKey);
+            signature.update(signedDataBytes);
+            if(!signature.verify(bestSignature)){
+                schemeResult.addError(prefix + bestAlgorithm + " signature did not verify");
+                return;
+            }
+        }catch (GeneralSecurityException e){
+            schemeResult.addError(prefix + "failed to verify " + bestAlgorithm + ": " + e.getMessage());
+            return;
+        }
+
+        LengthPrefixedDecoder signedData = new LengthPrefixedDecoder(signedDataBytes);
+        LengthPrefixedDecoder digests = signedData.getPrefixed();
+        LengthPrefixedDecoder certificates = signedData.getPrefixed();
+        if(v3){
+            if(minSdk != signedData.getInt() || maxSdk != signedData.getInt()){
+                schemeResult.addError(prefix + "min/max sdk of signer and signed data mismatch");
+            }
+        }
+        List<Integer> digestIds = new ArrayList<>();
+        byte[] expectedDigest = null;
+        while (digests.hasRemaining()){
+            LengthPrefixedDecoder digest = digests.getPrefixed();
+            int id = digest.getInt();
+            byte[] digestBytes = digest.getPrefixedBytes();
+            digestIds.add(id);
+            if(id == bestAlgorithm.getId()){
+                expectedDigest = digestBytes;
+            }
+        }
+        if(!signatureIds.equals(digestIds)){
+            schemeResult.addError(prefix + "signature algorithms " + signatureIds
+                    + " mismatch digest algorithms " + digestIds);
+        }
+        if(expectedDigest == null){
+            schemeResult.addError(prefix + "no digest for " + bestAlgorithm);
+            return;
+        }
+        List<X509Certificate> certificateList = new ArrayList<>();
+        while (certificates.hasRemaining()){
+            X509Certificate certificate = CertificateUtil.generateCertificate(certificates.getPrefixedBytes());
+            if(certificate == null){
+                schemeResult.addError(prefix + "invalid certificate #" + certificateList.size());
+                return;
+            }
+            certificateList.add(certificate);
+        }
+        if(certificateList.isEmpty()){
+            schemeResult.addError(prefix + "no certificates");
+            return;
+        }
+        if(!Arrays.equals(publicKeyBytes, certificateList.get(0).getPublicKey().getEncoded())){
+            schemeResult.addError(prefix + "public key mismatch with certificate");
+            return;
+        }
+        byte[] previous = schemeResult.getExpectedDigest();
+        if(previous == null){
+            schemeResult.setExpectedDigest(bestAlgorithm.getDigestAlgorithm(), expectedDigest);
+            schemeResult.getCertificates().addAll(certificateList);
+        }else if(bestAlgorithm.getDigestAlgorithm().equals(schemeResult.getDigestAlgorithm())
+                && !MessageDigest.isEqual(previous, expectedDigest)){
+            schemeResult.addError(prefix + "content digest differs from other signers");
+        }
+    }
+    private byte[] readEndRecord(long offset, long blockOffset) throws IOException {
+        ZipFileInput zipFileInput = this.zipFileInput;
+        int length = (int) (zipFileInput.getLength() - offset);
+        ByteBuffer buffer = zipFileInput.getByteBuffer(offset, length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        // as if the central directory were immediately after the entries
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(OFFSET_END_RECORD_CD_OFFSET, (int) blockOffset);
+        return bytes;
+    }
+    private static void setEntries(VerifyResult result, CentralFileDirectory cfd){
+        List<CentralEntryHeader> headerList = new ArrayList<>(cfd.getHeaderList());
+        headerList.sort(Comparator.comparingLong(CentralEntryHeader::getLocalRelativeOffset));
+        int size = headerList.size();
+        long[] offsets = new long[size];
+        String[] names = new String[size];
+        for(int i = 0; i < size; i++){
+            CentralEntryHeader ceh = headerList.get(i);
+            offsets[i] = ceh.getLocalRelativeOffset();
+            names[i] = ceh.getFileName();
+        }
+        result.setEntries(offsets, names);
+    }
+
+    public static VerifyResult verify(File apk) throws IOException {
+        ZipFileInput zipFileInput = new ZipFileInput(apk);
+        try{
+            return new ApkVerifier(zipFileInput).verify();
+        }finally {
+            zipFileInput.close();
+        }
+    }
+
+    private static final int OFFSET_END_RECORD_CD_OFFSET = 16;
+}
@@ -0,0 +1,199 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.signer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Content digest of apk signature scheme v2+, each section (zip entries, central directory
+ * and end record) is split into chunks of {@link #CHUNK_SIZE} bytes, chunks are digested
+ * independently on a fork-join pool and the top level digest is computed over the
+ * chunk digests in order.
+ * */
+public class ChunkedDigest {
+
+    private final String algorithm;
+    private final DigestSection[] sections;
+    private final int[] sectionStarts;
+    private final byte[][] chunkDigests;
+    private byte[] digest;
+
+    public ChunkedDigest(String algorithm, DigestSection ... sections){
+        newMessageDigest(algorithm);
+        this.algorithm = algorithm;
+        this.sections = sections;
+        int length = sections.length;
+        int[] sectionStarts = new int[length + 1];
+        long count = 0;
+        for(int i = 0; i < length; i++){
+            sectionStarts[i] = (int) count;
+            count += (sections[i].length() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            if(count > Integer.MAX_VALUE){
+                throw new IllegalArgumentException("Too many chunks: " + count);
+            }
+        }
+        sectionStarts[length] = (int) count;
+        this.sectionStarts = sectionStarts;
+        this.chunkDigests = new byte[(int) count][];
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+    public int getChunkCount(){
+        return chunkDigests.length;
+    }
+    public byte[] getChunkDigest(int chunk){
+        return chunkDigests[chunk];
+    }
+    public int getSectionIndex(int chunk){
+        int[] sectionStarts = this.sectionStarts;
+        int length = sectionStarts.length - 1;
+        for(int i = 0; i < length; i++){
+            if(chunk < sectionStarts[i + 1]){
+                return i;
+            }
+        }
+        throw new IndexOutOfBoundsException("Chunk index = " + chunk + ", count = " + getChunkCount());
+    }
+    /**
+     * Offset of the chunk relative to the start of its section
+     * */
+    public long getChunkOffset(int chunk){
+        int section = getSectionIndex(chunk);
+        return (long) (chunk - sectionStarts[section]) * CHUNK_SIZE;
+    }
+    public int getChunkLength(int chunk){
+        DigestSection section = sections[getSectionIndex(chunk)];
+        long remaining = section.length() - getChunkOffset(chunk);
+        return (int) Math.min(remaining, CHUNK_SIZE);
+    }
+    /**
+     * The top level digest, null before compute
+     * */
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    /**
+     * Chunks of this whose digest differs from the chunk at the same index of reference,
+     * e.g. a known good copy of the apk. The top level digest signed in the apk can only
+     * tell whether all chunks match.
+     * */
+    public int[] findMismatchedChunks(ChunkedDigest reference){
+        int count = getChunkCount();
+        int[] results = new int[count];
+        int size = 0;
+        for(int i = 0; i < count; i++){
+            if(i >= reference.getChunkCount()
+                    || !MessageDigest.isEqual(getChunkDigest(i), reference.getChunkDigest(i))){
+                results[size] = i;
+                size ++;
+            }
+        }
+        int[] mismatched = new int[size];
+        System.arraycopy(results, 0, mismatched, 0, size);
+        return mismatched;
+    }
+    public byte[] compute() throws IOException {
+        return compute(ForkJoinPool.commonPool());
+    }
+    public byte[] compute(ForkJoinPool pool) throws IOException {
+        int count = getChunkCount();
+        try{
+            pool.invoke(new ChunkTask(0, count));
+        }catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+        MessageDigest messageDigest = newMessageDigest(algorithm);
+        byte[] prefix = new byte[5];
+        prefix[0] = TOP_LEVEL_PREFIX;
+        putInt(prefix, 1, count);
+        messageDigest.update(prefix);
+        byte[][] chunkDigests = this.chunkDigests;
+        for(int i = 0; i < count; i++){
+            messageDigest.update(chunkDigests[i]);
+        }
+        byte[] digest = messageDigest.digest();
+        this.digest = digest;
+        return digest;
+    }
+    void digestChunks(int start, int end) throws IOException {
+        MessageDigest messageDigest = newMessageDigest(algorithm);
+        byte[] prefix = new byte[5];
+        prefix[0] = CHUNK_PREFIX;
+        for(int i = start; i < end; i++){
+            DigestSection section = sections[getSectionIndex(i)];
+            int length = getChunkLength(i);
+            putInt(prefix, 1, length);
+            messageDigest.update(prefix);
+            messageDigest.update(section.read(getChunkOffset(i), length));
+            chunkDigests[i] = messageDigest.digest();
+        }
+    }
+
+    private class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        ChunkTask(int start, int end){
+            this.start = start;
+            this.end = end;
+        }
+        @Override
+        protected void compute() {
+            int start = this.start;
+            int end = this.end;
+            if(end - start <= LEAF_CHUNKS){
+                try {
+                    digestChunks(start, end);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new ChunkTask(start, mid), new ChunkTask(mid, end));
+        }
+    }
+
+    static MessageDigest newMessageDigest(String algorithm){
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+    private static void putInt(byte[] bytes, int offset, int value){
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    public static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final int LEAF_CHUNKS = 2;
+    private static final byte CHUNK_PREFIX = (byte) 0xa5;
+    private static final byte TOP_LEVEL_PREFIX = (byte) 0x5a;
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.signer;
+
+import com.reandroid.archive.io.ZipFileInput;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A contiguous region of the apk covered by the content digest, see {@link ChunkedDigest}.
+ * Implementations must support concurrent calls of {@link #read(long, int)}
+ * */
+public interface DigestSection extends Closeable {
+
+    long length();
+    ByteBuffer read(long offset, int length) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    static DigestSection of(byte[] bytes){
+        return of(bytes, 0, bytes.length);
+    }
+    static DigestSection of(byte[] bytes, int offset, int length){
+        return new DigestSection() {
+            @Override
+            public long length() {
+                return length;
+            }
+            @Override
+            public ByteBuffer read(long position, int count) throws IOException {
+                if(position < 0 || position + count > length){
+                    throw new EOFException("Out of bounds: position = " + position
+                            + ", count = " + count + ", length = " + length);
+                }
+                return ByteBuffer.wrap(bytes, offset + (int) position, count);
+            }
+        };
+    }
+    /**
+     * Region of the file, reads are positional thus never move the channel position
+     * */
+    static DigestSection of(ZipFileInput zipFileInput, long offset, long length){
+        return of(zipFileInput, offset, length, false);
+    }
+    /**
+     * @param closeInput whether closing this section closes zipFileInput
+     * */
+    static DigestSection of(ZipFileInput zipFileInput, long offset, long length, boolean closeInput){
+        return new DigestSection() {
+            @Override
+            public long length() {
+                return length;
+            }
+            @Override
+            public ByteBuffer read(long position, int count) throws IOException {
+                if(position < 0 || position + count > length){
+                    throw new EOFException("Out of bounds: position = " + position
+                            + ", count = " + count + ", length = " + length);
+                }
+                return zipFileInput.getByteBuffer(offset + position, count);
+            }
+            @Override
+            public void close() throws IOException {
+                if(closeInput){
+                    zipFileInput.close();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.signer;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads the little-endian, uint32 length-prefixed structures of apk signature scheme blocks
+ * */
+class LengthPrefixedDecoder {
+
+    private final ByteBuffer buffer;
+
+    LengthPrefixedDecoder(ByteBuffer buffer){
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+    LengthPrefixedDecoder(byte[] bytes){
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    boolean hasRemaining(){
+        return buffer.hasRemaining();
+    }
+    int getInt() throws IOException {
+        ensureAvailable(4);
+        return buffer.getInt();
+    }
+    LengthPrefixedDecoder getPrefixed() throws IOException {
+        int length = getInt();
+        if(length < 0){
+            throw new IOException("Negative length: " + length);
+        }
+        ensureAvailable(length);
+        ByteBuffer buffer = this.buffer;
+        ByteBuffer result = buffer.slice();
+        ((Buffer) result).limit(length);
+        ((Buffer) buffer).position(buffer.position() + length);
+        return new LengthPrefixedDecoder(result);
+    }
+    byte[] getPrefixedBytes() throws IOException {
+        return getPrefixed().toByteArray();
+    }
+    byte[] toByteArray(){
+        ByteBuffer buffer = this.buffer.duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+    private void ensureAvailable(int length) throws IOException {
+        int remaining = buffer.remaining();
+        if(length > remaining){
+            throw new IOException("Malformed length-prefixed data: required = "
+                    + length + ", remaining = " + remaining);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.signer;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Writes the little-endian, uint32 length-prefixed structures of apk signature scheme blocks
+ * */
+class LengthPrefixedEncoder {
+
+    private final ByteArrayOutputStream outputStream;
+
+    LengthPrefixedEncoder(){
+        this.outputStream = new ByteArrayOutputStream();
+    }
+
+    LengthPrefixedEncoder putInt(int value){
+        ByteArrayOutputStream outputStream = this.outputStream;
+        outputStream.write(value);
+        outputStream.write(value >>> 8);
+        outputStream.write(value >>> 16);
+        outputStream.write(value >>> 24);
+        return this;
+    }
+    LengthPrefixedEncoder putLong(long value){
+        putInt((int) value);
+        putInt((int) (value >>> 32));
+        return this;
+    }
+    LengthPrefixedEncoder putBytes(byte[] bytes){
+        outputStream.write(bytes, 0, bytes.length);
+        return this;
+    }
+    LengthPrefixedEncoder putPrefixed(byte[] bytes){
+        putInt(bytes.length);
+        return putBytes(bytes);
+    }
+    /**
+     * Sequence of length-prefixed elements, prefixed by the total length
+     * */
+    LengthPrefixedEncoder putSequence(byte[] ... elements){
+        LengthPrefixedEncoder sequence = new LengthPrefixedEncoder();
+        for(byte[] element : elements){
+            sequence.putPrefixed(element);
+        }
+        return putPrefixed(sequence.toByteArray());
+    }
+    byte[] toByteArray(){
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.signer;
+
+import java.security.*;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+
+/**
+ * Signature algorithm ids of apk signature scheme v2+, only the ones
+ * with CHUNKED_SHA256/CHUNKED_SHA512 content digest
+ * */
+public enum SignatureAlgorithm {
+
+    RSA_PSS_SHA256(0x0101, "RSA", "RSASSA-PSS", "SHA-256"),
+    RSA_PSS_SHA512(0x0102, "RSA", "RSASSA-PSS", "SHA-512"),
+    RSA_PKCS1_SHA256(0x0103, "RSA", "SHA256withRSA", "SHA-256"),
+    RSA_PKCS1_SHA512(0x0104, "RSA", "SHA512withRSA", "SHA-512"),
+    ECDSA_SHA256(0x0201, "EC", "SHA256withECDSA", "SHA-256"),
+    ECDSA_SHA512(0x0202, "EC", "SHA512withECDSA", "SHA-512"),
+    DSA_SHA256(0x0301, "DSA", "SHA256withDSA", "SHA-256");
+
+    private final int id;
+    private final String keyAlgorithm;
+    private final String jcaSignatureAlgorithm;
+    private final String digestAlgorithm;
+
+    SignatureAlgorithm(int id, String keyAlgorithm, String jcaSignatureAlgorithm, String digestAlgorithm){
+        this.id = id;
+        this.keyAlgorithm = keyAlgorithm;
+        this.jcaSignatureAlgorithm = jcaSignatureAlgorithm;
+        this.digestAlgorithm = digestAlgorithm;
+    }
+
+    public int getId() {
+        return id;
+    }
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+    public String getJcaSignatureAlgorithm() {
+        return jcaSignatureAlgorithm;
+    }
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+    public Signature initSign(PrivateKey privateKey) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(jcaSignatureAlgorithm);
+        signature.initSign(privateKey);
+        initParameters(signature);
+        return signature;
+    }
+    public Signature initVerify(PublicKey publicKey) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(jcaSignatureAlgorithm);
+        signature.initVerify(publicKey);
+        initParameters(signature);
+        return signature;
+    }
+    private void initParameters(Signature signature) throws GeneralSecurityException {
+        if(this == RSA_PSS_SHA256){
+            signature.setParameter(new PSSParameterSpec(digestAlgorithm, "MGF1",
+                    MGF1ParameterSpec.SHA256, 256 / 8, 1));
+        }else if(this == RSA_PSS_SHA512){
+            signature.setParameter(new PSSParameterSpec(digestAlgorithm, "MGF1",
+                    MGF1ParameterSpec.SHA512, 512 / 8, 1));
+        }
+    }
+    /**
+     * Higher is stronger, used to pick the digest to verify among several
+     * */
+    int getStrength(){
+        if("SHA-512".equals(digestAlgorithm)){
+            return 2;
+        }
+        return 1;
+    }
+    @Override
+    public String toString(){
+        return name() + "(0x" + Integer.toHexString(id) + ")";
+    }
+
+    public static SignatureAlgorithm valueOf(int id){
+        for(SignatureAlgorithm algorithm : VALUES){
+            if(algorithm.id == id){
+                return algorithm;
+            }
+        }
+        return null;
+    }
+    /**
+     * Default algorithm used by apksigner for the key type
+     * */
+    public static SignatureAlgorithm forKey(PublicKey publicKey){
+        String keyAlgorithm = publicKey.getAlgorithm();
+        if("RSA".equalsIgnoreCase(keyAlgorithm)){
+            return RSA_PKCS1_SHA256;
+        }
+        if("EC".equalsIgnoreCase(keyAlgorithm)){
+            return ECDSA_SHA256;
+        }
+        if("DSA".equalsIgnoreCase(keyAlgorithm)){
+            return DSA_SHA256;
+        }
+        throw new IllegalArgumentException("Unsupported key algorithm: " + keyAlgorithm);
+    }
+
+    private static final SignatureAlgorithm[] VALUES = values();
+}
@@ -0,0 +1,215 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.signer;
+
+import com.reandroid.archive.block.SignatureId;
+
+import java.security.cert.X509Certificate;
+import java.util.*;
+
+/**
+ * Outcome of {@link ApkVerifier}, a failed content digest can be located to chunks and zip
+ * entries by comparing {@link #getChunkedDigest(String)} with the digest of a known good copy
+ * */
+public class VerifyResult {
+
+    private final List<SchemeResult> schemeResults;
+    private final List<String> errors;
+    private final Map<String, ChunkedDigest> chunkedDigests;
+    private long[] entryOffsets;
+    private String[] entryNames;
+
+    VerifyResult(){
+        this.schemeResults = new ArrayList<>();
+        this.errors = new ArrayList<>();
+        this.chunkedDigests = new HashMap<>();
+        this.entryOffsets = new long[0];
+        this.entryNames = new String[0];
+    }
+
+    /**
+     * True if at least one of v2/v3/v3.1 signature found and all of the found ones verified
+     * */
+    public boolean isVerified(){
+        if(!errors.isEmpty() || schemeResults.isEmpty()){
+            return false;
+        }
+        for(SchemeResult result : schemeResults){
+            if(!result.isVerified()){
+                return false;
+            }
+        }
+        return true;
+    }
+    public List<SchemeResult> getSchemeResults() {
+        return schemeResults;
+    }
+    public SchemeResult getSchemeResult(SignatureId signatureId){
+        for(SchemeResult result : schemeResults){
+            if(result.getSignatureId() == signatureId){
+                return result;
+            }
+        }
+        return null;
+    }
+    public List<String> getErrors() {
+        return errors;
+    }
+    public ChunkedDigest getChunkedDigest(String digestAlgorithm){
+        return chunkedDigests.get(digestAlgorithm);
+    }
+    public Collection<ChunkedDigest> getChunkedDigests(){
+        return chunkedDigests.values();
+    }
+    /**
+     * Names of zip entries (local header, data and data descriptor) overlapping the chunk
+     * */
+    public List<String> getEntries(ChunkedDigest chunkedDigest, int chunk){
+        if(chunkedDigest.getSectionIndex(chunk) != 0){
+            return Collections.emptyList();
+        }
+        long start = chunkedDigest.getChunkOffset(chunk);
+        long end = start + chunkedDigest.getChunkLength(chunk);
+        long[] offsets = this.entryOffsets;
+        String[] names = this.entryNames;
+        int index = Arrays.binarySearch(offsets, start);
+        if(index < 0){
+            index = -index - 2;
+        }
+        if(index < 0){
+            index = 0;
+        }
+        List<String> results = new ArrayList<>();
+        for(int i = index; i < offsets.length && offsets[i] < end; i++){
+            results.add(names[i]);
+        }
+        return results;
+    }
+    public String describeChunk(ChunkedDigest chunkedDigest, int chunk){
+        int section = chunkedDigest.getSectionIndex(chunk);
+        StringBuilder builder = new StringBuilder();
+        builder.append("chunk #");
+        builder.append(chunk);
+        builder.append(" [");
+        builder.append(SECTION_NAMES[section]);
+        builder.append(", offset = ");
+        builder.append(chunkedDigest.getChunkOffset(chunk));
+        builder.append(", length = ");
+        builder.append(chunkedDigest.getChunkLength(chunk));
+        builder.append(']');
+        if(section == 0){
+            builder.append(": ");
+            builder.append(getEntries(chunkedDigest, chunk));
+        }
+        return builder.toString();
+    }
+
+    void addError(String error){
+        errors.add(error);
+    }
+    void add(SchemeResult result){
+        schemeResults.add(result);
+    }
+    void putChunkedDigest(ChunkedDigest chunkedDigest){
+        chunkedDigests.put(chunkedDigest.getAlgorithm(), chunkedDigest);
+    }
+    /**
+     * @param offsets local header offsets sorted ascending, names in the same order
+     * */
+    void setEntries(long[] offsets, String[] names){
+        this.entryOffsets = offsets;
+        this.entryNames = names;
+    }
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder();
+        builder.append(isVerified() ? "VERIFIED" : "NOT VERIFIED");
+        for(String error : errors){
+            builder.append("\n  ERROR: ");
+            builder.append(error);
+        }
+        for(SchemeResult result : schemeResults){
+            builder.append("\n  ");
+            builder.append(result);
+        }
+        return builder.toString();
+    }
+
+    public static class SchemeResult {
+        private final SignatureId signatureId;
+        private final List<X509Certificate> certificates;
+        private final List<String> errors;
+        private String digestAlgorithm;
+        private byte[] expectedDigest;
+        private boolean digestVerified;
+
+        SchemeResult(SignatureId signatureId){
+            this.signatureId = signatureId;
+            this.certificates = new ArrayList<>();
+            this.errors = new ArrayList<>();
+        }
+
+        public SignatureId getSignatureId() {
+            return signatureId;
+        }
+        /**
+         * Certificates of the first signer
+         * */
+        public List<X509Certificate> getCertificates() {
+            return certificates;
+        }
+        public List<String> getErrors() {
+            return errors;
+        }
+        public String getDigestAlgorithm() {
+            return digestAlgorithm;
+        }
+        public byte[] getExpectedDigest() {
+            return expectedDigest;
+        }
+        public boolean isDigestVerified() {
+            return digestVerified;
+        }
+        public boolean isVerified(){
+            return errors.isEmpty() && digestVerified;
+        }
+
+        void addError(String error){
+            errors.add(error);
+        }
+        void setExpectedDigest(String digestAlgorithm, byte[] expectedDigest){
+            this.digestAlgorithm = digestAlgorithm;
+            this.expectedDigest = expectedDigest;
+        }
+        void setDigestVerified(boolean digestVerified) {
+            this.digestVerified = digestVerified;
+        }
+        @Override
+        public String toString(){
+            StringBuilder builder = new StringBuilder();
+            builder.append(signatureId);
+            builder.append(isVerified() ? ": verified" : ": failed");
+            for(String error : errors){
+                builder.append("\n    ");
+                builder.append(error);
+            }
+            return builder.toString();
+        }
+    }
+
+    private static final String[] SECTION_NAMES = new String[]{
+            "entries", "central directory", "end record"};
+}
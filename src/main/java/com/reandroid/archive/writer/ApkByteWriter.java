@@ -17,6 +17,7 @@ package com.reandroid.archive.writer;
 
 import com.reandroid.archive.InputSource;
 import com.reandroid.archive.io.ZipByteOutput;
+import com.reandroid.archive.signer.DigestSection;
 
 import java.io.IOException;
 
@@ -39,6 +40,14 @@ public class ApkByteWriter extends ApkWriter<ZipByteOutput, ByteOutputSource>{
         outputSource.writeApk(getZipOutput(), zipAligner);
     }
     @Override
+    boolean isSignable(){
+        return true;
+    }
+    @Override
+    DigestSection openWrittenSection(long length) {
+        return DigestSection.of(toByteArray(), 0, (int) length);
+    }
+    @Override
     void prepareOutputs(ByteOutputSource[] outList) throws IOException {
     }
     @Override
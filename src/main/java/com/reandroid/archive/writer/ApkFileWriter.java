@@ -18,7 +18,9 @@ package com.reandroid.archive.writer;
 import com.reandroid.archive.InputSource;
 import com.reandroid.archive.RenamedInputSource;
 import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.io.ZipFileInput;
 import com.reandroid.archive.io.ZipFileOutput;
+import com.reandroid.archive.signer.DigestSection;
 import com.reandroid.arsc.chunk.TableBlock;
 
 import java.io.File;
@@ -26,20 +28,67 @@ import java.io.IOException;
 
 public class ApkFileWriter extends ApkWriter<ZipFileOutput, FileOutputSource> {
     private BufferFileInput buffer;
+    private BufferPool bufferPool;
+    private FileOutputSource[] bufferedList;
     public ApkFileWriter(File file, InputSource[] sources) throws IOException {
-        super(new ZipFileOutput(file), sources);
+        this(new ZipFileOutput(file), sources);
+    }
+    ApkFileWriter(ZipFileOutput zipFileOutput, InputSource[] sources) {
+        super(zipFileOutput, sources);
+        this.bufferPool = BufferPool.getDefault();
+    }
+
+    /**
+     * Pool of direct buffers to hold compressed entries in memory, entries not fitting
+     * the pool are buffered on temp file. Default is {@link BufferPool#getDefault()}, which is
+     * null (all entries buffered on temp file) unless a default pool is configured
+     * */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+    @Override
+    public void write() throws IOException {
+        try{
+            super.write();
+        }finally {
+            releaseBuffers();
+        }
     }
     @Override
     void closeBuffer() throws IOException{
+        releaseBuffers();
         buffer.close();
     }
+    private void releaseBuffers(){
+        FileOutputSource[] bufferedList = this.bufferedList;
+        if(bufferedList == null){
+            return;
+        }
+        this.bufferedList = null;
+        for(FileOutputSource fileOutputSource : bufferedList){
+            fileOutputSource.releaseBuffer();
+        }
+    }
     @Override
     void writeApk(FileOutputSource outputSource, ZipAligner zipAligner) throws IOException{
         outputSource.writeApk(getZipOutput(), zipAligner);
     }
     @Override
+    boolean isSignable(){
+        return true;
+    }
+    @Override
+    DigestSection openWrittenSection(long length) {
+        ZipFileInput zipFileInput = new ZipFileInput(getZipOutput().getFile());
+        return DigestSection.of(zipFileInput, 0, length, true);
+    }
+    @Override
     void prepareOutputs(FileOutputSource[] outList) throws IOException {
         logMessage("Buffering compress changed files ...");
+        this.bufferedList = outList;
         BufferFileInput buffer = writeBuffer(outList);
         buffer.unlock();
         this.buffer = buffer;
@@ -68,6 +117,25 @@ public class ApkFileWriter extends ApkWriter<ZipFileOutput, FileOutputSource> {
         BufferFileInput input = new BufferFileInput(bufferFile);
         FileOutputSource tableSource = null;
         int length = outputList.length;
+        BufferPool bufferPool = getBufferPool();
+        ParallelCompressor compressor = createParallelCompressor();
+        if(compressor != null){
+            tableSource = findTableSource(outputList);
+            FileOutputSource table = tableSource;
+            logMessage("Compressing on " + getThreadCount() + " threads ...");
+            compressor.compress(outputList, out -> out != table && !out.hasEntryBuffer(),
+                    (fileOutputSource, buffer) -> {
+                if(fileOutputSource == table){
+                    return;
+                }
+                InputSource inputSource = fileOutputSource.getInputSource();
+                onCompressFileProgress(inputSource.getAlias(),
+                        inputSource.getMethod(),
+                        output.position());
+                fileOutputSource.makeBuffer(bufferPool, input, output, buffer);
+            });
+            length = 0;
+        }
         for(int i = 0; i < length; i++){
             FileOutputSource fileOutputSource = outputList[i];
             InputSource inputSource = fileOutputSource.getInputSource();
@@ -78,14 +146,22 @@ public class ApkFileWriter extends ApkWriter<ZipFileOutput, FileOutputSource> {
             onCompressFileProgress(inputSource.getAlias(),
                     inputSource.getMethod(),
                     output.position());
-            fileOutputSource.makeBuffer(input, output);
+            fileOutputSource.makeBuffer(bufferPool, input, output);
         }
         if(tableSource != null){
-            tableSource.makeBuffer(input, output);
+            tableSource.makeBuffer(bufferPool, input, output);
         }
         output.close();
         return input;
     }
+    private FileOutputSource findTableSource(FileOutputSource[] outputList){
+        for(FileOutputSource fileOutputSource : outputList){
+            if(TableBlock.FILE_NAME.equals(fileOutputSource.getInputSource().getAlias())){
+                return fileOutputSource;
+            }
+        }
+        return null;
+    }
     private File getBufferFile(){
         File file = getZipOutput().getFile();
         File dir = file.getParentFile();
@@ -33,10 +33,21 @@ public class ApkStreamWriter extends ApkWriter<ZipStreamOutput, StreamOutputSour
         outputSource.writeApk(getZipOutput(), zipAligner);
     }
     @Override
+    void writeApk(StreamOutputSource outputSource, ZipAligner zipAligner, CompressedBuffer buffer) throws IOException {
+        outputSource.writeApk(getZipOutput(), zipAligner, buffer);
+    }
+    @Override
+    boolean isCompressOnWrite() {
+        return true;
+    }
+    @Override
     void prepareOutputs(StreamOutputSource[] outList) throws IOException {
     }
     @Override
     StreamOutputSource toOutputSource(InputSource inputSource) {
+        if(ArchiveStreamOutputSource.isArchiveSource(inputSource)){
+            return new ArchiveStreamOutputSource(inputSource);
+        }
         return new StreamOutputSource(inputSource);
     }
     @Override
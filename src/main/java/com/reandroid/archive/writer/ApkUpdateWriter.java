@@ -0,0 +1,178 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.InputSource;
+import com.reandroid.archive.RenamedInputSource;
+import com.reandroid.archive.block.DataDescriptor;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.io.ZipFileOutput;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Updates an existing apk file in-place. Entries read from the same file and left untouched
+ * (same name, method and still aligned) stay at their current offsets, only new or modified
+ * entries are appended after the last referenced entry, then the central directory and
+ * end record are rewritten and the file is truncated. Whenever no entry can be kept, the
+ * apk is fully rewritten to a temporary file which then replaces the original.
+ * NOTE: in-place update is not atomic, an interrupted write leaves a broken file.
+ * */
+public class ApkUpdateWriter extends ApkFileWriter {
+
+    private Set<ArchiveFileEntrySource> keptSources;
+    private long appendOffset;
+
+    public ApkUpdateWriter(File file, InputSource[] sources) throws IOException {
+        super(new ZipFileOutput(file, false), sources);
+    }
+
+    @Override
+    public void write() throws IOException {
+        if(!planUpdate()){
+            logMessage("Can not update in-place, rewriting ...");
+            rewrite();
+            return;
+        }
+        logMessage("Updating in-place, kept = " + keptSources.size()
+                + ", append offset = " + appendOffset);
+        super.write();
+    }
+    public boolean isInPlace(){
+        Set<ArchiveFileEntrySource> keptSources = this.keptSources;
+        return keptSources != null && !keptSources.isEmpty();
+    }
+    private boolean planUpdate() throws IOException {
+        File file = getZipOutput().getFile().getCanonicalFile();
+        ZipAligner zipAligner = getZipAligner();
+        Set<ArchiveFileEntrySource> keptSources = Collections.newSetFromMap(new IdentityHashMap<>());
+        long appendOffset = 0;
+        for(InputSource inputSource : getInputSources()){
+            ArchiveFileEntrySource entrySource = getTargetEntrySource(file, inputSource);
+            if(entrySource == null){
+                continue;
+            }
+            LocalFileHeader lfh = entrySource.getArchiveEntry().getLocalFileHeader();
+            long end = getEndOffset(lfh);
+            if(end > appendOffset){
+                appendOffset = end;
+            }
+            if(inputSource == entrySource && isUntouched(entrySource, lfh, zipAligner)){
+                keptSources.add(entrySource);
+            }
+        }
+        this.keptSources = keptSources;
+        this.appendOffset = appendOffset;
+        return !keptSources.isEmpty();
+    }
+    private void rewrite() throws IOException {
+        File file = getZipOutput().getFile();
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try{
+            ApkFileWriter writer = new ApkFileWriter(tmp, getInputSources());
+            copySettingsTo(writer);
+            writer.setBufferPool(getBufferPool());
+            writer.write();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }finally {
+            tmp.delete();
+        }
+    }
+    @Override
+    void prepareOutputs(FileOutputSource[] outList) throws IOException {
+        super.prepareOutputs(outList);
+        getZipOutput().position(appendOffset);
+    }
+    @Override
+    void writeApk(FileOutputSource outputSource, ZipAligner zipAligner) throws IOException{
+        if(outputSource instanceof KeptOutputSource){
+            return;
+        }
+        super.writeApk(outputSource, zipAligner);
+    }
+    @Override
+    FileOutputSource toOutputSource(InputSource inputSource){
+        Set<ArchiveFileEntrySource> keptSources = this.keptSources;
+        if(keptSources != null && keptSources.contains(inputSource)){
+            return new KeptOutputSource((ArchiveFileEntrySource) inputSource);
+        }
+        return super.toOutputSource(inputSource);
+    }
+    @Override
+    public void close() throws IOException {
+        ZipFileOutput zipOutput = getZipOutput();
+        if(zipOutput.isOpen()){
+            zipOutput.truncate(zipOutput.position());
+        }
+        super.close();
+    }
+
+    private static ArchiveFileEntrySource getTargetEntrySource(File file, InputSource inputSource) throws IOException {
+        ArchiveFileEntrySource entrySource = null;
+        if(inputSource instanceof ArchiveFileEntrySource){
+            entrySource = (ArchiveFileEntrySource) inputSource;
+        }else if(inputSource instanceof RenamedInputSource){
+            entrySource = ((RenamedInputSource<?>) inputSource)
+                    .getParentInputSource(ArchiveFileEntrySource.class);
+        }
+        if(entrySource == null){
+            return null;
+        }
+        File sourceFile = entrySource.getZipSource().getFile();
+        if(!file.equals(sourceFile.getCanonicalFile())){
+            return null;
+        }
+        return entrySource;
+    }
+    private static boolean isUntouched(ArchiveFileEntrySource entrySource, LocalFileHeader lfh, ZipAligner zipAligner){
+        if(entrySource.getMethod() != lfh.getMethod()){
+            return false;
+        }
+        if(!entrySource.getAlias().equals(lfh.getFileName())){
+            return false;
+        }
+        return zipAligner == null || zipAligner.isAligned(lfh.getFileOffset(), lfh);
+    }
+    private static long getEndOffset(LocalFileHeader lfh){
+        long end = lfh.getFileOffset() + lfh.getDataSize();
+        DataDescriptor dataDescriptor = lfh.getDataDescriptor();
+        if(dataDescriptor != null){
+            end += dataDescriptor.countBytes();
+        }
+        return end;
+    }
+
+    /**
+     * Entry left at its current offset, only its central directory header is written
+     * */
+    static class KeptOutputSource extends ArchiveOutputSource {
+        KeptOutputSource(ArchiveFileEntrySource inputSource){
+            super(inputSource);
+        }
+        @Override
+        LocalFileHeader getLocalFileHeader(){
+            return getArchiveSource().getArchiveEntry().getLocalFileHeader();
+        }
+    }
+}
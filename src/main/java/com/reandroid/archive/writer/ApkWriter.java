@@ -21,11 +21,15 @@ import com.reandroid.archive.InputSource;
 import com.reandroid.archive.WriteProgress;
 import com.reandroid.archive.ZipSignature;
 import com.reandroid.archive.block.*;
+import com.reandroid.archive.io.ZipByteOutput;
 import com.reandroid.archive.io.ZipOutput;
+import com.reandroid.archive.signer.ApkSigner;
+import com.reandroid.archive.signer.DigestSection;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 
 public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> implements Closeable {
     private final Object mLock = new Object();
@@ -33,9 +37,13 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
     private final InputSource[] inputSources;
     private ZipAligner zipAligner;
     private ApkSignatureBlock apkSignatureBlock;
+    private ApkSigner apkSigner;
     private APKLogger apkLogger;
     private WriteProgress writeProgress;
     private final HeaderInterceptorChain interceptorChain;
+    private int threadCount = 1;
+    private ExecutorService executorService;
+    private int maxBufferedEntries;
 
     public ApkWriter(T zipOutput, InputSource[] sources){
         this.zipOutput = zipOutput;
@@ -46,6 +54,10 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
 
     public void write()throws IOException {
         synchronized (mLock){
+            ApkSigner apkSigner = getApkSigner();
+            if(apkSigner != null && !isSignable()){
+                throw new IOException("Signing not supported by: " + getClass().getSimpleName());
+            }
             OUT[] outList = buildOutputEntries();
 
             prepareOutputs(outList);
@@ -53,8 +65,12 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
 
             closeBuffer();
 
-            writeSignatureBlock();
-            writeCEHList(outList);
+            if(apkSigner != null){
+                signAndWriteCEHList(apkSigner, outList);
+            }else {
+                writeSignatureBlock();
+                writeCEHList(outList);
+            }
 
             this.close();
         }
@@ -64,32 +80,99 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
         logMessage("Writing files: " + length);
         APKLogger logger = this.getApkLogger();
         ZipAligner zipAligner = getZipAligner();
-        for(int i = 0; i < length; i++){
-            OUT out = outputList[i];
+        ParallelCompressor compressor = null;
+        if(isCompressOnWrite()){
+            compressor = createParallelCompressor();
+        }
+        if(compressor == null){
+            for(int i = 0; i < length; i++){
+                OUT out = outputList[i];
+                out.setAPKLogger(logger);
+                writeApk(out, zipAligner);
+                if(i % 100 == 0){
+                    out.logFileWrite();
+                }
+            }
+            return;
+        }
+        logMessage("Compressing on " + getThreadCount() + " threads ...");
+        int[] index = new int[1];
+        compressor.compress(outputList, out -> !out.canCopyRaw(), (out, buffer) -> {
             out.setAPKLogger(logger);
-            writeApk(out, zipAligner);
-            if(i % 100 == 0){
+            writeApk(out, zipAligner, buffer);
+            if(index[0] % 100 == 0){
                 out.logFileWrite();
             }
-        }
+            index[0] ++;
+        });
     }
     void closeBuffer() throws IOException{
     }
     private void writeCEHList(OUT[] outputList) throws IOException{
-        EndRecord endRecord = new EndRecord();
-        endRecord.setSignature(ZipSignature.END_RECORD);
         long offset = position();
-        endRecord.setOffsetOfCentralDirectory(offset);
         int count = outputList.length;
-        endRecord.setNumberOfDirectories(count);
-        endRecord.setTotalNumberOfDirectories(count);
         ZipOutput zipOutput = getZipOutput();
         for(int i = 0; i < count; i++){
             OUT outputSource = outputList[i];
             outputSource.writeCEH(zipOutput);
         }
         long cedLength = position() - offset;
+        writeEndRecord(createEndRecord(count, offset, cedLength));
+    }
+    /**
+     * Central directory is built in memory to be digested, then signature block is
+     * written followed by the central directory and end record.
+     * @throws IOException if the apk requires ZIP64, which can not be signed
+     * */
+    private void signAndWriteCEHList(ApkSigner apkSigner, OUT[] outputList) throws IOException{
+        long offset = position() + signatureBlockAlignment(position());
+        if(ZipHeader.isZip64Length(offset)){
+            throw zip64SigningError();
+        }
+        int count = outputList.length;
+        ZipByteOutput centralDirectory = new ZipByteOutput();
+        for(int i = 0; i < count; i++){
+            outputList[i].writeCEH(centralDirectory);
+        }
+        byte[] cedBytes = centralDirectory.toByteArray();
+        EndRecord endRecord = createEndRecord(count, offset, cedBytes.length);
+        if(endRecord.getZip64Record() != null){
+            throw zip64SigningError();
+        }
+        OutputStream outputStream = getOutputStream();
+        writeSignatureBlockPadding(outputStream);
+        logMessage("Signing ...");
+        ApkSignatureBlock signatureBlock;
+        DigestSection entries = openWrittenSection(offset);
+        try{
+            signatureBlock = apkSigner.sign(entries,
+                    DigestSection.of(cedBytes),
+                    DigestSection.of(endRecord.getBytes()),
+                    getApkSignatureBlock());
+        }finally {
+            entries.close();
+        }
+        logMessage("Writing signature block ...");
+        signatureBlock.updatePadding();
+        signatureBlock.writeBytes(outputStream);
+        endRecord.setOffsetOfCentralDirectory(position());
+        outputStream.write(cedBytes);
+        endRecord.writeBytes(outputStream);
+    }
+    private IOException zip64SigningError() throws IOException{
+        this.close();
+        return new IOException("Can not sign ZIP64 apk, output is incomplete");
+    }
+    private EndRecord createEndRecord(int count, long offset, long cedLength){
+        EndRecord endRecord = new EndRecord();
+        endRecord.setSignature(ZipSignature.END_RECORD);
+        endRecord.setOffsetOfCentralDirectory(offset);
+        endRecord.setNumberOfDirectories(count);
+        endRecord.setTotalNumberOfDirectories(count);
         endRecord.setLengthOfCentralDirectory(cedLength);
+        return endRecord;
+    }
+    private void writeEndRecord(EndRecord endRecord) throws IOException{
         OutputStream outputStream = getOutputStream();
         Zip64Record zip64Record = endRecord.getZip64Record();
         if(zip64Record != null){
@@ -101,7 +184,7 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
             logMessage("ZIP64: " + zip64Locator);
             zip64Locator.writeBytes(outputStream);
         }
-        endRecord.writeBytes(getOutputStream());
+        endRecord.writeBytes(outputStream);
     }
     OUT[] buildOutputEntries(){
         InputSource[] sources = this.getInputSources();
@@ -121,6 +204,30 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
     }
 
     abstract void writeApk(OUT outputSource, ZipAligner zipAligner) throws IOException;
+    /**
+     * @param buffer the entry compressed ahead by ParallelCompressor, null to compress here
+     * */
+    void writeApk(OUT outputSource, ZipAligner zipAligner, CompressedBuffer buffer) throws IOException {
+        writeApk(outputSource, zipAligner);
+    }
+    /**
+     * Whether entries are compressed while writing (writeApk) rather than on prepareOutputs
+     * */
+    boolean isCompressOnWrite(){
+        return false;
+    }
+    /**
+     * Whether bytes already written can be read back by {@link #openWrittenSection(long)}
+     * */
+    boolean isSignable(){
+        return false;
+    }
+    /**
+     * Bytes written so far from the start, to be digested by ApkSigner
+     * */
+    DigestSection openWrittenSection(long length) throws IOException {
+        throw new IOException("Can not read back output of: " + getClass().getSimpleName());
+    }
     abstract void prepareOutputs(OUT[] outList) throws IOException;
     abstract OUT toOutputSource(InputSource inputSource);
     abstract OUT[] createOutArray(int length);
@@ -150,6 +257,16 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
     public ApkSignatureBlock getApkSignatureBlock() {
         return apkSignatureBlock;
     }
+    /**
+     * Signs the apk while writing, the existing signature block (if any) is updated with
+     * new v2/v3 signatures. Supported by file and byte array writers
+     * */
+    public void setApkSigner(ApkSigner apkSigner) {
+        this.apkSigner = apkSigner;
+    }
+    public ApkSigner getApkSigner() {
+        return apkSigner;
+    }
     void writeSignatureBlock() throws IOException {
         ApkSignatureBlock signatureBlock = this.getApkSignatureBlock();
         if(signatureBlock == null){
@@ -161,14 +278,20 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
             logMessage("ZIP64 mode, skip writing signature block!");
             return;
         }
-        int alignment = 4096;
-        int filesPadding = (int) ((alignment - (offset % alignment)) % alignment);
         OutputStream outputStream = getOutputStream();
+        writeSignatureBlockPadding(outputStream);
+        signatureBlock.updatePadding();
+        signatureBlock.writeBytes(outputStream);
+    }
+    private void writeSignatureBlockPadding(OutputStream outputStream) throws IOException {
+        int filesPadding = signatureBlockAlignment(position());
         if(filesPadding > 0){
             outputStream.write(new byte[filesPadding]);
         }
-        signatureBlock.updatePadding();
-        signatureBlock.writeBytes(outputStream);
+    }
+    private static int signatureBlockAlignment(long offset){
+        int alignment = 4096;
+        return (int) ((alignment - (offset % alignment)) % alignment);
     }
 
     @Override
@@ -176,6 +299,60 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
         this.zipOutput.close();
     }
 
+    /**
+     * Number of threads used to compress (deflate and crc32) entries ahead of the writer,
+     * the output is byte-identical to single threaded write. Default is 1 (sequential)
+     * */
+    public void setThreadCount(int threadCount) {
+        if(threadCount < 1){
+            threadCount = 1;
+        }
+        this.threadCount = threadCount;
+    }
+    public int getThreadCount() {
+        return threadCount;
+    }
+    /**
+     * Shared pool to compress entries on, enables parallel write irrespective of thread count.
+     * The pool is not shut down by this writer
+     * */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    /**
+     * Limits number of compressed entries held in memory waiting for the writer,
+     * default is twice the thread count
+     * */
+    public void setMaxBufferedEntries(int maxBufferedEntries) {
+        this.maxBufferedEntries = maxBufferedEntries;
+    }
+    ParallelCompressor createParallelCompressor(){
+        ExecutorService executorService = this.executorService;
+        int threadCount = getThreadCount();
+        if(executorService == null && threadCount < 2){
+            return null;
+        }
+        return new ParallelCompressor(executorService, threadCount, maxBufferedEntries);
+    }
+
+    /**
+     * Copies all settings (not sources and output) to the given writer
+     * */
+    void copySettingsTo(ApkWriter<?, ?> writer){
+        writer.setZipAligner(getZipAligner());
+        writer.setApkSignatureBlock(getApkSignatureBlock());
+        writer.setApkSigner(getApkSigner());
+        writer.setAPKLogger(getApkLogger());
+        writer.setWriteProgress(this.writeProgress);
+        writer.setThreadCount(getThreadCount());
+        writer.setExecutorService(this.executorService);
+        writer.setMaxBufferedEntries(this.maxBufferedEntries);
+        HeaderInterceptorChain interceptorChain = getInterceptorChain();
+        writer.setArchiveInfo(interceptorChain.getArchiveInfo());
+        writer.setHeaderInterceptor(interceptorChain.getHeaderInterceptor());
+        writer.setDataDescriptorFactory(interceptorChain.getDataDescriptorFactory());
+    }
+
     public void setWriteProgress(WriteProgress writeProgress){
         this.writeProgress = writeProgress;
     }
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.InputSource;
+import com.reandroid.archive.RenamedInputSource;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.ArchiveEntrySource;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.io.ZipStreamOutput;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+/**
+ * Copies unchanged archive entries as raw (compressed) bytes, without inflate/deflate
+ * round trip and crc re-computation
+ * */
+class ArchiveStreamOutputSource extends StreamOutputSource {
+
+    ArchiveStreamOutputSource(InputSource inputSource) {
+        super(inputSource);
+    }
+
+    ArchiveEntrySource<?> getArchiveSource(){
+        InputSource inputSource = getInputSource();
+        if(inputSource instanceof RenamedInputSource){
+            return ((RenamedInputSource<?>) inputSource).getParentInputSource(ArchiveEntrySource.class);
+        }
+        return (ArchiveEntrySource<?>) inputSource;
+    }
+    @Override
+    boolean canCopyRaw(){
+        LocalFileHeader lfh = getArchiveSource().getArchiveEntry().getLocalFileHeader();
+        return lfh.getMethod() == getInputSource().getMethod();
+    }
+    @Override
+    void writeApk(ZipStreamOutput zipOutput, ZipAligner zipAligner) throws IOException {
+        if(!canCopyRaw()){
+            super.writeApk(zipOutput, zipAligner);
+            return;
+        }
+        writeLFH(zipOutput, zipAligner);
+        getLocalFileHeader().setFileOffset(zipOutput.position());
+        ArchiveEntrySource<?> archiveSource = getArchiveSource();
+        if(archiveSource instanceof ArchiveFileEntrySource){
+            ((ArchiveFileEntrySource) archiveSource).transferRawTo(
+                    Channels.newChannel(zipOutput.getOutputStream()));
+        }else {
+            zipOutput.write(archiveSource.openRawStream());
+        }
+        writeDD(zipOutput);
+    }
+    @Override
+    LocalFileHeader createLocalFileHeader(){
+        if(!canCopyRaw()){
+            return super.createLocalFileHeader();
+        }
+        LocalFileHeader lfh = getArchiveSource().getArchiveEntry().getLocalFileHeader();
+        return lfh.copy();
+    }
+
+    static boolean isArchiveSource(InputSource inputSource){
+        if(inputSource instanceof RenamedInputSource){
+            return ((RenamedInputSource<?>) inputSource)
+                    .getParentInputSource(ArchiveEntrySource.class) != null;
+        }
+        return inputSource instanceof ArchiveEntrySource;
+    }
+}
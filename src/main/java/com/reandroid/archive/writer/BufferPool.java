@@ -0,0 +1,249 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-classed pool of direct buffers shared by concurrent {@link ApkFileWriter}s to hold
+ * compressed entries off-heap instead of temp files. Capacities are powers of two between
+ * {@link #MIN_BUFFER_SIZE} and {@link #getMaxBufferSize()}, total memory (in use + idle)
+ * never exceeds {@link #getBudget()}. Whenever a buffer can not be granted the caller
+ * spills the entry to temp file, including when direct memory itself is exhausted.
+ * Idle buffers above {@link #getMaxIdle()} (a quarter of the budget by default) are dropped
+ * on release.
+ * Pooling is opt-in, writers use no pool unless one is set on them or as default through
+ * {@link #setDefault(BufferPool)} or system property
+ * <code>-Dreandroid.buffer.pool.budget=bytes</code>
+ * */
+public class BufferPool {
+
+    private final long budget;
+    private final int maxBufferSize;
+    private final ArrayDeque<ByteBuffer>[] freeLists;
+    private long maxIdle;
+    private long bytesInUse;
+    private long bytesIdle;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong spillCount = new AtomicLong();
+
+    public BufferPool(long budget, int maxBufferSize){
+        if(budget < 0){
+            budget = 0;
+        }
+        if(maxBufferSize > budget){
+            maxBufferSize = (int) Math.min(budget, MAX_BUFFER_SIZE);
+        }
+        maxBufferSize = floorCapacity(maxBufferSize);
+        this.budget = budget;
+        this.maxBufferSize = maxBufferSize;
+        this.maxIdle = budget / 4;
+        int classes = sizeClass(maxBufferSize) + 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayDeque<ByteBuffer>[] freeLists = new ArrayDeque[classes];
+        for(int i = 0; i < classes; i++){
+            freeLists[i] = new ArrayDeque<>();
+        }
+        this.freeLists = freeLists;
+    }
+    public BufferPool(long budget){
+        this(budget, DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns cleared buffer of at least minCapacity bytes, or null if it is larger than
+     * {@link #getMaxBufferSize()} or the budget is exhausted.
+     * */
+    public ByteBuffer acquire(int minCapacity){
+        if(minCapacity > maxBufferSize){
+            return null;
+        }
+        int sizeClass = sizeClass(minCapacity);
+        int capacity = MIN_BUFFER_SIZE << sizeClass;
+        synchronized (this){
+            ByteBuffer buffer = freeLists[sizeClass].poll();
+            if(buffer != null){
+                bytesIdle -= capacity;
+                bytesInUse += capacity;
+                hitCount.incrementAndGet();
+                return buffer;
+            }
+            if(bytesInUse + capacity > budget){
+                return null;
+            }
+            trimIdle(budget - bytesInUse - capacity);
+            bytesInUse += capacity;
+        }
+        ByteBuffer buffer;
+        try{
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }catch (OutOfMemoryError error){
+            // direct memory limit of the process reached, the caller spills to temp file
+            synchronized (this){
+                bytesInUse -= capacity;
+                trimIdle(0);
+            }
+            return null;
+        }
+        missCount.incrementAndGet();
+        return buffer;
+    }
+    public void release(ByteBuffer buffer){
+        if(buffer == null){
+            return;
+        }
+        int capacity = buffer.capacity();
+        ((Buffer) buffer).clear();
+        synchronized (this){
+            bytesInUse -= capacity;
+            freeLists[sizeClass(capacity)].add(buffer);
+            bytesIdle += capacity;
+            trimIdle(maxIdle);
+        }
+    }
+    /**
+     * Drops all idle buffers
+     * */
+    public void clear(){
+        synchronized (this){
+            trimIdle(0);
+        }
+    }
+    private void trimIdle(long maxIdle){
+        ArrayDeque<ByteBuffer>[] freeLists = this.freeLists;
+        for(int i = freeLists.length - 1; i >= 0 && bytesIdle > maxIdle; i--){
+            ArrayDeque<ByteBuffer> freeList = freeLists[i];
+            int capacity = MIN_BUFFER_SIZE << i;
+            while (bytesIdle > maxIdle && freeList.poll() != null){
+                bytesIdle -= capacity;
+            }
+        }
+    }
+    void onSpill(){
+        spillCount.incrementAndGet();
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+    public synchronized long getMaxIdle() {
+        return maxIdle;
+    }
+    /**
+     * Maximum bytes of idle buffers kept for reuse, 0 drops every buffer on release
+     * */
+    public synchronized void setMaxIdle(long maxIdle) {
+        if(maxIdle < 0){
+            maxIdle = 0;
+        }
+        this.maxIdle = maxIdle;
+        trimIdle(maxIdle);
+    }
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+    /**
+     * Number of buffers taken from idle list
+     * */
+    public long getHitCount(){
+        return hitCount.get();
+    }
+    /**
+     * Number of newly allocated buffers
+     * */
+    public long getMissCount(){
+        return missCount.get();
+    }
+    /**
+     * Number of entries written to temp file for lack of buffer
+     * */
+    public long getSpillCount(){
+        return spillCount.get();
+    }
+    public synchronized long getBytesInUse(){
+        return bytesInUse;
+    }
+    public synchronized long getBytesIdle(){
+        return bytesIdle;
+    }
+    public void resetCounters(){
+        hitCount.set(0);
+        missCount.set(0);
+        spillCount.set(0);
+    }
+    @Override
+    public String toString(){
+        return "BufferPool{budget=" + getBudget()
+                + ", in-use=" + getBytesInUse()
+                + ", idle=" + getBytesIdle()
+                + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", spills=" + getSpillCount() + "}";
+    }
+
+    static int sizeClass(int capacity){
+        if(capacity <= MIN_BUFFER_SIZE){
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_BUFFER_SHIFT;
+    }
+    private static int floorCapacity(int capacity){
+        if(capacity < MIN_BUFFER_SIZE){
+            return MIN_BUFFER_SIZE;
+        }
+        return Integer.highestOneBit(capacity);
+    }
+
+    /**
+     * Shared pool used by writers unless set explicitly, null (no pooling) unless set by
+     * {@link #setDefault(BufferPool)} or system property <code>reandroid.buffer.pool.budget</code>
+     * */
+    public static BufferPool getDefault(){
+        BufferPool pool = sDefault;
+        if(pool == null && !sDefaultInitialized){
+            synchronized (BufferPool.class){
+                if(!sDefaultInitialized){
+                    long budget = Long.getLong(PROPERTY_BUDGET, 0);
+                    if(budget > 0){
+                        sDefault = new BufferPool(budget);
+                    }
+                    sDefaultInitialized = true;
+                }
+                pool = sDefault;
+            }
+        }
+        return pool;
+    }
+    public static void setDefault(BufferPool bufferPool){
+        synchronized (BufferPool.class){
+            sDefault = bufferPool;
+            sDefaultInitialized = true;
+        }
+    }
+
+    private static volatile BufferPool sDefault;
+    private static volatile boolean sDefaultInitialized;
+
+    private static final String PROPERTY_BUDGET = "reandroid.buffer.pool.budget";
+    private static final int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024 * 4;
+    private static final int MAX_BUFFER_SIZE = 1 << 30;
+    private static final int MIN_BUFFER_SHIFT = 12;
+    public static final int MIN_BUFFER_SIZE = 1 << MIN_BUFFER_SHIFT;
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.io.ZipOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * In-memory output of a single entry compressed ahead of time by ParallelCompressor
+ * */
+class CompressedBuffer extends ZipOutput {
+    private final ByteArrayOutputStream outputStream;
+
+    CompressedBuffer(){
+        this.outputStream = new ByteArrayOutputStream(1024 * 8);
+    }
+
+    int size(){
+        return outputStream.size();
+    }
+    void writeTo(OutputStream out) throws IOException {
+        outputStream.writeTo(out);
+    }
+    @Override
+    public void write(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[1024 * 8];
+        int read;
+        while ((read = inputStream.read(buffer)) > 0){
+            outputStream.write(buffer, 0, read);
+        }
+        inputStream.close();
+    }
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+    @Override
+    public long position() {
+        return outputStream.size();
+    }
+    @Override
+    public void position(long pos) throws IOException {
+        throw new IOException("Can not move position of CompressedBuffer");
+    }
+    @Override
+    public void close() {
+    }
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+}
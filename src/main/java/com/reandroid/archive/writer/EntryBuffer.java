@@ -16,15 +16,58 @@
 package com.reandroid.archive.writer;
 
 import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.io.ZipFileOutput;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Data of an entry ready to be written, either a region of file or a pooled in-memory buffer
+ * */
 public class EntryBuffer {
     private final ZipFileInput zipFileInput;
     private final long offset;
     private final long length;
+    private final BufferPool bufferPool;
+    private ByteBuffer byteBuffer;
     public EntryBuffer(ZipFileInput zipFileInput, long offset, long length){
         this.zipFileInput = zipFileInput;
         this.offset = offset;
         this.length = length;
+        this.bufferPool = null;
+    }
+    EntryBuffer(BufferPool bufferPool, ByteBuffer byteBuffer){
+        this.zipFileInput = null;
+        this.offset = 0;
+        this.length = byteBuffer.remaining();
+        this.bufferPool = bufferPool;
+        this.byteBuffer = byteBuffer;
+    }
+
+    public boolean isInMemory(){
+        return bufferPool != null;
+    }
+    /**
+     * Writes data at current position of output, in-memory buffer is returned to its pool
+     * */
+    void writeTo(ZipFileOutput output) throws IOException {
+        if(!isInMemory()){
+            output.write(zipFileInput.getFileChannel(), offset, length);
+            return;
+        }
+        ByteBuffer byteBuffer = this.byteBuffer;
+        if(byteBuffer == null){
+            throw new IOException("Buffer already released");
+        }
+        output.write(byteBuffer);
+        release();
+    }
+    void release(){
+        ByteBuffer byteBuffer = this.byteBuffer;
+        if(byteBuffer != null){
+            this.byteBuffer = null;
+            bufferPool.release(byteBuffer);
+        }
     }
 
     public ZipFileInput getZipFileInput() {
@@ -21,7 +21,6 @@ import com.reandroid.archive.io.ZipFileOutput;
 import com.reandroid.archive.io.ZipOutput;
 
 import java.io.IOException;
-import java.nio.channels.FileChannel;
 
 class FileOutputSource extends OutputSource {
     private EntryBuffer entryBuffer;
@@ -29,7 +28,7 @@ class FileOutputSource extends OutputSource {
     FileOutputSource(InputSource inputSource){
         super(inputSource);
     }
-    void makeBuffer(BufferFileInput input, BufferFileOutput output) throws IOException {
+    void makeBuffer(BufferPool bufferPool, BufferFileInput input, BufferFileOutput output) throws IOException {
         EntryBuffer entryBuffer = this.entryBuffer;
         if(entryBuffer != null){
             return;
@@ -39,8 +38,62 @@ class FileOutputSource extends OutputSource {
             this.entryBuffer = entryBuffer;
             return;
         }
+        if(bufferPool != null){
+            PooledEntryOutput pooled = new PooledEntryOutput(bufferPool, output, 0);
+            try{
+                writeBuffer(pooled);
+                this.entryBuffer = pooled.finish(input);
+            }finally {
+                pooled.close();
+            }
+            return;
+        }
         this.entryBuffer = writeBuffer(input, output);
     }
+    /**
+     * Appends entry compressed ahead by ParallelCompressor
+     * */
+    void makeBuffer(BufferPool bufferPool, BufferFileInput input, BufferFileOutput output,
+                    CompressedBuffer buffer) throws IOException {
+        if(buffer == null){
+            makeBuffer(bufferPool, input, output);
+            return;
+        }
+        if(bufferPool != null){
+            PooledEntryOutput pooled = new PooledEntryOutput(bufferPool, output, buffer.size());
+            try{
+                buffer.writeTo(pooled.getOutputStream());
+                this.entryBuffer = pooled.finish(input);
+            }finally {
+                pooled.close();
+            }
+            return;
+        }
+        long offset = output.position();
+        buffer.writeTo(output.getOutputStream());
+        long length = output.position() - offset;
+        this.entryBuffer = new EntryBuffer(input, offset, length);
+    }
+    /**
+     * Returns pooled buffer of an entry not written (e.g. failed write)
+     * */
+    void releaseBuffer(){
+        EntryBuffer entryBuffer = this.entryBuffer;
+        if(entryBuffer != null){
+            entryBuffer.release();
+        }
+    }
+    /**
+     * Returns true if the data can be taken as it is (no compression needed)
+     * */
+    boolean hasEntryBuffer(){
+        EntryBuffer entryBuffer = this.entryBuffer;
+        if(entryBuffer == null){
+            entryBuffer = makeFromEntry();
+            this.entryBuffer = entryBuffer;
+        }
+        return entryBuffer != null;
+    }
     private EntryBuffer writeBuffer(BufferFileInput input, ZipOutput output) throws IOException {
         long offset = output.position();
         writeBuffer(output);
@@ -53,17 +106,15 @@ class FileOutputSource extends OutputSource {
     void writeApk(ZipFileOutput zipFileOutput, ZipAligner zipAligner) throws IOException{
         logLargeFileWrite();
         EntryBuffer entryBuffer = this.entryBuffer;
-        FileChannel input = entryBuffer.getZipFileInput().getFileChannel();
-        input.position(entryBuffer.getOffset());
         writeLFH(zipFileOutput, zipAligner);
-        writeData(input, entryBuffer.getLength(), zipFileOutput);
+        writeData(entryBuffer, zipFileOutput);
         writeDD(zipFileOutput);
     }
-    private void writeData(FileChannel input, long length, ZipFileOutput apkFileWriter) throws IOException{
+    private void writeData(EntryBuffer entryBuffer, ZipFileOutput apkFileWriter) throws IOException{
         long offset = apkFileWriter.position();
         LocalFileHeader lfh = getLocalFileHeader();
         lfh.setFileOffset(offset);
-        apkFileWriter.write(input, length);
+        entryBuffer.writeTo(apkFileWriter);
     }
 
 
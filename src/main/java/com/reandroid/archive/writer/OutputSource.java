@@ -75,6 +75,12 @@ class OutputSource {
         }
         inputSource.disposeInputSource();
     }
+    /**
+     * Returns true if the data is copied as it is from the source archive
+     * */
+    boolean canCopyRaw(){
+        return false;
+    }
     void writeCEH(ZipOutput zipOutput) throws IOException{
         LocalFileHeader lfh = getLocalFileHeader();
         CentralEntryHeader ceh = CentralEntryHeader.fromLocalFileHeader(lfh);
@@ -0,0 +1,146 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.*;
+import com.reandroid.archive.io.ArchiveEntrySource;
+import com.reandroid.arsc.chunk.TableBlock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Compresses (deflate + crc32) entries on worker threads ahead of the writer.
+ * At most {@link #getMaxPending()} compressed entries are held in memory, results are
+ * handed back to the calling (writer) thread strictly in the original order. Entries
+ * whose source is not known to be safe for concurrent reading are handed back without
+ * buffer and must be compressed inline by the writer.
+ * */
+class ParallelCompressor {
+
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int maxPending;
+
+    ParallelCompressor(ExecutorService executor, int threadCount, int maxPending){
+        if(threadCount < 1){
+            threadCount = 1;
+        }
+        boolean ownExecutor = executor == null;
+        if(ownExecutor){
+            executor = Executors.newFixedThreadPool(threadCount, ParallelCompressor::newThread);
+        }
+        if(maxPending < 1){
+            maxPending = threadCount * 2;
+        }
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.maxPending = maxPending;
+    }
+
+    int getMaxPending() {
+        return maxPending;
+    }
+
+    <OUT extends OutputSource> void compress(OUT[] outputs, Predicate<? super OUT> filter,
+                                             EntryConsumer<? super OUT> consumer) throws IOException {
+        int length = outputs.length;
+        ArrayDeque<Future<CompressedBuffer>> pending = new ArrayDeque<>(maxPending);
+        int submitted = 0;
+        try{
+            for(int i = 0; i < length; i++){
+                while (submitted < length && pending.size() < maxPending){
+                    pending.add(submit(outputs[submitted], filter));
+                    submitted ++;
+                }
+                Future<CompressedBuffer> future = pending.remove();
+                consumer.accept(outputs[i], await(future));
+            }
+        }finally {
+            for(Future<CompressedBuffer> future : pending){
+                future.cancel(true);
+            }
+            if(ownExecutor){
+                executor.shutdownNow();
+            }
+        }
+    }
+    private <OUT extends OutputSource> Future<CompressedBuffer> submit(OUT out, Predicate<? super OUT> filter){
+        if(filter != null && !filter.test(out)){
+            return INLINE;
+        }
+        if(!isConcurrentSource(out.getInputSource())){
+            return INLINE;
+        }
+        return executor.submit(() -> {
+            CompressedBuffer buffer = new CompressedBuffer();
+            out.writeBuffer(buffer);
+            return buffer;
+        });
+    }
+    private static CompressedBuffer await(Future<CompressedBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Sources whose data is self-contained, others (e.g. XMLEncodeSource which adds
+     * resources to shared PackageBlock) are left for the writer thread
+     * */
+    static boolean isConcurrentSource(InputSource inputSource){
+        if(inputSource instanceof RenamedInputSource){
+            inputSource = ((RenamedInputSource<?>) inputSource).getInputSource();
+            return isConcurrentSource(inputSource);
+        }
+        Class<?> type = inputSource.getClass();
+        if(type == BlockInputSource.class){
+            return !TableBlock.FILE_NAME.equals(inputSource.getAlias());
+        }
+        return type == ByteInputSource.class
+                || type == FileInputSource.class
+                || inputSource instanceof ArchiveEntrySource;
+    }
+    private static Thread newThread(Runnable runnable){
+        Thread thread = new Thread(runnable, "apk-compress");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final Future<CompressedBuffer> INLINE = CompletableFuture.completedFuture(null);
+
+    interface EntryConsumer<OUT extends OutputSource> {
+        /**
+         * @param buffer compressed data, null if the entry should be compressed by the caller
+         * */
+        void accept(OUT out, CompressedBuffer buffer) throws IOException;
+    }
+}
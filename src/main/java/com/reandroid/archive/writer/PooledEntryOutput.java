@@ -0,0 +1,162 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.io.ZipOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Collects data of single entry into pooled buffer, grows through size classes of
+ * {@link BufferPool} and once no buffer can be granted the bytes collected so far are
+ * moved to the temp file and the rest of the entry is written there.
+ * */
+class PooledEntryOutput extends ZipOutput {
+    private final BufferPool bufferPool;
+    private final BufferFileOutput spillOutput;
+    private final PoolOutputStream outputStream;
+    private ByteBuffer buffer;
+    private OutputStream spillStream;
+    private long spillOffset;
+    private long size;
+
+    PooledEntryOutput(BufferPool bufferPool, BufferFileOutput spillOutput, int initialCapacity){
+        this.bufferPool = bufferPool;
+        this.spillOutput = spillOutput;
+        this.outputStream = new PoolOutputStream();
+        this.buffer = bufferPool.acquire(Math.max(initialCapacity, BufferPool.MIN_BUFFER_SIZE));
+    }
+
+    EntryBuffer finish(BufferFileInput input) throws IOException {
+        if(spillStream != null){
+            spillStream.flush();
+            return new EntryBuffer(input, spillOffset, size);
+        }
+        ByteBuffer buffer = this.buffer;
+        if(buffer == null){
+            // nothing written and no buffer granted
+            spill();
+            return new EntryBuffer(input, spillOffset, 0);
+        }
+        this.buffer = null;
+        ((Buffer) buffer).flip();
+        return new EntryBuffer(bufferPool, buffer);
+    }
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        if(spillStream == null){
+            ByteBuffer buffer = ensureCapacity(length);
+            if(buffer != null){
+                buffer.put(bytes, offset, length);
+                size += length;
+                return;
+            }
+            spill();
+        }
+        spillStream.write(bytes, offset, length);
+        size += length;
+    }
+    private ByteBuffer ensureCapacity(int length){
+        ByteBuffer buffer = this.buffer;
+        if(buffer == null){
+            return null;
+        }
+        if(buffer.remaining() >= length){
+            return buffer;
+        }
+        long required = (long) buffer.position() + length;
+        if(required > Integer.MAX_VALUE){
+            return null;
+        }
+        int capacity = Math.max((int) required, buffer.capacity() << 1);
+        ByteBuffer grown = bufferPool.acquire(capacity);
+        if(grown == null && capacity > required){
+            grown = bufferPool.acquire((int) required);
+        }
+        if(grown == null){
+            return null;
+        }
+        ((Buffer) buffer).flip();
+        grown.put(buffer);
+        bufferPool.release(buffer);
+        this.buffer = grown;
+        return grown;
+    }
+    private void spill() throws IOException {
+        bufferPool.onSpill();
+        BufferFileOutput output = this.spillOutput;
+        this.spillOffset = output.position();
+        ByteBuffer buffer = this.buffer;
+        if(buffer != null){
+            this.buffer = null;
+            ((Buffer) buffer).flip();
+            output.write(buffer);
+            bufferPool.release(buffer);
+        }
+        this.spillStream = output.getOutputStream();
+    }
+
+    @Override
+    public void write(InputStream inputStream) throws IOException {
+        byte[] bytes = new byte[1024 * 8];
+        int read;
+        while ((read = inputStream.read(bytes)) > 0){
+            write(bytes, 0, read);
+        }
+        inputStream.close();
+    }
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+    @Override
+    public long position() {
+        return size;
+    }
+    @Override
+    public void position(long pos) throws IOException {
+        throw new IOException("Can not move position of PooledEntryOutput");
+    }
+    @Override
+    public void close() {
+        ByteBuffer buffer = this.buffer;
+        if(buffer != null){
+            this.buffer = null;
+            bufferPool.release(buffer);
+        }
+    }
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    private class PoolOutputStream extends OutputStream {
+        @Override
+        public void write(int i) throws IOException {
+            PooledEntryOutput.this.write(new byte[]{(byte) i}, 0, 1);
+        }
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            PooledEntryOutput.this.write(bytes, offset, length);
+        }
+        @Override
+        public void close() {
+        }
+    }
+}
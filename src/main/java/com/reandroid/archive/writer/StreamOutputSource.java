@@ -35,4 +35,14 @@ class StreamOutputSource extends OutputSource{
         zipOutput.write(buffer.toByteArray());
         writeDD(zipOutput);
     }
+    void writeApk(ZipStreamOutput zipOutput, ZipAligner zipAligner, CompressedBuffer buffer) throws IOException {
+        if(buffer == null){
+            writeApk(zipOutput, zipAligner);
+            return;
+        }
+        writeLFH(zipOutput, zipAligner);
+        getLocalFileHeader().setFileOffset(zipOutput.position());
+        buffer.writeTo(zipOutput.getOutputStream());
+        writeDD(zipOutput);
+    }
 }
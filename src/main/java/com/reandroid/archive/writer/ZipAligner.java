@@ -90,6 +90,16 @@ public class ZipAligner {
         }
         lfh.setZipAlign(padding);
     }
+    /**
+     * Whether the data of already written entry starting at dataOffset satisfies alignment
+     * */
+    public boolean isAligned(long dataOffset, LocalFileHeader lfh) {
+        if (lfh.getMethod() == Archive.DEFLATED) {
+            return true;
+        }
+        int alignment = getAlignment(lfh.getFileName());
+        return alignment == NO_ALIGNMENT || (dataOffset % alignment) == 0;
+    }
     private int getAlignment(String name) {
         if (!alignmentMap.isEmpty()) {
             for (Map.Entry<Predicate<String>, Integer> entry: alignmentMap.entrySet()) {
@@ -0,0 +1,303 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.chunk;
+
+import com.reandroid.arsc.base.Block;
+import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.arsc.item.OffsetItem;
+import com.reandroid.arsc.list.EntryItemList;
+import com.reandroid.arsc.list.EntryItemOffsetList;
+import com.reandroid.common.BytesOutputStream;
+
+import java.io.IOException;
+
+/**
+ * Struct-of-arrays form of the entries of a {@link TypeBlock}, entry i is described by
+ * flags[i], keys[i], valueTypes[i] and data[i] (parent id for bags) and bag items of
+ * entry i are in range bagStart[i] until bagStart[i + 1] of the bag arrays. Compact
+ * entries (FLAG_COMPACT) keep their value type in the high byte of flags.
+ * Only the standard entry layout is kept, thus {@link #inflate(EntryItemList)}
+ * restores exactly the same bytes as the entries it was created from.
+ * */
+class CompactEntries {
+
+    private final int[] idx;
+    private final int[] flags;
+    private final int[] keys;
+    private final int[] valueTypes;
+    private final int[] data;
+    private final int[] bagStart;
+    private final int[] bagNames;
+    private final int[] bagTypes;
+    private final int[] bagData;
+
+    private CompactEntries(int count, boolean sparse, int bagCount) {
+        this.idx = sparse ? new int[count] : null;
+        this.flags = new int[count];
+        this.keys = new int[count];
+        this.valueTypes = new int[count];
+        this.data = new int[count];
+        if (bagCount != 0) {
+            this.bagStart = new int[count + 1];
+        } else {
+            this.bagStart = null;
+        }
+        this.bagNames = new int[bagCount];
+        this.bagTypes = new int[bagCount];
+        this.bagData = new int[bagCount];
+    }
+
+    int size() {
+        return flags.length;
+    }
+    int countNonNull() {
+        int result = 0;
+        int[] flags = this.flags;
+        for (int flag : flags) {
+            if (flag != NO_ENTRY) {
+                result ++;
+            }
+        }
+        return result;
+    }
+
+    void inflate(EntryItemList entryList) throws IOException {
+        int count = size();
+        int[] offsets = new int[count];
+        byte[] bytes = encode(offsets);
+        EntryItemOffsetList offsetList = entryList.getOffsetReferenceList();
+        offsetList.setSize(count);
+        int[] idx = this.idx;
+        for (int i = 0; i < count; i++) {
+            OffsetItem offsetItem = offsetList.get(i);
+            if (idx != null) {
+                offsetItem.setIdx(idx[i]);
+            }
+            offsetItem.setOffset(offsets[i]);
+        }
+        BlockReader reader = new BlockReader(bytes);
+        entryList.readChildes(reader);
+        reader.close();
+    }
+    private byte[] encode(int[] offsets) {
+        int count = size();
+        int[] flags = this.flags;
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            if (flags[i] == NO_ENTRY) {
+                offsets[i] = OffsetItem.NO_ENTRY;
+                continue;
+            }
+            offsets[i] = length;
+            int flag = flags[i];
+            if ((flag & FLAG_COMPACT) != 0) {
+                length += HEADER_SIMPLE;
+            } else if ((flag & FLAG_COMPLEX) != 0) {
+                length += HEADER_COMPLEX + BAG_ITEM_SIZE * bagCount(i);
+            } else {
+                length += HEADER_SIMPLE + VALUE_SIZE;
+            }
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < count; i++) {
+            int flag = flags[i];
+            if (flag == NO_ENTRY) {
+                continue;
+            }
+            int position = offsets[i];
+            Block.putShort(bytes, position + 2, flag);
+            if ((flag & FLAG_COMPACT) != 0) {
+                Block.putShort(bytes, position, keys[i]);
+                Block.putInteger(bytes, position + 4, data[i]);
+                continue;
+            }
+            Block.putInteger(bytes, position + 4, keys[i]);
+            if ((flag & FLAG_COMPLEX) == 0) {
+                Block.putShort(bytes, position, HEADER_SIMPLE);
+                putValue(bytes, position + HEADER_SIMPLE, valueTypes[i], data[i]);
+                continue;
+            }
+            Block.putShort(bytes, position, HEADER_COMPLEX);
+            Block.putInteger(bytes, position + 8, data[i]);
+            int values = bagCount(i);
+            Block.putInteger(bytes, position + 12, values);
+            position += HEADER_COMPLEX;
+            int start = values == 0 ? 0 : bagStart[i];
+            int end = start + values;
+            for (int j = start; j < end; j++) {
+                Block.putInteger(bytes, position, bagNames[j]);
+                putValue(bytes, position + 4, bagTypes[j], bagData[j]);
+                position += BAG_ITEM_SIZE;
+            }
+        }
+        return bytes;
+    }
+    private int bagCount(int i) {
+        int[] bagStart = this.bagStart;
+        if (bagStart == null) {
+            return 0;
+        }
+        return bagStart[i + 1] - bagStart[i];
+    }
+    private static void putValue(byte[] bytes, int position, int type, int data) {
+        Block.putShort(bytes, position, VALUE_SIZE);
+        bytes[position + 3] = (byte) type;
+        Block.putInteger(bytes, position + 4, data);
+    }
+
+    /**
+     * Returns null if any of the entries is not in standard layout (e.g. compact entries,
+     * extended headers or values), such type blocks remain as entry objects.
+     * */
+    static CompactEntries create(EntryItemList entryList) {
+        int count = entryList.size();
+        EntryItemOffsetList offsetList = entryList.getOffsetReferenceList();
+        if (count == 0 || offsetList.size() != count) {
+            return null;
+        }
+        BytesOutputStream outputStream = new BytesOutputStream(entryList.countBytes());
+        try {
+            entryList.writeBytes(outputStream);
+        } catch (IOException ignored) {
+            return null;
+        }
+        byte[] bytes = outputStream.toByteArray();
+        int bagCount = countBags(entryList, bytes);
+        if (bagCount < 0) {
+            return null;
+        }
+        CompactEntries compactEntries = new CompactEntries(count, entryList.isSparse(), bagCount);
+        compactEntries.load(entryList, bytes);
+        return compactEntries;
+    }
+    private static int countBags(EntryItemList entryList, byte[] bytes) {
+        int count = entryList.size();
+        int length = bytes.length;
+        int position = 0;
+        int bagCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (entryList.get(i).isNull()) {
+                continue;
+            }
+            if (position + HEADER_SIMPLE > length) {
+                return -1;
+            }
+            int size = Block.getShortUnsigned(bytes, position);
+            int flag = Block.getShortUnsigned(bytes, position + 2);
+            if ((flag & FLAG_COMPACT) != 0) {
+                if ((flag & 0xff & ~(FLAGS_SUPPORTED | FLAG_COMPACT)) != 0 || (flag & FLAG_COMPLEX) != 0) {
+                    return -1;
+                }
+                position += HEADER_SIMPLE;
+                continue;
+            }
+            if ((flag & ~FLAGS_SUPPORTED) != 0) {
+                return -1;
+            }
+            if ((flag & FLAG_COMPLEX) == 0) {
+                if (size != HEADER_SIMPLE || position + HEADER_SIMPLE + VALUE_SIZE > length
+                        || !isStandardValue(bytes, position + HEADER_SIMPLE)) {
+                    return -1;
+                }
+                position += HEADER_SIMPLE + VALUE_SIZE;
+                continue;
+            }
+            if (size != HEADER_COMPLEX || position + HEADER_COMPLEX > length) {
+                return -1;
+            }
+            int values = Block.getInteger(bytes, position + 12);
+            position += HEADER_COMPLEX;
+            if (values < 0 || values > (length - position) / BAG_ITEM_SIZE) {
+                return -1;
+            }
+            for (int j = 0; j < values; j++) {
+                if (!isStandardValue(bytes, position + 4)) {
+                    return -1;
+                }
+                position += BAG_ITEM_SIZE;
+            }
+            bagCount += values;
+        }
+        if (position != length) {
+            return -1;
+        }
+        return bagCount;
+    }
+    private static boolean isStandardValue(byte[] bytes, int position) {
+        return Block.getShortUnsigned(bytes, position) == VALUE_SIZE
+                && bytes[position + 2] == 0;
+    }
+    private void load(EntryItemList entryList, byte[] bytes) {
+        int count = size();
+        int[] idx = this.idx;
+        int[] bagStart = this.bagStart;
+        int position = 0;
+        int bag = 0;
+        for (int i = 0; i < count; i++) {
+            if (idx != null) {
+                idx[i] = entryList.getEntryId(i);
+            }
+            if (bagStart != null) {
+                bagStart[i] = bag;
+            }
+            if (entryList.get(i).isNull()) {
+                flags[i] = NO_ENTRY;
+                continue;
+            }
+            int flag = Block.getShortUnsigned(bytes, position + 2);
+            flags[i] = flag;
+            if ((flag & FLAG_COMPACT) != 0) {
+                keys[i] = Block.getShortUnsigned(bytes, position);
+                valueTypes[i] = flag >>> 8;
+                data[i] = Block.getInteger(bytes, position + 4);
+                position += HEADER_SIMPLE;
+                continue;
+            }
+            keys[i] = Block.getInteger(bytes, position + 4);
+            if ((flag & FLAG_COMPLEX) == 0) {
+                position += HEADER_SIMPLE;
+                valueTypes[i] = bytes[position + 3] & 0xff;
+                data[i] = Block.getInteger(bytes, position + 4);
+                position += VALUE_SIZE;
+                continue;
+            }
+            data[i] = Block.getInteger(bytes, position + 8);
+            int values = Block.getInteger(bytes, position + 12);
+            position += HEADER_COMPLEX;
+            for (int j = 0; j < values; j++) {
+                bagNames[bag] = Block.getInteger(bytes, position);
+                bagTypes[bag] = bytes[position + 7] & 0xff;
+                bagData[bag] = Block.getInteger(bytes, position + 8);
+                position += BAG_ITEM_SIZE;
+                bag ++;
+            }
+        }
+        if (bagStart != null) {
+            bagStart[count] = bag;
+        }
+    }
+
+    private static final int NO_ENTRY = -1;
+
+    private static final int FLAG_COMPLEX = 0x0001;
+    private static final int FLAG_COMPACT = 0x0008;
+    private static final int FLAGS_SUPPORTED = 0x0007;
+
+    private static final int HEADER_SIMPLE = 8;
+    private static final int HEADER_COMPLEX = 16;
+    private static final int VALUE_SIZE = 8;
+    private static final int BAG_ITEM_SIZE = 12;
+}
@@ -81,6 +81,7 @@ public class PackageBlock extends Chunk<PackageHeader>
     private boolean mHasValidPrefix;
 
     private Object mTag;
+    private volatile ResourceIndex mResourceIndex;
 
     public PackageBlock() {
         super(new PackageHeader(), 3);
@@ -126,6 +127,13 @@ public class PackageBlock extends Chunk<PackageHeader>
             return null;
         }
         if(packageId == getId()){
+            ResourceIndex index = getResourceIndex();
+            if(index != null){
+                ResourceEntry resourceEntry = index.get(resourceId);
+                if(resourceEntry != null){
+                    return resourceEntry;
+                }
+            }
             int typeId = (resourceId >> 16 ) & 0xff;
             int entryId = resourceId & 0xffff;
             ResourceEntry resourceEntry = getResource(typeId, entryId);
@@ -168,6 +176,13 @@ public class PackageBlock extends Chunk<PackageHeader>
         return getResource(resourceName.getType(), resourceName.getName());
     }
     public ResourceEntry getResource(String type, String name){
+        ResourceIndex index = getResourceIndex();
+        if(index != null){
+            ResourceEntry resourceEntry = index.get(typeIdOf(type), name);
+            if(resourceEntry != null){
+                return resourceEntry;
+            }
+        }
         SpecTypePair specTypePair =
                 getSpecTypePair(type);
         if(specTypePair != null){
@@ -477,6 +492,23 @@ public class PackageBlock extends Chunk<PackageHeader>
     private boolean isAndroid(){
         return getId() == 0x01 && ResourceLibrary.PREFIX_ANDROID.equals(getName());
     }
+    /**
+     * Returns id/name index if enabled on the parent table, rebuilt after the table
+     * modification count changes
+     * */
+    ResourceIndex getResourceIndex(){
+        TableBlock tableBlock = getTableBlock();
+        if(tableBlock == null || !tableBlock.isResourceIndexEnabled()){
+            return null;
+        }
+        int modCount = tableBlock.getModCount();
+        ResourceIndex index = this.mResourceIndex;
+        if(index == null || !index.isValid(modCount)){
+            index = ResourceIndex.build(this, modCount);
+            this.mResourceIndex = index;
+        }
+        return index;
+    }
     public TableBlock getTableBlock(){
         Block parent=getParent();
         while(parent!=null){
@@ -0,0 +1,129 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.chunk;
+
+import com.reandroid.arsc.container.SpecTypePair;
+import com.reandroid.utils.collection.ArrayCollection;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Refreshes and writes a table with its type blocks refreshed and encoded on worker threads.
+ * Structural changes done by refresh (removing empty packages/types, equalizing entry
+ * counts) and string pools are settled first on the calling thread, then each type block,
+ * which only depends on its own entries, is encoded into its own buffer. The final
+ * sequential refresh then only recomputes headers and offsets, thus output is identical
+ * to {@link TableBlock#refresh()} followed by writeBytes.
+ * */
+class ParallelTableWriter {
+
+    private final TableBlock tableBlock;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+
+    ParallelTableWriter(TableBlock tableBlock, ExecutorService executor, int threadCount) {
+        boolean ownExecutor = executor == null;
+        if (ownExecutor) {
+            executor = Executors.newFixedThreadPool(Math.max(1, threadCount),
+                    ParallelTableWriter::newThread);
+        }
+        this.tableBlock = tableBlock;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    int write(OutputStream outputStream) throws IOException {
+        List<TypeBlock> typeBlocks = prepareStructure();
+        try {
+            encode(typeBlocks);
+            tableBlock.refresh();
+            return tableBlock.writeBytes(outputStream);
+        } finally {
+            for (TypeBlock typeBlock : typeBlocks) {
+                typeBlock.clearPreparedBytes();
+            }
+            if (ownExecutor) {
+                executor.shutdownNow();
+            }
+        }
+    }
+    private List<TypeBlock> prepareStructure() {
+        TableBlock tableBlock = this.tableBlock;
+        tableBlock.getPackageArray().removeIf(PackageBlock::isEmpty);
+        tableBlock.getTableStringPool().refresh();
+        List<TypeBlock> results = new ArrayCollection<>();
+        for (PackageBlock packageBlock : tableBlock) {
+            packageBlock.removeEmpty();
+            packageBlock.getSpecTypePairArray().validateEntryCounts();
+            packageBlock.getTypeStringPool().refresh();
+            packageBlock.getSpecStringPool().refresh();
+            Iterator<SpecTypePair> iterator = packageBlock.getSpecTypePairs();
+            while (iterator.hasNext()) {
+                for (TypeBlock typeBlock : iterator.next()) {
+                    results.add(typeBlock);
+                }
+            }
+        }
+        return results;
+    }
+    private void encode(List<TypeBlock> typeBlocks) throws IOException {
+        int size = typeBlocks.size();
+        List<Future<?>> futures = new ArrayCollection<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                TypeBlock typeBlock = typeBlocks.get(i);
+                futures.add(executor.submit(typeBlock::prepareBytes));
+            }
+            for (int i = 0; i < size; i++) {
+                await(futures.get(i));
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "arsc-encode");
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.chunk;
+
+import com.reandroid.arsc.container.SpecTypePair;
+import com.reandroid.arsc.model.ResourceEntry;
+import com.reandroid.arsc.value.Entry;
+import com.reandroid.utils.collection.IntegerMap;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Snapshot of resource ids and names of a package, built once and then read only
+ * thus safe to share between threads.
+ * */
+class ResourceIndex {
+
+    private final int modCount;
+    private final IntegerMap<ResourceEntry> idMap;
+    private final Map<String, ResourceEntry>[] nameMaps;
+
+    private ResourceIndex(int modCount){
+        this.modCount = modCount;
+        this.idMap = new IntegerMap<>();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map<String, ResourceEntry>[] nameMaps = new Map[256];
+        this.nameMaps = nameMaps;
+    }
+
+    boolean isValid(int modCount){
+        return this.modCount == modCount;
+    }
+    ResourceEntry get(int resourceId){
+        return idMap.get(resourceId);
+    }
+    ResourceEntry get(int typeId, String name){
+        if(typeId <= 0 || typeId > 0xff || name == null){
+            return null;
+        }
+        Map<String, ResourceEntry> map = nameMaps[typeId];
+        if(map == null){
+            return null;
+        }
+        return map.get(name);
+    }
+
+    static ResourceIndex build(PackageBlock packageBlock, int modCount){
+        ResourceIndex index = new ResourceIndex(modCount);
+        int packageId = packageBlock.getId() << 24;
+        Iterator<SpecTypePair> iterator = packageBlock.getSpecTypePairs();
+        while (iterator.hasNext()){
+            SpecTypePair specTypePair = iterator.next();
+            int typeId = specTypePair.getId();
+            index.addType(packageBlock, specTypePair, packageId | (typeId << 16));
+        }
+        return index;
+    }
+    private void addType(PackageBlock packageBlock, SpecTypePair specTypePair, int typePrefix){
+        IntegerMap<ResourceEntry> idMap = this.idMap;
+        Map<String, ResourceEntry> nameMap = null;
+        Iterator<TypeBlock> typeBlocks = specTypePair.getTypeBlocks();
+        while (typeBlocks.hasNext()){
+            TypeBlock typeBlock = typeBlocks.next();
+            int size = typeBlock.size();
+            for(int i = 0; i < size; i++){
+                Entry entry = typeBlock.getEntry(i);
+                if(entry == null){
+                    continue;
+                }
+                int resourceId = typePrefix | i;
+                ResourceEntry resourceEntry = idMap.get(resourceId);
+                if(resourceEntry == null){
+                    resourceEntry = new ResourceEntry(packageBlock, resourceId);
+                    idMap.put(resourceId, resourceEntry);
+                }
+                if(entry.isNull()){
+                    continue;
+                }
+                String name = entry.getName();
+                if(name == null){
+                    continue;
+                }
+                if(nameMap == null){
+                    nameMap = new HashMap<>();
+                    nameMaps[(typePrefix >>> 16) & 0xff] = nameMap;
+                }
+                nameMap.putIfAbsent(name, resourceEntry);
+            }
+        }
+    }
+}
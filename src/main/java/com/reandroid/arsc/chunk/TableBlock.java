@@ -18,6 +18,7 @@ package com.reandroid.arsc.chunk;
 import com.reandroid.arsc.ARSCLib;
 import com.reandroid.arsc.ApkFile;
 import com.reandroid.arsc.array.PackageArray;
+import com.reandroid.arsc.container.SpecTypePair;
 import com.reandroid.arsc.header.HeaderBlock;
 import com.reandroid.arsc.header.InfoHeader;
 import com.reandroid.arsc.header.TableHeader;
@@ -30,6 +31,7 @@ import com.reandroid.arsc.value.ResConfig;
 import com.reandroid.arsc.value.StagedAliasEntry;
 import com.reandroid.arsc.value.ValueItem;
 import com.reandroid.common.BytesOutputStream;
+import com.reandroid.common.ConfigResolver;
 import com.reandroid.common.ReferenceResolver;
 import com.reandroid.json.JSONConvert;
 import com.reandroid.json.JSONObject;
@@ -39,9 +41,12 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 public class TableBlock extends Chunk<TableHeader>
@@ -51,7 +56,12 @@ public class TableBlock extends Chunk<TableHeader>
     private final PackageArray mPackageArray;
     private final List<TableBlock> mFrameWorks;
     private ApkFile mApkFile;
-    private ReferenceResolver referenceResolver;
+    private volatile ReferenceResolver referenceResolver;
+    private final AtomicInteger mModCount;
+    private final AtomicInteger mValueModCount;
+    private volatile boolean mResourceIndexEnabled;
+    private volatile PackageIdIndex mPackageIdIndex;
+    private volatile ConfigResolver configResolver;
     private PackageBlock mCurrentPackage;
     private PackageBlock mEmptyTablePackage;
 
@@ -60,6 +70,8 @@ public class TableBlock extends Chunk<TableHeader>
         TableHeader header = getHeaderBlock();
         this.mTableStringPool = new TableStringPool(true);
         this.mPackageArray = new PackageArray(header.getPackageCount());
+        this.mModCount = new AtomicInteger();
+        this.mValueModCount = new AtomicInteger();
         this.mFrameWorks = new ArrayCollection<>();
         addChild(mTableStringPool);
         addChild(mPackageArray);
@@ -102,6 +114,15 @@ public class TableBlock extends Chunk<TableHeader>
         if(resourceId == 0){
             return null;
         }
+        PackageBlock[] indexed = getIndexedPackages((resourceId >>> 24) & 0xff);
+        if(indexed != null){
+            for(PackageBlock packageBlock : indexed){
+                ResourceEntry resourceEntry = packageBlock.getResource(resourceId);
+                if(resourceEntry != null){
+                    return resourceEntry;
+                }
+            }
+        }
         Iterator<PackageBlock> iterator = getAllPackages();
         while (iterator.hasNext()){
             PackageBlock packageBlock = iterator.next();
@@ -314,6 +335,16 @@ public class TableBlock extends Chunk<TableHeader>
         final int packageId = (resourceId >> 24) & 0xff;
         final int typeId = (resourceId >> 16) & 0xff;
         final int entryId = resourceId & 0xffff;
+        PackageBlock[] indexed = getIndexedPackages(packageId);
+        if(indexed != null){
+            for(PackageBlock packageBlock : indexed){
+                Iterator<Entry> iterator = packageBlock.getEntries(typeId, entryId, skipNull);
+                if(iterator.hasNext()){
+                    return iterator;
+                }
+            }
+            return EmptyIterator.of();
+        }
         return new IterableIterator<PackageBlock, Entry>(getAllPackages(packageId)) {
             @Override
             public Iterator<Entry> iterator(PackageBlock element) {
@@ -487,20 +518,93 @@ public class TableBlock extends Chunk<TableHeader>
         return resolveReference(referenceId, null);
     }
     public List<Entry> resolveReferenceWithConfig(int referenceId, ResConfig resConfig){
-        ReferenceResolver resolver = this.referenceResolver;
+        return getReferenceResolver().resolveWithConfig(referenceId, resConfig);
+    }
+    /**
+     * Returns the entry android would pick for the given device config, references are followed
+     * */
+    public Entry resolveBestMatch(int referenceId, ResConfig device){
+        return getConfigResolver().resolve(referenceId, device);
+    }
+    public ConfigResolver getConfigResolver(){
+        ConfigResolver resolver = this.configResolver;
         if(resolver == null){
-            resolver = new ReferenceResolver(this);
-            this.referenceResolver = resolver;
+            synchronized (this){
+                resolver = this.configResolver;
+                if(resolver == null){
+                    resolver = new ConfigResolver(this);
+                    this.configResolver = resolver;
+                }
+            }
         }
-        return resolver.resolveWithConfig(referenceId, resConfig);
+        return resolver;
     }
     public List<Entry> resolveReference(int referenceId, Predicate<Entry> filter){
+        return getReferenceResolver().resolveAll(referenceId, filter);
+    }
+    public ReferenceResolver getReferenceResolver(){
         ReferenceResolver resolver = this.referenceResolver;
         if(resolver == null){
-            resolver = new ReferenceResolver(this);
-            this.referenceResolver = resolver;
+            synchronized (this){
+                resolver = this.referenceResolver;
+                if(resolver == null){
+                    resolver = new ReferenceResolver(this);
+                    this.referenceResolver = resolver;
+                }
+            }
+        }
+        return resolver;
+    }
+    /**
+     * Incremented on structural changes (loading, refresh, adding packages or frameworks),
+     * shared resolvers and lookup indexes drop their cached results whenever this value
+     * changes. Value edits of entries change {@link #getValueModCount()} instead.
+     * */
+    public int getModCount(){
+        return mModCount.get();
+    }
+    /**
+     * Called on structural changes, including renaming and removal of entries
+     * */
+    public void onModified(){
+        mModCount.incrementAndGet();
+    }
+    /**
+     * Incremented whenever a value of an entry changes or an entry is set to null or
+     * replaced, resolvers drop their cached results whenever this value changes
+     * */
+    public int getValueModCount(){
+        return mValueModCount.get();
+    }
+    public void onValueModified(){
+        mValueModCount.incrementAndGet();
+    }
+    /**
+     * Enables lookup index of package, resource ids and names. The index is built lazily
+     * and rebuilt whenever {@link #getModCount()} changes; renaming or removing entries
+     * changes it, entries added later are found by the regular lookups. Meant for
+     * read-mostly tables, every rename or removal costs a rebuild on the next lookup.
+     * */
+    public void setResourceIndexEnabled(boolean enabled){
+        this.mResourceIndexEnabled = enabled;
+        if(!enabled){
+            this.mPackageIdIndex = null;
+        }
+    }
+    public boolean isResourceIndexEnabled(){
+        return mResourceIndexEnabled;
+    }
+    private PackageBlock[] getIndexedPackages(int packageId){
+        if(!mResourceIndexEnabled){
+            return null;
+        }
+        int modCount = getModCount();
+        PackageIdIndex index = this.mPackageIdIndex;
+        if(index == null || index.modCount != modCount){
+            index = new PackageIdIndex(getAllPackages(), modCount);
+            this.mPackageIdIndex = index;
         }
-        return resolver.resolveAll(referenceId, filter);
+        return index.get(packageId);
     }
     public Iterator<PackageBlock> iterator(){
         return getPackageArray().iterator();
@@ -597,6 +701,7 @@ public class TableBlock extends Chunk<TableHeader>
         return getPackageArray().getPackageBlockById(pkgId);
     }
     public PackageBlock newPackage(int id, String name){
+        onModified();
         PackageBlock packageBlock = getPackageArray().createNext();
         packageBlock.setId(id);
         if(name != null){
@@ -639,6 +744,7 @@ public class TableBlock extends Chunk<TableHeader>
     }
     @Override
     protected void onPreRefresh() {
+        onModified();
         getPackageArray().removeIf(PackageBlock::isEmpty);
         super.onPreRefresh();
     }
@@ -677,6 +783,7 @@ public class TableBlock extends Chunk<TableHeader>
         }
         reader.close();
         linkStringsInternal();
+        onModified();
     }
 
     public void readBytes(File file) throws IOException{
@@ -700,6 +807,40 @@ public class TableBlock extends Chunk<TableHeader>
         outputStream.close();
         return length;
     }
+    /**
+     * Same as {@link #refresh()} followed by {@link #writeBytes(OutputStream)} with type blocks
+     * refreshed and encoded on threadCount threads, the output is byte-identical.
+     * */
+    public int writeBytes(OutputStream outputStream, int threadCount) throws IOException{
+        if(threadCount <= 1){
+            refresh();
+            return writeBytes(outputStream);
+        }
+        return new ParallelTableWriter(this, null, threadCount).write(outputStream);
+    }
+    /**
+     * Same as {@link #writeBytes(OutputStream, int)} running on the given executor
+     * */
+    public int writeBytes(OutputStream outputStream, ExecutorService executor) throws IOException{
+        return new ParallelTableWriter(this, executor, 0).write(outputStream);
+    }
+    /**
+     * Moves entries of all type blocks into compact arrays, see {@link TypeBlock#compactEntries()}.
+     * Returns the number of type blocks compacted
+     * */
+    public int compactEntries(){
+        int result = 0;
+        for(PackageBlock packageBlock : this){
+            for(SpecTypePair specTypePair : packageBlock.listSpecTypePairs()){
+                for(TypeBlock typeBlock : specTypePair){
+                    if(typeBlock.compactEntries()){
+                        result ++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
     public int searchResourceIdAlias(int resourceId){
         return resolveStagedAlias(resourceId, 0);
     }
@@ -752,6 +893,7 @@ public class TableBlock extends Chunk<TableHeader>
     public void addFramework(TableBlock frameworkTable){
         if(frameworkTable != null && !containsFramework(frameworkTable)){
             mFrameWorks.add(frameworkTable);
+            onModified();
         }
     }
     public boolean containsFramework(TableBlock tableBlock) {
@@ -769,10 +911,13 @@ public class TableBlock extends Chunk<TableHeader>
         return false;
     }
     public void removeFramework(TableBlock tableBlock){
-        mFrameWorks.remove(tableBlock);
+        if(mFrameWorks.remove(tableBlock)){
+            onModified();
+        }
     }
     public void clearFrameworks(){
         mFrameWorks.clear();
+        onModified();
     }
     public PackageBlock parsePublicXml(XmlPullParser parser) throws IOException,
             XmlPullParserException {
@@ -883,7 +1028,39 @@ public class TableBlock extends Chunk<TableHeader>
         ChunkType chunkType=headerBlock.getChunkType();
         return chunkType==ChunkType.TABLE;
     }
+    static class PackageIdIndex {
+        final int modCount;
+        private final PackageBlock[][] packages;
+
+        PackageIdIndex(Iterator<PackageBlock> iterator, int modCount){
+            this.modCount = modCount;
+            PackageBlock[][] packages = new PackageBlock[256][];
+            while (iterator.hasNext()){
+                PackageBlock packageBlock = iterator.next();
+                int id = packageBlock.getId() & 0xff;
+                PackageBlock[] exist = packages[id];
+                if(exist == null){
+                    exist = new PackageBlock[]{packageBlock};
+                }else {
+                    exist = Arrays.copyOf(exist, exist.length + 1);
+                    exist[exist.length - 1] = packageBlock;
+                }
+                packages[id] = exist;
+            }
+            this.packages = packages;
+        }
+        PackageBlock[] get(int packageId){
+            PackageBlock[] result = packages[packageId & 0xff];
+            if(result == null){
+                return EMPTY;
+            }
+            return result;
+        }
+        private static final PackageBlock[] EMPTY = new PackageBlock[0];
+    }
+
     public static final String FILE_NAME = ObjectsUtil.of("resources.arsc");
+
     public static final String FILE_NAME_JSON = ObjectsUtil.of("resources.arsc.json");
 
     private static final String NAME_packages = ObjectsUtil.of("packages");
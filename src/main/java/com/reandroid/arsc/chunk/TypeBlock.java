@@ -15,18 +15,22 @@
  */
 package com.reandroid.arsc.chunk;
 
+import com.reandroid.arsc.base.BlockCounter;
 import com.reandroid.arsc.container.SpecTypePair;
 import com.reandroid.arsc.header.TypeHeader;
+import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.arsc.item.IntegerReference;
 import com.reandroid.arsc.item.SpecString;
 import com.reandroid.arsc.item.TypeString;
 import com.reandroid.arsc.list.EntryItemList;
 import com.reandroid.arsc.list.EntryItemOffsetList;
 import com.reandroid.arsc.pool.SpecStringPool;
+import com.reandroid.arsc.pool.TableStringPool;
 import com.reandroid.arsc.pool.TypeStringPool;
 import com.reandroid.arsc.value.Entry;
 import com.reandroid.arsc.value.ResConfig;
 import com.reandroid.arsc.value.ValueItem;
+import com.reandroid.common.BytesOutputStream;
 import com.reandroid.json.JSONConvert;
 import com.reandroid.json.JSONObject;
 import com.reandroid.utils.CompareUtil;
@@ -37,6 +41,7 @@ import com.reandroid.utils.collection.IterableIterator;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.List;
 
@@ -45,6 +50,8 @@ public class TypeBlock extends Chunk<TypeHeader>
 
     private final EntryItemList mEntryArray;
     private TypeString mTypeString;
+    private byte[] mPreparedBytes;
+    private volatile CompactEntries mCompactEntries;
 
 
     public TypeBlock() {
@@ -95,6 +102,7 @@ public class TypeBlock extends Chunk<TypeHeader>
         return getHeaderBlock().isOffset16();
     }
     public void destroy() {
+        mCompactEntries = null;
         getEntryArray().destroy();
         setId(0);
         setParent(null);
@@ -103,8 +111,18 @@ public class TypeBlock extends Chunk<TypeHeader>
         startId = 0xffff & startId;
         EntryItemList entryArray = getEntryArray();
         entryArray.removeAllNull(startId);
+        onEntriesRemoved();
         return entryArray.size() == startId;
     }
+    private void onEntriesRemoved() {
+        PackageBlock packageBlock = getPackageBlock();
+        if (packageBlock != null) {
+            TableBlock tableBlock = packageBlock.getTableBlock();
+            if (tableBlock != null) {
+                tableBlock.onModified();
+            }
+        }
+    }
     public PackageBlock getPackageBlock() {
         SpecTypePair specTypePair = getParent(SpecTypePair.class);
         if (specTypePair != null) {
@@ -163,6 +181,7 @@ public class TypeBlock extends Chunk<TypeHeader>
         return ObjectsUtil.cast(null);
     }
     public void setEntryCount(int count) {
+        inflateEntries();
         IntegerReference entryCount = getHeaderBlock().getCountItem();
         if (count == entryCount.get()) {
             return;
@@ -171,6 +190,10 @@ public class TypeBlock extends Chunk<TypeHeader>
         onSetEntryCount(count);
     }
     public boolean isEmpty() {
+        CompactEntries compactEntries = mCompactEntries;
+        if (compactEntries != null) {
+            return compactEntries.countNonNull() == 0;
+        }
         return getEntryArray().isEmptyEntries();
     }
     public boolean isDefault() {
@@ -236,9 +259,17 @@ public class TypeBlock extends Chunk<TypeHeader>
         return getEntryArray().getEntry(entryId);
     }
     public int realSize() {
+        CompactEntries compactEntries = mCompactEntries;
+        if (compactEntries != null) {
+            return compactEntries.countNonNull();
+        }
         return getEntryArray().countNonNull();
     }
     public int size() {
+        CompactEntries compactEntries = mCompactEntries;
+        if (compactEntries != null) {
+            return compactEntries.size();
+        }
         return getEntryArray().size();
     }
     @Override
@@ -246,6 +277,7 @@ public class TypeBlock extends Chunk<TypeHeader>
         return getEntryArray().iterator(false);
     }
     public void clear() {
+        mCompactEntries = null;
         getEntryArray().clear();
     }
     /**
@@ -265,8 +297,105 @@ public class TypeBlock extends Chunk<TypeHeader>
         return getHeaderBlock().getConfig();
     }
     public EntryItemList getEntryArray() {
+        inflateEntries();
         return mEntryArray;
     }
+    /**
+     * Moves entries into primitive arrays (see CompactEntries) to reduce retained heap of
+     * mostly read-only tables, entries are materialized again on first access including
+     * linking of string references (e.g. lookup by name). Returns false if string references
+     * are already linked or entries are not in a layout that can be restored exactly, in
+     * such cases entries are kept as objects. Compaction and inflation hold the string link
+     * lock of the table (see StringPool#getLinkLock()), string items are shared with other
+     * type blocks.
+     * */
+    public boolean compactEntries() {
+        synchronized (getLinkLock()) {
+            if (mCompactEntries != null) {
+                return true;
+            }
+            if (isStringsLinked()) {
+                return false;
+            }
+            EntryItemList entryArray = this.mEntryArray;
+            CompactEntries compactEntries = CompactEntries.create(entryArray);
+            if (compactEntries == null) {
+                return false;
+            }
+            entryArray.clear();
+            entryArray.getOffsetReferenceList().clear();
+            mCompactEntries = compactEntries;
+            return true;
+        }
+    }
+    public boolean isCompactEntries() {
+        return mCompactEntries != null;
+    }
+    private boolean inflateEntries() {
+        if (mCompactEntries == null) {
+            return false;
+        }
+        synchronized (getLinkLock()) {
+            CompactEntries compactEntries = mCompactEntries;
+            if (compactEntries == null) {
+                return false;
+            }
+            EntryItemList entryArray = this.mEntryArray;
+            try {
+                compactEntries.inflate(entryArray);
+            } catch (IOException exception) {
+                throw new IllegalStateException("Failed to inflate entries: " + this, exception);
+            }
+            linkStringsInternal(entryArray);
+            mCompactEntries = null;
+            return true;
+        }
+    }
+    private Object getLinkLock() {
+        PackageBlock packageBlock = getPackageBlock();
+        if (packageBlock == null) {
+            return this;
+        }
+        return packageBlock.getSpecStringPool().getLinkLock();
+    }
+    private boolean isStringsLinked() {
+        PackageBlock packageBlock = getPackageBlock();
+        if (packageBlock == null) {
+            return false;
+        }
+        TableBlock tableBlock = packageBlock.getTableBlock();
+        if (tableBlock != null && !tableBlock.getTableStringPool().isStringLinkLocked()) {
+            return true;
+        }
+        return !packageBlock.getSpecStringPool().isStringLinkLocked();
+    }
+    private void linkStringsInternal(EntryItemList entryArray) {
+        PackageBlock packageBlock = getPackageBlock();
+        if (packageBlock == null) {
+            return;
+        }
+        TableBlock tableBlock = packageBlock.getTableBlock();
+        if (tableBlock != null) {
+            TableStringPool tableStringPool = tableBlock.getTableStringPool();
+            if (!tableStringPool.isStringLinkLocked()) {
+                entryArray.linkTableStringsInternal(tableStringPool);
+            }
+        }
+        SpecStringPool specStringPool = packageBlock.getSpecStringPool();
+        if (!specStringPool.isStringLinkLocked()) {
+            entryArray.linkSpecStringsInternal(specStringPool);
+        }
+    }
+    public void linkTableStringsInternal(TableStringPool tableStringPool) {
+        if (!inflateEntries()) {
+            mEntryArray.linkTableStringsInternal(tableStringPool);
+        }
+    }
+    public void linkSpecStringsInternal(SpecStringPool specStringPool) {
+        if (!inflateEntries()) {
+            mEntryArray.linkSpecStringsInternal(specStringPool);
+        }
+    }
     public void ensureEntriesCount(int count) {
         getEntryArray().ensureSize(count);
     }
@@ -280,12 +409,62 @@ public class TypeBlock extends Chunk<TypeHeader>
     private void onSetEntryCount(int count) {
         getEntryArray().setSize(count);
     }
+    /**
+     * Refreshes and encodes this block ahead of a parallel table write (see ParallelTableWriter),
+     * until cleared, refresh skips the entries and writing emits the prepared bytes.
+     * */
+    void prepareBytes() {
+        mPreparedBytes = null;
+        refresh();
+        BytesOutputStream outputStream = new BytesOutputStream(countBytes());
+        try {
+            writeBytes(outputStream);
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        mPreparedBytes = outputStream.toByteArray();
+    }
+    void clearPreparedBytes() {
+        mPreparedBytes = null;
+    }
+    @Override
+    public int countBytes() {
+        inflateEntries();
+        return super.countBytes();
+    }
+    @Override
+    public void onCountUpTo(BlockCounter counter) {
+        inflateEntries();
+        super.onCountUpTo(counter);
+    }
+    @Override
+    public void onReadBytes(BlockReader reader) throws IOException {
+        mCompactEntries = null;
+        super.onReadBytes(reader);
+    }
+    @Override
+    protected void refreshChildes() {
+        if (mPreparedBytes == null) {
+            super.refreshChildes();
+        }
+    }
+    @Override
+    public int onWriteBytes(OutputStream stream) throws IOException {
+        byte[] bytes = mPreparedBytes;
+        if (bytes != null) {
+            stream.write(bytes);
+            return bytes.length;
+        }
+        inflateEntries();
+        return super.onWriteBytes(stream);
+    }
     @Override
     protected void onChunkRefreshed() {
         //getEntryArray().refreshCountAndStart();
     }
     @Override
     protected void onPreRefresh() {
+        inflateEntries();
         getHeaderBlock().getConfig().refresh();
         super.onPreRefresh();
     }
@@ -21,6 +21,7 @@ import com.reandroid.arsc.base.BlockContainer;
 import com.reandroid.arsc.chunk.ChunkType;
 import com.reandroid.arsc.chunk.PackageBlock;
 import com.reandroid.arsc.chunk.SpecBlock;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.chunk.TypeBlock;
 import com.reandroid.arsc.header.HeaderBlock;
 import com.reandroid.arsc.io.BlockReader;
@@ -169,12 +170,12 @@ public class SpecTypePair extends BlockContainer<Block>
     }
     public void linkTableStringsInternal(TableStringPool tableStringPool) {
         for(TypeBlock typeBlock : this) {
-            typeBlock.getEntryArray().linkTableStringsInternal(tableStringPool);
+            typeBlock.linkTableStringsInternal(tableStringPool);
         }
     }
     public void linkSpecStringsInternal(SpecStringPool specStringPool) {
         for(TypeBlock typeBlock : this) {
-            typeBlock.getEntryArray().linkSpecStringsInternal(specStringPool);
+            typeBlock.linkSpecStringsInternal(specStringPool);
         }
     }
     public void destroy(){
@@ -233,6 +234,13 @@ public class SpecTypePair extends BlockContainer<Block>
     }
     public void removeEmptyTypeBlocks(){
         getTypeBlockArray().removeEmptyBlocks();
+        PackageBlock packageBlock = getPackageBlock();
+        if(packageBlock != null){
+            TableBlock tableBlock = packageBlock.getTableBlock();
+            if(tableBlock != null){
+                tableBlock.onModified();
+            }
+        }
     }
     public boolean isEmpty(){
         return getTypeBlockArray().isEmpty();
@@ -18,33 +18,51 @@ package com.reandroid.arsc.io;
 import com.reandroid.arsc.header.InfoHeader;
 import com.reandroid.arsc.header.SpecHeader;
 import com.reandroid.arsc.header.TypeHeader;
+import com.reandroid.common.ByteBufferInputStream;
 
 import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 
 public class BlockReader extends InputStream {
     private final Object mLock = new Object();
 
     private byte[] BUFFER;
+    private ByteBuffer mByteBuffer;
     private final int mStart;
     private final int mLength;
     private int mPosition;
     private boolean mIsClosed;
     private int mMark;
 
-    public BlockReader(byte[] buffer, int start, int length) {
+    private BlockReader(byte[] buffer, ByteBuffer byteBuffer, int start, int length) {
         this.BUFFER = buffer;
+        this.mByteBuffer = byteBuffer;
         this.mStart = start;
         this.mLength = length;
         this.mPosition = 0;
     }
+    public BlockReader(byte[] buffer, int start, int length) {
+        this(buffer, null, start, length);
+    }
     public BlockReader(byte[] buffer) {
         this(buffer, 0, buffer.length);
     }
+    /**
+     * Reads directly from the remaining bytes of the given buffer without copying,
+     * direct (e.g. memory mapped) buffers are accessed through absolute gets
+     * */
+    public BlockReader(ByteBuffer buffer) {
+        this(buffer.hasArray() ? buffer.array() : null,
+                buffer.hasArray() ? null : buffer.slice(),
+                buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0,
+                buffer.remaining());
+    }
     public BlockReader(InputStream in) throws IOException {
-        this(loadBuffer(in));
+        this(loadByteBuffer(in));
     }
     public BlockReader(InputStream in, int length) throws IOException {
-        this(loadBuffer(in, length));
+        this(loadByteBuffer(in, length));
     }
     public BlockReader(File file) throws IOException {
         this(loadBuffer(file));
@@ -94,10 +112,24 @@ public class BlockReader extends InputStream {
                 (bytes[1] & 0xff) << 8);
     }
     public byte[] getBuffer(){
-        return BUFFER;
+        byte[] buffer = this.BUFFER;
+        ByteBuffer byteBuffer = this.mByteBuffer;
+        if(buffer == null && byteBuffer != null){
+            buffer = new byte[byteBuffer.capacity()];
+            byteBuffer.duplicate().get(buffer);
+            this.BUFFER = buffer;
+            this.mByteBuffer = null;
+        }
+        return buffer;
     }
     public byte[] getBytes(){
         int len = length();
+        ByteBuffer byteBuffer = this.mByteBuffer;
+        if(byteBuffer != null){
+            byte[] bytes = new byte[len];
+            readBuffer(byteBuffer, mStart, bytes, 0, len);
+            return bytes;
+        }
         if(this.BUFFER.length == len){
             return BUFFER;
         }
@@ -117,7 +149,7 @@ public class BlockReader extends InputStream {
             len = this.mLength - start;
         }
         start = start + this.mStart;
-        return new BlockReader(BUFFER, start, len);
+        return new BlockReader(BUFFER, mByteBuffer, start, len);
     }
     public boolean isAvailable(){
         if(mIsClosed){
@@ -185,6 +217,16 @@ public class BlockReader extends InputStream {
         }
         synchronized (mLock){
             int actualPosition = mStart + mPosition;
+            ByteBuffer byteBuffer = this.mByteBuffer;
+            if(byteBuffer != null){
+                int available = mLength - mPosition;
+                if(length > available){
+                    length = available;
+                }
+                readBuffer(byteBuffer, actualPosition, bytes, start, length);
+                mPosition += length;
+                return length;
+            }
             int i;
             for(i = 0; i < length; i++){
                 bytes[start + i] = BUFFER[actualPosition + i];
@@ -214,7 +256,13 @@ public class BlockReader extends InputStream {
         }
         synchronized (mLock){
             int actPos = mStart + i;
-            int val = BUFFER[actPos] & 0xff;
+            int val;
+            ByteBuffer byteBuffer = this.mByteBuffer;
+            if(byteBuffer != null){
+                val = byteBuffer.get(actPos) & 0xff;
+            }else {
+                val = BUFFER[actPos] & 0xff;
+            }
             mPosition ++;
             return val;
         }
@@ -243,6 +291,7 @@ public class BlockReader extends InputStream {
     public void close(){
         mIsClosed=true;
         BUFFER=null;
+        mByteBuffer=null;
         mMark=0;
     }
     @Override
@@ -275,6 +324,34 @@ public class BlockReader extends InputStream {
     }
 
 
+    private static void readBuffer(ByteBuffer byteBuffer, int position, byte[] bytes, int offset, int length){
+        ByteBuffer buffer = byteBuffer.duplicate();
+        ((Buffer) buffer).position(position);
+        buffer.get(bytes, offset, length);
+    }
+    private static ByteBuffer loadByteBuffer(InputStream in) throws IOException {
+        if(in instanceof ByteBufferInputStream){
+            ByteBufferInputStream bufferInputStream = (ByteBufferInputStream) in;
+            ByteBuffer byteBuffer = bufferInputStream.getByteBuffer();
+            bufferInputStream.skip(byteBuffer.remaining());
+            return byteBuffer;
+        }
+        return ByteBuffer.wrap(loadBuffer(in));
+    }
+    private static ByteBuffer loadByteBuffer(InputStream in, int length) throws IOException {
+        if(in instanceof ByteBufferInputStream){
+            ByteBufferInputStream bufferInputStream = (ByteBufferInputStream) in;
+            ByteBuffer byteBuffer = bufferInputStream.getByteBuffer();
+            if(byteBuffer.remaining() < length){
+                throw new IOException("Read length is less than expected: length="
+                        +length+", read="+byteBuffer.remaining());
+            }
+            ((Buffer) byteBuffer).limit(length);
+            bufferInputStream.skip(length);
+            return byteBuffer;
+        }
+        return ByteBuffer.wrap(loadBuffer(in, length));
+    }
     private static byte[] loadBuffer(File file) throws IOException {
         FileInputStream in=new FileInputStream(file);
         byte[] result = loadBuffer(in);
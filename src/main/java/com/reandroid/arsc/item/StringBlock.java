@@ -22,6 +22,10 @@ import java.nio.charset.StandardCharsets;
 
 public abstract class StringBlock extends BlockItem implements StringReference {
 
+    /**
+     * Decoded string, or {@link #PENDING_DECODE} until first {@link #get()} after bytes change.
+     * Decoding is idempotent so concurrent first reads are harmless
+     * */
     private String mCache;
 
     public StringBlock() {
@@ -29,7 +33,12 @@ public abstract class StringBlock extends BlockItem implements StringReference {
         mCache = StringsUtil.EMPTY;
     }
     public String get(){
-        return mCache;
+        String text = mCache;
+        if(text == PENDING_DECODE){
+            text = decodeString(getBytesInternal());
+            mCache = text;
+        }
+        return text;
     }
     public void set(String text){
         set(text, true);
@@ -38,7 +47,7 @@ public abstract class StringBlock extends BlockItem implements StringReference {
         if(text == null || text.length() == 0){
             text = StringsUtil.EMPTY;
         }
-        String old = this.mCache;
+        String old = get();
         boolean firstTime = countBytes() == 0;
         if(firstTime) {
             old = null;
@@ -56,7 +65,7 @@ public abstract class StringBlock extends BlockItem implements StringReference {
         setBytesInternal(bytes, false);
     }
     protected void onBytesChanged(){
-        mCache = decodeString(getBytesInternal());
+        mCache = PENDING_DECODE;
     }
     protected void onStringChanged(String old, String text){
     }
@@ -74,5 +83,8 @@ public abstract class StringBlock extends BlockItem implements StringReference {
         return get();
     }
 
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String PENDING_DECODE = new String();
+
     public static final CharsetDecoder UTF8_DECODER = StandardCharsets.UTF_8.newDecoder();
 }
@@ -16,7 +16,6 @@
 package com.reandroid.arsc.item;
 
 import com.reandroid.arsc.base.Block;
-import com.reandroid.arsc.coder.ThreeByteCharsetDecoder;
 import com.reandroid.arsc.coder.XmlSanitizer;
 import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.arsc.list.StringItemList;
@@ -26,15 +25,12 @@ import com.reandroid.json.JSONObject;
 import com.reandroid.utils.CompareUtil;
 import com.reandroid.utils.HashSetStore;
 import com.reandroid.utils.ObjectsUtil;
+import com.reandroid.utils.StringCodec;
 import com.reandroid.utils.collection.ComputeIterator;
 import com.reandroid.xml.StyleDocument;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
-import java.nio.charset.CharsetDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.function.Predicate;
@@ -223,9 +219,11 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
     }
     public void setUtf8(boolean utf8) {
         if (utf8 != mUtf8) {
+            boolean hasBytes = countBytes() != 0;
+            String text = hasBytes ? get() : null;
             mUtf8 = utf8;
-            if (countBytes() != 0) {
-                writeStringBytes(get());
+            if (hasBytes) {
+                writeStringBytes(text);
             }
         }
     }
@@ -245,14 +243,10 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
         byte[] bytes = new byte[4];
         reader.readFully(bytes);
         reader.offset(-4);
-        int[] lengthResult;
         if (isUtf8()) {
-            lengthResult = decodeUtf8StringByteLength(bytes);
-        } else {
-            lengthResult = decodeUtf16StringByteLength(bytes);
+            return utf8DataOffset(bytes) + utf8DataLength(bytes) + 1;
         }
-        int add = isUtf8() ? 1:2;
-        return lengthResult[0] + lengthResult[1] + add;
+        return utf16DataOffset(bytes) + utf16DataLength(bytes) + 2;
     }
     @Override
     protected String decodeString(byte[] bytes) {
@@ -261,9 +255,9 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
     @Override
     protected byte[] encodeString(String str) {
         if (mUtf8) {
-            return encodeUtf8ToBytes(str);
+            return encodeUtf8(str);
         } else {
-            return encodeUtf16ToBytes(str);
+            return encodeUtf16(str);
         }
     }
     private String decodeString(byte[] encodedBytes, boolean isUtf8) {
@@ -273,36 +267,12 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
             }
             return "";
         }
-        int[] offLen;
-        if (isUtf8) {
-            offLen = decodeUtf8StringByteLength(encodedBytes);
-        } else {
-            offLen = decodeUtf16StringByteLength(encodedBytes);
-        }
-        CharsetDecoder charsetDecoder;
         if (isUtf8) {
-            charsetDecoder = UTF8_DECODER;
-        } else {
-            charsetDecoder = UTF16LE_DECODER;
-        }
-        try {
-            ByteBuffer buffer = ByteBuffer.wrap(encodedBytes, offLen[0], offLen[1]);
-            return charsetDecoder.decode(buffer).toString();
-        } catch (CharacterCodingException ex) {
-            if (isUtf8) {
-                return tryThreeByteDecoder(encodedBytes, offLen[0], offLen[1]);
-            }
-            return new String(encodedBytes, offLen[0], offLen[1], StandardCharsets.UTF_16LE);
-        }
-    }
-    private String tryThreeByteDecoder(byte[] bytes, int offset, int length) {
-        try {
-            ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, offset, length);
-            CharBuffer charBuffer = DECODER_3B.decode(byteBuffer);
-            return charBuffer.toString();
-        } catch (CharacterCodingException e) {
-            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+            return StringCodec.decodeUtf8(encodedBytes,
+                    utf8DataOffset(encodedBytes), utf8DataLength(encodedBytes));
         }
+        return StringCodec.decodeUtf16(encodedBytes,
+                utf16DataOffset(encodedBytes), utf16DataLength(encodedBytes));
     }
     public boolean hasStyle() {
         StyleItem styleItem = getStyle();
@@ -459,38 +429,28 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
         return getIndex() + ":" + xml;
     }
 
-    private static int[] decodeUtf8StringByteLength(byte[] lengthBytes) {
-        int offset = 0;
-        int val = lengthBytes[offset];
-        int length;
+    private static int utf8DataOffset(byte[] bytes) {
+        int offset = (bytes[0] & 0x80) != 0 ? 2 : 1;
+        return (bytes[offset] & 0x80) != 0 ? offset + 2 : offset + 1;
+    }
+    private static int utf8DataLength(byte[] bytes) {
+        int offset = (bytes[0] & 0x80) != 0 ? 2 : 1;
+        int val = bytes[offset] & 0xff;
         if ((val & 0x80) != 0) {
-            offset += 2;
-        } else {
-            offset += 1;
+            return ((val & 0x7f) << 8) | (bytes[offset + 1] & 0xff);
         }
-        val = lengthBytes[offset];
-        offset += 1;
-        if ((val & 0x80) != 0) {
-            int low = (lengthBytes[offset] & 0xFF);
-            length = val & 0x7F;
-            length = length << 8;
-            length = length + low;
-            offset += 1;
-        } else {
-            length = val;
-        }
-        return new int[] { offset, length};
+        return val;
+    }
+    private static int utf16DataOffset(byte[] bytes) {
+        return (bytes[1] & 0x80) != 0 ? 4 : 2;
     }
-    private static int[] decodeUtf16StringByteLength(byte[] lengthBytes) {
-        int val = ((lengthBytes[1] & 0xFF) << 8 | lengthBytes[0] & 0xFF);
+    private static int utf16DataLength(byte[] bytes) {
+        int val = (bytes[1] & 0xff) << 8 | bytes[0] & 0xff;
         if ((val & 0x8000) != 0) {
-            int high = (lengthBytes[3] & 0xFF) << 8;
-            int low = (lengthBytes[2] & 0xFF);
-            int len_value =  ((val & 0x7FFF) << 16) + (high + low);
-            return new int[] {4, len_value * 2};
-
+            int low = (bytes[3] & 0xff) << 8 | bytes[2] & 0xff;
+            return (((val & 0x7fff) << 16) + low) * 2;
         }
-        return new int[] {2, val * 2};
+        return val * 2;
     }
     static boolean isNullBytes(byte[] bytes) {
         if (bytes == null) {
@@ -509,94 +469,59 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
     }
 
 
-    private static byte[] encodeUtf8ToBytes(String str) {
+    private static byte[] encodeUtf8(String str) {
+        if (str == null) {
+            return new byte[3];
+        }
+        int charLength = str.length();
+        byte[] encoded = str.getBytes(StandardCharsets.UTF_8);
+        int byteLength = encoded.length;
         byte[] bytes;
-        byte[] lenBytes = new byte[2];
-        if (str != null) {
-            bytes = str.getBytes(StandardCharsets.UTF_8);
-            int strLen = bytes.length;
-            if ((strLen & 0xff80) != 0) {
-                lenBytes = new byte[4];
-                int l2 = strLen & 0xff;
-                int l1 = (strLen-l2) >> 8;
-                lenBytes[3] = (byte) (l2);
-                lenBytes[2] = (byte) (l1 | 0x80);
-                strLen = str.length();
-                l2 = strLen & 0xff;
-                l1 = (strLen - l2) >> 8;
-                lenBytes[1] = (byte) (l2);
-                lenBytes[0] = (byte) (l1 | 0x80);
-            } else {
-                lenBytes = new ShortItem((short) strLen).getBytesInternal();
-                lenBytes[1] = lenBytes[0];
-                lenBytes[0] = (byte) str.length();
-            }
+        int offset;
+        if ((byteLength & 0xff80) != 0) {
+            bytes = new byte[4 + byteLength + 1];
+            bytes[0] = (byte) ((charLength >> 8) | 0x80);
+            bytes[1] = (byte) charLength;
+            bytes[2] = (byte) ((byteLength >> 8) | 0x80);
+            bytes[3] = (byte) byteLength;
+            offset = 4;
         } else {
-            bytes = new byte[0];
+            bytes = new byte[2 + byteLength + 1];
+            bytes[0] = (byte) charLength;
+            bytes[1] = (byte) byteLength;
+            offset = 2;
         }
-        return addBytes(lenBytes, bytes, new byte[1]);
+        System.arraycopy(encoded, 0, bytes, offset, byteLength);
+        return bytes;
     }
-    private static byte[] encodeUtf16ToBytes(String str) {
+    private static byte[] encodeUtf16(String str) {
         if (str == null) {
             return null;
         }
-        byte[] lenBytes;
-        byte[] bytes = getUtf16Bytes(str);
-        int strLen = bytes.length;
-        strLen = strLen / 2;
-        if ((strLen & 0xffff8000) != 0) {
-            lenBytes = new byte[4];
-            int low = strLen & 0xff;
-            int high = (strLen - low) & 0xff00;
-            int rem = strLen - low - high;
-            lenBytes[3] = (byte) (high >> 8);
-            lenBytes[2] = (byte) low;
-            low = rem & 0xff;
-            high = (rem & 0xff00) >> 8;
-            lenBytes[1] = (byte) (high | 0x80);
-            lenBytes[0] = (byte) low;
+        int length = str.length();
+        byte[] bytes;
+        int offset;
+        if ((length & 0xffff8000) != 0) {
+            bytes = new byte[4 + length * 2 + 2];
+            int high = (length >> 16) | 0x8000;
+            bytes[0] = (byte) high;
+            bytes[1] = (byte) (high >> 8);
+            bytes[2] = (byte) length;
+            bytes[3] = (byte) (length >> 8);
+            offset = 4;
         } else {
-            lenBytes = new ShortItem((short) strLen).getBytesInternal();
+            bytes = new byte[2 + length * 2 + 2];
+            bytes[0] = (byte) length;
+            bytes[1] = (byte) (length >> 8);
+            offset = 2;
         }
-        return addBytes(lenBytes, bytes, new byte[2]);
+        StringCodec.encodeUtf16(str, bytes, offset);
+        return bytes;
     }
     static byte[] getUtf16Bytes(String str) {
         return str.getBytes(StandardCharsets.UTF_16LE);
     }
 
-    private static byte[] addBytes(byte[] bytes1, byte[] bytes2, byte[] bytes3) {
-        if (bytes1 == null && bytes2 == null && bytes3 == null) {
-            return null;
-        }
-        int length = 0;
-        if (bytes1 != null) {
-            length = bytes1.length;
-        }
-        if (bytes2 != null) {
-            length += bytes2.length;
-        }
-        if (bytes3 != null) {
-            length += bytes3.length;
-        }
-        byte[] result = new byte[length];
-        int start = 0;
-        if (bytes1 != null) {
-            start = bytes1.length;
-            System.arraycopy(bytes1, 0, result, 0, start);
-        }
-        if (bytes2 != null) {
-            System.arraycopy(bytes2, 0, result, start, bytes2.length);
-            start += bytes2.length;
-        }
-        if (bytes3 != null) {
-            System.arraycopy(bytes3, 0, result, start, bytes3.length);
-        }
-        return result;
-    }
-
-    private static final CharsetDecoder UTF16LE_DECODER = StandardCharsets.UTF_16LE.newDecoder();
-    private static final CharsetDecoder DECODER_3B = ThreeByteCharsetDecoder.INSTANCE;
-
     public static final String NAME_string = ObjectsUtil.of("string");
     public static final String NAME_style = ObjectsUtil.of("style");
 
@@ -17,6 +17,7 @@ package com.reandroid.arsc.pool;
 
 import com.reandroid.arsc.base.Block;
 import com.reandroid.arsc.chunk.PackageBlock;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.item.SpecString;
 import com.reandroid.arsc.value.Entry;
 import com.reandroid.utils.collection.IterableIterator;
@@ -77,6 +78,17 @@ public class SpecStringPool extends StringPool<SpecString>{
     public PackageBlock getPackageBlock(){
         return getParent(PackageBlock.class);
     }
+    @Override
+    public Object getLinkLock(){
+        PackageBlock packageBlock = getPackageBlock();
+        if(packageBlock != null){
+            TableBlock tableBlock = packageBlock.getTableBlock();
+            if(tableBlock != null){
+                return tableBlock.getTableStringPool().getLinkLock();
+            }
+        }
+        return super.getLinkLock();
+    }
 
     @Override
     void linkStrings(){
@@ -51,6 +51,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     private final StyleItemList mArrayStyles;
 
     private final MultiMap<String, T> poolMap;
+    private volatile boolean poolMapLoaded;
     private boolean stringLinkLocked;
 
     StringPool(boolean is_utf8, boolean stringLinkLocked, StringCreator<T> creator) {
@@ -120,7 +121,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     public void clear() {
         getStyleArray().clear();
         getStringsArray().clear();
-        poolMap.clear();
+        resetPoolMap();
     }
     public void sort() {
         ensureStringLinkUnlockedInternal();
@@ -129,14 +130,22 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     public boolean isStringLinkLocked() {
         return stringLinkLocked;
     }
+    /**
+     * Lock held while string references are linked, the pools of a table share the lock
+     * of its TableStringPool (see SpecStringPool). String items are shared across type
+     * blocks, anything adding references in bulk (e.g. lazy inflation of compact entries)
+     * must hold this lock.
+     * */
+    public Object getLinkLock() {
+        return mLock;
+    }
     public void ensureStringLinkUnlockedInternal() {
-        synchronized (mLock) {
+        synchronized (getLinkLock()) {
             if (!stringLinkLocked) {
                 return;
             }
             stringLinkLocked = false;
             linkStrings();
-            reloadPoolMap();
         }
     }
     void linkStrings() {
@@ -167,16 +176,31 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
             createNewString(str);
         }
     }
-    private void reloadPoolMap() {
-        if (poolMap.size() == 0) {
+    /**
+     * String to item index is built on first lookup, loading a pool decodes no string.
+     * */
+    private MultiMap<String, T> getPoolMap() {
+        if (!poolMapLoaded) {
+            synchronized (mLock) {
+                if (!poolMapLoaded) {
+                    poolMap.clear();
+                    poolMap.setInitialSize(size());
+                    poolMap.putAll(StringItem::getXml, iterator());
+                    poolMapLoaded = true;
+                }
+            }
+        }
+        return poolMap;
+    }
+    private void resetPoolMap() {
+        synchronized (mLock) {
+            poolMapLoaded = false;
             poolMap.clear();
-            poolMap.setInitialSize(size());
-            poolMap.putAll(StringItem::getXml, iterator());
         }
     }
     public void compressDuplicates() {
         ensureStringLinkUnlockedInternal();
-        poolMap.findDuplicates(CompareUtil.getComparableComparator(), list -> {
+        getPoolMap().findDuplicates(CompareUtil.getComparableComparator(), list -> {
             T first = list.get(0);
             for(int i = 1; i < list.size(); i++) {
                 T item = list.get(i);
@@ -214,15 +238,15 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
         return null;
     }
     public boolean contains(String str) {
-        return poolMap.containsKey(str);
+        return getPoolMap().containsKey(str);
     }
     public void onStringChanged(String old, T stringItem) {
-        if (!stringLinkLocked) {
+        if (poolMapLoaded) {
             poolMap.updateKey(old, stringItem.getXml(), stringItem);
         }
     }
     public void onStringRemoved(T stringItem) {
-        if (!stringLinkLocked) {
+        if (poolMapLoaded) {
             poolMap.remove(stringItem.getXml(), stringItem);
         }
     }
@@ -240,17 +264,17 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     public final Iterator<T> getAll(String str) {
         ensureStringLinkUnlockedInternal();
         if (str == null) {
-            return FilterIterator.of(poolMap.getAll(StringsUtil.EMPTY),
+            return FilterIterator.of(getPoolMap().getAll(StringsUtil.EMPTY),
                     StringItem::isNull);
         }
-        return poolMap.getAll(str);
+        return getPoolMap().getAll(str);
     }
     public final T get(String str, Predicate<? super T> predicate) {
         ensureStringLinkUnlockedInternal();
         if (str == null) {
             str = StringsUtil.EMPTY;
         }
-        return poolMap.get(str, predicate);
+        return getPoolMap().get(str, predicate);
     }
     public final T getString(String str) {
         return CollectionUtil.getFirst(getAll(str));
@@ -336,7 +360,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     @Override
     public void onChunkLoaded() {
         linkStylesInternal();
-        reloadPoolMap();
+        resetPoolMap();
     }
 
     public void onPreAddInternal(int index, T item) {
@@ -369,7 +393,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     }
 
     private boolean containsInternal(T item) {
-        return poolMap.containsValue(item.getXml(),
+        return getPoolMap().containsValue(item.getXml(),
                 stringItem -> stringItem.compareTo(item) == 0);
     }
     public void merge(StringPool<T> stringPool) {
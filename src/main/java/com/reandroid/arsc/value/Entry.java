@@ -21,6 +21,7 @@ import com.reandroid.arsc.base.BlockCounter;
 import com.reandroid.arsc.base.Creator;
 import com.reandroid.arsc.chunk.PackageBlock;
 import com.reandroid.arsc.chunk.SpecBlock;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.chunk.TypeBlock;
 import com.reandroid.arsc.container.SpecTypePair;
 import com.reandroid.arsc.io.BlockReader;
@@ -561,7 +562,7 @@ public class Entry extends Block implements JSONConvert<JSONObject> {
     @Override
     public void onReadBytes(BlockReader reader) throws IOException {
         TableEntry<?, ?> tableEntry = createTableEntry(reader);
-        setTableEntry(tableEntry);
+        setTableEntryInternal(tableEntry);
         tableEntry.readBytes(reader);
     }
 
@@ -572,6 +573,23 @@ public class Entry extends Block implements JSONConvert<JSONObject> {
         return getTableEntry() instanceof ResTableEntry;
     }
     public void setTableEntry(TableEntry<?, ?> tableEntry){
+        if(tableEntry == this.mTableEntry){
+            return;
+        }
+        boolean removed = this.mTableEntry != null;
+        setTableEntryInternal(tableEntry);
+        PackageBlock packageBlock = getPackageBlock();
+        if(packageBlock != null){
+            TableBlock tableBlock = packageBlock.getTableBlock();
+            if(tableBlock != null){
+                if(removed){
+                    tableBlock.onModified();
+                }
+                tableBlock.onValueModified();
+            }
+        }
+    }
+    private void setTableEntryInternal(TableEntry<?, ?> tableEntry){
         if(tableEntry == this.mTableEntry){
             return;
         }
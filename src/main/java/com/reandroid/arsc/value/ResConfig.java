@@ -61,6 +61,30 @@ public class ResConfig extends ResConfigBase implements JSONConvert<JSONObject>,
         }
         return true;
     }
+    /**
+     * Returns true if resources of this config can be used on a device described by
+     * the given config, same as ResTable_config::match of AOSP
+     * */
+    public boolean match(ResConfig device){
+        if(device == null){
+            return isDefault();
+        }
+        return ResConfigMatcher.match(this, device);
+    }
+    /**
+     * Returns true if this config is a better choice than the other for the requested
+     * device config, both configs are expected to {@link #match(ResConfig)} the requested.
+     * Same as ResTable_config::isBetterThan of AOSP
+     * */
+    public boolean isBetterThan(ResConfig resConfig, ResConfig requested){
+        if(resConfig == null){
+            return true;
+        }
+        if(requested == null){
+            requested = getDefault();
+        }
+        return ResConfigMatcher.isBetterThan(this, resConfig, requested);
+    }
     public void copyFrom(ResConfig resConfig){
         if(resConfig == this || resConfig == null){
             return;
@@ -0,0 +1,375 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.value;
+
+/**
+ * Device config matching and precedence rules, ported from ResTable_config::match
+ * and ResTable_config::isBetterThan of AOSP ResourceTypes.cpp
+ * */
+class ResConfigMatcher {
+
+    static boolean match(ResConfig config, ResConfig device){
+        int mcc = config.getMcc();
+        if(mcc != 0 && mcc != device.getMcc()){
+            return false;
+        }
+        int mnc = config.getMnc();
+        if(mnc != 0 && mnc != device.getMnc()){
+            return false;
+        }
+        if(!matchLocale(config, device)){
+            return false;
+        }
+        int screenLayout = config.getScreenLayout();
+        int deviceLayout = device.getScreenLayout();
+        if(!matchExact(screenLayout, deviceLayout, ResConfig.ScreenLayoutDir.MASK)){
+            return false;
+        }
+        int size = screenLayout & ResConfig.ScreenLayoutSize.MASK;
+        if(size != 0 && size > (deviceLayout & ResConfig.ScreenLayoutSize.MASK)){
+            return false;
+        }
+        if(!matchExact(screenLayout, deviceLayout, ResConfig.ScreenLayoutLong.MASK)){
+            return false;
+        }
+        int uiMode = config.getUiMode();
+        int deviceUiMode = device.getUiMode();
+        if(!matchExact(uiMode, deviceUiMode, ResConfig.UiModeType.MASK)
+                || !matchExact(uiMode, deviceUiMode, ResConfig.UiModeNight.MASK)){
+            return false;
+        }
+        if(!matchNotGreater(config.getSmallestScreenWidthDp(), device.getSmallestScreenWidthDp())){
+            return false;
+        }
+        if(!matchExact(config.getScreenLayout2(), device.getScreenLayout2(), ResConfig.ScreenLayoutRound.MASK)){
+            return false;
+        }
+        int colorMode = config.getColorMode();
+        int deviceColorMode = device.getColorMode();
+        if(!matchExact(colorMode, deviceColorMode, ResConfig.ColorModeHdr.MASK)
+                || !matchExact(colorMode, deviceColorMode, ResConfig.ColorModeWide.MASK)){
+            return false;
+        }
+        if(!matchNotGreater(config.getScreenWidthDp(), device.getScreenWidthDp())
+                || !matchNotGreater(config.getScreenHeightDp(), device.getScreenHeightDp())){
+            return false;
+        }
+        if(!matchExact(config.getOrientationValue(), device.getOrientationValue(), 0xff)
+                || !matchExact(config.getTouchscreenValue(), device.getTouchscreenValue(), 0xff)){
+            return false;
+        }
+        int inputFlags = config.getInputFlagsValue();
+        int deviceInputFlags = device.getInputFlagsValue();
+        int keysHidden = inputFlags & ResConfig.InputFlagsKeysHidden.MASK;
+        int deviceKeysHidden = deviceInputFlags & ResConfig.InputFlagsKeysHidden.MASK;
+        if(keysHidden != 0 && keysHidden != deviceKeysHidden){
+            // keysexposed resources are also usable while soft keyboard is shown
+            if(keysHidden != KEYS_EXPOSED || deviceKeysHidden != KEYS_SOFT){
+                return false;
+            }
+        }
+        if(!matchExact(inputFlags, deviceInputFlags, ResConfig.InputFlagsNavHidden.MASK)){
+            return false;
+        }
+        if(!matchExact(config.getKeyboardValue(), device.getKeyboardValue(), 0xff)
+                || !matchExact(config.getNavigationValue(), device.getNavigationValue(), 0xff)){
+            return false;
+        }
+        if(!matchNotGreater(config.getScreenWidth(), device.getScreenWidth())
+                || !matchNotGreater(config.getScreenHeight(), device.getScreenHeight())){
+            return false;
+        }
+        if(!matchNotGreater(config.getSdkVersion(), device.getSdkVersion())){
+            return false;
+        }
+        if(!matchExact(config.getMinorVersion(), device.getMinorVersion(), 0xffff)){
+            return false;
+        }
+        return matchExact(config.getGenderValue(), device.getGenderValue(), ResConfig.Gender.MASK);
+    }
+    static boolean isBetterThan(ResConfig config, ResConfig other, ResConfig requested){
+        if(config.getMcc() != other.getMcc() && requested.getMcc() != 0){
+            return config.getMcc() != 0;
+        }
+        if(config.getMnc() != other.getMnc() && requested.getMnc() != 0){
+            return config.getMnc() != 0;
+        }
+        if(isLocaleBetterThan(config, other, requested)){
+            return true;
+        }
+        if(isLocaleBetterThan(other, config, requested)){
+            return false;
+        }
+        int layout = config.getScreenLayout();
+        int otherLayout = other.getScreenLayout();
+        int requestedLayout = requested.getScreenLayout();
+        int mask = ResConfig.ScreenLayoutDir.MASK;
+        if(((layout ^ otherLayout) & mask) != 0 && (requestedLayout & mask) != 0){
+            return (layout & mask) > (otherLayout & mask);
+        }
+        int smallest = config.getSmallestScreenWidthDp();
+        int otherSmallest = other.getSmallestScreenWidthDp();
+        if(smallest != otherSmallest){
+            return smallest > otherSmallest;
+        }
+        int delta = 0;
+        int otherDelta = 0;
+        int requestedWidth = requested.getScreenWidthDp();
+        if(requestedWidth != 0){
+            delta += requestedWidth - config.getScreenWidthDp();
+            otherDelta += requestedWidth - other.getScreenWidthDp();
+        }
+        int requestedHeight = requested.getScreenHeightDp();
+        if(requestedHeight != 0){
+            delta += requestedHeight - config.getScreenHeightDp();
+            otherDelta += requestedHeight - other.getScreenHeightDp();
+        }
+        if(delta != otherDelta){
+            return delta < otherDelta;
+        }
+        mask = ResConfig.ScreenLayoutSize.MASK;
+        if(((layout ^ otherLayout) & mask) != 0 && (requestedLayout & mask) != 0){
+            int size = layout & mask;
+            int otherSize = otherLayout & mask;
+            int fixedSize = size;
+            int fixedOtherSize = otherSize;
+            if((requestedLayout & mask) >= SCREEN_SIZE_NORMAL){
+                if(fixedSize == 0){
+                    fixedSize = SCREEN_SIZE_NORMAL;
+                }
+                if(fixedOtherSize == 0){
+                    fixedOtherSize = SCREEN_SIZE_NORMAL;
+                }
+            }
+            if(fixedSize == fixedOtherSize){
+                return size != 0;
+            }
+            return fixedSize > fixedOtherSize;
+        }
+        mask = ResConfig.ScreenLayoutLong.MASK;
+        if(((layout ^ otherLayout) & mask) != 0 && (requestedLayout & mask) != 0){
+            return (layout & mask) != 0;
+        }
+        mask = ResConfig.ScreenLayoutRound.MASK;
+        if(isFlagBetter(config.getScreenLayout2(), other.getScreenLayout2(),
+                requested.getScreenLayout2(), mask)){
+            return (config.getScreenLayout2() & mask) != 0;
+        }
+        int colorMode = config.getColorMode();
+        int otherColorMode = other.getColorMode();
+        int requestedColorMode = requested.getColorMode();
+        mask = ResConfig.ColorModeHdr.MASK;
+        if(isFlagBetter(colorMode, otherColorMode, requestedColorMode, mask)){
+            return (colorMode & mask) != 0;
+        }
+        mask = ResConfig.ColorModeWide.MASK;
+        if(isFlagBetter(colorMode, otherColorMode, requestedColorMode, mask)){
+            return (colorMode & mask) != 0;
+        }
+        if(isFlagBetter(config.getOrientationValue(), other.getOrientationValue(),
+                requested.getOrientationValue(), 0xff)){
+            return config.getOrientationValue() != 0;
+        }
+        int uiMode = config.getUiMode();
+        int otherUiMode = other.getUiMode();
+        int requestedUiMode = requested.getUiMode();
+        mask = ResConfig.UiModeType.MASK;
+        if(isFlagBetter(uiMode, otherUiMode, requestedUiMode, mask)){
+            return (uiMode & mask) != 0;
+        }
+        mask = ResConfig.UiModeNight.MASK;
+        if(isFlagBetter(uiMode, otherUiMode, requestedUiMode, mask)){
+            return (uiMode & mask) != 0;
+        }
+        if(isFlagBetter(config.getGenderValue(), other.getGenderValue(),
+                requested.getGenderValue(), ResConfig.Gender.MASK)){
+            return config.getGenderValue() != 0;
+        }
+        int density = config.getDensityValue();
+        int otherDensity = other.getDensityValue();
+        if(density != otherDensity){
+            return isDensityBetter(density, otherDensity, requested.getDensityValue());
+        }
+        if(isFlagBetter(config.getTouchscreenValue(), other.getTouchscreenValue(),
+                requested.getTouchscreenValue(), 0xff)){
+            return config.getTouchscreenValue() != 0;
+        }
+        int inputFlags = config.getInputFlagsValue();
+        int otherInputFlags = other.getInputFlagsValue();
+        int requestedInputFlags = requested.getInputFlagsValue();
+        mask = ResConfig.InputFlagsKeysHidden.MASK;
+        int keysHidden = inputFlags & mask;
+        int otherKeysHidden = otherInputFlags & mask;
+        int requestedKeysHidden = requestedInputFlags & mask;
+        if(keysHidden != otherKeysHidden && requestedKeysHidden != 0){
+            if(keysHidden == 0){
+                return false;
+            }
+            if(otherKeysHidden == 0){
+                return true;
+            }
+            if(requestedKeysHidden == keysHidden){
+                return true;
+            }
+            if(requestedKeysHidden == otherKeysHidden){
+                return false;
+            }
+        }
+        mask = ResConfig.InputFlagsNavHidden.MASK;
+        if(isFlagBetter(inputFlags, otherInputFlags, requestedInputFlags, mask)){
+            return (inputFlags & mask) != 0;
+        }
+        if(isFlagBetter(config.getKeyboardValue(), other.getKeyboardValue(),
+                requested.getKeyboardValue(), 0xff)){
+            return config.getKeyboardValue() != 0;
+        }
+        if(isFlagBetter(config.getNavigationValue(), other.getNavigationValue(),
+                requested.getNavigationValue(), 0xff)){
+            return config.getNavigationValue() != 0;
+        }
+        delta = 0;
+        otherDelta = 0;
+        requestedWidth = requested.getScreenWidth();
+        if(requestedWidth != 0){
+            delta += requestedWidth - config.getScreenWidth();
+            otherDelta += requestedWidth - other.getScreenWidth();
+        }
+        requestedHeight = requested.getScreenHeight();
+        if(requestedHeight != 0){
+            delta += requestedHeight - config.getScreenHeight();
+            otherDelta += requestedHeight - other.getScreenHeight();
+        }
+        if(delta != otherDelta){
+            return delta < otherDelta;
+        }
+        int sdk = config.getSdkVersion();
+        int otherSdk = other.getSdkVersion();
+        if(sdk != otherSdk && requested.getSdkVersion() != 0){
+            return sdk > otherSdk;
+        }
+        if(isFlagBetter(config.getMinorVersion(), other.getMinorVersion(),
+                requested.getMinorVersion(), 0xffff)){
+            return config.getMinorVersion() != 0;
+        }
+        return false;
+    }
+
+    private static boolean matchLocale(ResConfig config, ResConfig device){
+        return matchBytes(config.getLanguageBytes(), device.getLanguageBytes())
+                && matchBytes(config.getRegionBytes(), device.getRegionBytes())
+                && matchBytes(config.getLocaleScriptBytes(), device.getLocaleScriptBytes())
+                && matchBytes(config.getLocaleVariantBytes(), device.getLocaleVariantBytes());
+    }
+    /**
+     * Simplified form of ResTable_config::isLocaleBetterThan, both configs are
+     * expected to match the requested locale thus each part is either empty or
+     * equal to the requested one.
+     * */
+    private static boolean isLocaleBetterThan(ResConfig config, ResConfig other, ResConfig requested){
+        byte[] requestedLanguage = requested.getLanguageBytes();
+        if(isZero(requestedLanguage) && isZero(requested.getRegionBytes())){
+            return false;
+        }
+        int i = compareLocalePart(config.getLanguageBytes(), other.getLanguageBytes());
+        if(i == 0){
+            i = compareLocalePart(config.getRegionBytes(), other.getRegionBytes());
+        }
+        if(i == 0){
+            i = compareLocalePart(config.getLocaleScriptBytes(), other.getLocaleScriptBytes());
+        }
+        if(i == 0){
+            i = compareLocalePart(config.getLocaleVariantBytes(), other.getLocaleVariantBytes());
+        }
+        return i > 0;
+    }
+    private static int compareLocalePart(byte[] bytes, byte[] other){
+        boolean empty = isZero(bytes);
+        boolean otherEmpty = isZero(other);
+        if(empty == otherEmpty){
+            return 0;
+        }
+        return empty ? -1 : 1;
+    }
+    private static boolean isDensityBetter(int density, int otherDensity, int requested){
+        if(density == 0){
+            density = DENSITY_MEDIUM;
+        }
+        if(otherDensity == 0){
+            otherDensity = DENSITY_MEDIUM;
+        }
+        if(density == DENSITY_ANY){
+            return true;
+        }
+        if(otherDensity == DENSITY_ANY){
+            return false;
+        }
+        if(requested == 0 || requested == DENSITY_ANY){
+            requested = DENSITY_MEDIUM;
+        }
+        int high = density;
+        int low = otherDensity;
+        boolean bigger = true;
+        if(low > high){
+            high = otherDensity;
+            low = density;
+            bigger = false;
+        }
+        if(requested >= high){
+            return bigger;
+        }
+        if(low >= requested){
+            return !bigger;
+        }
+        // prefer scaling down the higher density over scaling up the lower one
+        if(((2 * low) - requested) * high > requested * requested){
+            return !bigger;
+        }
+        return bigger;
+    }
+    private static boolean isFlagBetter(int value, int other, int requested, int mask){
+        return ((value ^ other) & mask) != 0 && (requested & mask) != 0;
+    }
+    private static boolean matchExact(int value, int device, int mask){
+        value = value & mask;
+        return value == 0 || value == (device & mask);
+    }
+    private static boolean matchNotGreater(int value, int device){
+        return value == 0 || value <= device;
+    }
+    private static boolean matchBytes(byte[] bytes, byte[] device){
+        if(isZero(bytes)){
+            return true;
+        }
+        if(device == null || device.length != bytes.length){
+            return false;
+        }
+        for(int i = 0; i < bytes.length; i++){
+            if(bytes[i] != device[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+    private static boolean isZero(byte[] bytes){
+        return ResConfigBase.isNullBytes(bytes);
+    }
+
+    private static final int KEYS_EXPOSED = 0x01;
+    private static final int KEYS_SOFT = 0x03;
+    private static final int SCREEN_SIZE_NORMAL = 0x02;
+    private static final int DENSITY_MEDIUM = 160;
+    private static final int DENSITY_ANY = 0xfffe;
+}
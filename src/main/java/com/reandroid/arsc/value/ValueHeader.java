@@ -17,6 +17,7 @@ package com.reandroid.arsc.value;
 
 import com.reandroid.arsc.base.Block;
 import com.reandroid.arsc.chunk.ParentChunk;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.arsc.item.*;
 import com.reandroid.arsc.pool.SpecStringPool;
@@ -103,6 +104,7 @@ public class ValueHeader extends BlockItem implements JSONConvert<JSONObject> {
         unLinkStringReference();
         writeKey(key);
         linkStringReference();
+        onKeyChanged();
     }
     void writeKey(int key) {
         writeKey(key, isCompact());
@@ -137,6 +139,13 @@ public class ValueHeader extends BlockItem implements JSONConvert<JSONObject> {
         }
         writeKey(key);
         linkStringReference(stringItem);
+        onKeyChanged();
+    }
+    private void onKeyChanged(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock != null){
+            tableBlock.onModified();
+        }
     }
     private boolean ignoreUpdateKey(StringItem stringItem){
         int key = getKey();
@@ -86,6 +86,10 @@ public abstract class ValueItem extends BlockItem implements Value,
         unLinkStringReference();
     }
     protected void onDataChanged(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock != null){
+            tableBlock.onValueModified();
+        }
     }
     public void refresh(){
         updateSize();
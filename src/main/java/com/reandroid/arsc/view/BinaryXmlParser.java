@@ -0,0 +1,804 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.view;
+
+import android.content.res.XmlResourceParser;
+import com.reandroid.archive.InputSource;
+import com.reandroid.arsc.chunk.ChunkType;
+import com.reandroid.arsc.coder.ValueCoder;
+import com.reandroid.arsc.coder.XmlSanitizer;
+import com.reandroid.arsc.value.ValueType;
+import com.reandroid.utils.io.IOUtil;
+import com.reandroid.xml.XMLUtil;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Forward-only parser reading binary xml chunks straight from a buffer, no
+ * {@link com.reandroid.arsc.chunk.xml.ResXmlDocument} is built. Strings are decoded on
+ * first use and cached by index, attributes are read in place from the current element
+ * chunk. Names, namespaces and values are reported the same way as
+ * {@link com.reandroid.arsc.chunk.xml.ResXmlPullParser}, except references are decoded
+ * as hex ids since there is no table to resolve them and styled strings are reported
+ * as raw text.
+ * */
+public class BinaryXmlParser implements XmlResourceParser {
+
+    private final ByteBuffer buffer;
+    private final int end;
+    private final StringPoolView stringPool;
+    private final int resourceMapOffset;
+    private final int resourceMapCount;
+    private int position;
+
+    private int eventType;
+    private int depth;
+    private boolean pendingEndTag;
+    private int lineNumber;
+    private int elementOffset;
+    private int attributeStart;
+    private int attributeSize;
+    private int attributeCount;
+    private int textIndex;
+
+    private int[] namespaces;
+    private int namespaceSize;
+    private int[] namespaceCounts;
+
+    private String[] prefixedNames;
+    private int[] prefixedUris;
+    private String[] xmlnsNames;
+
+    private boolean processNamespaces;
+    private boolean reportNamespaceAttrs;
+    private Object location;
+
+    private BinaryXmlParser(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if(buffer.remaining() < 8 || buffer.getShort(0) != ChunkType.XML.ID){
+            throw new IOException("Not a binary xml chunk");
+        }
+        this.end = Math.min(buffer.getInt(4), buffer.limit());
+        int position = buffer.getShort(2) & 0xffff;
+        StringPoolView stringPool = null;
+        int mapOffset = 0;
+        int mapCount = 0;
+        while (position + 8 <= end){
+            short type = buffer.getShort(position);
+            int chunkSize = buffer.getInt(position + 4);
+            if(chunkSize < 8){
+                break;
+            }
+            if(type == ChunkType.STRING.ID){
+                if(stringPool == null){
+                    stringPool = new StringPoolView(buffer, position);
+                }
+            }else if(type == ChunkType.XML_RESOURCE_MAP.ID){
+                int headerSize = buffer.getShort(position + 2) & 0xffff;
+                mapOffset = position + headerSize;
+                mapCount = (chunkSize - headerSize) / 4;
+            }else {
+                break;
+            }
+            position += chunkSize;
+        }
+        if(stringPool == null){
+            throw new IOException("Missing xml string pool");
+        }
+        this.stringPool = stringPool;
+        this.resourceMapOffset = mapOffset;
+        this.resourceMapCount = mapCount;
+        this.position = position;
+
+        this.eventType = START_DOCUMENT;
+        this.textIndex = -1;
+        this.namespaces = new int[8];
+        this.namespaceCounts = new int[16];
+        this.processNamespaces = true;
+        this.reportNamespaceAttrs = true;
+    }
+
+    public StringPoolView getStringPool() {
+        return stringPool;
+    }
+    /**
+     * Resource id of string pool entry at index (from resource map chunk), 0 if not mapped
+     * */
+    public int getResourceId(int stringIndex){
+        if(stringIndex < 0 || stringIndex >= resourceMapCount){
+            return 0;
+        }
+        return buffer.getInt(resourceMapOffset + stringIndex * 4);
+    }
+
+    @Override
+    public int next() throws XmlPullParserException, IOException {
+        if(eventType == END_DOCUMENT){
+            throw new XmlPullParserException("Finished", this, null);
+        }
+        if(pendingEndTag){
+            pendingEndTag = false;
+            depth --;
+        }
+        ByteBuffer buffer = this.buffer;
+        int position = this.position;
+        int end = this.end;
+        textIndex = -1;
+        while (position + 8 <= end){
+            short type = buffer.getShort(position);
+            int headerSize = buffer.getShort(position + 2) & 0xffff;
+            int chunkSize = buffer.getInt(position + 4);
+            if(chunkSize < 8 || headerSize < 8){
+                break;
+            }
+            int ext = position + headerSize;
+            this.position = position + chunkSize;
+            if(type == ChunkType.XML_START_NAMESPACE.ID){
+                pushNamespace(buffer.getInt(ext), buffer.getInt(ext + 4));
+            }else if(type == ChunkType.XML_END_NAMESPACE.ID){
+                if(namespaceSize > namespaceCounts[depth]){
+                    namespaceSize --;
+                }
+            }else if(type == ChunkType.XML_START_ELEMENT.ID){
+                lineNumber = buffer.getInt(position + 8);
+                startElement(ext);
+                return eventType = START_TAG;
+            }else if(type == ChunkType.XML_END_ELEMENT.ID){
+                lineNumber = buffer.getInt(position + 8);
+                elementOffset = ext;
+                attributeCount = 0;
+                pendingEndTag = true;
+                return eventType = END_TAG;
+            }else if(type == ChunkType.XML_CDATA.ID){
+                lineNumber = buffer.getInt(position + 8);
+                textIndex = buffer.getInt(ext);
+                attributeCount = 0;
+                return eventType = TEXT;
+            }
+            position = this.position;
+        }
+        this.position = end;
+        attributeCount = 0;
+        elementOffset = 0;
+        return eventType = END_DOCUMENT;
+    }
+    private void startElement(int ext){
+        ByteBuffer buffer = this.buffer;
+        elementOffset = ext;
+        attributeStart = ext + (buffer.getShort(ext + 8) & 0xffff);
+        attributeSize = buffer.getShort(ext + 10) & 0xffff;
+        attributeCount = buffer.getShort(ext + 12) & 0xffff;
+        depth ++;
+        if(depth >= namespaceCounts.length){
+            namespaceCounts = Arrays.copyOf(namespaceCounts, depth * 2);
+        }
+        namespaceCounts[depth] = namespaceSize;
+    }
+    private void pushNamespace(int prefix, int uri){
+        int i = namespaceSize * 2;
+        if(i + 2 > namespaces.length){
+            namespaces = Arrays.copyOf(namespaces, namespaces.length * 2);
+        }
+        namespaces[i] = prefix;
+        namespaces[i + 1] = uri;
+        namespaceSize ++;
+    }
+    @Override
+    public int nextToken() throws XmlPullParserException, IOException {
+        return next();
+    }
+    @Override
+    public int getEventType() {
+        return eventType;
+    }
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+    @Override
+    public int getLineNumber() {
+        return lineNumber;
+    }
+    @Override
+    public int getColumnNumber() {
+        return 0;
+    }
+
+    @Override
+    public String getText() {
+        if(eventType == TEXT){
+            return stringPool.get(textIndex);
+        }
+        return null;
+    }
+    @Override
+    public char[] getTextCharacters(int[] holderForStartAndLength) {
+        String text = getText();
+        if (text == null) {
+            holderForStartAndLength[0] = -1;
+            holderForStartAndLength[1] = -1;
+            return null;
+        }
+        char[] result = text.toCharArray();
+        holderForStartAndLength[0] = 0;
+        holderForStartAndLength[1] = result.length;
+        return result;
+    }
+    @Override
+    public boolean isWhitespace() throws XmlPullParserException {
+        String text = getText();
+        if(text == null){
+            return false;
+        }
+        return text.trim().length() == 0;
+    }
+    @Override
+    public String getNamespace() {
+        if(!isTag()){
+            return null;
+        }
+        return stringPool.get(buffer.getInt(elementOffset));
+    }
+    @Override
+    public String getName() {
+        if(!isTag()){
+            return null;
+        }
+        return stringPool.get(buffer.getInt(elementOffset + 4));
+    }
+    @Override
+    public String getPrefix() {
+        if(!isTag()){
+            return null;
+        }
+        return findPrefix(buffer.getInt(elementOffset));
+    }
+    @Override
+    public boolean isEmptyElementTag() throws XmlPullParserException {
+        if(eventType != START_TAG){
+            throw new XmlPullParserException("Not START_TAG", this, null);
+        }
+        return false;
+    }
+
+    @Override
+    public int getNamespaceCount(int depth) throws XmlPullParserException {
+        if(isCountNamespacesAsAttribute()){
+            return 0;
+        }
+        if(depth <= 0){
+            return 0;
+        }
+        if(depth > this.depth){
+            depth = this.depth;
+        }
+        return namespaceCounts[depth];
+    }
+    @Override
+    public String getNamespacePrefix(int pos) throws XmlPullParserException {
+        if(pos < 0 || pos >= namespaceSize){
+            return null;
+        }
+        return stringPool.get(namespaces[pos * 2]);
+    }
+    @Override
+    public String getNamespaceUri(int pos) throws XmlPullParserException {
+        if(pos < 0 || pos >= namespaceSize){
+            return null;
+        }
+        return stringPool.get(namespaces[pos * 2 + 1]);
+    }
+    @Override
+    public String getNamespace(String prefix) {
+        for(int i = namespaceSize - 1; i >= 0; i--){
+            if(equalsString(namespaces[i * 2], prefix)){
+                return stringPool.get(namespaces[i * 2 + 1]);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        int count = attributeCount;
+        if(eventType == START_TAG && isCountNamespacesAsAttribute()){
+            count += declaredNamespaceCount();
+        }
+        return count;
+    }
+    @Override
+    public String getAttributeNamespace(int index) {
+        if(isProcessNamespaces()){
+            return null;
+        }
+        int offset = attributeOffset(index);
+        if(offset < 0){
+            return null;
+        }
+        return stringPool.get(buffer.getInt(offset));
+    }
+    @Override
+    public String getAttributeName(int index) {
+        int declared = namespaceAttributeCount();
+        if(index < declared){
+            return getXmlnsName(namespaces[(namespaceCounts[depth - 1] + index) * 2]);
+        }
+        int offset = attributeOffset(index);
+        if(offset < 0){
+            return null;
+        }
+        int name = buffer.getInt(offset + 4);
+        if(!isProcessNamespaces()){
+            return stringPool.get(name);
+        }
+        return getPrefixedName(buffer.getInt(offset), name);
+    }
+    @Override
+    public String getAttributePrefix(int index) {
+        if(isProcessNamespaces()){
+            return null;
+        }
+        int offset = attributeOffset(index);
+        if(offset < 0){
+            return null;
+        }
+        return findPrefix(buffer.getInt(offset));
+    }
+    @Override
+    public String getAttributeType(int index) {
+        return "CDATA";
+    }
+    @Override
+    public boolean isAttributeDefault(int index) {
+        return false;
+    }
+    @Override
+    public String getAttributeValue(int index) {
+        int declared = namespaceAttributeCount();
+        if(index < declared){
+            return stringPool.get(namespaces[(namespaceCounts[depth - 1] + index) * 2 + 1]);
+        }
+        return decodeValue(attributeOffset(index));
+    }
+    @Override
+    public String getAttributeValue(String namespace, String name) {
+        return decodeValue(findAttribute(namespace, name));
+    }
+    @Override
+    public int getAttributeNameResource(int index) {
+        int offset = attributeOffset(index);
+        if(offset < 0){
+            return 0;
+        }
+        return getResourceId(buffer.getInt(offset + 4));
+    }
+    /**
+     * Value type of attribute, null for namespace attributes
+     * */
+    public ValueType getAttributeValueType(int index) {
+        int offset = attributeOffset(index);
+        if(offset < 0){
+            return null;
+        }
+        return ValueType.valueOf(buffer.get(offset + 15));
+    }
+    public int getAttributeData(int index) {
+        int offset = attributeOffset(index);
+        if(offset < 0){
+            return 0;
+        }
+        return buffer.getInt(offset + 16);
+    }
+
+    @Override
+    public int getAttributeListValue(String namespace, String attribute, String[] options, int defaultValue) {
+        return getListValue(findAttribute(namespace, attribute), options, defaultValue);
+    }
+    @Override
+    public boolean getAttributeBooleanValue(String namespace, String attribute, boolean defaultValue) {
+        int offset = findAttribute(namespace, attribute);
+        if(offset < 0){
+            return defaultValue;
+        }
+        return getIntValue(offset, 0) != 0;
+    }
+    @Override
+    public int getAttributeResourceValue(String namespace, String attribute, int defaultValue) {
+        return getResourceValue(findAttribute(namespace, attribute), defaultValue);
+    }
+    @Override
+    public int getAttributeIntValue(String namespace, String attribute, int defaultValue) {
+        return getIntValue(findAttribute(namespace, attribute), defaultValue);
+    }
+    @Override
+    public int getAttributeUnsignedIntValue(String namespace, String attribute, int defaultValue) {
+        return getIntValue(findAttribute(namespace, attribute), defaultValue);
+    }
+    @Override
+    public float getAttributeFloatValue(String namespace, String attribute, float defaultValue) {
+        return getFloatValue(findAttribute(namespace, attribute), defaultValue);
+    }
+    @Override
+    public int getAttributeListValue(int index, String[] options, int defaultValue) {
+        return getListValue(attributeOffset(index), options, defaultValue);
+    }
+    @Override
+    public boolean getAttributeBooleanValue(int index, boolean defaultValue) {
+        int offset = attributeOffset(index);
+        if(offset < 0){
+            return defaultValue;
+        }
+        return getIntValue(offset, 0) != 0;
+    }
+    @Override
+    public int getAttributeResourceValue(int index, int defaultValue) {
+        return getResourceValue(attributeOffset(index), defaultValue);
+    }
+    @Override
+    public int getAttributeIntValue(int index, int defaultValue) {
+        return getIntValue(attributeOffset(index), defaultValue);
+    }
+    @Override
+    public int getAttributeUnsignedIntValue(int index, int defaultValue) {
+        return getIntValue(attributeOffset(index), defaultValue);
+    }
+    @Override
+    public float getAttributeFloatValue(int index, float defaultValue) {
+        return getFloatValue(attributeOffset(index), defaultValue);
+    }
+    @Override
+    public String getIdAttribute() {
+        return decodeValue(specialAttribute(14));
+    }
+    @Override
+    public String getClassAttribute() {
+        return decodeValue(specialAttribute(16));
+    }
+    @Override
+    public int getIdAttributeResourceValue(int defaultValue) {
+        return getResourceValue(specialAttribute(14), defaultValue);
+    }
+    @Override
+    public int getStyleAttribute() {
+        int offset = specialAttribute(18);
+        if(offset < 0){
+            return 0;
+        }
+        return buffer.getInt(offset + 16);
+    }
+
+    @Override
+    public void require(int type, String namespace, String name) throws XmlPullParserException, IOException {
+        if (type != this.getEventType()
+                || (namespace != null && !namespace.equals(getNamespace()))
+                || (name != null && !name.equals(getName()))) {
+            throw new XmlPullParserException(
+                    "expected: " + TYPES[type] + " {" + namespace + "}" + name, this, null);
+        }
+    }
+    @Override
+    public String nextText() throws XmlPullParserException, IOException {
+        if(eventType != START_TAG){
+            throw new XmlPullParserException("precondition: START_TAG", this, null);
+        }
+        int event = next();
+        if(event == TEXT){
+            String text = getText();
+            event = next();
+            if(event != END_TAG){
+                throw new XmlPullParserException("END_TAG expected", this, null);
+            }
+            return text;
+        }
+        if(event == END_TAG){
+            return "";
+        }
+        throw new XmlPullParserException("TEXT or END_TAG expected", this, null);
+    }
+    @Override
+    public int nextTag() throws XmlPullParserException, IOException {
+        int event = next();
+        if(event == TEXT && isWhitespace()){
+            event = next();
+        }
+        if(event != START_TAG && event != END_TAG){
+            throw new XmlPullParserException("expected START_TAG or END_TAG", this, null);
+        }
+        return event;
+    }
+
+    @Override
+    public void setFeature(String name, boolean state) throws XmlPullParserException {
+        if (FEATURE_PROCESS_NAMESPACES.equals(name)) {
+            processNamespaces = state;
+        } else if (FEATURE_REPORT_NAMESPACE_ATTRIBUTES.equals(name)) {
+            reportNamespaceAttrs = state;
+        } else {
+            throw new XmlPullParserException("Unsupported feature: " + name);
+        }
+    }
+    @Override
+    public boolean getFeature(String name) {
+        if (FEATURE_PROCESS_NAMESPACES.equals(name)) {
+            return processNamespaces;
+        } else if(FEATURE_REPORT_NAMESPACE_ATTRIBUTES.equals(name)) {
+            return reportNamespaceAttrs;
+        }
+        return false;
+    }
+    @Override
+    public void setProperty(String name, Object value) throws XmlPullParserException {
+        if (XMLUtil.PROPERTY_LOCATION.equals(name)) {
+            location = value;
+        } else {
+            throw new XmlPullParserException("unsupported property: " + name);
+        }
+    }
+    @Override
+    public Object getProperty(String name) {
+        if (XMLUtil.PROPERTY_LOCATION.equals(name)) {
+            return location;
+        }
+        return null;
+    }
+    @Override
+    public void setInput(Reader in) throws XmlPullParserException {
+        throw new XmlPullParserException("Unsupported operation");
+    }
+    @Override
+    public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+        throw new XmlPullParserException("Unsupported operation");
+    }
+    @Override
+    public String getInputEncoding() {
+        return stringPool.isUtf8() ? "utf-8" : "utf-16";
+    }
+    @Override
+    public void defineEntityReplacementText(String entityName, String replacementText) {
+    }
+    @Override
+    public String getPositionDescription() {
+        StringBuilder builder = new StringBuilder();
+        Object location = XMLUtil.getLocation(this);
+        if (location != null) {
+            builder.append(" at ");
+            builder.append(location);
+        }
+        builder.append(" Binary XML file line #");
+        builder.append(this.getLineNumber());
+        if(isTag()) {
+            if (eventType == START_TAG) {
+                builder.append(" START_TAG ");
+            } else {
+                builder.append(" END_TAG ");
+            }
+            builder.append('<');
+            builder.append(getName());
+            builder.append('>');
+        }
+        return builder.toString();
+    }
+    @Override
+    public void close() {
+    }
+
+    private boolean isTag(){
+        return eventType == START_TAG || eventType == END_TAG;
+    }
+    private boolean isProcessNamespaces() {
+        return processNamespaces;
+    }
+    private boolean isCountNamespacesAsAttribute(){
+        return processNamespaces & reportNamespaceAttrs;
+    }
+    /**
+     * Number of namespaces declared by the current element
+     * */
+    private int declaredNamespaceCount(){
+        int depth = this.depth;
+        if(depth == 0){
+            return 0;
+        }
+        return namespaceCounts[depth] - namespaceCounts[depth - 1];
+    }
+    private int namespaceAttributeCount(){
+        if(eventType != START_TAG || !isCountNamespacesAsAttribute()){
+            return 0;
+        }
+        return declaredNamespaceCount();
+    }
+    private int attributeOffset(int index){
+        index = index - namespaceAttributeCount();
+        if(eventType != START_TAG || index < 0 || index >= attributeCount){
+            return -1;
+        }
+        return attributeStart + index * attributeSize;
+    }
+    /**
+     * idIndex, classIndex and styleIndex are 1-based attribute positions
+     * */
+    private int specialAttribute(int extOffset){
+        if(eventType != START_TAG){
+            return -1;
+        }
+        int index = (buffer.getShort(elementOffset + extOffset) & 0xffff) - 1;
+        if(index < 0 || index >= attributeCount){
+            return -1;
+        }
+        return attributeStart + index * attributeSize;
+    }
+    private int findAttribute(String namespace, String name){
+        if(eventType != START_TAG || name == null){
+            return -1;
+        }
+        ByteBuffer buffer = this.buffer;
+        int count = attributeCount;
+        for(int i = 0; i < count; i++){
+            int offset = attributeStart + i * attributeSize;
+            if(!equalsString(buffer.getInt(offset + 4), name)){
+                continue;
+            }
+            if(namespace == null || equalsString(buffer.getInt(offset), namespace)){
+                return offset;
+            }
+        }
+        return -1;
+    }
+    private boolean equalsString(int index, String str){
+        if(index == -1){
+            return str == null || str.length() == 0;
+        }
+        return str != null && str.equals(stringPool.get(index));
+    }
+    private String findPrefix(int uri){
+        if(uri == -1){
+            return null;
+        }
+        for(int i = namespaceSize - 1; i >= 0; i--){
+            if(namespaces[i * 2 + 1] == uri){
+                return stringPool.get(namespaces[i * 2]);
+            }
+        }
+        return null;
+    }
+    private String getPrefixedName(int uri, int name){
+        if(uri == -1 || name < 0){
+            return stringPool.get(name);
+        }
+        String prefix = findPrefix(uri);
+        if(prefix == null){
+            return stringPool.get(name);
+        }
+        String[] prefixedNames = this.prefixedNames;
+        if(prefixedNames == null){
+            prefixedNames = new String[stringPool.size()];
+            this.prefixedNames = prefixedNames;
+            this.prefixedUris = new int[prefixedNames.length];
+        }
+        if(name >= prefixedNames.length){
+            return prefix + ":" + stringPool.get(name);
+        }
+        String result = prefixedNames[name];
+        if(result == null || prefixedUris[name] != uri){
+            result = prefix + ":" + stringPool.get(name);
+            prefixedNames[name] = result;
+            prefixedUris[name] = uri;
+        }
+        return result;
+    }
+    private String getXmlnsName(int prefix){
+        String[] xmlnsNames = this.xmlnsNames;
+        if(xmlnsNames == null){
+            xmlnsNames = new String[stringPool.size()];
+            this.xmlnsNames = xmlnsNames;
+        }
+        if(prefix < 0 || prefix >= xmlnsNames.length){
+            return "xmlns:" + stringPool.get(prefix);
+        }
+        String result = xmlnsNames[prefix];
+        if(result == null){
+            result = "xmlns:" + stringPool.get(prefix);
+            xmlnsNames[prefix] = result;
+        }
+        return result;
+    }
+    private String decodeValue(int offset){
+        if(offset < 0){
+            return null;
+        }
+        ByteBuffer buffer = this.buffer;
+        ValueType valueType = ValueType.valueOf(buffer.get(offset + 15));
+        int data = buffer.getInt(offset + 16);
+        if(valueType == ValueType.STRING){
+            int raw = buffer.getInt(offset + 8);
+            if(raw == -1){
+                raw = data;
+            }
+            return XmlSanitizer.escapeSpecialCharacter(stringPool.get(raw));
+        }
+        if(valueType == null){
+            return null;
+        }
+        if(valueType.isReference()){
+            if(data == 0){
+                return ValueCoder.decodeReference(null, valueType, data);
+            }
+            return ValueCoder.decodeUnknownResourceId(valueType == ValueType.REFERENCE, data);
+        }
+        return ValueCoder.decode(valueType, data);
+    }
+    private int getIntValue(int offset, int defaultValue){
+        if(offset < 0){
+            return defaultValue;
+        }
+        int type = buffer.get(offset + 15) & 0xff;
+        if(type > 0x10 && type <= 0x1f) {
+            return buffer.getInt(offset + 16);
+        }
+        return defaultValue;
+    }
+    private float getFloatValue(int offset, float defaultValue){
+        if(offset < 0 || ValueType.valueOf(buffer.get(offset + 15)) != ValueType.FLOAT){
+            return defaultValue;
+        }
+        return Float.intBitsToFloat(buffer.getInt(offset + 16));
+    }
+    private int getResourceValue(int offset, int defaultValue){
+        if(offset < 0 || ValueType.valueOf(buffer.get(offset + 15)) != ValueType.REFERENCE){
+            return defaultValue;
+        }
+        return buffer.getInt(offset + 16);
+    }
+    private int getListValue(int offset, String[] options, int defaultValue){
+        if(offset < 0 || options == null || options.length == 0
+                || ValueType.valueOf(buffer.get(offset + 15)) != ValueType.STRING){
+            return defaultValue;
+        }
+        String value = stringPool.get(buffer.getInt(offset + 16));
+        if(value != null && value.length() != 0){
+            for(int i = 0; i < options.length; i++){
+                if(value.equals(options[i])){
+                    return i;
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    public static BinaryXmlParser of(ByteBuffer buffer) throws IOException {
+        return new BinaryXmlParser(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+    public static BinaryXmlParser of(byte[] bytes) throws IOException {
+        return of(ByteBuffer.wrap(bytes));
+    }
+    public static BinaryXmlParser read(InputStream inputStream) throws IOException {
+        return of(IOUtil.readFully(inputStream));
+    }
+    public static BinaryXmlParser read(InputSource inputSource) throws IOException {
+        InputStream inputStream = inputSource.openStream();
+        try {
+            return read(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
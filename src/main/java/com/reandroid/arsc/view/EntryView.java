@@ -0,0 +1,180 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.view;
+
+import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.arsc.value.ResConfig;
+import com.reandroid.arsc.value.ValueType;
+import com.reandroid.utils.HexUtil;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight of a single entry of a type chunk, values are read directly from the table buffer
+ * */
+public class EntryView {
+
+    private final PackageView packageView;
+    private final ByteBuffer buffer;
+    private final int typeChunk;
+    private final int offset;
+    private final int typeId;
+    private final int entryId;
+
+    EntryView(PackageView packageView, ByteBuffer buffer, int typeChunk, int offset, int typeId, int entryId){
+        this.packageView = packageView;
+        this.buffer = buffer;
+        this.typeChunk = typeChunk;
+        this.offset = offset;
+        this.typeId = typeId;
+        this.entryId = entryId;
+    }
+
+    public PackageView getPackageView() {
+        return packageView;
+    }
+    public int getResourceId(){
+        return (packageView.getId() << 24) | (typeId << 16) | entryId;
+    }
+    public int getTypeId() {
+        return typeId;
+    }
+    public int getEntryId() {
+        return entryId;
+    }
+    public String getTypeName(){
+        return packageView.getTypeName(typeId);
+    }
+    public String getName(){
+        return packageView.getKeyStringPool().get(getKey());
+    }
+    /**
+     * Index of entry name on key string pool
+     * */
+    public int getKey(){
+        if(isCompact()){
+            return buffer.getShort(offset) & 0xffff;
+        }
+        return buffer.getInt(offset + 4);
+    }
+    public int getFlags(){
+        return buffer.getShort(offset + 2) & 0xffff;
+    }
+    public boolean isComplex(){
+        return (getFlags() & FLAG_COMPLEX) != 0;
+    }
+    public boolean isPublic(){
+        return (getFlags() & FLAG_PUBLIC) != 0;
+    }
+    public boolean isWeak(){
+        return (getFlags() & FLAG_WEAK) != 0;
+    }
+    public boolean isCompact(){
+        return (buffer.getShort(offset + 2) & FLAG_COMPACT) != 0;
+    }
+    /**
+     * Decodes the config of this entry's type chunk, a new object on each call
+     * */
+    public ResConfig getResConfig(){
+        ByteBuffer slice = buffer.duplicate();
+        ((Buffer) slice).position(typeChunk + 20);
+        ((Buffer) slice).limit(typeChunk + buffer.getInt(typeChunk + 16));
+        ResConfig resConfig = new ResConfig();
+        try {
+            resConfig.readBytes(new BlockReader(slice.slice()));
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return resConfig;
+    }
+    /**
+     * Value type of simple entry, null for complex (bag) entry
+     * */
+    public ValueType getValueType(){
+        if(isComplex()){
+            return null;
+        }
+        return ValueType.valueOf(getValueTypeByte());
+    }
+    private byte getValueTypeByte(){
+        if(isCompact()){
+            return buffer.get(offset + 3);
+        }
+        return buffer.get(offset + 8 + 3);
+    }
+    public int getData(){
+        if(isCompact()){
+            return buffer.getInt(offset + 4);
+        }
+        return buffer.getInt(offset + 8 + 4);
+    }
+    /**
+     * Decoded string of STRING value (raw text, style spans are not applied), null for other types
+     * */
+    public String getValueAsString(){
+        if(getValueType() != ValueType.STRING){
+            return null;
+        }
+        return packageView.getTableView().getStringPool().get(getData());
+    }
+    public int getParentId(){
+        if(!isComplex()){
+            return 0;
+        }
+        return buffer.getInt(offset + 8);
+    }
+    public int getBagSize(){
+        if(!isComplex()){
+            return 0;
+        }
+        return buffer.getInt(offset + 12);
+    }
+    public int getBagName(int index){
+        return buffer.getInt(bagOffset(index));
+    }
+    public ValueType getBagValueType(int index){
+        return ValueType.valueOf(buffer.get(bagOffset(index) + 4 + 3));
+    }
+    public int getBagData(int index){
+        return buffer.getInt(bagOffset(index) + 4 + 4);
+    }
+    private int bagOffset(int index){
+        if(index < 0 || index >= getBagSize()){
+            throw new IndexOutOfBoundsException("Bag index " + index + ", size = " + getBagSize());
+        }
+        int headerSize = buffer.getShort(offset) & 0xffff;
+        return offset + headerSize + index * 12;
+    }
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder();
+        builder.append(HexUtil.toHex8(getResourceId()));
+        builder.append(' ').append(getTypeName()).append('/').append(getName());
+        if(isComplex()){
+            builder.append(" bag[").append(getBagSize()).append(']');
+        }else {
+            builder.append(' ').append(getValueType()).append(' ').append(HexUtil.toHex8(getData()));
+        }
+        return builder.toString();
+    }
+
+    private static final int FLAG_COMPLEX = 0x0001;
+    private static final int FLAG_PUBLIC = 0x0002;
+    private static final int FLAG_WEAK = 0x0004;
+    private static final int FLAG_COMPACT = 0x0008;
+}
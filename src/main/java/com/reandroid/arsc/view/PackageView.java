@@ -0,0 +1,287 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.view;
+
+import com.reandroid.arsc.chunk.ChunkType;
+import com.reandroid.utils.HexUtil;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only package chunk, only the chunk offsets of specs and types are indexed on creation
+ * */
+public class PackageView {
+
+    private final TableView tableView;
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int id;
+    private final int typeIdOffset;
+    private final StringPoolView typeStringPool;
+    private final StringPoolView keyStringPool;
+    private final int[][] typeChunks;
+    private final int[] typeChunkCounts;
+    private final int[] specChunks;
+    private String name;
+    private Map<Integer, Integer>[] keyMaps;
+
+    PackageView(TableView tableView, ByteBuffer buffer, int offset){
+        this.tableView = tableView;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.id = buffer.getInt(offset + 8);
+        int headerSize = buffer.getShort(offset + 2) & 0xffff;
+        int typeIdOffset = 0;
+        if(headerSize >= HEADER_SIZE_TYPE_ID_OFFSET){
+            typeIdOffset = buffer.getInt(offset + 284);
+        }
+        this.typeIdOffset = typeIdOffset;
+        this.typeStringPool = new StringPoolView(buffer, offset + buffer.getInt(offset + 268));
+        this.keyStringPool = new StringPoolView(buffer, offset + buffer.getInt(offset + 276));
+        this.typeChunks = new int[MAX_TYPE_ID + 1][];
+        this.typeChunkCounts = new int[MAX_TYPE_ID + 1];
+        this.specChunks = new int[MAX_TYPE_ID + 1];
+        indexChunks(headerSize, buffer.getInt(offset + 4));
+    }
+    private void indexChunks(int headerSize, int size){
+        ByteBuffer buffer = this.buffer;
+        int end = offset + size;
+        int position = offset + headerSize;
+        while (position + 8 <= end){
+            short type = buffer.getShort(position);
+            int chunkSize = buffer.getInt(position + 4);
+            if(chunkSize < 8){
+                break;
+            }
+            if(type == ChunkType.TYPE.ID){
+                addTypeChunk(buffer.get(position + 8) & 0xff, position);
+            }else if(type == ChunkType.SPEC.ID){
+                specChunks[buffer.get(position + 8) & 0xff] = position;
+            }
+            position += chunkSize;
+        }
+    }
+    private void addTypeChunk(int typeId, int position){
+        int[] chunks = typeChunks[typeId];
+        int count = typeChunkCounts[typeId];
+        if(chunks == null){
+            chunks = new int[4];
+        }else if(count == chunks.length){
+            int[] grown = new int[count * 2];
+            System.arraycopy(chunks, 0, grown, 0, count);
+            chunks = grown;
+        }
+        chunks[count] = position;
+        typeChunks[typeId] = chunks;
+        typeChunkCounts[typeId] = count + 1;
+    }
+
+    public TableView getTableView() {
+        return tableView;
+    }
+    public int getId() {
+        return id;
+    }
+    public String getName(){
+        String name = this.name;
+        if(name == null){
+            byte[] bytes = new byte[256];
+            ByteBuffer buffer = this.buffer.duplicate();
+            ((Buffer) buffer).position(offset + 12);
+            buffer.get(bytes);
+            int length = 0;
+            while (length < 256 && (bytes[length] != 0 || bytes[length + 1] != 0)){
+                length += 2;
+            }
+            name = new String(bytes, 0, length, StandardCharsets.UTF_16LE);
+            this.name = name;
+        }
+        return name;
+    }
+    public int getTypeIdOffset() {
+        return typeIdOffset;
+    }
+    public StringPoolView getTypeStringPool() {
+        return typeStringPool;
+    }
+    public StringPoolView getKeyStringPool() {
+        return keyStringPool;
+    }
+    public String getTypeName(int typeId){
+        return typeStringPool.get(typeId - 1 - typeIdOffset);
+    }
+    public int getTypeId(String typeName){
+        int index = typeStringPool.indexOf(typeName);
+        if(index < 0){
+            return 0;
+        }
+        return index + 1 + typeIdOffset;
+    }
+    /**
+     * Number of entries declared by the spec of typeId
+     * */
+    public int getEntryCount(int typeId){
+        if(typeId <= 0 || typeId > MAX_TYPE_ID){
+            return 0;
+        }
+        int spec = specChunks[typeId];
+        if(spec == 0){
+            return 0;
+        }
+        return buffer.getInt(spec + 12);
+    }
+    /**
+     * Returns first entry of the resource (in order of type chunks), null if not defined
+     * */
+    public EntryView getEntry(int resourceId){
+        int typeId = (resourceId >>> 16) & 0xff;
+        int entryId = resourceId & 0xffff;
+        int count = getTypeChunkCount(typeId);
+        for(int i = 0; i < count; i++){
+            EntryView entryView = getEntry(typeChunks[typeId][i], typeId, entryId);
+            if(entryView != null){
+                return entryView;
+            }
+        }
+        return null;
+    }
+    public List<EntryView> getEntries(int resourceId){
+        int typeId = (resourceId >>> 16) & 0xff;
+        int entryId = resourceId & 0xffff;
+        int count = getTypeChunkCount(typeId);
+        List<EntryView> results = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            EntryView entryView = getEntry(typeChunks[typeId][i], typeId, entryId);
+            if(entryView != null){
+                results.add(entryView);
+            }
+        }
+        return results;
+    }
+    /**
+     * Returns resource id of type/name, 0 if not found. The first call for each type
+     * indexes the keys of all its entries
+     * */
+    public int getResourceId(String type, String name){
+        int typeId = getTypeId(type);
+        if(typeId == 0){
+            return 0;
+        }
+        int key = keyStringPool.indexOf(name);
+        if(key < 0){
+            return 0;
+        }
+        Integer entryId = getKeyMap(typeId).get(key);
+        if(entryId == null){
+            return 0;
+        }
+        return (id << 24) | (typeId << 16) | entryId;
+    }
+    public int getTypeChunkCount(int typeId){
+        if(typeId <= 0 || typeId > MAX_TYPE_ID){
+            return 0;
+        }
+        return typeChunkCounts[typeId];
+    }
+    private synchronized Map<Integer, Integer> getKeyMap(int typeId){
+        Map<Integer, Integer>[] keyMaps = this.keyMaps;
+        if(keyMaps == null){
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Map<Integer, Integer>[] maps = new Map[MAX_TYPE_ID + 1];
+            keyMaps = maps;
+            this.keyMaps = keyMaps;
+        }
+        Map<Integer, Integer> keyMap = keyMaps[typeId];
+        if(keyMap != null){
+            return keyMap;
+        }
+        keyMap = new HashMap<>();
+        int count = getTypeChunkCount(typeId);
+        for(int i = 0; i < count; i++){
+            int chunk = typeChunks[typeId][i];
+            int entryCount = buffer.getInt(chunk + 12);
+            for(int entryId = 0; entryId < entryCount; entryId++){
+                EntryView entryView = getEntry(chunk, typeId, entryId);
+                if(entryView != null && !keyMap.containsKey(entryView.getKey())){
+                    keyMap.put(entryView.getKey(), entryView.getEntryId());
+                }
+            }
+        }
+        keyMaps[typeId] = keyMap;
+        return keyMap;
+    }
+    private EntryView getEntry(int chunk, int typeId, int entryId){
+        int entryOffset = findEntryOffset(chunk, entryId);
+        if(entryOffset < 0){
+            return null;
+        }
+        return new EntryView(this, buffer, chunk, chunk + buffer.getInt(chunk + 16) + entryOffset,
+                typeId, entryId);
+    }
+    private int findEntryOffset(int chunk, int entryId){
+        ByteBuffer buffer = this.buffer;
+        int count = buffer.getInt(chunk + 12);
+        int offsets = chunk + (buffer.getShort(chunk + 2) & 0xffff);
+        int offsetType = buffer.get(chunk + 9) & 0x3;
+        if(offsetType == OFFSET_SPARSE){
+            int low = 0;
+            int high = count - 1;
+            while (low <= high){
+                int mid = (low + high) >>> 1;
+                int value = buffer.getInt(offsets + mid * 4);
+                int idx = value & 0xffff;
+                if(idx < entryId){
+                    low = mid + 1;
+                }else if(idx > entryId){
+                    high = mid - 1;
+                }else {
+                    return ((value >>> 16) & 0xffff) * 4;
+                }
+            }
+            return -1;
+        }
+        if(entryId >= count){
+            return -1;
+        }
+        if(offsetType == OFFSET_16){
+            int value = buffer.getShort(offsets + entryId * 2) & 0xffff;
+            if(value == 0xffff){
+                return -1;
+            }
+            return value * 4;
+        }
+        int value = buffer.getInt(offsets + entryId * 4);
+        if(value == -1){
+            return -1;
+        }
+        return value;
+    }
+    @Override
+    public String toString(){
+        return "PackageView{id=" + HexUtil.toHex2((byte) id) + ", name=" + getName() + "}";
+    }
+
+    private static final int HEADER_SIZE_TYPE_ID_OFFSET = 288;
+    private static final int MAX_TYPE_ID = 0xff;
+    private static final int OFFSET_SPARSE = 1;
+    private static final int OFFSET_16 = 2;
+}
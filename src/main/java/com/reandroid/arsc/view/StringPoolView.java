@@ -0,0 +1,162 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.view;
+
+import com.reandroid.arsc.coder.ThreeByteCharsetDecoder;
+import com.reandroid.utils.StringCodec;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only string pool over the shared table buffer, strings are decoded on first access.
+ * Safe to share between threads: the buffer is only read at absolute positions, a racing
+ * {@link #get(int)} at most decodes the same immutable string twice, and the index map is
+ * published through a volatile field once fully built.
+ * */
+public class StringPoolView {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int count;
+    private final boolean utf8;
+    private final int offsetsStart;
+    private final int stringsStart;
+    private final String[] cache;
+    private volatile Map<String, Integer> indexMap;
+
+    StringPoolView(ByteBuffer buffer, int offset){
+        this.buffer = buffer;
+        this.offset = offset;
+        this.count = buffer.getInt(offset + 8);
+        this.utf8 = (buffer.getInt(offset + 16) & FLAG_UTF8) != 0;
+        this.offsetsStart = offset + (buffer.getShort(offset + 2) & 0xffff);
+        this.stringsStart = offset + buffer.getInt(offset + 20);
+        this.cache = new String[count];
+    }
+
+    public int size(){
+        return count;
+    }
+    public boolean isUtf8(){
+        return utf8;
+    }
+    public String get(int index){
+        if(index < 0 || index >= count){
+            return null;
+        }
+        String str = cache[index];
+        if(str == null){
+            str = decode(stringsStart + buffer.getInt(offsetsStart + index * 4));
+            cache[index] = str;
+        }
+        return str;
+    }
+    /**
+     * Index of the first string equals to str, -1 if not found. The first call decodes all strings
+     * */
+    public int indexOf(String str){
+        Map<String, Integer> indexMap = this.indexMap;
+        if(indexMap == null){
+            indexMap = buildIndexMap();
+        }
+        Integer index = indexMap.get(str);
+        if(index == null){
+            return -1;
+        }
+        return index;
+    }
+    private synchronized Map<String, Integer> buildIndexMap(){
+        Map<String, Integer> indexMap = this.indexMap;
+        if(indexMap != null){
+            return indexMap;
+        }
+        int count = this.count;
+        indexMap = new HashMap<>(count);
+        for(int i = count - 1; i >= 0; i--){
+            String str = get(i);
+            if(str != null){
+                indexMap.put(str, i);
+            }
+        }
+        this.indexMap = indexMap;
+        return indexMap;
+    }
+    int getOffset() {
+        return offset;
+    }
+    private String decode(int position){
+        ByteBuffer buffer = this.buffer;
+        int length;
+        if(utf8){
+            position += (buffer.get(position) & 0x80) != 0 ? 2 : 1;
+            int value = buffer.get(position) & 0xff;
+            if((value & 0x80) != 0){
+                length = ((value & 0x7f) << 8) | (buffer.get(position + 1) & 0xff);
+                position += 2;
+            }else {
+                length = value;
+                position += 1;
+            }
+        }else {
+            int value = buffer.getShort(position) & 0xffff;
+            if((value & 0x8000) != 0){
+                length = ((value & 0x7fff) << 16) | (buffer.getShort(position + 2) & 0xffff);
+                position += 4;
+            }else {
+                length = value;
+                position += 2;
+            }
+            length = length * 2;
+        }
+        if(buffer.hasArray()){
+            byte[] array = buffer.array();
+            int start = buffer.arrayOffset() + position;
+            if(utf8){
+                return StringCodec.decodeUtf8(array, start, length);
+            }
+            return StringCodec.decodeUtf16(array, start, length);
+        }
+        ByteBuffer slice = buffer.duplicate();
+        ((Buffer) slice).position(position);
+        ((Buffer) slice).limit(position + length);
+        if(!utf8){
+            return StandardCharsets.UTF_16LE.decode(slice).toString();
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(slice).toString();
+        } catch (CharacterCodingException ignored) {
+            ((Buffer) slice).position(position);
+        }
+        try {
+            CharBuffer charBuffer;
+            synchronized (ThreeByteCharsetDecoder.INSTANCE){
+                charBuffer = ThreeByteCharsetDecoder.INSTANCE.decode(slice);
+            }
+            return charBuffer.toString();
+        } catch (CharacterCodingException ignored) {
+            ((Buffer) slice).position(position);
+            return StandardCharsets.UTF_8.decode(slice).toString();
+        }
+    }
+
+    private static final int FLAG_UTF8 = 0x100;
+}
@@ -0,0 +1,185 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.view;
+
+import com.reandroid.arsc.chunk.ChunkType;
+import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.utils.io.IOUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of resources.arsc over a single buffer (e.g. memory mapped apk entry).
+ * Only chunk headers are scanned on creation, strings, configs and values are decoded on
+ * request, thus no block tree is built. Call {@link #toTableBlock()} when the table has to
+ * be modified.
+ * */
+public class TableView {
+
+    private final ByteBuffer buffer;
+    private final StringPoolView stringPool;
+    private final PackageView[] packages;
+    private TableBlock tableBlock;
+
+    private TableView(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if(buffer.remaining() < 12 || buffer.getShort(0) != ChunkType.TABLE.ID){
+            throw new IOException("Not a table chunk");
+        }
+        int size = Math.min(buffer.getInt(4), buffer.limit());
+        int position = buffer.getShort(2) & 0xffff;
+        StringPoolView stringPool = null;
+        List<PackageView> packageList = new ArrayList<>();
+        while (position + 8 <= size){
+            short type = buffer.getShort(position);
+            int chunkSize = buffer.getInt(position + 4);
+            if(chunkSize < 8){
+                break;
+            }
+            if(type == ChunkType.STRING.ID && stringPool == null){
+                stringPool = new StringPoolView(buffer, position);
+            }else if(type == ChunkType.PACKAGE.ID){
+                packageList.add(new PackageView(this, buffer, position));
+            }
+            position += chunkSize;
+        }
+        if(stringPool == null){
+            throw new IOException("Missing table string pool");
+        }
+        this.stringPool = stringPool;
+        this.packages = packageList.toArray(new PackageView[packageList.size()]);
+    }
+
+    public StringPoolView getStringPool() {
+        return stringPool;
+    }
+    public int getPackageCount(){
+        return packages.length;
+    }
+    public PackageView getPackage(int index){
+        return packages[index];
+    }
+    public PackageView getPackageById(int packageId){
+        for(PackageView packageView : packages){
+            if(packageView.getId() == packageId){
+                return packageView;
+            }
+        }
+        return null;
+    }
+    public PackageView getPackage(String name){
+        for(PackageView packageView : packages){
+            if(packageView.getName().equals(name)){
+                return packageView;
+            }
+        }
+        return null;
+    }
+    /**
+     * Returns the first defined entry of the resource, null if not found
+     * */
+    public EntryView getResource(int resourceId){
+        int packageId = resourceId >>> 24;
+        for(PackageView packageView : packages){
+            if(packageView.getId() == packageId){
+                EntryView entryView = packageView.getEntry(resourceId);
+                if(entryView != null){
+                    return entryView;
+                }
+            }
+        }
+        return null;
+    }
+    /**
+     * Returns entries of the resource on all configs
+     * */
+    public List<EntryView> getEntries(int resourceId){
+        int packageId = resourceId >>> 24;
+        List<EntryView> results = null;
+        for(PackageView packageView : packages){
+            if(packageView.getId() != packageId){
+                continue;
+            }
+            List<EntryView> entries = packageView.getEntries(resourceId);
+            if(results == null){
+                results = entries;
+            }else {
+                results.addAll(entries);
+            }
+        }
+        if(results == null){
+            results = new ArrayList<>(0);
+        }
+        return results;
+    }
+    /**
+     * Returns resource id, 0 if not found. If packageName is null all packages are searched
+     * */
+    public int getResourceId(String packageName, String type, String name){
+        for(PackageView packageView : packages){
+            if(packageName != null && !packageName.equals(packageView.getName())){
+                continue;
+            }
+            int resourceId = packageView.getResourceId(type, name);
+            if(resourceId != 0){
+                return resourceId;
+            }
+        }
+        return 0;
+    }
+    /**
+     * Returns name as "package:type/name", null if not found
+     * */
+    public String getResourceName(int resourceId){
+        EntryView entryView = getResource(resourceId);
+        if(entryView == null){
+            return null;
+        }
+        return entryView.getPackageView().getName() + ":"
+                + entryView.getTypeName() + "/" + entryView.getName();
+    }
+    /**
+     * Fully loads mutable table from the same bytes, the result is cached
+     * */
+    public synchronized TableBlock toTableBlock() throws IOException {
+        TableBlock tableBlock = this.tableBlock;
+        if(tableBlock == null){
+            tableBlock = new TableBlock();
+            tableBlock.readBytes(new BlockReader(buffer.duplicate()));
+            this.tableBlock = tableBlock;
+        }
+        return tableBlock;
+    }
+    public int size(){
+        return buffer.limit();
+    }
+
+    public static TableView of(ByteBuffer buffer) throws IOException {
+        return new TableView(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+    public static TableView of(byte[] bytes) throws IOException {
+        return of(ByteBuffer.wrap(bytes));
+    }
+    public static TableView read(InputStream inputStream) throws IOException {
+        return of(IOUtil.readFully(inputStream));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream over a ByteBuffer (e.g. a slice of a memory mapped file).
+ * The buffer is never copied, consumers like BlockReader can take the
+ * remaining bytes directly through {@link #getByteBuffer()}
+ * */
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+    private final int length;
+    private int position;
+    private int mark;
+
+    public ByteBufferInputStream(ByteBuffer buffer){
+        this.buffer = buffer.slice();
+        this.length = this.buffer.remaining();
+    }
+
+    /**
+     * Returns a view of the bytes not yet read, the position of this stream is not changed
+     * */
+    public ByteBuffer getByteBuffer(){
+        ByteBuffer buffer = this.buffer.duplicate();
+        ((Buffer) buffer).position(position);
+        return buffer.slice();
+    }
+    public int getLength() {
+        return length;
+    }
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+    @Override
+    public synchronized void mark(int readLimit){
+        mark = position;
+    }
+    @Override
+    public void close() throws IOException {
+        position = length;
+    }
+    @Override
+    public void reset() throws IOException {
+        position = mark;
+    }
+    @Override
+    public long skip(long amount) throws IOException{
+        if(amount <= 0){
+            return amount;
+        }
+        int available = available();
+        if(amount > available){
+            amount = available;
+        }
+        position += (int) amount;
+        return amount;
+    }
+    @Override
+    public int read(byte[] bytes) throws IOException {
+        return read(bytes, 0, bytes.length);
+    }
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException{
+        if(length == 0){
+            return 0;
+        }
+        int available = available();
+        if(available <= 0){
+            return -1;
+        }
+        if(length > available){
+            length = available;
+        }
+        ByteBuffer buffer = this.buffer.duplicate();
+        ((Buffer) buffer).position(this.position);
+        buffer.get(bytes, offset, length);
+        this.position += length;
+        return length;
+    }
+    @Override
+    public int read() throws IOException {
+        if(available() <= 0){
+            return -1;
+        }
+        int i = this.buffer.get(position);
+        position++;
+        return i & 0xff;
+    }
+    public long transferTo(OutputStream outputStream) throws IOException {
+        int available = available();
+        if(available <= 0){
+            return 0;
+        }
+        ByteBuffer buffer = getByteBuffer();
+        byte[] bytes = new byte[Math.min(available, TRANSFER_BUFFER_SIZE)];
+        while (buffer.hasRemaining()){
+            int length = Math.min(bytes.length, buffer.remaining());
+            buffer.get(bytes, 0, length);
+            outputStream.write(bytes, 0, length);
+        }
+        this.position = this.length;
+        return available;
+    }
+    @Override
+    public int available(){
+        return length - position;
+    }
+
+    private static final int TRANSFER_BUFFER_SIZE = 1024 * 64;
+}
@@ -0,0 +1,340 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.common;
+
+import com.reandroid.arsc.chunk.PackageBlock;
+import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.arsc.chunk.TypeBlock;
+import com.reandroid.arsc.container.SpecTypePair;
+import com.reandroid.arsc.model.ResourceEntry;
+import com.reandroid.arsc.value.*;
+import com.reandroid.utils.collection.ArrayCollection;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the best matching entry of a resource for a device config the same way
+ * android AssetManager does (see {@link ResConfig#match(ResConfig)} and
+ * {@link ResConfig#isBetterThan(ResConfig, ResConfig)}), and follows reference and
+ * theme attribute chains.
+ * Config ordering is computed once per type and device config, resolved results are kept
+ * in a bounded LRU cache. Safe to share between threads as long as the table is not
+ * being modified, cached results are dropped whenever {@link TableBlock#getModCount()} or
+ * {@link TableBlock#getValueModCount()} changes.
+ * */
+public class ConfigResolver {
+
+    private final TableBlock tableBlock;
+    private final Map<Integer, TypeIndex> typeIndexMap;
+    private final LinkedHashMap<CacheKey, Object> cache;
+    private final int cacheSize;
+    private volatile long modStamp;
+
+    public ConfigResolver(TableBlock tableBlock, int cacheSize){
+        this.tableBlock = tableBlock;
+        this.typeIndexMap = new ConcurrentHashMap<>();
+        this.cacheSize = cacheSize;
+        this.modStamp = ReferenceResolver.modStamp(tableBlock);
+        this.cache = new LinkedHashMap<CacheKey, Object>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Object> eldest) {
+                return size() > ConfigResolver.this.cacheSize;
+            }
+        };
+    }
+    public ConfigResolver(TableBlock tableBlock){
+        this(tableBlock, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Returns the best matching entry of the resource id, following references
+     * until a non-reference value is found
+     * */
+    public Entry resolve(int resourceId, ResConfig config){
+        if(resourceId == 0){
+            return null;
+        }
+        if(config == null){
+            config = ResConfig.getDefault();
+        }
+        checkModified();
+        CacheKey key = new CacheKey(resourceId, config);
+        Object cached;
+        synchronized (cache){
+            cached = cache.get(key);
+        }
+        if(cached != null){
+            return cached == NULL_RESULT ? null : (Entry) cached;
+        }
+        Entry result = resolveReferences(resourceId, config);
+        key = key.snapshot();
+        synchronized (cache){
+            cache.put(key, result == null ? NULL_RESULT : result);
+        }
+        return result;
+    }
+    /**
+     * Resolves the resource value, references are followed and attributes are looked up
+     * from the style (and its parents) of the given theme id.
+     * Returns null if unresolved or loops.
+     * */
+    public ValueItem resolveValue(int resourceId, ResConfig config, int themeId){
+        Entry entry = resolve(resourceId, config);
+        if(entry == null){
+            return null;
+        }
+        if(entry.isComplex()){
+            return null;
+        }
+        ValueItem valueItem = entry.getResValue();
+        for(int i = 0; i < MAX_DEPTH && valueItem != null; i++){
+            ValueType valueType = valueItem.getValueType();
+            if(isReference(valueType)){
+                entry = resolve(valueItem.getData(), config);
+                if(entry == null || entry.isComplex()){
+                    return null;
+                }
+                valueItem = entry.getResValue();
+            }else if(isAttribute(valueType)){
+                valueItem = findThemeAttribute(themeId, valueItem.getData(), config);
+            }else {
+                return valueItem;
+            }
+        }
+        return null;
+    }
+    /**
+     * Returns the best matching entry of the resource id without following references
+     * */
+    public Entry getBestMatch(int resourceId, ResConfig config){
+        checkModified();
+        TypeIndex typeIndex = getTypeIndex(resourceId);
+        if(typeIndex != null){
+            Entry entry = typeIndex.getBestMatch(resourceId & 0xffff, config);
+            if(entry != null){
+                return entry;
+            }
+        }
+        ResourceEntry resourceEntry = tableBlock.getResource(resourceId);
+        if(resourceEntry == null || resourceEntry.getResourceId() == resourceId){
+            return null;
+        }
+        // staged alias
+        typeIndex = getTypeIndex(resourceEntry.getResourceId());
+        if(typeIndex == null){
+            return null;
+        }
+        return typeIndex.getBestMatch(resourceEntry.getResourceId() & 0xffff, config);
+    }
+    public void clear(){
+        typeIndexMap.clear();
+        synchronized (cache){
+            cache.clear();
+        }
+    }
+
+    private void checkModified(){
+        long modStamp = ReferenceResolver.modStamp(tableBlock);
+        if(modStamp != this.modStamp){
+            this.modStamp = modStamp;
+            clear();
+        }
+    }
+    private Entry resolveReferences(int resourceId, ResConfig config){
+        Entry entry = getBestMatch(resourceId, config);
+        for(int i = 0; i < MAX_DEPTH && entry != null; i++){
+            if(entry.isComplex()){
+                return entry;
+            }
+            ResValue resValue = entry.getResValue();
+            if(resValue == null || !isReference(resValue.getValueType())
+                    || resValue.getData() == 0){
+                return entry;
+            }
+            entry = getBestMatch(resValue.getData(), config);
+        }
+        return null;
+    }
+    private ValueItem findThemeAttribute(int themeId, int attributeId, ResConfig config){
+        int styleId = themeId;
+        for(int i = 0; i < MAX_DEPTH && styleId != 0; i++){
+            Entry entry = resolve(styleId, config);
+            if(entry == null || !entry.isComplex()){
+                return null;
+            }
+            ResTableMapEntry mapEntry = (ResTableMapEntry) entry.getTableEntry();
+            Iterator<ResValueMap> iterator = mapEntry.iterator();
+            while (iterator.hasNext()){
+                ResValueMap valueMap = iterator.next();
+                if(valueMap.getNameId() == attributeId){
+                    return valueMap;
+                }
+            }
+            styleId = mapEntry.getParentId();
+        }
+        return null;
+    }
+    private TypeIndex getTypeIndex(int resourceId){
+        int key = (resourceId >>> 16) & 0xffff;
+        TypeIndex typeIndex = typeIndexMap.get(key);
+        if(typeIndex == null){
+            typeIndex = createTypeIndex(key);
+            if(typeIndex == null){
+                return null;
+            }
+            TypeIndex exist = typeIndexMap.putIfAbsent(key, typeIndex);
+            if(exist != null){
+                typeIndex = exist;
+            }
+        }
+        return typeIndex;
+    }
+    private TypeIndex createTypeIndex(int key){
+        int packageId = (key >> 8) & 0xff;
+        int typeId = key & 0xff;
+        if(packageId == 0 || typeId == 0){
+            return null;
+        }
+        List<TypeBlock> typeBlockList = new ArrayCollection<>();
+        Iterator<PackageBlock> iterator = tableBlock.getAllPackages(packageId);
+        while (iterator.hasNext()){
+            SpecTypePair specTypePair = iterator.next().getSpecTypePair(typeId);
+            if(specTypePair == null){
+                continue;
+            }
+            Iterator<TypeBlock> typeBlocks = specTypePair.getTypeBlocks();
+            while (typeBlocks.hasNext()){
+                typeBlockList.add(typeBlocks.next());
+            }
+        }
+        if(typeBlockList.isEmpty()){
+            return null;
+        }
+        return new TypeIndex(typeBlockList.toArray(new TypeBlock[0]));
+    }
+
+    private static boolean isReference(ValueType valueType){
+        return valueType == ValueType.REFERENCE || valueType == ValueType.DYNAMIC_REFERENCE;
+    }
+    private static boolean isAttribute(ValueType valueType){
+        return valueType == ValueType.ATTRIBUTE || valueType == ValueType.DYNAMIC_ATTRIBUTE;
+    }
+
+    static class TypeIndex {
+        private final TypeBlock[] typeBlocks;
+        private final ResConfig[] configs;
+        private final Map<ResConfig, int[]> orderMap;
+
+        TypeIndex(TypeBlock[] typeBlocks){
+            int length = typeBlocks.length;
+            ResConfig[] configs = new ResConfig[length];
+            for(int i = 0; i < length; i++){
+                configs[i] = typeBlocks[i].getResConfig();
+            }
+            this.typeBlocks = typeBlocks;
+            this.configs = configs;
+            this.orderMap = new ConcurrentHashMap<>();
+        }
+        Entry getBestMatch(int entryId, ResConfig device){
+            TypeBlock[] typeBlocks = this.typeBlocks;
+            for(int i : getOrder(device)){
+                Entry entry = typeBlocks[i].getEntry(entryId);
+                if(entry != null && !entry.isNull()){
+                    return entry;
+                }
+            }
+            return null;
+        }
+        private int[] getOrder(ResConfig device){
+            if(device == null){
+                device = ResConfig.getDefault();
+            }
+            int[] order = orderMap.get(device);
+            if(order == null){
+                order = computeOrder(device);
+                orderMap.put(copyOf(device), order);
+            }
+            return order;
+        }
+        /**
+         * Indexes of matching configs, best first
+         * */
+        private int[] computeOrder(ResConfig device){
+            ResConfig[] configs = this.configs;
+            int length = configs.length;
+            int[] order = new int[length];
+            int count = 0;
+            for(int i = 0; i < length; i++){
+                ResConfig config = configs[i];
+                if(!config.match(device)){
+                    continue;
+                }
+                // insertion, tolerates non-transitive precedence unlike List.sort
+                int position = count;
+                for(int j = 0; j < count; j++){
+                    if(config.isBetterThan(configs[order[j]], device)){
+                        position = j;
+                        break;
+                    }
+                }
+                System.arraycopy(order, position, order, position + 1, count - position);
+                order[position] = i;
+                count ++;
+            }
+            return Arrays.copyOf(order, count);
+        }
+    }
+    static class CacheKey {
+        private final int resourceId;
+        private final ResConfig config;
+        private final int hash;
+
+        CacheKey(int resourceId, ResConfig config){
+            this.resourceId = resourceId;
+            this.config = config;
+            this.hash = resourceId * 31 + config.hashCode();
+        }
+        CacheKey snapshot(){
+            return new CacheKey(resourceId, copyOf(config));
+        }
+        @Override
+        public boolean equals(Object obj){
+            if(obj == this){
+                return true;
+            }
+            if(!(obj instanceof CacheKey)){
+                return false;
+            }
+            CacheKey key = (CacheKey) obj;
+            return resourceId == key.resourceId && hash == key.hash
+                    && config.equals(key.config);
+        }
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+    }
+    private static ResConfig copyOf(ResConfig config){
+        ResConfig copy = new ResConfig();
+        copy.copyFrom(config);
+        return copy;
+    }
+
+    private static final Object NULL_RESULT = new Object();
+    private static final int MAX_DEPTH = 20;
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+}
@@ -28,6 +28,7 @@ public class FileChannelInputStream extends InputStream {
     private final FileChannel fileChannel;
     private final long totalLength;
     private long startOffset;
+    private long channelPosition;
     private long position;
     private final byte[] buffer;
     private int bufferPosition;
@@ -43,8 +44,13 @@ public class FileChannelInputStream extends InputStream {
         this.bufferLength = bufferSize;
         this.bufferPosition = bufferSize;
         this.startOffset = fileChannel.position();
+        this.channelPosition = startOffset;
     }
-    public FileChannelInputStream(FileChannel fileChannel, long length, int bufferSize) throws IOException {
+    /**
+     * Reads from the given offset using positional reads, the position of the
+     * channel is never changed thus the channel can be shared across threads
+     * */
+    public FileChannelInputStream(FileChannel fileChannel, long offset, long length, int bufferSize) {
         this.fileChannel = fileChannel;
         this.totalLength = length;
         if(bufferSize <= 0){
@@ -56,7 +62,11 @@ public class FileChannelInputStream extends InputStream {
         this.buffer = new byte[bufferSize];
         this.bufferLength = bufferSize;
         this.bufferPosition = bufferSize;
-        this.startOffset = fileChannel.position();
+        this.startOffset = offset;
+        this.channelPosition = offset;
+    }
+    public FileChannelInputStream(FileChannel fileChannel, long length, int bufferSize) throws IOException {
+        this(fileChannel, fileChannel.position(), length, bufferSize);
     }
     public FileChannelInputStream(FileChannel fileChannel, long length) throws IOException {
         this(fileChannel, length, DEFAULT_BUFFER_SIZE);
@@ -131,8 +141,9 @@ public class FileChannelInputStream extends InputStream {
         FileChannel fileChannel = this.fileChannel;
         int bufferLength = 0;
         int read;
-        while (bufferLength < length && (read = fileChannel.read(byteBuffer)) >= 0) {
+        while (bufferLength < length && (read = fileChannel.read(byteBuffer, channelPosition)) >= 0) {
             bufferLength = bufferLength + read;
+            channelPosition = channelPosition + read;
         }
         this.bufferLength = bufferLength;
         bufferPosition = 0;
@@ -192,7 +203,7 @@ public class FileChannelInputStream extends InputStream {
         position += availableChannel;
         remaining = remaining - availableChannel;
         amount = amount - remaining;
-        fileChannel.position(fileChannel.position() + availableChannel);
+        channelPosition += availableChannel;
         return amount;
     }
     private int skipBuffer(long amount){
@@ -226,7 +237,7 @@ public class FileChannelInputStream extends InputStream {
     public void reset() throws IOException {
         position = 0;
         bufferPosition = bufferLength;
-        fileChannel.position(startOffset);
+        channelPosition = startOffset;
     }
     @Override
     public int available(){
@@ -260,5 +271,5 @@ public class FileChannelInputStream extends InputStream {
         inputStream.closeAuto();
     }
 
-    private static final int DEFAULT_BUFFER_SIZE = 1024 * 100;
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 100;
 }
@@ -22,30 +22,36 @@ import com.reandroid.arsc.value.ResConfig;
 import com.reandroid.arsc.value.ResValue;
 import com.reandroid.arsc.value.ValueType;
 import com.reandroid.utils.collection.ArrayCollection;
+import com.reandroid.utils.collection.IntegerSet;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
+/**
+ * Resolves reference chains down to non-reference entries. Each resolution uses its own
+ * state, thus a single instance can be shared between threads.
+ * Chains can be memoized with {@link #setMemoizeChains(boolean)}, memoized chains are dropped
+ * whenever {@link TableBlock#getModCount()} or {@link TableBlock#getValueModCount()} changes.
+ * */
 public class ReferenceResolver{
     private final TableBlock entryStore;
-    private final List<Entry> results;
-    private final Set<Integer> resolvedIds;
-    private int limit;
+    private final Map<Integer, Entry[]> resolvedChains;
+    private volatile long modStamp;
+    private volatile boolean memoizeChains;
     public ReferenceResolver(TableBlock entryStore){
         this.entryStore = entryStore;
-        this.results = new ArrayCollection<>();
-        this.resolvedIds = new HashSet<>();
-        this.limit = -1;
+        this.resolvedChains = new ConcurrentHashMap<>();
+        this.modStamp = modStamp(entryStore);
     }
     public Entry resolve(int referenceId){
         return resolve(referenceId, null);
     }
-    public synchronized Entry resolve(int referenceId, Predicate<Entry> filter){
-        resolveReference(referenceId, filter);
-        List<Entry> results = new ArrayCollection<>(this.results);
-        reset();
-        if(results.size() > 0){
-            return results.get(0);
+    public Entry resolve(int referenceId, Predicate<Entry> filter){
+        for(Entry entry : resolveChain(referenceId)){
+            if(filter == null || filter.test(entry)){
+                return entry;
+            }
         }
         return null;
     }
@@ -59,62 +65,101 @@ public class ReferenceResolver{
     public List<Entry> resolveAll(int referenceId){
         return resolveAll(referenceId, (Predicate<Entry>)null);
     }
-    public synchronized List<Entry> resolveAll(int referenceId, Predicate<Entry> filter){
-        resolveReference(referenceId, filter);
-        List<Entry> results = new ArrayCollection<>(this.results);
-        reset();
+    public List<Entry> resolveAll(int referenceId, Predicate<Entry> filter){
+        Entry[] chain = resolveChain(referenceId);
+        List<Entry> results = new ArrayCollection<>(chain.length);
+        for(Entry entry : chain){
+            if(filter == null || filter.test(entry)){
+                results.add(entry);
+            }
+        }
         return results;
     }
-    private void resolveReference(int referenceId, Predicate<Entry> filter){
-        if(referenceId == 0 || isFinished() || this.resolvedIds.contains(referenceId)){
-            return;
+    public boolean isMemoizeChains(){
+        return memoizeChains;
+    }
+    public void setMemoizeChains(boolean memoizeChains){
+        this.memoizeChains = memoizeChains;
+        if(!memoizeChains){
+            invalidate();
         }
-        this.resolvedIds.add(referenceId);
-        List<Entry> entryList = listNonNullEntries(referenceId);
-        List<Entry> results = this.results;
-        for(Entry entry:entryList){
-            if(isFinished()){
-                return;
-            }
-            if(results.contains(entry)){
-                continue;
-            }
-            if(entry.isComplex()){
-                addResult(filter, entry);
-                continue;
-            }
-            ResValue resValue = entry.getResValue();
-            if(resValue.getValueType() != ValueType.REFERENCE){
-                addResult(filter, entry);
-                continue;
-            }
-            resolveReference(resValue.getData(), filter);
+    }
+    public void invalidate(){
+        this.resolvedChains.clear();
+    }
+    private Entry[] resolveChain(int referenceId){
+        if(referenceId == 0){
+            return EMPTY;
+        }
+        if(!memoizeChains){
+            return resolveNew(referenceId);
         }
+        long modStamp = modStamp(entryStore);
+        if(modStamp != this.modStamp){
+            this.modStamp = modStamp;
+            invalidate();
+        }
+        Entry[] results = resolvedChains.get(referenceId);
+        if(results == null){
+            results = resolveNew(referenceId);
+            resolvedChains.put(referenceId, results);
+        }
+        return results;
     }
-    private void reset(){
-        this.results.clear();
-        this.resolvedIds.clear();
-        this.limit = -1;
+    static long modStamp(TableBlock tableBlock){
+        return ((long) tableBlock.getModCount() << 32)
+                | (tableBlock.getValueModCount() & 0xffffffffL);
     }
-    private boolean isFinished(){
-        return this.limit >= this.results.size();
+    private Entry[] resolveNew(int referenceId){
+        Resolution resolution = new Resolution(entryStore);
+        resolution.resolveReference(referenceId);
+        return resolution.toArray();
     }
-    private void addResult(Predicate<Entry> filter, Entry entry){
-        if(filter == null || filter.test(entry)){
-            this.results.add(entry);
+
+    static class Resolution {
+        private final TableBlock entryStore;
+        private final List<Entry> results;
+        private final IntegerSet resolvedIds;
+
+        Resolution(TableBlock entryStore){
+            this.entryStore = entryStore;
+            this.results = new ArrayCollection<>();
+            this.resolvedIds = new IntegerSet();
         }
-    }
-    private List<Entry> listNonNullEntries(int resourceId){
-        List<Entry> results = new ArrayCollection<>();
-        ResourceEntry resourceEntry = this.entryStore.getResource(resourceId);
-        if(resourceEntry == null){
-            return results;
+        void resolveReference(int referenceId){
+            if(referenceId == 0 || !this.resolvedIds.add(referenceId)){
+                return;
+            }
+            ResourceEntry resourceEntry = this.entryStore.getResource(referenceId);
+            if(resourceEntry == null){
+                return;
+            }
+            List<Entry> results = this.results;
+            Iterator<Entry> iterator = resourceEntry.iterator(true);
+            while (iterator.hasNext()){
+                Entry entry = iterator.next();
+                if(results.contains(entry)){
+                    continue;
+                }
+                if(entry.isComplex()){
+                    results.add(entry);
+                    continue;
+                }
+                ResValue resValue = entry.getResValue();
+                if(resValue.getValueType() != ValueType.REFERENCE){
+                    results.add(entry);
+                    continue;
+                }
+                resolveReference(resValue.getData());
+            }
         }
-        Iterator<Entry> itr = resourceEntry.iterator(true);
-        while (itr.hasNext()){
-            results.add(itr.next());
+        Entry[] toArray(){
+            List<Entry> results = this.results;
+            if(results.isEmpty()){
+                return EMPTY;
+            }
+            return results.toArray(new Entry[results.size()]);
         }
-        return results;
     }
 
     public static class ConfigFilter implements Predicate<Entry>, Comparator<Entry>{
@@ -150,4 +195,6 @@ public class ReferenceResolver{
             return 0;
         }
     }
+
+    private static final Entry[] EMPTY = new Entry[0];
 }
@@ -20,6 +20,7 @@ import com.reandroid.arsc.base.BlockRefresh;
 import com.reandroid.arsc.item.IndirectInteger;
 import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.arsc.item.IntegerReference;
+import com.reandroid.dex.base.DexException;
 import com.reandroid.dex.base.DexPositionAlign;
 import com.reandroid.dex.base.IndirectShort;
 import com.reandroid.dex.base.PositionAlignedItem;
@@ -34,6 +35,7 @@ import com.reandroid.dex.program.InstructionLabel;
 import com.reandroid.dex.reference.DataItemIndirectReference;
 import com.reandroid.dex.common.RegistersTable;
 import com.reandroid.dex.ins.TryBlock;
+import com.reandroid.dex.sections.SectionList;
 import com.reandroid.dex.sections.SectionType;
 import com.reandroid.dex.smali.SmaliDirective;
 import com.reandroid.dex.smali.SmaliWriter;
@@ -52,6 +54,7 @@ public class CodeItem extends DataItem implements RegistersTable,
     private final Header header;
     private final InstructionList instructionList;
     private TryBlock tryBlock;
+    private LazyCodeBody lazyCodeBody;
 
     private final DataKey<CodeItem> codeItemKey;
 
@@ -133,6 +136,13 @@ public class CodeItem extends DataItem implements RegistersTable,
     public DebugInfo getDebugInfo() {
         return header.debugInfoOffset.getItem();
     }
+    Object getAppendLock() {
+        DebugInfo debugInfo = getDebugInfo();
+        if (debugInfo != null) {
+            return debugInfo;
+        }
+        return this;
+    }
     public DebugInfo getOrCreateDebugInfo() {
         return header.debugInfoOffset.getOrCreateUniqueItem(this);
     }
@@ -146,6 +156,7 @@ public class CodeItem extends DataItem implements RegistersTable,
         header.debugInfoOffset.setItem(debugInfo);
     }
     public InstructionList getInstructionList() {
+        decodeLazyCode();
         return instructionList;
     }
     public IntegerReference getTryCountReference() {
@@ -165,13 +176,16 @@ public class CodeItem extends DataItem implements RegistersTable,
         return tryBlock.getLabels();
     }
     public TryBlock getTryBlock() {
+        decodeLazyCode();
         return tryBlock;
     }
     public TryBlock getOrCreateTryBlock() {
+        decodeLazyCode();
         initTryBlock();
         return tryBlock;
     }
     public void removeTryBlock() {
+        decodeLazyCode();
         TryBlock tryBlock = this.tryBlock;
         if (tryBlock == null) {
             return;
@@ -227,8 +241,71 @@ public class CodeItem extends DataItem implements RegistersTable,
             addChildBlock(2, this.tryBlock);
         }
     }
+    /**
+     * Returns true if instructions and try blocks of this code item are not decoded yet,
+     * see {@link com.reandroid.dex.model.DexFile#setLazyCode(boolean)}
+     * */
+    public boolean isLazyCode() {
+        return lazyCodeBody != null;
+    }
+    /**
+     * Decodes instructions and try blocks kept undecoded by lazy-code reading,
+     * returns false if nothing was pending
+     * */
+    public boolean decodeLazyCode() {
+        if (this.lazyCodeBody == null) {
+            return false;
+        }
+        synchronized (this) {
+            LazyCodeBody body = this.lazyCodeBody;
+            if (body == null) {
+                return false;
+            }
+            try {
+                readBody(body.openReader());
+            } catch (IOException exception) {
+                throw new DexException("Failed to decode lazy code: " + getOffset(), exception);
+            }
+            body.setParent(null);
+            addChildBlock(1, this.instructionList);
+            this.lazyCodeBody = null;
+            return true;
+        }
+    }
+    private boolean isLazyCodeReading() {
+        SectionList sectionList = getSectionList();
+        return sectionList != null && sectionList.isReading() && sectionList.isLazyCode();
+    }
+    @Override
+    public void onReadBytes(BlockReader reader) throws IOException {
+        header.readBytes(reader);
+        if (isLazyCodeReading()) {
+            LazyCodeBody body = LazyCodeBody.read(reader,
+                    header.instructionCodeUnits.get(), header.tryBlockCount.get());
+            if (body != null) {
+                this.lazyCodeBody = body;
+                addChildBlock(1, body);
+                return;
+            }
+        }
+        readBody(reader);
+    }
+    private void readBody(BlockReader reader) throws IOException {
+        if (header.tryBlockCount.get() != 0) {
+            initTryBlock();
+        }
+        instructionList.readBytes(reader);
+        TryBlock tryBlock = this.tryBlock;
+        if (tryBlock != null) {
+            tryBlock.readBytes(reader);
+        }
+    }
     @Override
     public DexPositionAlign getPositionAlign() {
+        LazyCodeBody body = this.lazyCodeBody;
+        if (body != null) {
+            return body.getPositionAlign();
+        }
         if (this.tryBlock != null) {
             return this.tryBlock.getPositionAlign();
         } else if (this.instructionList != null) {
@@ -238,7 +315,10 @@ public class CodeItem extends DataItem implements RegistersTable,
     }
     @Override
     public void removeLastAlign() {
-        if (this.tryBlock != null) {
+        LazyCodeBody body = this.lazyCodeBody;
+        if (body != null) {
+            body.getPositionAlign().setSize(0);
+        } else if (this.tryBlock != null) {
             this.tryBlock.getPositionAlign().setSize(0);
         } else if (this.instructionList != null) {
             this.instructionList.getBlockAlign().setSize(0);
@@ -262,7 +342,7 @@ public class CodeItem extends DataItem implements RegistersTable,
     @Override
     protected void onRefreshed() {
         super.onRefreshed();
-        TryBlock tryBlock = this.getTryBlock();
+        TryBlock tryBlock = this.tryBlock;
         if (tryBlock != null && tryBlock.isEmpty()) {
             removeTryBlock();
         }
@@ -300,6 +380,8 @@ public class CodeItem extends DataItem implements RegistersTable,
         if (codeItem == this) {
             return;
         }
+        decodeLazyCode();
+        codeItem.decodeLazyCode();
         this.header.merge(codeItem.header);
         getInstructionList().merge(codeItem.getInstructionList());
         TryBlock comingTry = codeItem.getTryBlock();
@@ -359,16 +441,16 @@ public class CodeItem extends DataItem implements RegistersTable,
         }
         CodeItem codeItem = (CodeItem) obj;
         return header.equals(codeItem.header) &&
-                instructionList.equals(codeItem.instructionList) &&
-                ObjectsUtil.equals(tryBlock, codeItem.tryBlock);
+                getInstructionList().equals(codeItem.getInstructionList()) &&
+                ObjectsUtil.equals(getTryBlock(), codeItem.getTryBlock());
     }
 
     @Override
     public int hashCode() {
         int hash = header.hashCode();
-        hash = hash * 31 + instructionList.hashCode();
+        hash = hash * 31 + getInstructionList().hashCode();
         hash = hash * 31;
-        TryBlock tryBlock = this.tryBlock;
+        TryBlock tryBlock = getTryBlock();
         if (tryBlock != null) {
             hash = hash + tryBlock.hashCode();
         }
@@ -381,8 +463,8 @@ public class CodeItem extends DataItem implements RegistersTable,
             return "NULL";
         }
         return header.toString()
-                + "\n instructionList=" + instructionList
-                + "\n tryBlock=" + tryBlock
+                + "\n instructionList=" + getInstructionList()
+                + "\n tryBlock=" + getTryBlock()
                 + "\n debug=" + getDebugInfo();
     }
 
@@ -415,7 +497,7 @@ public class CodeItem extends DataItem implements RegistersTable,
         public void refresh() {
             debugInfoOffset.addUniqueUser(this.codeItem);
             debugInfoOffset.refresh();
-            if (this.codeItem.getTryBlock() == null) {
+            if (this.codeItem.tryBlock == null && !this.codeItem.isLazyCode()) {
                 this.tryBlockCount.set(0);
             }
         }
@@ -424,9 +506,6 @@ public class CodeItem extends DataItem implements RegistersTable,
             super.onReadBytes(reader);
             this.debugInfoOffset.pullItem();
             this.debugInfoOffset.addUniqueUser(this.codeItem);
-            if (this.tryBlockCount.get() != 0) {
-                this.codeItem.initTryBlock();
-            }
         }
 
         public void onRemove() {
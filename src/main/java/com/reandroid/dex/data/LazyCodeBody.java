@@ -0,0 +1,169 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.dex.data;
+
+import com.reandroid.arsc.base.Block;
+import com.reandroid.arsc.base.BlockCounter;
+import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.dex.base.DexBlockItem;
+import com.reandroid.dex.base.DexPositionAlign;
+import com.reandroid.dex.io.ByteReader;
+import com.reandroid.dex.io.StreamUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Undecoded instructions and try/catch bytes of a {@link CodeItem} that was read in
+ * lazy-code mode. The bytes stay in the shared dex buffer and are written back as they
+ * are until the owning code item decodes them.
+ * */
+class LazyCodeBody extends Block {
+
+    private final BlockReader reader;
+    private final int length;
+    private final DexPositionAlign positionAlign;
+
+    private LazyCodeBody(BlockReader reader, int length, DexPositionAlign positionAlign) {
+        super();
+        this.reader = reader;
+        this.length = length;
+        this.positionAlign = positionAlign;
+    }
+
+    BlockReader openReader() {
+        return reader.create(0, reader.length());
+    }
+    DexPositionAlign getPositionAlign() {
+        return positionAlign;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        try {
+            return openReader().readBytes(length);
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+    @Override
+    public int countBytes() {
+        return length + positionAlign.countBytes();
+    }
+    @Override
+    public void onCountUpTo(BlockCounter counter) {
+        if (counter.FOUND) {
+            return;
+        }
+        if (counter.END == this) {
+            counter.FOUND = true;
+            return;
+        }
+        counter.setCurrent(this);
+        counter.addCount(countBytes());
+    }
+    @Override
+    protected int onWriteBytes(OutputStream stream) throws IOException {
+        stream.write(getBytes());
+        return length + positionAlign.writeBytes(stream);
+    }
+
+    /**
+     * Measures the code item body at the current reader position (right after the code item
+     * header) and advances past it, returns null if the body does not fit in the reader
+     * */
+    static LazyCodeBody read(BlockReader reader, int codeUnits, int tryCount) {
+        int start = reader.getPosition();
+        int length;
+        try {
+            length = measure(reader, start, codeUnits, tryCount);
+        } catch (IOException ignored) {
+            length = -1;
+        }
+        if (length < 0) {
+            reader.seek(start);
+            return null;
+        }
+        reader.seek(start + length);
+        DexPositionAlign positionAlign = new DexPositionAlign();
+        positionAlign.align(length);
+        int end = start + length + positionAlign.size();
+        if (end > reader.length()) {
+            reader.seek(start);
+            return null;
+        }
+        reader.seek(end);
+        return new LazyCodeBody(reader.create(start, end - start), length, positionAlign);
+    }
+    private static int measure(BlockReader reader, int start, int codeUnits, int tryCount) throws IOException {
+        int available = reader.length() - start;
+        int length = codeUnits * 2;
+        if (codeUnits < 0 || length > available) {
+            return -1;
+        }
+        if (tryCount == 0) {
+            return length;
+        }
+        if ((codeUnits & 1) != 0) {
+            length += 2;
+        }
+        int triesStart = start + length;
+        int handlersStart = triesStart + tryCount * 8;
+        if (handlersStart - start >= available) {
+            return -1;
+        }
+        int minOffset = Integer.MAX_VALUE;
+        int maxOffset = 0;
+        for (int i = 0; i < tryCount; i++) {
+            reader.seek(triesStart + i * 8 + 6);
+            int offset = reader.readUnsignedShort();
+            if (offset < minOffset) {
+                minOffset = offset;
+            }
+            if (offset > maxOffset) {
+                maxOffset = offset;
+            }
+        }
+        reader.seek(handlersStart);
+        ByteReader byteReader = StreamUtil.createByteReader(reader);
+        int count = DexBlockItem.readUleb128(byteReader);
+        int position = reader.getPosition();
+        if (handlersStart + minOffset > position) {
+            reader.seek(handlersStart + minOffset);
+        }
+        for (int i = 0; i < count; i++) {
+            skipHandler(byteReader);
+        }
+        int end = reader.getPosition();
+        if (handlersStart + maxOffset >= end) {
+            reader.seek(handlersStart + maxOffset);
+            skipHandler(byteReader);
+            end = reader.getPosition();
+        }
+        return end - start;
+    }
+    private static void skipHandler(ByteReader byteReader) throws IOException {
+        int size = DexBlockItem.readSleb128(byteReader);
+        int pairs = Math.abs(size);
+        for (int i = 0; i < pairs; i++) {
+            DexBlockItem.readUleb128(byteReader);
+            DexBlockItem.readUleb128(byteReader);
+        }
+        if (size <= 0) {
+            DexBlockItem.readUleb128(byteReader);
+        }
+    }
+}
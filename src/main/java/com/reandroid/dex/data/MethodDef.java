@@ -335,6 +335,20 @@ public class MethodDef extends Def<MethodId> implements MethodProgram {
 
         writer.indentPlus();
         CodeItem codeItem = getCodeItem();
+        if (codeItem != null) {
+            // shared code and debug info are linked to this method while appending
+            synchronized (codeItem.getAppendLock()) {
+                codeItem.setMethodDef(this);
+                appendBody(writer, codeItem);
+            }
+        } else {
+            appendBody(writer, null);
+        }
+        writer.indentMinus();
+        getSmaliDirective().appendEnd(writer);
+        writer.setCurrentRegistersTable(null);
+    }
+    private void appendBody(SmaliWriter writer, CodeItem codeItem) throws IOException {
         if (codeItem != null) {
             codeItem.appendRegistersCount(writer);
         }
@@ -344,9 +358,6 @@ public class MethodDef extends Def<MethodId> implements MethodProgram {
             codeItem.getInstructionList()
                     .append(writer);
         }
-        writer.indentMinus();
-        getSmaliDirective().appendEnd(writer);
-        writer.setCurrentRegistersTable(null);
     }
     @Override
     public void replaceKeys(Key search, Key replace) {
@@ -31,7 +31,7 @@ import com.reandroid.dex.key.StringKey;
 import com.reandroid.dex.sections.SectionType;
 import com.reandroid.dex.smali.SmaliFormat;
 import com.reandroid.dex.smali.SmaliWriter;
-import com.reandroid.utils.HexUtil;
+import com.reandroid.utils.StringCodec;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -150,14 +150,17 @@ public class StringData extends DataItem
         int start = reader.getPosition();
         int position = getOffset();
         reader.seek(position);
-        String text = decodeString(StreamUtil.createByteReader(reader));
+        int utf16Length = DexBlockItem.readUleb128(StreamUtil.createByteReader(reader));
+        int dataOffset = reader.getPosition() - position;
+        skipMutf8(reader, utf16Length);
         int length = reader.getPosition() - position;
         reader.seek(position);
         StringDataContainer container = this.mDataContainer;
         container.setLength(length + 1);
-        reader.readFully(container.getBytesInternal());
+        byte[] bytes = container.getBytesInternal();
+        reader.readFully(bytes);
         reader.seek(start);
-        this.mKey = StringKey.create(text);
+        this.mKey = StringKey.create(StringCodec.decodeMutf8(bytes, dataOffset, utf16Length));
     }
 
     @Override
@@ -219,7 +222,10 @@ public class StringData extends DataItem
     private String decodeString(){
         String text;
         try {
-            text = decodeString(StreamUtil.createByteReader(mDataContainer.getBytesInternal()));
+            byte[] bytes = mDataContainer.getBytesInternal();
+            ByteReader reader = StreamUtil.createByteReader(bytes);
+            int utf16Length = DexBlockItem.readUleb128(reader);
+            text = StringCodec.decodeMutf8(bytes, reader.count(), utf16Length);
         } catch (IOException exception) {
             text = null;
         }
@@ -227,100 +233,33 @@ public class StringData extends DataItem
     }
     private void encodeString(String text){
         int length = text.length();
-        mDataContainer.setLength(length * 3 + 4);
+        mDataContainer.setLength(uleb128Size(length) + StringCodec.mutf8Length(text) + 1);
         final byte[] buffer = mDataContainer.getBytesInternal();
         int position = DexBlockItem.writeUleb128(buffer, 0, length);
-        for (int i = 0; i < length; i++) {
-            char ch = text.charAt(i);
-            if ((ch != 0) && (ch < 0x80)) {
-                buffer[position++] = (byte)ch;
-            } else if (ch < 0x800) {
-                buffer[position++] = (byte)(((ch >> 6) & 0x1f) | 0xc0);
-                buffer[position++] = (byte)((ch & 0x3f) | 0x80);
-            } else {
-                buffer[position++] = (byte)(((ch >> 12) & 0x0f) | 0xe0);
-                buffer[position++] = (byte)(((ch >> 6) & 0x3f) | 0x80);
-                buffer[position++] = (byte)((ch & 0x3f) | 0x80);
-            }
-        }
-        buffer[position++] = 0;
-        mDataContainer.setLength(position);
+        position = StringCodec.encodeMutf8(text, buffer, position);
+        buffer[position] = 0;
     }
-    private static String decodeString(ByteReader reader) throws IOException {
-        int utf16Length = DexBlockItem.readUleb128(reader);
-        char[] chars = new char[utf16Length];
-        int outAt = 0;
-
-        int at;
-        for (at = 0; utf16Length > 0; utf16Length--) {
+    // Skips utf16Length chars by their lead bytes, malformed bytes are reported on decode
+    private static void skipMutf8(BlockReader reader, int utf16Length) throws IOException {
+        for (int i = 0; i < utf16Length; i++) {
             int v0 = reader.read();
-            char out;
-            switch (v0 >> 4) {
-                case 0x00: case 0x01: case 0x02: case 0x03:
-                case 0x04: case 0x05: case 0x06: case 0x07: {
-                    // 0XXXXXXX -- single-byte encoding
-                    if (v0 == 0) {
-                        // A single zero byte is illegal.
-                        return throwBadUtf8(v0, at);
-                    }
-                    out = (char) v0;
-                    at++;
-                    break;
-                }
-                case 0x0c: case 0x0d: {
-                    // 110XXXXX -- two-byte encoding
-                    int v1 = reader.read() & 0xFF;
-                    if ((v1 & 0xc0) != 0x80) {
-                        return throwBadUtf8(v1, at + 1);
-                    }
-                    int value = ((v0 & 0x1f) << 6) | (v1 & 0x3f);
-                    if ((value != 0) && (value < 0x80)) {
-                        /*
-                         * This should have been represented with
-                         * one-byte encoding.
-                         */
-                        return throwBadUtf8(v1, at + 1);
-                    }
-                    out = (char) value;
-                    at += 2;
-                    break;
-                }
-                case 0x0e: {
-                    // 1110XXXX -- three-byte encoding
-                    int v1 = reader.read();
-                    if ((v1 & 0xc0) != 0x80) {
-                        return throwBadUtf8(v1, at + 1);
-                    }
-                    int v2 = reader.read();
-                    if ((v2 & 0xc0) != 0x80) {
-                        return throwBadUtf8(v2, at + 2);
-                    }
-                    int value = ((v0 & 0x0f) << 12) | ((v1 & 0x3f) << 6) |
-                            (v2 & 0x3f);
-                    if (value < 0x800) {
-                        /*
-                         * This should have been represented with one- or
-                         * two-byte encoding.
-                         */
-                        return throwBadUtf8(v2, at + 2);
-                    }
-                    out = (char) value;
-                    at += 3;
-                    break;
-                }
-                default: {
-                    // 10XXXXXX, 1111XXXX -- illegal
-                    return throwBadUtf8(v0, at);
-                }
+            int type = v0 >> 4;
+            if (type == 0x0c || type == 0x0d) {
+                reader.offset(1);
+            } else if (type == 0x0e) {
+                reader.offset(2);
+            } else if (v0 == 0 || type > 0x07) {
+                return;
             }
-            chars[outAt] = out;
-            outAt++;
         }
-        return new String(chars, 0, outAt);
     }
-    private static String throwBadUtf8(int value, int offset) throws IOException {
-        throw new IOException("bad utf-8 byte " + HexUtil.toHex2("", (byte)value)
-                + " at offset " + offset);
+    private static int uleb128Size(int value) {
+        int size = 1;
+        while ((value & 0xffffffffL) > 0x7f) {
+            value >>>= 7;
+            size ++;
+        }
+        return size;
     }
 
     static class StringDataContainer extends BlockItem {
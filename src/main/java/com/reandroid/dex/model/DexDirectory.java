@@ -250,6 +250,24 @@ public class DexDirectory implements Iterable<DexFile>, Closeable,
             dexFile.setDexDirectory(this);
         }
     }
+    /**
+     * Same as {@link #addDirectory(File)} with each dex parsed on a pool of threadCount threads,
+     * dex files are linked to this directory after all of them are read
+     * */
+    public void addDirectory(File dir, int threadCount) throws IOException {
+        getDexSourceSet().addAll(dir, threadCount);
+        updateDexFileList();
+    }
+    /**
+     * Same as {@link #addApk(ZipEntryMap)} with each dex parsed on a pool of threadCount threads
+     * */
+    public void addApk(ZipEntryMap zipEntryMap, int threadCount) throws IOException {
+        addZip(zipEntryMap, "", threadCount);
+    }
+    public void addZip(ZipEntryMap zipEntryMap, String root, int threadCount) throws IOException {
+        getDexSourceSet().addAll(zipEntryMap, root, threadCount);
+        updateDexFileList();
+    }
     public void addFile(File file) throws IOException {
         DexSource<DexFile> source = getDexSourceSet().add(file);
         if(file.isFile()){
@@ -584,6 +602,15 @@ public class DexDirectory implements Iterable<DexFile>, Closeable,
         }
         return result;
     }
+    /**
+     * Distributes classes by their id footprint instead of class count,
+     * see {@link MultiDexDistributor}
+     *
+     * @return number of classes moved
+     * */
+    public int distributeClasses(MultiDexDistributor distributor) {
+        return distributor.distribute(this);
+    }
     private int distributeClasses(DexFile source, int classesPerDex){
         int result = 0;
         DexDirectory directory = source.getDexDirectory();
@@ -685,6 +712,26 @@ public class DexDirectory implements Iterable<DexFile>, Closeable,
             }
         }
     }
+    /**
+     * Same as {@link #writeSmali(SmaliWriterSetting, File, Predicate)} with classes of all dex
+     * files rendered on one pool of threadCount threads, see
+     * {@link DexLayout#writeSmali(SmaliWriterSetting, File, int)}
+     * */
+    public SmaliWriteTimings writeSmali(SmaliWriterSetting writerSetting, File root,
+                                        Predicate<? super DexFile> predicate, int threadCount) throws IOException {
+        ParallelSmaliWriter smaliWriter = new ParallelSmaliWriter(writerSetting, null, threadCount);
+        try {
+            for (DexFile dexFile : this) {
+                if (predicate == null || predicate.test(dexFile)) {
+                    File dir = new File(root, dexFile.buildSmaliDirectoryName());
+                    dexFile.writeSmali(writerSetting, dir, smaliWriter);
+                }
+            }
+        } finally {
+            smaliWriter.close();
+        }
+        return smaliWriter.getTimings();
+    }
 
     @Override
     public String toString() {
@@ -702,6 +749,24 @@ public class DexDirectory implements Iterable<DexFile>, Closeable,
         dexDirectory.updateDexFileList();
         return dexDirectory;
     }
+    public static DexDirectory fromZip(ZipEntryMap zipEntryMap, Predicate<SectionType<?>> readFilter,
+                                       int threadCount) throws IOException {
+        DexDirectory dexDirectory = new DexDirectory();
+        DexFileSourceSet sourceSet = dexDirectory.getDexSourceSet();
+        sourceSet.setReadFilter(readFilter);
+        sourceSet.addAll(zipEntryMap, (String) null, threadCount);
+        dexDirectory.updateDexFileList();
+        return dexDirectory;
+    }
+    public static DexDirectory fromDexFilesDirectory(File dir, Predicate<SectionType<?>> readFilter,
+                                                     int threadCount) throws IOException {
+        DexDirectory dexDirectory = new DexDirectory();
+        DexFileSourceSet sourceSet = dexDirectory.getDexSourceSet();
+        sourceSet.setReadFilter(readFilter);
+        sourceSet.addAll(dir, threadCount);
+        dexDirectory.updateDexFileList();
+        return dexDirectory;
+    }
     public static DexDirectory fromDexFilesDirectory(File dir, Predicate<SectionType<?>> readFilter) throws IOException {
         DexDirectory dexDirectory = new DexDirectory();
         DexFileSourceSet sourceSet = dexDirectory.getDexSourceSet();
@@ -116,6 +116,20 @@ public class DexFile implements Closeable, DexClassRepository, Iterable<DexLayou
         return containerBlock;
     }
 
+    /**
+     * Keeps code items of subsequent reads undecoded until first access,
+     * useful when only class, field and method signatures are of interest.
+     * */
+    public void setLazyCode(boolean lazyCode) {
+        getContainerBlock().setLazyCode(lazyCode);
+    }
+    public boolean isLazyCode() {
+        return getContainerBlock().isLazyCode();
+    }
+    public int decodeLazyCode() {
+        return getContainerBlock().decodeLazyCode();
+    }
+
 
     @Override
     public void refresh() {
@@ -267,6 +281,13 @@ public class DexFile implements Closeable, DexClassRepository, Iterable<DexLayou
         parseSmaliDirectory(null, dir);
     }
     public void parseSmaliDirectory(SmaliReaderSetting readerSetting, File dir) throws IOException {
+        parseSmaliDirectory(readerSetting, dir, 1);
+    }
+    /**
+     * Same as {@link #parseSmaliDirectory(SmaliReaderSetting, File)} with smali files of each
+     * layout parsed on threadCount threads, see {@link DexLayout#parseSmaliDirectory(SmaliReaderSetting, File, int)}
+     * */
+    public void parseSmaliDirectory(SmaliReaderSetting readerSetting, File dir, int threadCount) throws IOException {
         File fileInfo = new File(dir, DexFileInfo.FILE_NAME);
         if (fileInfo.isFile()) {
             DexFileInfo.readJson(fileInfo).applyTo(this);
@@ -277,11 +298,11 @@ public class DexFile implements Closeable, DexClassRepository, Iterable<DexLayou
             for (int i = 0; i < size; i++) {
                 File file = layoutDir.get(i);
                 DexLayout layout = getOrCreateAt(i);
-                layout.parseSmaliDirectory(readerSetting, file);
+                layout.parseSmaliDirectory(readerSetting, file, threadCount);
                 shrink();
             }
         } else {
-            getOrCreateFirst().parseSmaliDirectory(readerSetting, dir);
+            getOrCreateFirst().parseSmaliDirectory(readerSetting, dir, threadCount);
         }
     }
     @Deprecated
@@ -306,13 +327,29 @@ public class DexFile implements Closeable, DexClassRepository, Iterable<DexLayou
         }
     }
     public void writeSmali(SmaliWriterSetting writerSetting, File root) throws IOException {
+        writeSmali(writerSetting, root, (ParallelSmaliWriter) null);
+    }
+    /**
+     * Same as {@link #writeSmali(SmaliWriterSetting, File)} with classes rendered on threadCount
+     * threads, see {@link DexLayout#writeSmali(SmaliWriterSetting, File, int)}
+     * */
+    public SmaliWriteTimings writeSmali(SmaliWriterSetting writerSetting, File root, int threadCount) throws IOException {
+        ParallelSmaliWriter smaliWriter = new ParallelSmaliWriter(writerSetting, null, threadCount);
+        try {
+            writeSmali(writerSetting, root, smaliWriter);
+        } finally {
+            smaliWriter.close();
+        }
+        return smaliWriter.getTimings();
+    }
+    void writeSmali(SmaliWriterSetting writerSetting, File root, ParallelSmaliWriter smaliWriter) throws IOException {
         requireNotClosed();
         DexFileInfo fileInfo = DexFileInfo.fromDex(this);
         fileInfo.saveToDirectory(root);
         if (!isMultiLayout()) {
             DexLayout first = getFirst();
             if (first != null) {
-                first.writeSmali(writerSetting, root);
+                writeSmali(first, writerSetting, root, smaliWriter);
             }
         } else {
             int size = size();
@@ -320,10 +357,18 @@ public class DexFile implements Closeable, DexClassRepository, Iterable<DexLayou
                 DexLayout dexLayout = getLayout(i);
                 String name = DexLayout.DIRECTORY_PREFIX + i;
                 File dir = new File(root, name);
-                dexLayout.writeSmali(writerSetting, dir);
+                writeSmali(dexLayout, writerSetting, dir, smaliWriter);
             }
         }
     }
+    private static void writeSmali(DexLayout dexLayout, SmaliWriterSetting writerSetting,
+                                   File root, ParallelSmaliWriter smaliWriter) throws IOException {
+        if (smaliWriter != null) {
+            dexLayout.writeSmali(root, smaliWriter);
+        } else {
+            dexLayout.writeSmali(writerSetting, root);
+        }
+    }
 
     private List<File> listSmaliLayouts(File dir) {
         File[] files = dir.listFiles();
@@ -503,6 +548,21 @@ public class DexFile implements Closeable, DexClassRepository, Iterable<DexLayou
     }
 
 
+    public static DexFile readLazyCode(byte[] dexBytes) throws IOException {
+        return readLazyCode(new BlockReader(dexBytes));
+    }
+    public static DexFile readLazyCode(File file) throws IOException {
+        DexFile dexFile = readLazyCode(new BlockReader(file));
+        dexFile.setSimpleName(file.getName());
+        return dexFile;
+    }
+    public static DexFile readLazyCode(BlockReader reader) throws IOException {
+        DexFile dexFile = new DexFile(new DexContainerBlock());
+        dexFile.setLazyCode(true);
+        dexFile.readBytes(reader, null);
+        return dexFile;
+    }
+
     public static DexFile read(byte[] dexBytes, Predicate<SectionType<?>> filter) throws IOException {
         return read(new BlockReader(dexBytes), filter);
     }
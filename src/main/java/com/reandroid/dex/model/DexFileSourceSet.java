@@ -17,6 +17,7 @@ package com.reandroid.dex.model;
 
 import com.reandroid.archive.InputSource;
 import com.reandroid.archive.ZipEntryMap;
+import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.dex.sections.SectionType;
 import com.reandroid.utils.CompareUtil;
 import com.reandroid.utils.collection.ArrayCollection;
@@ -25,7 +26,13 @@ import com.reandroid.utils.collection.ComputeIterator;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 
 public class DexFileSourceSet implements Iterable<DexSource<DexFile>>, Closeable {
@@ -128,6 +135,24 @@ public class DexFileSourceSet implements Iterable<DexSource<DexFile>>, Closeable
         addAll(zipEntryMap, (String) null);
     }
     public void addAll(ZipEntryMap zipEntryMap, String directory) throws IOException {
+        addAll(zipEntryMap, createDexFilter(directory));
+    }
+    /**
+     * Same as {@link #addAll(ZipEntryMap, String)} with dex files parsed on threadCount
+     * threads, see {@link #addAll(List, int)}
+     * */
+    public void addAll(ZipEntryMap zipEntryMap, String directory, int threadCount) throws IOException {
+        Iterator<InputSource> iterator = zipEntryMap.iterator(createDexFilter(directory));
+        List<DexSource<DexFile>> sources = new ArrayCollection<>();
+        while (iterator.hasNext()){
+            sources.add(DexSource.create(zipEntryMap, iterator.next().getAlias()));
+        }
+        addAll(sources, threadCount);
+        if(getZipEntryMap() == null){
+            setZipEntryMap(zipEntryMap);
+        }
+    }
+    private static Predicate<InputSource> createDexFilter(String directory) {
         String path = "";
         if(directory != null && directory.length() > 0){
             if(directory.charAt(0) == '/'){
@@ -144,7 +169,7 @@ public class DexFileSourceSet implements Iterable<DexSource<DexFile>>, Closeable
 
             return name.startsWith(pathPrefix) && DexFile.getDexFileNumber(name) >= 0;
         };
-        addAll(zipEntryMap, filter);
+        return filter;
     }
     public void addAll(ZipEntryMap zipEntryMap, Predicate<InputSource> filter) throws IOException {
         addAll(zipEntryMap, zipEntryMap.iterator(filter));
@@ -191,6 +216,52 @@ public class DexFileSourceSet implements Iterable<DexSource<DexFile>>, Closeable
             add(file);
         }
     }
+    /**
+     * Same as {@link #addAll(File)} with dex files parsed on threadCount threads,
+     * see {@link #addAll(List, int)}
+     * */
+    public void addAll(File dir, int threadCount) throws IOException {
+        if(!dir.isDirectory()){
+            throw new IOException("No such directory: " + dir);
+        }
+        File[] files = dir.listFiles();
+        if(files == null){
+            return;
+        }
+        List<DexSource<DexFile>> sources = new ArrayCollection<>(files.length);
+        for(File file : files){
+            if(file.isFile() && DexFile.getDexFileNumber(file.getName()) >= 0){
+                sources.add(DexSource.create(file));
+            }
+        }
+        addAll(sources, threadCount);
+    }
+    /**
+     * Adds all sources, each dex is parsed on its own task of a pool of threadCount threads.
+     * Dex bytes are loaded on the calling thread because zip inputs are not thread safe,
+     * parsing is independent per dex. At most threadCount loaded dex files wait for or are
+     * under parsing at a time. Nothing is added unless all sources are read, the
+     * errors of all failed sources are reported at once.
+     * */
+    public void addAll(List<DexSource<DexFile>> sources, int threadCount) throws IOException {
+        int size = sources.size();
+        for(int i = 0; i < size; i++){
+            DexSource<DexFile> source = sources.get(i);
+            DexSource<DexFile> exist = sourceList.getElement(source);
+            if(exist != null && exist != source){
+                throw new IOException("Duplicate dex source: " + source);
+            }
+            for(int j = 0; j < i; j++){
+                if(source.equals(sources.get(j))){
+                    throw new IOException("Duplicate dex source: " + source);
+                }
+            }
+        }
+        loadAll(sources, threadCount);
+        for(DexSource<DexFile> source : sources){
+            add(source);
+        }
+    }
     public DexSource<DexFile> add(File file) throws IOException {
         return add(DexSource.create(file));
     }
@@ -282,6 +353,98 @@ public class DexFileSourceSet implements Iterable<DexSource<DexFile>>, Closeable
         dexFile.setSimpleName(dexSource.getSimpleName());
     }
 
+    private void loadAll(List<DexSource<DexFile>> sources, int threadCount) throws IOException {
+        List<DexSource<DexFile>> pending = new ArrayCollection<>(sources.size());
+        for(DexSource<DexFile> source : sources){
+            if(source.get() == null){
+                pending.add(source);
+            }
+        }
+        int size = pending.size();
+        if(threadCount > size){
+            threadCount = size;
+        }
+        if(threadCount <= 1){
+            for(DexSource<DexFile> source : pending){
+                load(source);
+            }
+            return;
+        }
+        Predicate<SectionType<?>> readFilter = getReadFilter();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, DexFileSourceSet::newThread);
+        List<Future<DexFile>> futures = new ArrayCollection<>(size);
+        List<Throwable> errors = new ArrayCollection<>();
+        DexFile[] results = new DexFile[size];
+        try {
+            int submitted = 0;
+            for(int i = 0; i < size; i++){
+                // at most threadCount dex bytes are read ahead of the parsed ones
+                while(submitted < size && submitted < i + threadCount){
+                    BlockReader reader = new BlockReader(pending.get(submitted).openStream());
+                    futures.add(executor.submit(() -> DexFile.read(reader, readFilter)));
+                    submitted ++;
+                }
+                try {
+                    results[i] = await(futures.get(i));
+                } catch (IOException | RuntimeException exception) {
+                    errors.add(exception);
+                }
+            }
+        } finally {
+            for(Future<DexFile> future : futures){
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+        if(!errors.isEmpty()){
+            throw readErrors(errors, size);
+        }
+        for(int i = 0; i < size; i++){
+            DexSource<DexFile> source = pending.get(i);
+            DexFile dexFile = results[i];
+            source.set(dexFile);
+            dexFile.setSimpleName(source.getSimpleName());
+        }
+    }
+    private static IOException readErrors(List<Throwable> errors, int total) {
+        Throwable first = errors.get(0);
+        if(errors.size() == 1 && first instanceof IOException){
+            return (IOException) first;
+        }
+        IOException exception = new IOException("Failed to read " + errors.size()
+                + " of " + total + " dex files, first: " + first.getMessage(), first);
+        int size = errors.size();
+        for(int i = 1; i < size; i++){
+            exception.addSuppressed(errors.get(i));
+        }
+        return exception;
+    }
+    private static DexFile await(Future<DexFile> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error){
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "dex-read");
+        thread.setDaemon(true);
+        return thread;
+    }
+
     @Override
     public String toString() {
         return "size = " + size();
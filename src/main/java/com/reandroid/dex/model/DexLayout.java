@@ -34,6 +34,7 @@ import com.reandroid.utils.io.FileIterator;
 
 import java.io.*;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
 
 public class DexLayout implements DexClassModule, Closeable,
@@ -294,8 +295,6 @@ public class DexLayout implements DexClassModule, Closeable,
         FileByteSource byteSource = new FileByteSource();
         SmaliReader reader = new SmaliReader(byteSource);
         reader.setReaderSetting(readerSetting);
-        DexLayoutBlock layout = getDexLayoutBlock();
-        Section<ClassId> classIdSection = null;
         while (iterator.hasNext()) {
             reader.reset();
             File file = iterator.next();
@@ -303,18 +302,49 @@ public class DexLayout implements DexClassModule, Closeable,
             reader.setOrigin(Origin.createNew(file));
             SmaliClass smaliClass = new SmaliClass();
             smaliClass.parse(reader);
-            if (classIdSection == null) {
-                classIdSection = getSection(SectionType.CLASS_ID);
-            }
-            if (classIdSection != null && classIdSection.contains(smaliClass.getKey())) {
-                throw new IOException(smaliClass.getOrigin() + " Class: "
-                        + smaliClass.getKey() + " has already been interned");
-            }
-            layout.fromSmali(smaliClass);
+            internSmali(smaliClass);
         }
         sort();
         shrink();
     }
+    /**
+     * Same as {@link #parseSmaliDirectory(SmaliReaderSetting, File)} with smali files parsed
+     * on threadCount threads. Classes are interned on the calling thread in the same file
+     * order as the sequential path, thus the resulting dex is identical. Parse errors of all
+     * files are collected into one IOException.
+     * */
+    public void parseSmaliDirectory(SmaliReaderSetting readerSetting, File dir, int threadCount) throws IOException {
+        if (threadCount <= 1) {
+            parseSmaliDirectory(readerSetting, dir);
+            return;
+        }
+        parseSmaliDirectory(dir, new ParallelSmaliParser(readerSetting, null, threadCount));
+    }
+    /**
+     * Same as {@link #parseSmaliDirectory(SmaliReaderSetting, File, int)} running on the given executor
+     * */
+    public void parseSmaliDirectory(SmaliReaderSetting readerSetting, File dir, ExecutorService executor) throws IOException {
+        parseSmaliDirectory(dir, new ParallelSmaliParser(readerSetting, executor,
+                Runtime.getRuntime().availableProcessors()));
+    }
+    private void parseSmaliDirectory(File dir, ParallelSmaliParser parser) throws IOException {
+        requireNotClosed();
+        if (!dir.isDirectory()) {
+            throw new FileNotFoundException("No such directory: " + dir);
+        }
+        FileIterator iterator = new FileIterator(dir, FileIterator.getExtensionFilter(".smali"));
+        parser.parse(CollectionUtil.toList(iterator), this::internSmali);
+        sort();
+        shrink();
+    }
+    private void internSmali(SmaliClass smaliClass) throws IOException {
+        Section<ClassId> classIdSection = getSection(SectionType.CLASS_ID);
+        if (classIdSection != null && classIdSection.contains(smaliClass.getKey())) {
+            throw new IOException(smaliClass.getOrigin() + " Class: "
+                    + smaliClass.getKey() + " has already been interned");
+        }
+        getDexLayoutBlock().fromSmali(smaliClass);
+    }
 
     public void parseSmaliFile(File file) throws IOException {
         requireNotClosed();
@@ -363,6 +393,35 @@ public class DexLayout implements DexClassModule, Closeable,
             writer.close();
         }
     }
+    /**
+     * Same as {@link #writeSmali(SmaliWriterSetting, File)} with classes rendered on threadCount
+     * threads. File names are assigned in class order before rendering, thus the output is
+     * identical to the sequential write. When the setting has comment formatters, classes
+     * are rendered on the calling thread.
+     * */
+    public SmaliWriteTimings writeSmali(SmaliWriterSetting writerSetting, File root, int threadCount) throws IOException {
+        return writeSmali(writerSetting, root, null, threadCount);
+    }
+    /**
+     * Same as {@link #writeSmali(SmaliWriterSetting, File, int)} running on the given executor
+     * */
+    public SmaliWriteTimings writeSmali(SmaliWriterSetting writerSetting, File root, ExecutorService executor) throws IOException {
+        return writeSmali(writerSetting, root, executor, Runtime.getRuntime().availableProcessors());
+    }
+    private SmaliWriteTimings writeSmali(SmaliWriterSetting writerSetting, File root,
+                                         ExecutorService executor, int threadCount) throws IOException {
+        ParallelSmaliWriter smaliWriter = new ParallelSmaliWriter(writerSetting, executor, threadCount);
+        try {
+            writeSmali(root, smaliWriter);
+        } finally {
+            smaliWriter.close();
+        }
+        return smaliWriter.getTimings();
+    }
+    void writeSmali(File root, ParallelSmaliWriter smaliWriter) throws IOException {
+        requireNotClosed();
+        smaliWriter.write(this, root);
+    }
 
 
     public byte[] getBytes() {
@@ -0,0 +1,523 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.dex.model;
+
+import com.reandroid.dex.id.ClassId;
+import com.reandroid.dex.id.IdItem;
+import com.reandroid.dex.id.StringId;
+import com.reandroid.dex.id.TypeId;
+import com.reandroid.dex.key.Key;
+import com.reandroid.dex.key.TypeKey;
+import com.reandroid.dex.sections.Section;
+import com.reandroid.dex.sections.SectionType;
+import com.reandroid.utils.collection.ArrayCollection;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Distributes classes of a {@link DexDirectory} into the fewest dex files without exceeding
+ * the id limits of any id section (string, type, proto, field, method ...).
+ * <br>
+ * The footprint of each class is the transitive set of ids it pulls into a dex, every
+ * distinct id of the directory gets a global index, thus a footprint is a sorted int array
+ * and each dex being filled keeps a bitset of the ids it already holds. Adding a class only
+ * counts the bits not yet set, so ids shared between classes are counted once per dex.
+ * <br>
+ * Classes are packed first-fit in directory order, which keeps classes of the same package
+ * (and usually the most shared ids) together. Main dex classes are packed first into the
+ * first dex. Optionally, classes are grouped with their super classes and interfaces found
+ * in the directory, a group which can not fit in one dex falls back to single classes.
+ * <br>
+ * Capacities match the merge guard of {@link com.reandroid.dex.sections.SectionList}, the id
+ * count of each section stays below {@link #getMaxIdsPerDex()} - {@link #getReserveSpace()}.
+ * */
+public class MultiDexDistributor {
+
+    public static final int MAX_IDS_PER_DEX = 0xffff;
+    public static final int DEFAULT_RESERVE_SPACE = 200;
+
+    private int maxIdsPerDex;
+    private int reserveSpace;
+    private Predicate<? super TypeKey> mainDexFilter;
+    private boolean keepHierarchies;
+
+    public MultiDexDistributor() {
+        this.maxIdsPerDex = MAX_IDS_PER_DEX;
+        this.reserveSpace = DEFAULT_RESERVE_SPACE;
+    }
+
+    public int getMaxIdsPerDex() {
+        return maxIdsPerDex;
+    }
+    public MultiDexDistributor setMaxIdsPerDex(int maxIdsPerDex) {
+        if (maxIdsPerDex <= 0 || maxIdsPerDex > MAX_IDS_PER_DEX) {
+            throw new IllegalArgumentException("Invalid max ids per dex: " + maxIdsPerDex);
+        }
+        this.maxIdsPerDex = maxIdsPerDex;
+        return this;
+    }
+    public int getReserveSpace() {
+        return reserveSpace;
+    }
+    public MultiDexDistributor setReserveSpace(int reserveSpace) {
+        if (reserveSpace < 0) {
+            throw new IllegalArgumentException("Invalid reserve space: " + reserveSpace);
+        }
+        this.reserveSpace = reserveSpace;
+        return this;
+    }
+    public Predicate<? super TypeKey> getMainDexFilter() {
+        return mainDexFilter;
+    }
+    /**
+     * Classes accepted by the filter are kept together in the first dex
+     * */
+    public MultiDexDistributor setMainDexFilter(Predicate<? super TypeKey> mainDexFilter) {
+        this.mainDexFilter = mainDexFilter;
+        return this;
+    }
+    public boolean isKeepHierarchies() {
+        return keepHierarchies;
+    }
+    /**
+     * When true, classes are kept in the same dex with their super classes and interfaces
+     * */
+    public MultiDexDistributor setKeepHierarchies(boolean keepHierarchies) {
+        this.keepHierarchies = keepHierarchies;
+        return this;
+    }
+
+    /**
+     * Moves classes of the directory to the dex files computed by {@link #plan(List)},
+     * creates new dex files as needed. Dex files left without classes are not removed.
+     *
+     * @return number of classes moved
+     * */
+    public int distribute(DexDirectory directory) {
+        directory.clearUnused();
+        ArrayCollection<ClassId> classList = new ArrayCollection<>(directory.getDexClassesCount());
+        ArrayCollection<DexLayout> layoutList = new ArrayCollection<>(classList.size());
+        for (DexFile dexFile : directory) {
+            for (DexLayout dexLayout : dexFile) {
+                Section<ClassId> section = dexLayout.getSection(SectionType.CLASS_ID);
+                if (section == null) {
+                    continue;
+                }
+                for (ClassId classId : section) {
+                    classList.add(classId);
+                    layoutList.add(dexLayout);
+                }
+            }
+        }
+        int[] plan = plan(classList);
+        int dexCount = 0;
+        for (int target : plan) {
+            if (target >= dexCount) {
+                dexCount = target + 1;
+            }
+        }
+        int size = directory.size();
+        while (directory.size() < dexCount) {
+            directory.createDefault();
+            int check = directory.size();
+            if (check <= size) {
+                throw new IllegalArgumentException("Failed to create next dex");
+            }
+            size = check;
+        }
+        return move(directory, classList, layoutList, plan);
+    }
+    private int move(DexDirectory directory, List<ClassId> classList,
+                     List<DexLayout> layoutList, int[] plan) {
+        // Existing dex files may still hold classes leaving them, the incoming classes
+        // are staged in a detached dex per target and merged after the leaving ones are gone.
+        DexMergeOptions options = new DexMergeOptions(true);
+        int existing = 0;
+        for (DexLayout dexLayout : layoutList) {
+            int index = dexLayout.getDexFile().getIndex();
+            if (index >= existing) {
+                existing = index + 1;
+            }
+        }
+        DexFile[] staging = new DexFile[existing];
+        int result = 0;
+        int length = plan.length;
+        for (int i = 0; i < length; i++) {
+            int target = plan[i];
+            DexFile destination = directory.get(target);
+            DexLayout source = layoutList.get(i);
+            if (source.getDexFile() == destination) {
+                continue;
+            }
+            ClassId classId = classList.get(i);
+            if (target < existing) {
+                DexFile dexFile = staging[target];
+                if (dexFile == null) {
+                    dexFile = DexFile.createDefault();
+                    staging[target] = dexFile;
+                }
+                destination = dexFile;
+            }
+            if (!destination.merge(options, classId)) {
+                throw new IllegalStateException("Failed to move class: " + classId.getKey());
+            }
+            result ++;
+        }
+        directory.clearUnused();
+        for (int i = 0; i < existing; i++) {
+            DexFile dexFile = staging[i];
+            if (dexFile == null) {
+                continue;
+            }
+            DexLayout destination = directory.get(i).getOrCreateFirst();
+            ArrayCollection<ClassId> stagedList = ArrayCollection.of(
+                    dexFile.getFirst().getSection(SectionType.CLASS_ID).iterator());
+            for (ClassId classId : stagedList) {
+                if (!destination.merge(options, classId)) {
+                    throw new IllegalStateException("Failed to move class: " + classId.getKey());
+                }
+            }
+        }
+        return result;
+    }
+    /**
+     * Computes the destination dex index of each class, classes are not modified.
+     *
+     * @return array of dex index in the same order as the given classes
+     * */
+    public int[] plan(List<ClassId> classList) {
+        int size = classList.size();
+        FootprintBuilder builder = new FootprintBuilder();
+        int[][] footprints = new int[size][];
+        for (int i = 0; i < size; i++) {
+            footprints[i] = builder.build(classList.get(i));
+        }
+        int capacity = maxIdsPerDex - reserveSpace - 1;
+        int[] kinds = builder.getKinds();
+        int kindsCount = builder.getKindsCount();
+
+        int[] groups = buildGroups(classList);
+        int[] plan = new int[size];
+        ArrayCollection<Bin> bins = new ArrayCollection<>();
+        bins.add(new Bin(kinds, kindsCount, capacity));
+
+        // members of each group linked in class order, the root of a group is its first member
+        int[] next = new int[size];
+        int[] tails = new int[size];
+        Arrays.fill(tails, -1);
+        int mainHead = -1;
+        int mainTail = -1;
+        for (int i = size - 1; i >= 0; i--) {
+            int group = groups[i];
+            if (group < 0) {
+                next[i] = mainHead;
+                mainHead = i;
+                continue;
+            }
+            if (group != i) {
+                next[i] = tails[group];
+                tails[group] = i;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (groups[i] == i) {
+                next[i] = tails[i];
+            }
+        }
+        if (mainHead >= 0) {
+            int[] footprint = union(footprints, next, mainHead);
+            if (!bins.get(0).add(footprint)) {
+                throw new IllegalArgumentException("Main dex classes exceed dex id limits");
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (groups[i] != i) {
+                continue;
+            }
+            if (next[i] < 0) {
+                plan[i] = place(bins, classList.get(i), footprints[i], kinds, kindsCount, capacity);
+                continue;
+            }
+            int[] footprint = union(footprints, next, i);
+            if (!fitsEmpty(footprint, kinds, kindsCount, capacity)) {
+                for (int member = i; member >= 0; member = next[member]) {
+                    plan[member] = place(bins, classList.get(member), footprints[member],
+                            kinds, kindsCount, capacity);
+                }
+                continue;
+            }
+            int bin = place(bins, classList.get(i), footprint, kinds, kindsCount, capacity);
+            for (int member = i; member >= 0; member = next[member]) {
+                plan[member] = bin;
+            }
+        }
+        return plan;
+    }
+    private int place(ArrayCollection<Bin> bins, ClassId classId, int[] footprint,
+                      int[] kinds, int kindsCount, int capacity) {
+        int count = bins.size();
+        for (int i = 0; i < count; i++) {
+            if (bins.get(i).add(footprint)) {
+                return i;
+            }
+        }
+        Bin bin = new Bin(kinds, kindsCount, capacity);
+        if (!bin.add(footprint)) {
+            throw new IllegalArgumentException("Class exceeds dex id limits: " + classId.getKey());
+        }
+        bins.add(bin);
+        return count;
+    }
+    private static boolean fitsEmpty(int[] footprint, int[] kinds, int kindsCount, int capacity) {
+        int[] counts = new int[kindsCount];
+        for (int index : footprint) {
+            int kind = kinds[index];
+            counts[kind] ++;
+            if (counts[kind] > capacity) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Returns group id of each class, main dex classes get -1 and the rest get the
+     * index of the first class of their group
+     * */
+    private int[] buildGroups(List<ClassId> classList) {
+        int size = classList.size();
+        int[] parents = new int[size + 1];
+        for (int i = 0; i <= size; i++) {
+            parents[i] = i;
+        }
+        // index size is the main dex root
+        Predicate<? super TypeKey> mainDexFilter = this.mainDexFilter;
+        if (mainDexFilter != null) {
+            for (int i = 0; i < size; i++) {
+                if (mainDexFilter.test(classList.get(i).getKey())) {
+                    union(parents, i, size);
+                }
+            }
+        }
+        if (keepHierarchies) {
+            Map<TypeKey, Integer> indexMap = new HashMap<>(size);
+            for (int i = 0; i < size; i++) {
+                indexMap.put(classList.get(i).getKey(), i);
+            }
+            for (int i = 0; i < size; i++) {
+                Iterator<TypeKey> iterator = classList.get(i).getInstanceKeys();
+                while (iterator.hasNext()) {
+                    TypeKey typeKey = iterator.next();
+                    if (typeKey == null) {
+                        continue;
+                    }
+                    Integer index = indexMap.get(typeKey);
+                    if (index != null) {
+                        union(parents, i, index);
+                    }
+                }
+            }
+        }
+        int[] groups = new int[size];
+        int mainRoot = find(parents, size);
+        for (int i = 0; i < size; i++) {
+            int root = find(parents, i);
+            groups[i] = root == mainRoot ? -1 : root;
+        }
+        return groups;
+    }
+    private static void union(int[] parents, int i1, int i2) {
+        int root1 = find(parents, i1);
+        int root2 = find(parents, i2);
+        if (root1 == root2) {
+            return;
+        }
+        // the main dex root (last index) always wins, otherwise the smaller index
+        int main = parents.length - 1;
+        if (root1 == main || (root2 != main && root1 < root2)) {
+            parents[root2] = root1;
+        } else {
+            parents[root1] = root2;
+        }
+    }
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+    private static int[] union(int[][] footprints, int[] next, int head) {
+        int length = 0;
+        for (int member = head; member >= 0; member = next[member]) {
+            length += footprints[member].length;
+        }
+        int[] result = new int[length];
+        int position = 0;
+        for (int member = head; member >= 0; member = next[member]) {
+            int[] footprint = footprints[member];
+            System.arraycopy(footprint, 0, result, position, footprint.length);
+            position += footprint.length;
+        }
+        Arrays.sort(result);
+        int unique = 0;
+        for (int i = 0; i < length; i++) {
+            if (unique == 0 || result[unique - 1] != result[i]) {
+                result[unique] = result[i];
+                unique ++;
+            }
+        }
+        return Arrays.copyOf(result, unique);
+    }
+
+    static class Bin {
+
+        private final int[] kinds;
+        private final int[] counts;
+        private final int[] pending;
+        private final int capacity;
+        private long[] bits;
+
+        Bin(int[] kinds, int kindsCount, int capacity) {
+            this.kinds = kinds;
+            this.counts = new int[kindsCount];
+            this.pending = new int[kindsCount];
+            this.capacity = capacity;
+            this.bits = new long[(kinds.length + 63) >>> 6];
+        }
+
+        boolean add(int[] footprint) {
+            long[] bits = this.bits;
+            int[] kinds = this.kinds;
+            int[] counts = this.counts;
+            int[] pending = this.pending;
+            int capacity = this.capacity;
+            Arrays.fill(pending, 0);
+            // ids are indexed in discovery order, ids new to this bin are mostly at the end
+            for (int i = footprint.length - 1; i >= 0; i--) {
+                int index = footprint[i];
+                if ((bits[index >>> 6] & (1L << index)) != 0) {
+                    continue;
+                }
+                int kind = kinds[index];
+                int count = pending[kind] + 1;
+                if (counts[kind] + count > capacity) {
+                    return false;
+                }
+                pending[kind] = count;
+            }
+            for (int index : footprint) {
+                bits[index >>> 6] |= 1L << index;
+            }
+            int length = counts.length;
+            for (int i = 0; i < length; i++) {
+                counts[i] += pending[i];
+            }
+            return true;
+        }
+        int getCount(int kind) {
+            return counts[kind];
+        }
+    }
+
+    static class FootprintBuilder {
+
+        private final ArrayCollection<SectionType<?>> sectionTypes;
+        private final ArrayCollection<Map<Key, Integer>> indexMaps;
+        private int[] kinds;
+        private int[] stamps;
+        private int indexCount;
+        private int stamp;
+        private int[] buffer;
+
+        FootprintBuilder() {
+            this.sectionTypes = new ArrayCollection<>();
+            this.indexMaps = new ArrayCollection<>();
+            this.kinds = new int[1024];
+            this.stamps = new int[1024];
+            this.buffer = new int[256];
+        }
+
+        int[] build(ClassId classId) {
+            stamp ++;
+            int count = 0;
+            ArrayCollection<IdItem> pending = classId.listUsedIds();
+            for (int i = 0; i < pending.size(); i++) {
+                IdItem idItem = pending.get(i);
+                SectionType<?> sectionType = idItem.getSectionType();
+                if (!sectionType.isIdSection()) {
+                    continue;
+                }
+                int index = indexOf(sectionType, idItem.getKey());
+                if (index < 0 || stamps[index] == stamp) {
+                    continue;
+                }
+                stamps[index] = stamp;
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, count * 2);
+                }
+                buffer[count] = index;
+                count ++;
+                pending.addAll(idItem.usedIds());
+                if (idItem instanceof TypeId) {
+                    StringId stringId = ((TypeId) idItem).getNameId();
+                    pending.add(stringId);
+                }
+            }
+            int[] result = Arrays.copyOf(buffer, count);
+            Arrays.sort(result);
+            return result;
+        }
+        private int indexOf(SectionType<?> sectionType, Key key) {
+            if (key == null) {
+                return -1;
+            }
+            int kind = sectionTypes.indexOf(sectionType);
+            if (kind < 0) {
+                kind = sectionTypes.size();
+                sectionTypes.add(sectionType);
+                indexMaps.add(new HashMap<>());
+            }
+            Map<Key, Integer> map = indexMaps.get(kind);
+            Integer index = map.get(key);
+            if (index != null) {
+                return index;
+            }
+            int result = indexCount;
+            if (result == kinds.length) {
+                kinds = Arrays.copyOf(kinds, result * 2);
+                stamps = Arrays.copyOf(stamps, result * 2);
+            }
+            kinds[result] = kind;
+            indexCount = result + 1;
+            map.put(key, result);
+            return result;
+        }
+        int[] getKinds() {
+            return kinds;
+        }
+        int getKindsCount() {
+            return sectionTypes.size();
+        }
+        int getIndexCount() {
+            return indexCount;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.dex.model;
+
+import com.reandroid.common.FileChannelInputStream;
+import com.reandroid.common.Origin;
+import com.reandroid.dex.smali.SmaliReader;
+import com.reandroid.dex.smali.SmaliReaderSetting;
+import com.reandroid.dex.smali.model.SmaliClass;
+import com.reandroid.utils.collection.ArrayCollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses smali files into {@link SmaliClass} models on worker threads ahead of the caller.
+ * Models are handed back to the calling thread strictly in the given file order, thus
+ * interning them produces the same dex as parsing sequentially. At most
+ * {@link #getMaxPending()} parsed models are held in memory. Parsing continues past
+ * failed files so that all parse errors are reported at once, nothing is handed back
+ * after the first failure. Interruption is not a parse error, pending files are cancelled
+ * and the InterruptedIOException is thrown at once.
+ * */
+class ParallelSmaliParser {
+
+    private final SmaliReaderSetting readerSetting;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int maxPending;
+
+    ParallelSmaliParser(SmaliReaderSetting readerSetting, ExecutorService executor, int threadCount) {
+        if (threadCount < 1) {
+            threadCount = 1;
+        }
+        boolean ownExecutor = executor == null;
+        if (ownExecutor) {
+            executor = Executors.newFixedThreadPool(threadCount, ParallelSmaliParser::newThread);
+        }
+        this.readerSetting = readerSetting;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.maxPending = threadCount * 4;
+    }
+
+    int getMaxPending() {
+        return maxPending;
+    }
+
+    void parse(List<File> files, SmaliClassConsumer consumer) throws IOException {
+        int length = files.size();
+        ArrayDeque<Future<SmaliClass>> pending = new ArrayDeque<>(maxPending);
+        List<Throwable> errors = new ArrayCollection<>();
+        int submitted = 0;
+        try {
+            for (int i = 0; i < length; i++) {
+                while (submitted < length && pending.size() < maxPending) {
+                    pending.add(submit(files.get(submitted)));
+                    submitted ++;
+                }
+                SmaliClass smaliClass;
+                try {
+                    smaliClass = await(pending.remove());
+                } catch (InterruptedIOException exception) {
+                    throw exception;
+                } catch (IOException | RuntimeException exception) {
+                    errors.add(exception);
+                    continue;
+                }
+                if (errors.isEmpty()) {
+                    consumer.accept(smaliClass);
+                }
+            }
+        } finally {
+            for (Future<SmaliClass> future : pending) {
+                future.cancel(true);
+            }
+            if (ownExecutor) {
+                executor.shutdownNow();
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw parseErrors(errors, length);
+        }
+    }
+    private Future<SmaliClass> submit(File file) {
+        return executor.submit(() -> parse(file));
+    }
+    private SmaliClass parse(File file) throws IOException {
+        byte[] bytes = FileChannelInputStream.read(file, (int) file.length());
+        SmaliReader reader = new SmaliReader(bytes);
+        reader.setReaderSetting(readerSetting);
+        reader.setOrigin(Origin.createNew(file));
+        SmaliClass smaliClass = new SmaliClass();
+        smaliClass.parse(reader);
+        return smaliClass;
+    }
+    private static IOException parseErrors(List<Throwable> errors, int total) {
+        Throwable first = errors.get(0);
+        if (errors.size() == 1 && first instanceof IOException) {
+            return (IOException) first;
+        }
+        IOException exception = new IOException("Failed to parse " + errors.size()
+                + " of " + total + " smali files, first: " + first.getMessage(), first);
+        int size = errors.size();
+        for (int i = 1; i < size; i++) {
+            exception.addSuppressed(errors.get(i));
+        }
+        return exception;
+    }
+    private static SmaliClass await(Future<SmaliClass> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "smali-parse");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    interface SmaliClassConsumer {
+        void accept(SmaliClass smaliClass) throws IOException;
+    }
+}
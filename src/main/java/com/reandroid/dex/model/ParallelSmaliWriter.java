@@ -0,0 +1,276 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.dex.model;
+
+import com.reandroid.dex.id.ClassId;
+import com.reandroid.dex.sections.SectionType;
+import com.reandroid.dex.smali.SmaliFileNameFactory;
+import com.reandroid.dex.smali.SmaliWriter;
+import com.reandroid.dex.smali.SmaliWriterSetting;
+import com.reandroid.utils.io.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Renders smali of classes on worker threads and writes the files from the calling thread.
+ * File names are assigned on the calling thread in class order before rendering, thus
+ * names and contents are identical to {@link DexLayout#writeSmali(SmaliWriterSetting, File)}.
+ * Render buffers are reused between classes of this writer only, at most
+ * {@link #getMaxPending()} rendered files wait to be written.
+ * Comment formatters of {@link SmaliWriterSetting} look up classes and resources through
+ * lazily built state, when any is set classes are rendered on the calling thread.
+ * */
+class ParallelSmaliWriter {
+
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+    private final SmaliWriterSetting writerSetting;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int maxPending;
+    private final boolean sequential;
+    private final Queue<RenderBuffer> renderBuffers;
+    private final SmaliWriteTimings timings;
+
+    ParallelSmaliWriter(SmaliWriterSetting writerSetting, ExecutorService executor, int threadCount) {
+        if (threadCount < 1) {
+            threadCount = 1;
+        }
+        boolean sequential = hasCommentFormatters(writerSetting);
+        boolean ownExecutor = executor == null && !sequential;
+        if (ownExecutor) {
+            executor = new ForkJoinPool(threadCount);
+        }
+        this.writerSetting = writerSetting;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.maxPending = threadCount * 4;
+        this.sequential = sequential;
+        this.renderBuffers = new ConcurrentLinkedQueue<>();
+        this.timings = new SmaliWriteTimings();
+    }
+
+    boolean isSequential() {
+        return sequential;
+    }
+    int getMaxPending() {
+        return maxPending;
+    }
+    SmaliWriteTimings getTimings() {
+        return timings;
+    }
+
+    void write(DexLayout dexLayout, File root) throws IOException {
+        long start = System.nanoTime();
+        // decoding binds references of shared id items, keep it on one thread
+        dexLayout.getDexLayoutBlock().getSectionList().decodeLazyCode();
+        SmaliFileNameFactory fileNameFactory = new SmaliFileNameFactory(root);
+        Iterator<ClassId> iterator = dexLayout.getItems(SectionType.CLASS_ID);
+        ArrayDeque<Future<Rendered>> pending = new ArrayDeque<>(maxPending);
+        SmaliWriteTimings timings = this.timings;
+        try {
+            while (iterator.hasNext() || !pending.isEmpty()) {
+                while (iterator.hasNext() && pending.size() < maxPending) {
+                    long time = System.nanoTime();
+                    ClassId classId = iterator.next();
+                    File file = fileNameFactory.getUniqueFilenameForClass(classId.getKey());
+                    timings.addNaming(System.nanoTime() - time);
+                    if (sequential) {
+                        pending.add(CompletableFuture.completedFuture(render(classId, file)));
+                    } else {
+                        pending.add(executor.submit(() -> render(classId, file)));
+                    }
+                }
+                Rendered rendered = await(pending.remove());
+                long time = System.nanoTime();
+                rendered.write();
+                timings.addWrite(System.nanoTime() - time);
+                timings.addRender(rendered.renderNanos);
+                timings.addClass();
+            }
+        } finally {
+            for (Future<Rendered> future : pending) {
+                future.cancel(true);
+            }
+            timings.addTotal(System.nanoTime() - start);
+        }
+    }
+    void close() {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+        renderBuffers.clear();
+    }
+
+    private Rendered render(ClassId classId, File file) throws IOException {
+        long start = System.nanoTime();
+        RenderBuffer buffer = renderBuffers.poll();
+        if (buffer == null) {
+            buffer = new RenderBuffer();
+        }
+        try {
+            buffer.reset();
+            SmaliWriter writer = new SmaliWriter(writerSetting);
+            writer.setWriter(buffer);
+            classId.append(writer);
+            writer.close();
+            ByteBuffer bytes = buffer.encode();
+            return new Rendered(file, bytes, System.nanoTime() - start);
+        } finally {
+            renderBuffers.add(buffer);
+        }
+    }
+    private static boolean hasCommentFormatters(SmaliWriterSetting writerSetting) {
+        if (writerSetting == null) {
+            return false;
+        }
+        if (writerSetting.getResourceIdComment() != null) {
+            return true;
+        }
+        if (!writerSetting.isEnableComments()) {
+            return false;
+        }
+        return !isEmpty(writerSetting.getMethodCommentList())
+                || !isEmpty(writerSetting.getClassCommentList());
+    }
+    private static boolean isEmpty(List<?> list) {
+        return list == null || list.isEmpty();
+    }
+    private static Rendered await(Future<Rendered> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    static class Rendered {
+
+        final File file;
+        final ByteBuffer bytes;
+        final long renderNanos;
+
+        Rendered(File file, ByteBuffer bytes, long renderNanos) {
+            this.file = file;
+            this.bytes = bytes;
+            this.renderNanos = renderNanos;
+        }
+
+        void write() throws IOException {
+            OutputStream outputStream = FileUtil.outputStream(file);
+            try {
+                outputStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(),
+                        bytes.remaining());
+            } finally {
+                outputStream.close();
+            }
+        }
+    }
+
+    /**
+     * Reusable char buffer, encodes with the same replacement rules as the
+     * OutputStreamWriter used by sequential writes.
+     * */
+    static class RenderBuffer extends Writer {
+
+        private StringBuilder builder;
+        private final CharsetEncoder encoder;
+
+        RenderBuffer() {
+            this.builder = new StringBuilder(8192);
+            this.encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        void reset() {
+            if (builder.capacity() > MAX_POOLED_CAPACITY) {
+                this.builder = new StringBuilder(8192);
+            } else {
+                builder.setLength(0);
+            }
+        }
+        ByteBuffer encode() throws IOException {
+            return encoder.reset().encode(CharBuffer.wrap(builder));
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            builder.append(chars, offset, length);
+        }
+        @Override
+        public void write(int c) {
+            builder.append((char) c);
+        }
+        @Override
+        public void write(String str, int offset, int length) {
+            builder.append(str, offset, offset + length);
+        }
+        @Override
+        public Writer append(CharSequence charSequence) {
+            builder.append(charSequence);
+            return this;
+        }
+        @Override
+        public Writer append(CharSequence charSequence, int start, int end) {
+            builder.append(charSequence, start, end);
+            return this;
+        }
+        @Override
+        public Writer append(char c) {
+            builder.append(c);
+            return this;
+        }
+        @Override
+        public void flush() {
+        }
+        @Override
+        public void close() {
+        }
+    }
+}
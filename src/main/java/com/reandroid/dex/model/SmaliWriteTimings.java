@@ -0,0 +1,76 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.dex.model;
+
+/**
+ * Per-phase timings of a parallel smali write. Naming and writing run on the calling
+ * thread, rendering is the time summed over all worker threads.
+ * */
+public class SmaliWriteTimings {
+
+    private int classCount;
+    private long namingNanos;
+    private long renderNanos;
+    private long writeNanos;
+    private long totalNanos;
+
+    SmaliWriteTimings() {
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+    public long getNamingNanos() {
+        return namingNanos;
+    }
+    public long getRenderNanos() {
+        return renderNanos;
+    }
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    void addClass() {
+        this.classCount ++;
+    }
+    void addNaming(long nanos) {
+        this.namingNanos += nanos;
+    }
+    void addRender(long nanos) {
+        this.renderNanos += nanos;
+    }
+    void addWrite(long nanos) {
+        this.writeNanos += nanos;
+    }
+    void addTotal(long nanos) {
+        this.totalNanos += nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "classes = " + getClassCount()
+                + ", naming = " + toMillis(getNamingNanos())
+                + "ms, render = " + toMillis(getRenderNanos())
+                + "ms, write = " + toMillis(getWriteNanos())
+                + "ms, total = " + toMillis(getTotalNanos()) + "ms";
+    }
+    private static long toMillis(long nanos) {
+        return nanos / 1000000L;
+    }
+}
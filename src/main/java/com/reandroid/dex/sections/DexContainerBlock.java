@@ -40,6 +40,7 @@ public class DexContainerBlock extends BlockList<DexLayoutBlock> implements
     private String mSimpleName;
 
     private boolean mReading;
+    private boolean mLazyCode;
 
     public DexContainerBlock() {
         super();
@@ -256,6 +257,7 @@ public class DexContainerBlock extends BlockList<DexLayoutBlock> implements
         if (size < 1) {
             return;
         }
+        decodeLazyCode();
         DexLayoutBlock last = get(size);
         for (int i = 0; i < size; i ++) {
             last.transferSharedSectionsFrom(get(i));
@@ -290,6 +292,23 @@ public class DexContainerBlock extends BlockList<DexLayoutBlock> implements
     public boolean isReading() {
         return mReading;
     }
+    /**
+     * When enabled, subsequent reads keep code items undecoded until first access,
+     * untouched code items are written back byte for byte.
+     * */
+    public void setLazyCode(boolean lazyCode) {
+        this.mLazyCode = lazyCode;
+    }
+    public boolean isLazyCode() {
+        return mLazyCode;
+    }
+    public int decodeLazyCode() {
+        int result = 0;
+        for (DexLayoutBlock layoutBlock : this) {
+            result += layoutBlock.getSectionList().decodeLazyCode();
+        }
+        return result;
+    }
 
     public int getVersion() {
         DexLayoutBlock first = getFirst();
@@ -21,6 +21,8 @@ import com.reandroid.dex.base.IntegerPair;
 import com.reandroid.dex.id.IdItem;
 
 import java.io.IOException;
+import java.util.Comparator;
+import java.util.function.Predicate;
 
 public class IdSectionArray<T extends IdItem> extends SectionArray<T> {
 
@@ -31,4 +33,39 @@ public class IdSectionArray<T extends IdItem> extends SectionArray<T> {
     public void readChild(BlockReader reader, T item) throws IOException{
         item.onReadBytes(reader);
     }
+
+    @Override
+    public boolean sort(Comparator<? super T> comparator) {
+        decodeLazyCodeBeforeSort(comparator);
+        return super.sort(comparator);
+    }
+    @Override
+    public boolean swap(T item1, T item2) {
+        if (item1 != item2) {
+            decodeLazyCode();
+        }
+        return super.swap(item1, item2);
+    }
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        SectionList sectionList = getSectionList();
+        if (sectionList != null && sectionList.isLazyCodePending() && countIf(filter) == 0) {
+            return false;
+        }
+        return super.removeIf(filter);
+    }
+    @Override
+    protected Object onRemoveRequestStarted() {
+        decodeLazyCode();
+        return super.onRemoveRequestStarted();
+    }
+    private void decodeLazyCode() {
+        SectionList sectionList = getSectionList();
+        if (sectionList != null) {
+            sectionList.decodeLazyCode();
+        }
+    }
+    private SectionList getSectionList() {
+        return getParentInstance(SectionList.class);
+    }
 }
@@ -20,6 +20,7 @@ import com.reandroid.dex.base.*;
 import com.reandroid.dex.common.FullRefresh;
 import com.reandroid.dex.common.SectionItem;
 
+import java.util.Comparator;
 import java.util.Iterator;
 
 public class SectionArray<T extends SectionItem> extends BlockListArray<T> implements FullRefresh {
@@ -85,6 +86,16 @@ public class SectionArray<T extends SectionItem> extends BlockListArray<T> imple
         }
         item.onRemovedInternal();
     }
+    /**
+     * Decodes pending lazy code of the parent section list before items get re-ordered
+     * with the given comparator, lazy code refers ids by their original index.
+     * */
+    void decodeLazyCodeBeforeSort(Comparator<? super T> comparator) {
+        SectionList sectionList = getParentInstance(SectionList.class);
+        if (sectionList != null && sectionList.isLazyCodePending() && needsSort(comparator)) {
+            sectionList.decodeLazyCode();
+        }
+    }
     @SuppressWarnings("unchecked")
     Section<T> getParentSection(){
         return getParentInstance(Section.class);
@@ -25,6 +25,7 @@ import com.reandroid.dex.base.BlockListArray;
 import com.reandroid.dex.common.FullRefresh;
 import com.reandroid.dex.common.SectionItem;
 import com.reandroid.dex.common.SectionTool;
+import com.reandroid.dex.data.CodeItem;
 import com.reandroid.dex.header.DexHeader;
 import com.reandroid.dex.id.ClassId;
 import com.reandroid.dex.id.IdItem;
@@ -54,6 +55,7 @@ public class SectionList extends FixedBlockContainer
     private final BlockList<Section<?>> sectionArray;
     private final Map<SectionType<?>, Section<?>> typeMap;
     private final MapList mapList;
+    private boolean mLazyCodePending;
 
     public SectionList() {
         super(1);
@@ -114,6 +116,7 @@ public class SectionList extends FixedBlockContainer
         return result;
     }
     public int clearUnused() {
+        decodeLazyCode();
         int result = 0;
         SectionType<?>[] remove = SectionType.getRemoveOrderList();
         for (SectionType<?> sectionType : remove) {
@@ -153,6 +156,7 @@ public class SectionList extends FixedBlockContainer
         readSpecialSections(reader);
         readBody(reader, filter);
         reader.seek(position + header.getFileSize());
+        mLazyCodePending = isLazyCode() && getSection(SectionType.CODE) != null;
     }
     private void readSpecialSections(BlockReader reader) throws IOException {
         getSection(SectionType.HEADER).readBytes(reader);
@@ -185,6 +189,35 @@ public class SectionList extends FixedBlockContainer
             ensureMapList(section);
         }
     }
+    public boolean isLazyCode() {
+        DexContainerBlock containerBlock = getDexContainerBlock();
+        return containerBlock != null && containerBlock.isLazyCode();
+    }
+    boolean isLazyCodePending() {
+        return mLazyCodePending;
+    }
+    /**
+     * Decodes all code items left undecoded by lazy-code reading. Undecoded code refers
+     * ids by their original index, thus this must run before any id gets removed or
+     * re-ordered.
+     * */
+    public int decodeLazyCode() {
+        if (!mLazyCodePending) {
+            return 0;
+        }
+        mLazyCodePending = false;
+        Section<CodeItem> section = getSection(SectionType.CODE);
+        if (section == null) {
+            return 0;
+        }
+        int result = 0;
+        for (CodeItem codeItem : section) {
+            if (codeItem.decodeLazyCode()) {
+                result ++;
+            }
+        }
+        return result;
+    }
     @Override
     public boolean isReading() {
         DexContainerBlock containerBlock = getDexContainerBlock();
@@ -40,6 +40,7 @@ public class StringDataArray extends DataSectionArray<StringData> {
     public boolean sort(Comparator<? super StringData> comparator, Swappable swappable) {
         StringIdArray stringIdArray = getStringIdArray();
         if (stringIdArray != null) {
+            decodeLazyCodeBeforeSort(comparator);
             return super.sort(comparator, stringIdArray);
         }
         return false;
@@ -23,38 +23,90 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 
+/**
+ * CRC-32 (ZIP/PNG polynomial). By default updates are delegated to java.util.zip.CRC32
+ * which is intrinsic backed on most runtimes, otherwise slicing-by-8 tables are used.
+ * CRC32C is not an option here, zip entries require this polynomial.
+ * Checksums of adjacent chunks computed separately (e.g. in parallel) can be merged
+ * with {@link #combine(long, long, long)}.
+ * */
 public class Crc32 extends Checksum {
 
-    private static final long[] CRC_TABLE;
+    private static final int POLYNOMIAL = 0xedb88320;
+
+    private static final int[] T0;
+    private static final int[] T1;
+    private static final int[] T2;
+    private static final int[] T3;
+    private static final int[] T4;
+    private static final int[] T5;
+    private static final int[] T6;
+    private static final int[] T7;
 
     static {
-        long[] table = new long[256];
-        CRC_TABLE = table;
+        int[][] tables = new int[8][256];
+        int[] table = tables[0];
         for (int i = 0; i < 256; i++) {
-            long c = i;
+            int c = i;
             for (int j = 0; j < 8; j++) {
                 if ((c & 1) == 1) {
-                    c = 0xedb88320L ^ (c >> 1);
+                    c = POLYNOMIAL ^ (c >>> 1);
                 } else {
-                    c = c >> 1;
+                    c = c >>> 1;
                 }
             }
             table[i] = c;
         }
+        for (int i = 0; i < 256; i++) {
+            int c = table[i];
+            for (int k = 1; k < 8; k++) {
+                c = table[c & 0xff] ^ (c >>> 8);
+                tables[k][i] = c;
+            }
+        }
+        T0 = tables[0];
+        T1 = tables[1];
+        T2 = tables[2];
+        T3 = tables[3];
+        T4 = tables[4];
+        T5 = tables[5];
+        T6 = tables[6];
+        T7 = tables[7];
     }
 
-    private long mCrc;
+    private final java.util.zip.CRC32 delegate;
+    private int mCrc;
     private long mLength;
 
-    public Crc32() {
+    /**
+     * @param intrinsic true to delegate to java.util.zip.CRC32 (if available)
+     * */
+    public Crc32(boolean intrinsic) {
         super();
-        this.mCrc = 0xffffffffL;
+        java.util.zip.CRC32 delegate = null;
+        if (intrinsic && INTRINSIC_AVAILABLE) {
+            delegate = new java.util.zip.CRC32();
+        }
+        this.delegate = delegate;
+        this.mCrc = 0xffffffff;
+    }
+    public Crc32() {
+        this(DEFAULT_INTRINSIC);
     }
 
+    public boolean isIntrinsic() {
+        return delegate != null;
+    }
     @Override
     public long getValue() {
-        return mCrc ^ 0xffffffffL;
+        java.util.zip.CRC32 delegate = this.delegate;
+        if (delegate != null) {
+            return delegate.getValue();
+        }
+        return (~mCrc) & 0xffffffffL;
     }
 
     public long getLength() {
@@ -63,23 +115,141 @@ public class Crc32 extends Checksum {
 
     @Override
     public void reset() {
-        this.mCrc = 0xffffffffL;
+        java.util.zip.CRC32 delegate = this.delegate;
+        if (delegate != null) {
+            delegate.reset();
+        }
+        this.mCrc = 0xffffffff;
         this.mLength = 0;
     }
 
     @Override
     public void update(byte[] data, int offset, int length) {
-        long c = mCrc;
-        int end = offset + length;
-        long[] table = CRC_TABLE;
-        for (int i = offset; i < end; i++) {
-            int b = data[i] & 0xff;
-            c = table[(int)((c ^ b) & 0xff)] ^ (c >> 8);
+        java.util.zip.CRC32 delegate = this.delegate;
+        if (delegate != null) {
+            delegate.update(data, offset, length);
+        } else {
+            this.mCrc = update(mCrc, data, offset, length);
+        }
+        this.mLength += length;
+    }
+    /**
+     * Consumes the remaining bytes of the buffer
+     * */
+    public void update(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        java.util.zip.CRC32 delegate = this.delegate;
+        if (delegate != null) {
+            delegate.update(buffer);
+        } else if (buffer.hasArray()) {
+            int position = buffer.position();
+            this.mCrc = update(mCrc, buffer.array(), buffer.arrayOffset() + position, length);
+            ((Buffer) buffer).position(position + length);
+        } else {
+            byte[] bytes = new byte[Math.min(length, 8192)];
+            int c = this.mCrc;
+            while (buffer.hasRemaining()) {
+                int count = Math.min(bytes.length, buffer.remaining());
+                buffer.get(bytes, 0, count);
+                c = update(c, bytes, 0, count);
+            }
+            this.mCrc = c;
         }
-        this.mCrc = c;
         this.mLength += length;
     }
 
+    // slicing-by-8, c is the inverted (running) crc
+    private static int update(int c, byte[] data, int offset, int length) {
+        int[] t0 = T0, t1 = T1, t2 = T2, t3 = T3, t4 = T4, t5 = T5, t6 = T6, t7 = T7;
+        int i = offset;
+        int end = offset + length;
+        int end8 = end - 7;
+        while (i < end8) {
+            int one = ((data[i] & 0xff)
+                    | ((data[i + 1] & 0xff) << 8)
+                    | ((data[i + 2] & 0xff) << 16)
+                    | (data[i + 3] << 24)) ^ c;
+            int two = (data[i + 4] & 0xff)
+                    | ((data[i + 5] & 0xff) << 8)
+                    | ((data[i + 6] & 0xff) << 16)
+                    | (data[i + 7] << 24);
+            c = t7[one & 0xff]
+                    ^ t6[(one >>> 8) & 0xff]
+                    ^ t5[(one >>> 16) & 0xff]
+                    ^ t4[one >>> 24]
+                    ^ t3[two & 0xff]
+                    ^ t2[(two >>> 8) & 0xff]
+                    ^ t1[(two >>> 16) & 0xff]
+                    ^ t0[two >>> 24];
+            i += 8;
+        }
+        while (i < end) {
+            c = t0[(c ^ data[i]) & 0xff] ^ (c >>> 8);
+            i++;
+        }
+        return c;
+    }
+
+    /**
+     * Checksum of the concatenation of two chunks, given checksums of each
+     * (same as zlib crc32_combine)
+     * @param crc1 checksum of the first chunk
+     * @param crc2 checksum of the second chunk
+     * @param length2 length of the second chunk in bytes
+     * */
+    public static long combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        int[] even = new int[32];
+        int[] odd = new int[32];
+        // operator for one zero bit
+        odd[0] = POLYNOMIAL;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // two zero bits, then four zero bits
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        int c1 = (int) crc1;
+        // apply length2 zero bytes to crc1, first square gives operator for one zero byte
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                c1 = gf2MatrixTimes(even, c1);
+            }
+            length2 >>>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                c1 = gf2MatrixTimes(odd, c1);
+            }
+            length2 >>>= 1;
+        } while (length2 != 0);
+        return (c1 ^ (int) crc2) & 0xffffffffL;
+    }
+    private static int gf2MatrixTimes(int[] matrix, int vector) {
+        int sum = 0;
+        int i = 0;
+        while (vector != 0) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+            vector >>>= 1;
+            i++;
+        }
+        return sum;
+    }
+    private static void gf2MatrixSquare(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
     public static long of(byte[] bytes) {
         return of(bytes, 0, bytes.length);
     }
@@ -115,4 +285,16 @@ public class Crc32 extends Checksum {
         stream.close();
         return crc32.getValue();
     }
+
+    private static final boolean INTRINSIC_AVAILABLE = isClassAvailable("java.util.zip.CRC32");
+    private static final boolean DEFAULT_INTRINSIC = !Boolean.getBoolean("reandroid.crc32.tables");
+
+    private static boolean isClassAvailable(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (Throwable ignored) {
+            return false;
+        }
+    }
 }
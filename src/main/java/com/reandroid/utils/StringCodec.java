@@ -0,0 +1,279 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-light codec for string encodings of android binaries: UTF-8 and UTF-16LE
+ * of resource string pools and MUTF-8 of dex string data. Decoders work through a
+ * per-thread scratch buffer, encoders write directly into the destination array.
+ * */
+public class StringCodec {
+
+    /**
+     * Decodes UTF-8, three-byte encoded surrogates (CESU-8) are accepted as produced by
+     * some tools. Malformed input falls back to replacement decoding of String
+     * */
+    public static String decodeUtf8(byte[] bytes, int offset, int length) {
+        // String decoding is intrinsified for ascii/valid input; only input decoded
+        // with replacement chars needs the lenient loop
+        String text = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        if (text.indexOf('\uFFFD') < 0) {
+            return text;
+        }
+        return decodeCesu8(bytes, offset, length, text);
+    }
+    private static String decodeCesu8(byte[] bytes, int offset, int length, String replaced) {
+        char[] chars = scratch(length);
+        int count = 0;
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int b1 = bytes[i];
+            if (b1 >= 0) {
+                chars[count++] = (char) b1;
+                i++;
+            } else if ((b1 & 0xe0) == 0xc0) {
+                if (i + 1 >= end || (b1 & 0x1e) == 0 || isNotContinuation(bytes[i + 1])) {
+                    return replaced;
+                }
+                chars[count++] = (char) (((b1 & 0x1f) << 6) | (bytes[i + 1] & 0x3f));
+                i += 2;
+            } else if ((b1 & 0xf0) == 0xe0) {
+                if (i + 2 >= end || isNotContinuation(bytes[i + 1])
+                        || isNotContinuation(bytes[i + 2])) {
+                    return replaced;
+                }
+                int value = ((b1 & 0x0f) << 12) | ((bytes[i + 1] & 0x3f) << 6)
+                        | (bytes[i + 2] & 0x3f);
+                if (value < 0x800) {
+                    return replaced;
+                }
+                chars[count++] = (char) value;
+                i += 3;
+            } else if ((b1 & 0xf8) == 0xf0) {
+                if (i + 3 >= end || isNotContinuation(bytes[i + 1])
+                        || isNotContinuation(bytes[i + 2])
+                        || isNotContinuation(bytes[i + 3])) {
+                    return replaced;
+                }
+                int codePoint = ((b1 & 0x07) << 18) | ((bytes[i + 1] & 0x3f) << 12)
+                        | ((bytes[i + 2] & 0x3f) << 6) | (bytes[i + 3] & 0x3f);
+                if (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT) {
+                    return replaced;
+                }
+                chars[count++] = Character.highSurrogate(codePoint);
+                chars[count++] = Character.lowSurrogate(codePoint);
+                i += 4;
+            } else {
+                return replaced;
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Decodes UTF-16LE, malformed input (odd length or unpaired surrogates) falls back
+     * to replacement decoding of String
+     * */
+    public static String decodeUtf16(byte[] bytes, int offset, int length) {
+        if ((length & 1) != 0) {
+            return new String(bytes, offset, length, StandardCharsets.UTF_16LE);
+        }
+        int count = length / 2;
+        char[] chars = scratch(count);
+        boolean highSurrogate = false;
+        for (int i = 0; i < count; i++) {
+            int position = offset + i * 2;
+            char ch = (char) ((bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8);
+            if (highSurrogate != Character.isLowSurrogate(ch)) {
+                return new String(bytes, offset, length, StandardCharsets.UTF_16LE);
+            }
+            highSurrogate = Character.isHighSurrogate(ch);
+            chars[i] = ch;
+        }
+        if (highSurrogate) {
+            return new String(bytes, offset, length, StandardCharsets.UTF_16LE);
+        }
+        return new String(chars, 0, count);
+    }
+    /**
+     * Writes UTF-16LE code units (2 * text.length() bytes), unpaired surrogates are
+     * replaced by U+FFFD as String.getBytes does
+     * @return the end position
+     * */
+    public static int encodeUtf16(String text, byte[] dest, int offset) {
+        int length = text.length();
+        // bulk copy, charAt on non latin-1 strings is not inlined well
+        char[] chars = scratch(length);
+        text.getChars(0, length, chars, 0);
+        for (int i = 0; i < length; i++) {
+            char ch = chars[i];
+            if (Character.isSurrogate(ch)) {
+                if (Character.isHighSurrogate(ch) && i + 1 < length
+                        && Character.isLowSurrogate(chars[i + 1])) {
+                    dest[offset++] = (byte) ch;
+                    dest[offset++] = (byte) (ch >> 8);
+                    i++;
+                    ch = chars[i];
+                } else {
+                    ch = '\uFFFD';
+                }
+            }
+            dest[offset++] = (byte) ch;
+            dest[offset++] = (byte) (ch >> 8);
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes dex MUTF-8 data of utf16Length chars
+     * @throws IOException on malformed input
+     * */
+    public static String decodeMutf8(byte[] bytes, int offset, int utf16Length) throws IOException {
+        int end = offset + utf16Length;
+        int i = offset;
+        if (end <= bytes.length) {
+            while (i < end && bytes[i] > 0) {
+                i++;
+            }
+            if (i == end) {
+                return new String(bytes, offset, utf16Length, StandardCharsets.ISO_8859_1);
+            }
+        }
+        char[] chars = scratch(utf16Length);
+        int count = i - offset;
+        for (int j = 0; j < count; j++) {
+            chars[j] = (char) bytes[offset + j];
+        }
+        while (count < utf16Length) {
+            int at = i - offset;
+            int v0 = bytes[i] & 0xff;
+            switch (v0 >> 4) {
+                case 0x00: case 0x01: case 0x02: case 0x03:
+                case 0x04: case 0x05: case 0x06: case 0x07: {
+                    // 0XXXXXXX -- single-byte encoding
+                    if (v0 == 0) {
+                        // A single zero byte is illegal.
+                        throw badUtf8(v0, at);
+                    }
+                    chars[count++] = (char) v0;
+                    i++;
+                    break;
+                }
+                case 0x0c: case 0x0d: {
+                    // 110XXXXX -- two-byte encoding
+                    int v1 = bytes[i + 1] & 0xff;
+                    if ((v1 & 0xc0) != 0x80) {
+                        throw badUtf8(v1, at + 1);
+                    }
+                    int value = ((v0 & 0x1f) << 6) | (v1 & 0x3f);
+                    if (value != 0 && value < 0x80) {
+                        // This should have been represented with one-byte encoding.
+                        throw badUtf8(v1, at + 1);
+                    }
+                    chars[count++] = (char) value;
+                    i += 2;
+                    break;
+                }
+                case 0x0e: {
+                    // 1110XXXX -- three-byte encoding
+                    int v1 = bytes[i + 1] & 0xff;
+                    if ((v1 & 0xc0) != 0x80) {
+                        throw badUtf8(v1, at + 1);
+                    }
+                    int v2 = bytes[i + 2] & 0xff;
+                    if ((v2 & 0xc0) != 0x80) {
+                        throw badUtf8(v2, at + 2);
+                    }
+                    int value = ((v0 & 0x0f) << 12) | ((v1 & 0x3f) << 6) | (v2 & 0x3f);
+                    if (value < 0x800) {
+                        // This should have been represented with one- or two-byte encoding.
+                        throw badUtf8(v2, at + 2);
+                    }
+                    chars[count++] = (char) value;
+                    i += 3;
+                    break;
+                }
+                default: {
+                    // 10XXXXXX, 1111XXXX -- illegal
+                    throw badUtf8(v0, at);
+                }
+            }
+        }
+        return new String(chars, 0, count);
+    }
+    /**
+     * Number of bytes {@link #encodeMutf8(String, byte[], int)} writes, excluding
+     * length prefix and terminator
+     * */
+    public static int mutf8Length(String text) {
+        int length = text.length();
+        int result = length;
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (ch == 0 || ch >= 0x80) {
+                result += ch < 0x800 ? 1 : 2;
+            }
+        }
+        return result;
+    }
+    /**
+     * Writes MUTF-8 bytes: '\0' as two bytes and supplementary chars as surrogate pairs
+     * @return the end position
+     * */
+    public static int encodeMutf8(String text, byte[] dest, int offset) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (ch != 0 && ch < 0x80) {
+                dest[offset++] = (byte) ch;
+            } else if (ch < 0x800) {
+                dest[offset++] = (byte) (((ch >> 6) & 0x1f) | 0xc0);
+                dest[offset++] = (byte) ((ch & 0x3f) | 0x80);
+            } else {
+                dest[offset++] = (byte) (((ch >> 12) & 0x0f) | 0xe0);
+                dest[offset++] = (byte) (((ch >> 6) & 0x3f) | 0x80);
+                dest[offset++] = (byte) ((ch & 0x3f) | 0x80);
+            }
+        }
+        return offset;
+    }
+
+    private static boolean isNotContinuation(byte b) {
+        return (b & 0xc0) != 0x80;
+    }
+    private static IOException badUtf8(int value, int offset) {
+        return new IOException("bad utf-8 byte " + HexUtil.toHex2("", (byte) value)
+                + " at offset " + offset);
+    }
+    private static char[] scratch(int length) {
+        if (length > MAX_SCRATCH) {
+            return new char[length];
+        }
+        char[] chars = SCRATCH.get();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            SCRATCH.set(chars);
+        }
+        return chars;
+    }
+
+    private static final int MAX_SCRATCH = 0x10000;
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[256]);
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.utils.collection;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map of primitive int keys, not thread safe
+ * */
+public class IntegerMap<V> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public IntegerMap(int initialCapacity){
+        int capacity = 8;
+        while (capacity < initialCapacity * 2){
+            capacity = capacity << 1;
+        }
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+    }
+    public IntegerMap(){
+        this(8);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key){
+        int[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        Object value;
+        while ((value = values[i]) != null){
+            if(keys[i] == key){
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+    public boolean containsKey(int key){
+        return get(key) != null;
+    }
+    /**
+     * Null values are not allowed, returns the previous value
+     * */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value){
+        if(value == null){
+            throw new NullPointerException("Null value");
+        }
+        if((size + 1) * 2 > keys.length){
+            grow();
+        }
+        int[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        Object exist;
+        while ((exist = values[i]) != null){
+            if(keys[i] == key){
+                values[i] = value;
+                return (V) exist;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size ++;
+        return null;
+    }
+    public V putIfAbsent(int key, V value){
+        V exist = get(key);
+        if(exist == null){
+            put(key, value);
+        }
+        return exist;
+    }
+    public int size(){
+        return size;
+    }
+    public boolean isEmpty(){
+        return size == 0;
+    }
+    public void clear(){
+        if(size == 0){
+            return;
+        }
+        Arrays.fill(values, null);
+        size = 0;
+    }
+    @SuppressWarnings("unchecked")
+    private void grow(){
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int length = oldKeys.length << 1;
+        this.keys = new int[length];
+        this.values = new Object[length];
+        this.size = 0;
+        for(int i = 0; i < oldKeys.length; i++){
+            Object value = oldValues[i];
+            if(value != null){
+                put(oldKeys[i], (V) value);
+            }
+        }
+    }
+    private static int hash(int value){
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
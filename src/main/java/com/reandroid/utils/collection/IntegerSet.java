@@ -0,0 +1,106 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.utils.collection;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash set of primitive int values, not thread safe
+ * */
+public class IntegerSet {
+
+    private int[] table;
+    private boolean[] used;
+    private int size;
+
+    public IntegerSet(int initialCapacity){
+        int capacity = 8;
+        while (capacity < initialCapacity * 2){
+            capacity = capacity << 1;
+        }
+        this.table = new int[capacity];
+        this.used = new boolean[capacity];
+    }
+    public IntegerSet(){
+        this(8);
+    }
+
+    public boolean contains(int value){
+        int[] table = this.table;
+        boolean[] used = this.used;
+        int mask = table.length - 1;
+        int i = hash(value) & mask;
+        while (used[i]){
+            if(table[i] == value){
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+    /**
+     * Returns true if the value was not already present
+     * */
+    public boolean add(int value){
+        if((size + 1) * 2 > table.length){
+            grow();
+        }
+        int[] table = this.table;
+        boolean[] used = this.used;
+        int mask = table.length - 1;
+        int i = hash(value) & mask;
+        while (used[i]){
+            if(table[i] == value){
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+        used[i] = true;
+        size ++;
+        return true;
+    }
+    public int size(){
+        return size;
+    }
+    public boolean isEmpty(){
+        return size == 0;
+    }
+    public void clear(){
+        if(size == 0){
+            return;
+        }
+        Arrays.fill(used, false);
+        size = 0;
+    }
+    private void grow(){
+        int[] oldTable = this.table;
+        boolean[] oldUsed = this.used;
+        int length = oldTable.length << 1;
+        this.table = new int[length];
+        this.used = new boolean[length];
+        this.size = 0;
+        for(int i = 0; i < oldTable.length; i++){
+            if(oldUsed[i]){
+                add(oldTable[i]);
+            }
+        }
+    }
+    private static int hash(int value){
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
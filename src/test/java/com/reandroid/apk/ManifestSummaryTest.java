@@ -0,0 +1,39 @@
+package com.reandroid.apk;
+
+import com.reandroid.TestUtils;
+import com.reandroid.arsc.chunk.xml.AndroidManifestBlock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class ManifestSummaryTest {
+
+    @Test
+    public void testSummaryMatchesManifestBlock() throws IOException {
+        new ApkModuleTest().createApkModule();
+        File apkFile = new File(TestUtils.getTesApkDirectory(), "generated.apk");
+
+        ManifestSummary summary = ManifestSummary.read(apkFile);
+        Assert.assertNotNull(summary);
+
+        ApkModule apkModule = ApkModule.loadApkFile(apkFile);
+        AndroidManifestBlock manifestBlock = apkModule.getAndroidManifest();
+
+        Assert.assertEquals(manifestBlock.getPackageName(), summary.getPackageName());
+        Assert.assertEquals(manifestBlock.getVersionCode(), summary.getVersionCode());
+        Assert.assertEquals(manifestBlock.getVersionName(), summary.getVersionName());
+        Assert.assertEquals(manifestBlock.getMinSdkVersion(), summary.getMinSdkVersion());
+        Assert.assertEquals(manifestBlock.getTargetSdkVersion(), summary.getTargetSdkVersion());
+        Assert.assertEquals(manifestBlock.getCompileSdkVersion(), summary.getCompileSdkVersion());
+        Assert.assertEquals(manifestBlock.getPlatformBuildVersionCode(), summary.getPlatformBuildVersionCode());
+        Assert.assertEquals(manifestBlock.getApplicationClassName(), summary.getApplicationClassName());
+        Assert.assertEquals(manifestBlock.getUsesPermissions(), summary.getUsesPermissions());
+        Assert.assertEquals(manifestBlock.isSplit(), summary.isSplit());
+        Assert.assertEquals(1, summary.getActivities().size());
+        Assert.assertEquals(manifestBlock.getMainActivityClassName(),
+                manifestBlock.fullClassName(summary.getActivities().get(0)));
+        apkModule.close();
+    }
+}
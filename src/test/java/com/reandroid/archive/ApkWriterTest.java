@@ -1,14 +1,31 @@
 package com.reandroid.archive;
 
+import com.reandroid.TestUtils;
 import com.reandroid.apk.ApkModule;
 import com.reandroid.apk.ApkModuleTest;
 import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.archive.io.ArchiveByteEntrySource;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.writer.ApkStreamWriter;
+import com.reandroid.archive.writer.ApkUpdateWriter;
 import com.reandroid.arsc.chunk.xml.AndroidManifestBlock;
+import com.reandroid.utils.io.IOUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import java.util.Map;
 
 public class ApkWriterTest {
     @Test
@@ -41,6 +58,145 @@ public class ApkWriterTest {
         Assert.assertNotNull("Missing classes.dex", inputSource);
     }
 
+    @Test
+    public void testParallelStreamWriterOutputIsIdentical() throws IOException {
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        getApkModule().writeApk(sequential);
+
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        ApkStreamWriter writer = getApkModule().createApkStreamWriter(parallel);
+        writer.setThreadCount(4);
+        writer.setMaxBufferedEntries(2);
+        writer.write();
+
+        Assert.assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+    }
+
+    @Test
+    public void testStreamWriterCopiesUnchangedEntriesRaw() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "raw_copy_test.apk");
+        getApkModule().writeApk(file);
+
+        ApkModule apkModule = ApkModule.loadApkFile(file);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        apkModule.writeApk(outputStream);
+        apkModule.close();
+
+        ArchiveBytes original = new ArchiveBytes(IOUtil.readFully(file));
+        ArchiveBytes rewritten = new ArchiveBytes(outputStream.toByteArray());
+        Assert.assertEquals(original.size(), rewritten.size());
+        Iterator<ArchiveEntry> iterator = original.iterator();
+        while (iterator.hasNext()){
+            ArchiveEntry entry = iterator.next();
+            InputSource inputSource = rewritten.getEntrySource(entry.getName());
+            Assert.assertNotNull("Missing entry: " + entry.getName(), inputSource);
+            ArchiveEntry copied = ((ArchiveByteEntrySource) inputSource).getArchiveEntry();
+            Assert.assertEquals(entry.getName(), entry.getCrc(), copied.getCrc());
+            Assert.assertEquals(entry.getName(), entry.getCompressedSize(), copied.getCompressedSize());
+        }
+    }
+
+    @Test
+    public void testUpdateApkInPlace() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "update_in_place_test.apk");
+        getApkModule().writeApk(file);
+        Map<String, Long> offsets = mapDataOffsets(file);
+
+        ApkModule apkModule = ApkModule.loadApkFile(file);
+        byte[] bytes = new byte[1024 * 10];
+        Arrays.fill(bytes, (byte) 7);
+        apkModule.add(new ByteInputSource(bytes, "assets/appended.bin"));
+        apkModule.removeInputSource("classes.dex");
+        ApkUpdateWriter writer = apkModule.createApkUpdateWriter(file);
+        writer.write();
+        apkModule.close();
+        Assert.assertTrue("Expecting in-place update", writer.isInPlace());
+
+        Map<String, Long> updated = mapDataOffsets(file);
+        Assert.assertFalse(updated.containsKey("classes.dex"));
+        Assert.assertTrue(updated.containsKey("assets/appended.bin"));
+        for(Map.Entry<String, Long> entry : offsets.entrySet()){
+            String name = entry.getKey();
+            if(name.equals("classes.dex")){
+                continue;
+            }
+            Assert.assertEquals("Moved: " + name, entry.getValue(), updated.get(name));
+        }
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        Assert.assertArrayEquals(bytes, IOUtil.readFully(
+                archiveFile.getEntrySource("assets/appended.bin").openStream()));
+        archiveFile.close();
+        ApkModule reloaded = ApkModule.loadApkFile(file);
+        Assert.assertNotNull(reloaded.getTableBlock());
+        Assert.assertNotNull(reloaded.getAndroidManifest());
+        reloaded.close();
+    }
+    @Test
+    public void testUpdateApkFallbackRewrite() throws IOException {
+        File source = new File(TestUtils.getTempDir(), "update_source_test.apk");
+        getApkModule().writeApk(source);
+        File target = new File(TestUtils.getTempDir(), "update_target_test.apk");
+        Files.write(target.toPath(), new byte[]{1, 2, 3});
+
+        // entries are not from target, thus nothing can be kept
+        ApkModule apkModule = ApkModule.loadApkFile(source);
+        ApkUpdateWriter writer = apkModule.createApkUpdateWriter(target);
+        writer.write();
+        apkModule.close();
+        Assert.assertFalse(writer.isInPlace());
+
+        Assert.assertEquals(mapDataOffsets(source).keySet(), mapDataOffsets(target).keySet());
+    }
+    private static Map<String, Long> mapDataOffsets(File file) throws IOException {
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        Map<String, Long> results = new HashMap<>();
+        for(InputSource inputSource : archiveFile.getInputSources()){
+            ArchiveFileEntrySource entrySource = (ArchiveFileEntrySource) inputSource;
+            results.put(entrySource.getAlias(), entrySource.getArchiveEntry()
+                    .getLocalFileHeader().getFileOffset());
+        }
+        archiveFile.close();
+        return results;
+    }
+
+    @Test
+    public void testStreamWriterDoesNotRecompress() throws IOException {
+        // stored deflate blocks, any deflater run on write would produce different bytes
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(source);
+        zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+        for (int i = 0; i < 3; i++) {
+            zipOutputStream.putNextEntry(new ZipEntry("res/raw/file" + i + ".txt"));
+            StringBuilder builder = new StringBuilder();
+            for (int j = 0; j < 2000; j++) {
+                builder.append("line ").append(i).append('\n');
+            }
+            zipOutputStream.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+        }
+        zipOutputStream.close();
+        File file = new File(TestUtils.getTempDir(), "raw_copy_level0.zip");
+        IOUtil.writeAll(new ByteArrayInputStream(source.toByteArray()), file);
+
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new ApkStreamWriter(outputStream, archiveFile.getInputSources()).write();
+
+        ArchiveBytes rewritten = new ArchiveBytes(outputStream.toByteArray());
+        Assert.assertEquals(3, rewritten.size());
+        Iterator<ArchiveEntry> iterator = archiveFile.iterator();
+        while (iterator.hasNext()){
+            ArchiveEntry entry = iterator.next();
+            ArchiveEntry copied = ((ArchiveByteEntrySource) rewritten
+                    .getEntrySource(entry.getName())).getArchiveEntry();
+            Assert.assertEquals(Archive.DEFLATED, copied.getMethod());
+            Assert.assertArrayEquals(entry.getName(),
+                    IOUtil.readFully(archiveFile.openRawInputStream(entry)),
+                    IOUtil.readFully(rewritten.openRawInputStream(copied)));
+        }
+        archiveFile.close();
+    }
+
     private ApkModule getApkModule() throws IOException {
         ApkModuleTest apkModuleTest = new ApkModuleTest();
         return apkModuleTest.createApkModule();
@@ -0,0 +1,202 @@
+package com.reandroid.archive;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+public class ArchiveStreamReaderTest {
+
+    @Test
+    public void testDataDescriptorEntries() throws IOException {
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        Random random = new Random(3);
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(zipBytes);
+        for(int i = 0; i < 10; i++){
+            byte[] bytes = new byte[1000 * i * i];
+            if(i % 3 == 0){
+                Arrays.fill(bytes, (byte) i);
+            }else {
+                random.nextBytes(bytes);
+            }
+            String name = "dir/entry_" + i + ".bin";
+            expected.put(name, bytes);
+            // deflated entries of ZipOutputStream are followed by data descriptor
+            zipOutputStream.putNextEntry(new ZipEntry(name));
+            zipOutputStream.write(bytes);
+            zipOutputStream.closeEntry();
+        }
+        zipOutputStream.close();
+
+        Map<String, byte[]> actual = new LinkedHashMap<>();
+        ArchiveStreamReader reader = new ArchiveStreamReader(
+                new TrickleInputStream(zipBytes.toByteArray()));
+        int count = reader.readAll((lfh, inputStream) -> {
+            Assert.assertTrue(lfh.hasDataDescriptor());
+            actual.put(lfh.getFileName(), IOUtil.readFully(inputStream));
+        });
+        reader.close();
+        Assert.assertEquals(expected.size(), count);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for(String name : expected.keySet()){
+            Assert.assertArrayEquals(name, expected.get(name), actual.get(name));
+        }
+    }
+    @Test
+    public void testCorruptedDataDetected() throws IOException {
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(zipBytes);
+        byte[] bytes = new byte[5000];
+        new Random(5).nextBytes(bytes);
+        zipOutputStream.putNextEntry(new ZipEntry("random.bin"));
+        zipOutputStream.write(bytes);
+        zipOutputStream.closeEntry();
+        zipOutputStream.close();
+        byte[] data = zipBytes.toByteArray();
+        // inside deflated data, after 30 bytes header and 10 bytes name
+        data[30 + 10 + 100] ^= 0x10;
+        ArchiveStreamReader reader = new ArchiveStreamReader(new ByteArrayInputStream(data));
+        boolean thrown = false;
+        try{
+            reader.readAll((lfh, inputStream) -> { });
+        }catch (ZipException exception){
+            thrown = true;
+        }
+        reader.close();
+        Assert.assertTrue("Expecting corrupted data error", thrown);
+    }
+    @Test
+    public void testZip64LocalHeader() throws IOException {
+        byte[] data = "zip64 stored data".getBytes();
+        byte[] name = "zip64.txt".getBytes();
+        java.util.zip.CRC32 crc32 = new java.util.zip.CRC32();
+        crc32.update(data);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(Integer.reverseBytes(0x04034b50));
+        out.writeShort(Short.reverseBytes((short) 45));
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeInt(0);
+        out.writeInt(Integer.reverseBytes((int) crc32.getValue()));
+        out.writeInt(-1);
+        out.writeInt(-1);
+        out.writeShort(Short.reverseBytes((short) name.length));
+        out.writeShort(Short.reverseBytes((short) 20));
+        out.write(name);
+        out.writeShort(Short.reverseBytes((short) 1));
+        out.writeShort(Short.reverseBytes((short) 16));
+        out.writeLong(Long.reverseBytes(data.length));
+        out.writeLong(Long.reverseBytes(data.length));
+        out.write(data);
+        out.close();
+
+        ArchiveStreamReader reader = new ArchiveStreamReader(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+        List<byte[]> results = new ArrayList<>();
+        reader.readAll((lfh, inputStream) -> results.add(IOUtil.readFully(inputStream)));
+        reader.close();
+        Assert.assertEquals(1, results.size());
+        Assert.assertArrayEquals(data, results.get(0));
+    }
+    @Test
+    public void testZip64DataDescriptor() throws IOException {
+        byte[] data = new byte[3000];
+        new Random(9).nextBytes(data);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(outputStream);
+        writeStreamedZip64Entry(out, "first.bin", data);
+        writeStreamedZip64Entry(out, "second.bin", "second".getBytes());
+        out.close();
+
+        ArchiveStreamReader reader = new ArchiveStreamReader(
+                new TrickleInputStream(outputStream.toByteArray()));
+        List<byte[]> results = new ArrayList<>();
+        reader.readAll((lfh, inputStream) -> results.add(IOUtil.readFully(inputStream)));
+        reader.close();
+        Assert.assertEquals(2, results.size());
+        Assert.assertArrayEquals(data, results.get(0));
+        Assert.assertArrayEquals("second".getBytes(), results.get(1));
+    }
+    /**
+     * Writes deflated entry the way streaming writers do: zero sizes and ZIP64 extra
+     * in local header, real sizes in a ZIP64 (8 byte sizes) data descriptor
+     * */
+    private static void writeStreamedZip64Entry(DataOutputStream out, String name, byte[] data) throws IOException {
+        byte[] nameBytes = name.getBytes();
+        java.util.zip.CRC32 crc32 = new java.util.zip.CRC32();
+        crc32.update(data);
+        java.util.zip.Deflater deflater = new java.util.zip.Deflater(
+                java.util.zip.Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished()){
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        out.writeInt(Integer.reverseBytes(0x04034b50));
+        out.writeShort(Short.reverseBytes((short) 45));
+        out.writeShort(Short.reverseBytes((short) 0x0008));
+        out.writeShort(Short.reverseBytes((short) 8));
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeShort(Short.reverseBytes((short) nameBytes.length));
+        out.writeShort(Short.reverseBytes((short) 20));
+        out.write(nameBytes);
+        out.writeShort(Short.reverseBytes((short) 1));
+        out.writeShort(Short.reverseBytes((short) 16));
+        out.writeLong(0);
+        out.writeLong(0);
+        out.write(compressed.toByteArray());
+        out.writeInt(Integer.reverseBytes(0x08074b50));
+        out.writeInt(Integer.reverseBytes((int) crc32.getValue()));
+        out.writeLong(Long.reverseBytes(compressed.size()));
+        out.writeLong(Long.reverseBytes(data.length));
+    }
+    @Test
+    public void testReadApkStream() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "stream_reader_test.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+        File spillDir = new File(TestUtils.getTempDir(), "stream_reader_spill");
+
+        ApkModule apkModule = ApkModule.readApkStream(
+                new TrickleInputStream(IOUtil.readFully(file)), spillDir);
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        Map<String, InputSource> sourceMap = archiveFile.mapEntrySource();
+        Assert.assertEquals(sourceMap.size(), apkModule.getZipEntryMap().toArray().length);
+        for(InputSource inputSource : sourceMap.values()){
+            InputSource streamed = apkModule.getInputSource(inputSource.getAlias());
+            Assert.assertEquals(inputSource.getMethod(), streamed.getMethod());
+            Assert.assertArrayEquals(IOUtil.readFully(inputSource.openStream()),
+                    IOUtil.readFully(streamed.openStream()));
+        }
+        Assert.assertNotNull(apkModule.getAndroidManifest());
+        archiveFile.close();
+    }
+
+    /**
+     * Returns few bytes per read like a pipe
+     * */
+    private static class TrickleInputStream extends ByteArrayInputStream {
+        TrickleInputStream(byte[] bytes){
+            super(bytes);
+        }
+        @Override
+        public synchronized int read(byte[] bytes, int offset, int length) {
+            return super.read(bytes, offset, Math.min(length, 777));
+        }
+    }
+}
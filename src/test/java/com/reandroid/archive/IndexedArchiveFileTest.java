@@ -0,0 +1,68 @@
+package com.reandroid.archive;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.apk.FrameworkApk;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.io.MappedZipFileInput;
+import com.reandroid.arsc.chunk.xml.AndroidManifestBlock;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+public class IndexedArchiveFileTest {
+
+    @Test
+    public void testIndexedEntriesEqualArchiveFile() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "indexed_archive_test.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        IndexedArchiveFile indexed = ArchiveFile.openIndexed(file);
+        Map<String, InputSource> map = archiveFile.mapEntrySource();
+        Assert.assertEquals(map.size(), indexed.getInputSources().length);
+        for(InputSource inputSource : map.values()){
+            String path = inputSource.getAlias();
+            ArchiveFileEntrySource expected = (ArchiveFileEntrySource) inputSource;
+            ArchiveFileEntrySource actual = (ArchiveFileEntrySource) indexed.getEntrySource(path);
+            Assert.assertNotNull("Missing: " + path, actual);
+            Assert.assertEquals(path, actual.getAlias());
+            Assert.assertEquals(expected.getArchiveEntry().getFileOffset(),
+                    actual.getArchiveEntry().getFileOffset());
+            Assert.assertEquals(expected.getArchiveEntry().getCrc(),
+                    actual.getArchiveEntry().getCrc());
+            Assert.assertTrue(path, Arrays.equals(IOUtil.readFully(expected.openStream()),
+                    IOUtil.readFully(actual.openStream())));
+        }
+        Assert.assertNull(indexed.getEntrySource("no/such/entry"));
+        Assert.assertFalse(indexed.contains("AndroidManifest"));
+        archiveFile.close();
+        indexed.close();
+    }
+    @Test
+    public void testReadManifestFromMappedIndex() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "indexed_mapped_test.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+        IndexedArchiveFile indexed = new IndexedArchiveFile(new MappedZipFileInput(file));
+        InputSource inputSource = indexed.getEntrySource(AndroidManifestBlock.FILE_NAME);
+        Assert.assertNotNull(inputSource);
+        AndroidManifestBlock manifestBlock = AndroidManifestBlock.load(inputSource.openStream());
+        Assert.assertNotNull(manifestBlock.getPackageName());
+        indexed.close();
+    }
+    @Test
+    public void testFrameworkTableLoadedThroughIndex() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "indexed_framework_test.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+        FrameworkApk frameworkApk = FrameworkApk.loadApkFile(file);
+        Assert.assertEquals(2, frameworkApk.getZipEntryMap().size());
+        Assert.assertNotNull(frameworkApk.getTableBlock());
+        Assert.assertNotNull(frameworkApk.getAndroidManifest());
+        frameworkApk.close();
+    }
+}
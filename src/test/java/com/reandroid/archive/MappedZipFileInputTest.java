@@ -0,0 +1,104 @@
+package com.reandroid.archive;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.io.MappedZipFileInput;
+import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.common.ByteBufferInputStream;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+public class MappedZipFileInputTest {
+
+    @Test
+    public void testMappedEntriesEqualChannelEntries() throws IOException {
+        File file = writeTestApk();
+        // small window to force entries across window boundaries
+        ArchiveFile mapped = new ArchiveFile(new MappedZipFileInput(file, 1024 * 200));
+        ArchiveFile plain = new ArchiveFile(file);
+        Map<String, InputSource> mappedMap = mapped.mapEntrySource();
+        Map<String, InputSource> plainMap = plain.mapEntrySource();
+        Assert.assertEquals(plainMap.keySet(), mappedMap.keySet());
+        for(String path : plainMap.keySet()){
+            byte[] expected = IOUtil.readFully(plainMap.get(path).openStream());
+            byte[] actual = IOUtil.readFully(mappedMap.get(path).openStream());
+            Assert.assertTrue("Content mismatch: " + path, Arrays.equals(expected, actual));
+        }
+        mapped.close();
+        plain.close();
+    }
+    @Test
+    public void testBufferLengthLimit() throws IOException {
+        Assert.assertEquals(Integer.MAX_VALUE, ZipFileInput.toBufferLength(Integer.MAX_VALUE));
+        try {
+            ZipFileInput.toBufferLength(0x80000000L);
+            Assert.fail("Length of 2GB accepted");
+        } catch (IOException ignored) {
+        }
+    }
+    @Test
+    public void testMarkAndReset() throws IOException {
+        byte[] bytes = new byte[64];
+        for(int i = 0; i < bytes.length; i++){
+            bytes[i] = (byte) i;
+        }
+        ByteBufferInputStream inputStream = new ByteBufferInputStream(ByteBuffer.wrap(bytes));
+        Assert.assertEquals(5, inputStream.skip(5));
+        inputStream.mark(1000);
+        Assert.assertEquals(5, inputStream.read());
+        Assert.assertEquals(6, inputStream.read());
+        inputStream.reset();
+        Assert.assertEquals(5, inputStream.read());
+        BufferedInputStream buffered = new BufferedInputStream(inputStream, 8);
+        buffered.mark(32);
+        byte[] first = new byte[20];
+        Assert.assertEquals(20, buffered.read(first));
+        buffered.reset();
+        byte[] second = new byte[20];
+        Assert.assertEquals(20, buffered.read(second));
+        Assert.assertArrayEquals(first, second);
+        Assert.assertEquals(6, first[0]);
+    }
+    @Test
+    public void testStoredTableFromMappedBuffer() throws IOException {
+        File file = writeTestApk();
+        ArchiveFile archive = new ArchiveFile(new MappedZipFileInput(file));
+        ArchiveFileEntrySource source = (ArchiveFileEntrySource) archive
+                .getEntrySource(TableBlock.FILE_NAME);
+        Assert.assertNotNull("Missing table", source);
+        Assert.assertEquals(Archive.STORED, source.getMethod());
+        ByteBuffer buffer = source.getByteBuffer();
+        Assert.assertTrue("Expecting direct mapped buffer", buffer.isDirect());
+        TableBlock tableBlock = TableBlock.load(source.openStream());
+        Assert.assertEquals(buffer.remaining(), tableBlock.countBytes());
+        Assert.assertTrue(tableBlock.getPackageArray().size() > 0);
+        archive.close();
+    }
+
+    private File writeTestApk() throws IOException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        apkModule.getInputSource(TableBlock.FILE_NAME).setMethod(Archive.STORED);
+        for(int i = 0; i < 200; i++){
+            byte[] bytes = new byte[1024 * 4];
+            Arrays.fill(bytes, (byte) i);
+            ByteInputSource inputSource = new ByteInputSource(bytes, "assets/file_" + i + ".bin");
+            inputSource.setMethod(Archive.STORED);
+            apkModule.add(inputSource);
+        }
+        File file = new File(TestUtils.getTempDir(), "mapped_input_test.apk");
+        apkModule.writeApk(file);
+        apkModule.close();
+        return file;
+    }
+}
@@ -0,0 +1,213 @@
+package com.reandroid.archive.signer;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.Archive;
+import com.reandroid.archive.ByteInputSource;
+import com.reandroid.archive.block.SignatureId;
+import com.reandroid.utils.io.FileUtil;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.ZipFile;
+
+public class ApkSignerTest {
+
+    @Test
+    public void testSignedApkDigestAndSignature() throws Exception {
+        File file = new File(TestUtils.getTempDir(), "signed_test.apk");
+        ApkModule apkModule = createApkModule();
+        apkModule.setApkSigner(loadTestSigner());
+        apkModule.writeApk(file);
+        byte[] apk = IOUtil.readFully(file);
+
+        ByteBuffer v2 = findSignature(apk, SignatureId.V2.getId());
+        Assert.assertNotNull("Missing v2 signature", v2);
+        Assert.assertNotNull("Missing v3 signature", findSignature(apk, SignatureId.V3.getId()));
+
+        ByteBuffer signer = prefixed(prefixed(v2));
+        ByteBuffer signedData = prefixed(signer);
+        ByteBuffer signatures = prefixed(signer);
+        ByteBuffer publicKeyBytes = prefixed(signer);
+
+        ByteBuffer signedDataCopy = signedData.duplicate();
+        ByteBuffer digest = prefixed(prefixed(signedData));
+        Assert.assertEquals(SignatureAlgorithm.RSA_PKCS1_SHA256.getId(), digest.getInt());
+        Assert.assertArrayEquals(computeDigest(apk), toArray(prefixed(digest)));
+
+        ByteBuffer signature = prefixed(signatures);
+        Assert.assertEquals(SignatureAlgorithm.RSA_PKCS1_SHA256.getId(), signature.getInt());
+        PublicKey publicKey = KeyFactory.getInstance("RSA")
+                .generatePublic(new X509EncodedKeySpec(toArray(publicKeyBytes)));
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(publicKey);
+        verifier.update(signedDataCopy);
+        Assert.assertTrue("Invalid signature", verifier.verify(toArray(prefixed(signature))));
+
+        ZipFile zipFile = new ZipFile(file);
+        Assert.assertNotNull(zipFile.getEntry("assets/random.bin"));
+        zipFile.close();
+        apkModule.close();
+    }
+    @Test
+    public void testFileAndByteWriterSignIdentically() throws IOException {
+        ApkSigner apkSigner = loadTestSigner();
+        File file = new File(TestUtils.getTempDir(), "signed_test_2.apk");
+        ApkModule apkModule = createApkModule();
+        apkModule.setApkSigner(apkSigner);
+        apkModule.writeApk(file);
+        apkModule.close();
+        // sources are disposed after write
+        apkModule = createApkModule();
+        apkModule.setApkSigner(apkSigner);
+        byte[] bytes = apkModule.writeApkBytes();
+        apkModule.close();
+        Assert.assertArrayEquals(IOUtil.readFully(file), bytes);
+    }
+
+    @Test
+    public void testVerifyAndLocateTamperedChunk() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "signed_test_3.apk");
+        ApkModule apkModule = createApkModule();
+        apkModule.setApkSigner(loadTestSigner());
+        apkModule.writeApk(file);
+        apkModule.close();
+
+        VerifyResult result = ApkVerifier.verify(file);
+        Assert.assertTrue(result.toString(), result.isVerified());
+        Assert.assertTrue(result.getSchemeResult(SignatureId.V2).isVerified());
+        Assert.assertTrue(result.getSchemeResult(SignatureId.V3).isVerified());
+        Assert.assertEquals("CN=Test Signer", result.getSchemeResult(SignatureId.V2)
+                .getCertificates().get(0).getSubjectX500Principal().getName());
+
+        byte[] bytes = IOUtil.readFully(file);
+        int offset = 1024 * 1024 + 1024 * 512;
+        bytes[offset] = (byte) (bytes[offset] + 1);
+        File tampered = new File(TestUtils.getTempDir(), "signed_test_3_tampered.apk");
+        Files.write(tampered.toPath(), bytes);
+
+        VerifyResult tamperedResult = ApkVerifier.verify(tampered);
+        Assert.assertFalse(tamperedResult.isVerified());
+        Assert.assertFalse(tamperedResult.getSchemeResult(SignatureId.V2).isDigestVerified());
+
+        ChunkedDigest reference = result.getChunkedDigest("SHA-256");
+        ChunkedDigest chunkedDigest = tamperedResult.getChunkedDigest("SHA-256");
+        int[] mismatched = chunkedDigest.findMismatchedChunks(reference);
+        Assert.assertArrayEquals(new int[]{1}, mismatched);
+        Assert.assertEquals(Collections.singletonList("assets/random.bin"),
+                tamperedResult.getEntries(chunkedDigest, 1));
+    }
+
+    @Test
+    public void testVerifyExternallySignedApk() throws IOException {
+        File file = copyResource("/type_id_offset.apk",
+                new File(TestUtils.getTempDir(), "type_id_offset.apk"));
+        VerifyResult result = ApkVerifier.verify(file);
+        Assert.assertTrue(result.toString(), result.isVerified());
+    }
+
+    private static byte[] computeDigest(byte[] apk) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(apk).order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = apk.length - 22;
+        int cdOffset = buffer.getInt(eocd + 16);
+        long blockSize = buffer.getLong(cdOffset - 24);
+        int blockOffset = (int) (cdOffset - blockSize - 8);
+        byte[] endRecord = new byte[22];
+        System.arraycopy(apk, eocd, endRecord, 0, 22);
+        ByteBuffer.wrap(endRecord).order(ByteOrder.LITTLE_ENDIAN).putInt(16, blockOffset);
+
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        ByteBuffer chunkDigests = ByteBuffer.allocate(1024 * 32).order(ByteOrder.LITTLE_ENDIAN);
+        int count = 0;
+        count += digestChunks(messageDigest, apk, 0, blockOffset, chunkDigests);
+        count += digestChunks(messageDigest, apk, cdOffset, eocd - cdOffset, chunkDigests);
+        count += digestChunks(messageDigest, endRecord, 0, endRecord.length, chunkDigests);
+        Assert.assertTrue("Expecting several chunks: " + count, count > 3);
+        messageDigest.update((byte) 0x5a);
+        messageDigest.update(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, count));
+        messageDigest.update(chunkDigests.array(), 0, chunkDigests.position());
+        return messageDigest.digest();
+    }
+    private static int digestChunks(MessageDigest messageDigest, byte[] bytes, int offset, int length,
+                                    ByteBuffer out){
+        int count = 0;
+        int chunk = 1024 * 1024;
+        for(int i = 0; i < length; i += chunk){
+            int size = Math.min(chunk, length - i);
+            messageDigest.update((byte) 0xa5);
+            messageDigest.update(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, size));
+            messageDigest.update(bytes, offset + i, size);
+            out.put(messageDigest.digest());
+            count ++;
+        }
+        return count;
+    }
+    private static ByteBuffer findSignature(byte[] apk, int id){
+        ByteBuffer buffer = ByteBuffer.wrap(apk).order(ByteOrder.LITTLE_ENDIAN);
+        int cdOffset = buffer.getInt(apk.length - 22 + 16);
+        long blockSize = buffer.getLong(cdOffset - 24);
+        int position = (int) (cdOffset - blockSize);
+        int end = cdOffset - 24;
+        while (position < end){
+            int length = (int) buffer.getLong(position);
+            int pairId = buffer.getInt(position + 8);
+            if(pairId == id){
+                ByteBuffer value = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                value.position(position + 12);
+                value.limit(position + 8 + length);
+                return value.slice().order(ByteOrder.LITTLE_ENDIAN);
+            }
+            position += 8 + length;
+        }
+        return null;
+    }
+    private static ByteBuffer prefixed(ByteBuffer buffer){
+        int length = buffer.getInt();
+        ByteBuffer result = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        result.limit(length);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+    private static byte[] toArray(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+    private static ApkModule createApkModule() throws IOException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        byte[] bytes = new byte[1024 * 1024 * 3 + 100];
+        new Random(42).nextBytes(bytes);
+        ByteInputSource inputSource = new ByteInputSource(bytes, "assets/random.bin");
+        inputSource.setMethod(Archive.STORED);
+        apkModule.add(inputSource);
+        return apkModule;
+    }
+    static ApkSigner loadTestSigner() throws IOException {
+        File dir = new File(TestUtils.getTempDir(), "signer");
+        File key = copyResource("/signer/testkey.pk8", new File(dir, "testkey.pk8"));
+        File cert = copyResource("/signer/testkey.x509.pem", new File(dir, "testkey.x509.pem"));
+        return ApkSigner.fromPKCS8(key, cert);
+    }
+    private static File copyResource(String name, File file) throws IOException {
+        InputStream inputStream = ApkSignerTest.class.getResourceAsStream(name);
+        Assert.assertNotNull("Missing resource: " + name, inputStream);
+        FileUtil.ensureParentDirectory(file);
+        Files.write(file.toPath(), IOUtil.readFully(inputStream));
+        return file;
+    }
+}
@@ -0,0 +1,85 @@
+package com.reandroid.archive.writer;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.Archive;
+import com.reandroid.archive.ByteInputSource;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testAcquireRelease() {
+        BufferPool pool = new BufferPool(1024 * 64, 1024 * 32);
+        ByteBuffer buffer = pool.acquire(5000);
+        Assert.assertNotNull(buffer);
+        Assert.assertEquals(8192, buffer.capacity());
+        Assert.assertTrue(buffer.isDirect());
+        Assert.assertNull("Above max buffer size", pool.acquire(1024 * 33));
+        pool.release(buffer);
+        Assert.assertSame(buffer, pool.acquire(8000));
+        Assert.assertEquals(1, pool.getHitCount());
+        Assert.assertEquals(1, pool.getMissCount());
+
+        ByteBuffer b1 = pool.acquire(1024 * 32);
+        ByteBuffer b2 = pool.acquire(1024 * 16);
+        Assert.assertNotNull(b1);
+        Assert.assertNotNull(b2);
+        Assert.assertNull("Budget exhausted", pool.acquire(1024 * 16));
+        pool.release(b1);
+        pool.release(b2);
+        pool.release(buffer);
+        Assert.assertEquals(0, pool.getBytesInUse());
+        Assert.assertTrue(pool.getBytesIdle() <= pool.getBudget());
+    }
+    @Test
+    public void testIdleBuffersAreTrimmed() {
+        BufferPool pool = new BufferPool(1024 * 64, 1024 * 16);
+        Assert.assertEquals(1024 * 16, pool.getMaxIdle());
+        ByteBuffer b1 = pool.acquire(1024 * 16);
+        ByteBuffer b2 = pool.acquire(1024 * 16);
+        pool.release(b1);
+        pool.release(b2);
+        Assert.assertEquals(1024 * 16, pool.getBytesIdle());
+        pool.setMaxIdle(0);
+        Assert.assertEquals(0, pool.getBytesIdle());
+        pool.release(pool.acquire(1024));
+        Assert.assertEquals(0, pool.getBytesIdle());
+    }
+    @Test
+    public void testPooledOutputIdenticalToFileBuffer() throws IOException {
+        BufferPool pool = new BufferPool(1024 * 256, 1024 * 64);
+        byte[] fileBuffered = writeApk("pool_disabled.apk", null);
+        byte[] pooled = writeApk("pool_enabled.apk", pool);
+        Assert.assertArrayEquals(fileBuffered, pooled);
+        Assert.assertTrue(pool.getMissCount() > 0);
+        Assert.assertTrue("Expecting large entry spill", pool.getSpillCount() > 0);
+        Assert.assertEquals(0, pool.getBytesInUse());
+    }
+
+    private byte[] writeApk(String name, BufferPool pool) throws IOException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        Random random = new Random(7);
+        for(int i = 0; i < 20; i++){
+            byte[] bytes = new byte[1024 * (i + 1) * 10];
+            random.nextBytes(bytes);
+            ByteInputSource inputSource = new ByteInputSource(bytes, "assets/random_" + i + ".bin");
+            inputSource.setMethod(i % 2 == 0 ? Archive.STORED : Archive.DEFLATED);
+            apkModule.add(inputSource);
+        }
+        File file = new File(TestUtils.getTempDir(), name);
+        ApkFileWriter writer = apkModule.createApkFileWriter(file);
+        writer.setBufferPool(pool);
+        writer.write();
+        apkModule.close();
+        return IOUtil.readFully(file);
+    }
+}
@@ -0,0 +1,174 @@
+package com.reandroid.arsc.chunk;
+
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.IndexedArchiveFile;
+import com.reandroid.arsc.container.SpecTypePair;
+import com.reandroid.arsc.item.StringItem;
+import com.reandroid.arsc.model.ResourceEntry;
+import com.reandroid.arsc.pool.StringPool;
+import com.reandroid.arsc.value.Entry;
+import com.reandroid.common.BytesInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CompactEntriesTest {
+
+    @Test
+    public void testFrameworkTableRestored() throws IOException {
+        File file = new File("src/main/resources/frameworks/android/android-36.apk");
+        IndexedArchiveFile archiveFile = ArchiveFile.openIndexed(file);
+        InputStream inputStream = archiveFile.getEntrySource(TableBlock.FILE_NAME).openStream();
+        TableBlock expected = TableBlock.load(inputStream);
+        inputStream.close();
+        archiveFile.close();
+        expected.refresh();
+        byte[] bytes = expected.getBytes();
+
+        TableBlock tableBlock = TableBlock.load(new BytesInputStream(bytes));
+        Assert.assertEquals(countTypeBlocks(tableBlock), tableBlock.compactEntries());
+
+        int resourceId = 0x01040000;
+        TypeBlock typeBlock = tableBlock.getEntries(resourceId).next().getTypeBlock();
+        Assert.assertFalse(typeBlock.isCompactEntries());
+        Assert.assertEquals(expected.getResource(resourceId).get().getValueAsString(),
+                tableBlock.getResource(resourceId).get().getValueAsString());
+        Assert.assertNotEquals(countTypeBlocks(tableBlock), countCompact(tableBlock));
+
+        tableBlock.refresh();
+        Assert.assertArrayEquals(bytes, tableBlock.getBytes());
+        Assert.assertEquals(0, countCompact(tableBlock));
+    }
+    @Test
+    public void testLookupByNameAfterCompact() throws IOException {
+        TableBlock created = new ApkModuleTest().createApkModule().getTableBlock();
+        created.refresh();
+        // string references of created table are linked
+        Assert.assertEquals(0, created.compactEntries());
+        byte[] bytes = created.getBytes();
+
+        TableBlock tableBlock = TableBlock.load(new BytesInputStream(bytes));
+        Entry entry = tableBlock.pickOne().getSpecTypePairs().next().getAnyEntry((short) 0);
+        String type = entry.getTypeName();
+        String name = entry.getName();
+        int resourceId = entry.getResourceId();
+
+        Assert.assertEquals(countTypeBlocks(tableBlock), tableBlock.compactEntries());
+        ResourceEntry resourceEntry = tableBlock.getResource(
+                tableBlock.pickOne().getName(), type, name);
+        Assert.assertNotNull(resourceEntry);
+        Assert.assertEquals(resourceId, resourceEntry.getResourceId());
+
+        tableBlock.refresh();
+        Assert.assertArrayEquals(bytes, tableBlock.getBytes());
+    }
+
+    @Test
+    public void testConcurrentInflateWhileLinking() throws Exception {
+        File file = new File("src/main/resources/frameworks/android/android-36.apk");
+        IndexedArchiveFile archiveFile = ArchiveFile.openIndexed(file);
+        InputStream inputStream = archiveFile.getEntrySource(TableBlock.FILE_NAME).openStream();
+        TableBlock loaded = TableBlock.load(inputStream);
+        inputStream.close();
+        archiveFile.close();
+        loaded.refresh();
+        byte[] bytes = loaded.getBytes();
+
+        TableBlock expected = TableBlock.load(new BytesInputStream(bytes));
+        expected.getTableStringPool().ensureStringLinkUnlockedInternal();
+        expected.pickOne().getSpecStringPool().ensureStringLinkUnlockedInternal();
+
+        long expectedTable = countReferences(expected.getTableStringPool());
+        long expectedSpec = countReferences(expected.pickOne().getSpecStringPool());
+        // lost or duplicated references show up only on some interleavings
+        for (int round = 0; round < 20; round++) {
+            TableBlock tableBlock = TableBlock.load(new BytesInputStream(bytes));
+            tableBlock.compactEntries();
+            inflateWhileLinking(tableBlock, 8);
+            Assert.assertEquals(0, countCompact(tableBlock));
+            Assert.assertEquals(expectedTable, countReferences(tableBlock.getTableStringPool()));
+            Assert.assertEquals(expectedSpec, countReferences(tableBlock.pickOne().getSpecStringPool()));
+        }
+    }
+
+    private static void inflateWhileLinking(TableBlock tableBlock, int threads) throws Exception {
+        List<TypeBlock> typeBlocks = listTypeBlocks(tableBlock);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        futures.add(executor.submit(() -> {
+            start.await();
+            tableBlock.getTableStringPool().ensureStringLinkUnlockedInternal();
+            tableBlock.pickOne().getSpecStringPool().ensureStringLinkUnlockedInternal();
+            return null;
+        }));
+        for (int i = 0; i < threads; i++) {
+            int offset = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = typeBlocks.size() - 1 - offset; j >= 0; j -= threads) {
+                    typeBlocks.get(j).getEntryArray();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    private static long countReferences(StringPool<?> stringPool) {
+        long result = 0;
+        for (StringItem stringItem : stringPool) {
+            result += stringItem.getReferencesSize();
+        }
+        return result;
+    }
+    private static List<TypeBlock> listTypeBlocks(TableBlock tableBlock) {
+        List<TypeBlock> results = new ArrayList<>();
+        for (PackageBlock packageBlock : tableBlock) {
+            for (SpecTypePair specTypePair : packageBlock.listSpecTypePairs()) {
+                for (TypeBlock typeBlock : specTypePair) {
+                    results.add(typeBlock);
+                }
+            }
+        }
+        return results;
+    }
+    private static int countTypeBlocks(TableBlock tableBlock) {
+        int result = 0;
+        for (PackageBlock packageBlock : tableBlock) {
+            for (SpecTypePair specTypePair : packageBlock.listSpecTypePairs()) {
+                result += specTypePair.getTypeBlockArray().size();
+            }
+        }
+        return result;
+    }
+    private static int countCompact(TableBlock tableBlock) {
+        int result = 0;
+        for (PackageBlock packageBlock : tableBlock) {
+            for (SpecTypePair specTypePair : packageBlock.listSpecTypePairs()) {
+                for (TypeBlock typeBlock : specTypePair) {
+                    if (typeBlock.isCompactEntries()) {
+                        result ++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
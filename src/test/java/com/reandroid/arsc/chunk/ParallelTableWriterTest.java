@@ -0,0 +1,44 @@
+package com.reandroid.arsc.chunk;
+
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.IndexedArchiveFile;
+import com.reandroid.common.BytesOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class ParallelTableWriterTest {
+
+    @Test
+    public void testFrameworkTableIdentical() throws IOException {
+        File file = new File("src/main/resources/frameworks/android/android-36.apk");
+        IndexedArchiveFile archiveFile = ArchiveFile.openIndexed(file);
+        InputStream inputStream = archiveFile.getEntrySource(TableBlock.FILE_NAME).openStream();
+        TableBlock tableBlock = TableBlock.load(inputStream);
+        inputStream.close();
+        archiveFile.close();
+        assertIdentical(tableBlock);
+    }
+    @Test
+    public void testModifiedTableIdentical() throws IOException {
+        TableBlock tableBlock = new ApkModuleTest().createApkModule().getTableBlock();
+        PackageBlock packageBlock = tableBlock.pickOne();
+        packageBlock.getOrCreate("de", "string", "added_de").setValueAsString("Hallo");
+        packageBlock.getOrCreate("", "string", "added").setValueAsString("Hello");
+        assertIdentical(tableBlock);
+    }
+
+    private static void assertIdentical(TableBlock tableBlock) throws IOException {
+        BytesOutputStream parallel = new BytesOutputStream();
+        tableBlock.writeBytes(parallel, 4);
+        tableBlock.refresh();
+        BytesOutputStream sequential = new BytesOutputStream();
+        tableBlock.writeBytes(sequential);
+        Assert.assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+        Assert.assertEquals(tableBlock.getHeaderBlock().getChunkSize(), parallel.size());
+    }
+}
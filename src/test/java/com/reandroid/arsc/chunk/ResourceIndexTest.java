@@ -0,0 +1,73 @@
+package com.reandroid.arsc.chunk;
+
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.arsc.model.ResourceEntry;
+import com.reandroid.arsc.value.Entry;
+import com.reandroid.utils.collection.CollectionUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+public class ResourceIndexTest {
+
+    @Test
+    public void testIndexedLookupsMatch() throws IOException {
+        byte[] bytes = new ApkModuleTest().createApkModule().getTableBlock().getBytes();
+        TableBlock plain = TableBlock.load(new ByteArrayInputStream(bytes));
+        TableBlock indexed = TableBlock.load(new ByteArrayInputStream(bytes));
+        indexed.setResourceIndexEnabled(true);
+
+        PackageBlock packageBlock = plain.pickOne();
+        PackageBlock indexedPackage = indexed.pickOne();
+        Iterator<ResourceEntry> iterator = packageBlock.getResources();
+        int count = 0;
+        while (iterator.hasNext()){
+            ResourceEntry expected = iterator.next();
+            int id = expected.getResourceId();
+            ResourceEntry resourceEntry = indexed.getResource(id);
+            Assert.assertNotNull(expected.getHexId(), resourceEntry);
+            Assert.assertEquals(expected.getName(), resourceEntry.getName());
+            Assert.assertSame(resourceEntry, indexed.getResource(id));
+            Assert.assertSame(resourceEntry, indexedPackage.getResource(
+                    expected.getType(), expected.getName()));
+            Assert.assertEquals(CollectionUtil.count(plain.getEntries(id)),
+                    CollectionUtil.count(indexed.getEntries(id)));
+            count ++;
+        }
+        Assert.assertTrue(count > 0);
+        int missing = (packageBlock.getId() << 24) | 0x00ff0000;
+        Assert.assertNull(indexed.getResource(missing));
+
+        // new entries are visible after refresh
+        int id = indexedPackage.getOrCreate("", "string", "added_after_index").getResourceId();
+        Assert.assertNotNull(indexed.getResource(id));
+        indexed.refresh();
+        Assert.assertSame(indexed.getResource(id), indexed.getResource(id));
+        Assert.assertNotNull(indexedPackage.getResource("string", "added_after_index"));
+    }
+    @Test
+    public void testRenameAndRemoveInvalidate() {
+        TableBlock tableBlock = new TableBlock();
+        PackageBlock packageBlock = tableBlock.newPackage(0x7f, "com.example");
+        packageBlock.getOrCreate("", "string", "first").setValueAsString("1");
+        Entry second = packageBlock.getOrCreate("", "string", "second");
+        second.setValueAsString("2");
+        tableBlock.setResourceIndexEnabled(true);
+
+        ResourceEntry resourceEntry = packageBlock.getResource("string", "first");
+        Assert.assertNotNull(resourceEntry);
+        resourceEntry.setName("renamed");
+        Assert.assertNull(packageBlock.getResource("string", "first"));
+        Assert.assertEquals(resourceEntry.getResourceId(),
+                packageBlock.getResource("string", "renamed").getResourceId());
+
+        Assert.assertNotNull(packageBlock.getResource("string", "second"));
+        second.setNull(true);
+        Assert.assertNull(packageBlock.getResource("string", "second"));
+        packageBlock.getSpecTypePair("string").removeNullEntries(second.getId());
+        Assert.assertNull(tableBlock.getResource(second.getResourceId()));
+    }
+}
@@ -0,0 +1,93 @@
+package com.reandroid.arsc.pool;
+
+import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.arsc.item.TableString;
+import com.reandroid.utils.collection.CollectionUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class StringPoolLazyDecodeTest {
+
+    private static final String[] STRINGS = {
+            "plain", "", "файл", "emoji 😀", "plain", "last"
+    };
+
+    @Test
+    public void testRoundTripWithoutDecode() throws IOException {
+        for (boolean utf8 : new boolean[]{true, false}) {
+            TableStringPool source = createPool(utf8);
+            byte[] bytes = source.getBytes();
+            TableStringPool loaded = load(bytes, utf8);
+            Assert.assertArrayEquals(bytes, loaded.getBytes());
+            Assert.assertEquals(STRINGS.length, loaded.size());
+            for (int i = 0; i < STRINGS.length; i++) {
+                Assert.assertEquals(source.get(i).get(), loaded.get(i).get());
+            }
+            Assert.assertArrayEquals(bytes, loaded.getBytes());
+        }
+    }
+    @Test
+    public void testLookupBeforeAndAfterIndex() throws IOException {
+        TableStringPool loaded = load(createPool(true).getBytes(), true);
+        TableString item = loaded.getString("файл");
+        Assert.assertNotNull(item);
+        Assert.assertEquals("файл", item.get());
+        Assert.assertEquals(2, CollectionUtil.count(loaded.getAll("plain")));
+        Assert.assertTrue(loaded.contains("last"));
+        Assert.assertNull(loaded.getString("missing"));
+
+        item.set("edited");
+        Assert.assertSame(item, loaded.getString("edited"));
+        Assert.assertNull(loaded.getString("файл"));
+        TableString created = loaded.getOrCreate("created");
+        Assert.assertSame(created, loaded.getString("created"));
+    }
+    @Test
+    public void testEditAndRemoveBeforeIndex() throws IOException {
+        TableStringPool loaded = load(createPool(false).getBytes(), false);
+        int editedIndex = indexOf(loaded, "файл");
+        int removedIndex = indexOf(loaded, "last");
+        TableString edited = loaded.get(editedIndex);
+        edited.set("edited");
+        loaded.removeString(loaded.get(removedIndex));
+
+        Assert.assertSame(edited, loaded.getString("edited"));
+        Assert.assertNull(loaded.getString("файл"));
+        Assert.assertNull(loaded.getString("last"));
+        Assert.assertTrue(loaded.contains("emoji 😀"));
+        Assert.assertEquals(STRINGS.length - 1, loaded.size());
+
+        loaded.refresh();
+        TableStringPool reloaded = load(loaded.getBytes(), false);
+        Assert.assertEquals(STRINGS.length - 1, reloaded.size());
+        Assert.assertEquals("edited", reloaded.getString("edited").get());
+        Assert.assertTrue(reloaded.contains("emoji 😀"));
+        Assert.assertNull(reloaded.getString("last"));
+    }
+
+    private static TableStringPool createPool(boolean utf8) {
+        TableStringPool stringPool = new TableStringPool(utf8);
+        for (String str : STRINGS) {
+            stringPool.createNewString(str);
+        }
+        stringPool.refresh();
+        return stringPool;
+    }
+    private static int indexOf(TableStringPool stringPool, String str) {
+        // plain index scan, the pool map must stay unbuilt
+        int size = stringPool.size();
+        for (int i = 0; i < size; i++) {
+            if (str.equals(stringPool.get(i).get())) {
+                return i;
+            }
+        }
+        throw new AssertionError("Missing string: " + str);
+    }
+    private static TableStringPool load(byte[] bytes, boolean utf8) throws IOException {
+        TableStringPool stringPool = new TableStringPool(utf8);
+        stringPool.readBytes(new BlockReader(bytes));
+        return stringPool;
+    }
+}
@@ -0,0 +1,93 @@
+package com.reandroid.arsc.view;
+
+import android.content.res.XmlResourceParser;
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.apk.ResFile;
+import com.reandroid.arsc.chunk.xml.ResXmlDocument;
+import com.reandroid.arsc.value.ValueType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+public class BinaryXmlParserTest {
+
+    @Test
+    public void testEventsMatchDocumentParser() throws IOException, XmlPullParserException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        assertSameEvents(apkModule.getAndroidManifest().getBytes());
+        int count = 0;
+        for(ResFile resFile : apkModule.listResFiles()){
+            if(resFile.isBinaryXml()){
+                assertSameEvents(resFile.getResXmlDocument().getBytes());
+                count ++;
+            }
+        }
+        Assert.assertTrue(count > 0);
+    }
+    @Test
+    public void testManifestAttributes() throws IOException, XmlPullParserException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        BinaryXmlParser parser = BinaryXmlParser.of(apkModule.getAndroidManifest().getBytes());
+        Assert.assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        Assert.assertEquals("manifest", parser.getName());
+        Assert.assertEquals(1, parser.getDepth());
+        Assert.assertEquals(apkModule.getPackageName(), parser.getAttributeValue(null, "package"));
+        boolean versionCode = false;
+        for(int i = 0; i < parser.getAttributeCount(); i++){
+            if(parser.getAttributeNameResource(i) == 0x0101021b){
+                Assert.assertEquals("android:versionCode", parser.getAttributeName(i));
+                versionCode = true;
+            }
+        }
+        Assert.assertTrue(versionCode);
+    }
+    private static void assertSameEvents(byte[] bytes) throws IOException, XmlPullParserException {
+        ResXmlDocument document = new ResXmlDocument();
+        document.readBytes(new java.io.ByteArrayInputStream(bytes));
+        XmlResourceParser expected = document.getResourceParser();
+        BinaryXmlParser parser = BinaryXmlParser.of(bytes);
+        int event = expected.getEventType();
+        Assert.assertEquals(event, parser.getEventType());
+        while (event != XmlPullParser.END_DOCUMENT){
+            event = expected.next();
+            Assert.assertEquals(expected.getPositionDescription(), event, parser.next());
+            Assert.assertEquals(expected.getDepth(), parser.getDepth());
+            if(event == XmlPullParser.TEXT){
+                Assert.assertEquals(expected.getText(), parser.getText());
+                continue;
+            }
+            if(event != XmlPullParser.START_TAG && event != XmlPullParser.END_TAG){
+                continue;
+            }
+            Assert.assertEquals(expected.getName(), parser.getName());
+            Assert.assertEquals(expected.getNamespace(), parser.getNamespace());
+            if(event == XmlPullParser.END_TAG){
+                continue;
+            }
+            int attributeCount = expected.getAttributeCount();
+            Assert.assertEquals(attributeCount, parser.getAttributeCount());
+            for(int i = 0; i < attributeCount; i++){
+                Assert.assertEquals(expected.getAttributeName(i), parser.getAttributeName(i));
+                Assert.assertEquals(expected.getAttributeNameResource(i),
+                        parser.getAttributeNameResource(i));
+                Assert.assertEquals(expected.getAttributeResourceValue(i, -1),
+                        parser.getAttributeResourceValue(i, -1));
+                Assert.assertEquals(expected.getAttributeIntValue(i, -1),
+                        parser.getAttributeIntValue(i, -1));
+                ValueType valueType = parser.getAttributeValueType(i);
+                if(valueType != null && valueType.isReference()){
+                    continue;
+                }
+                // styled strings are reported as raw text
+                String value = expected.getAttributeValue(i);
+                if(value != null && value.indexOf('<') < 0){
+                    Assert.assertEquals(value, parser.getAttributeValue(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.reandroid.arsc.view;
+
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.arsc.chunk.PackageBlock;
+import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.arsc.model.ResourceEntry;
+import com.reandroid.arsc.value.Entry;
+import com.reandroid.arsc.value.ResTableMapEntry;
+import com.reandroid.arsc.value.ResValue;
+import com.reandroid.arsc.value.ResValueMap;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+public class TableViewTest {
+
+    @Test
+    public void testViewMatchesTableBlock() throws IOException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        byte[] bytes = apkModule.getTableBlock().getBytes();
+        assertViewMatches(TableBlock.load(new java.io.ByteArrayInputStream(bytes)),
+                TableView.of(bytes));
+    }
+    @Test
+    public void testViewWithTypeIdOffset() throws IOException {
+        File file = new File(TableViewTest.class.getResource("/type_id_offset.apk").getFile());
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        ArchiveFileEntrySource source = (ArchiveFileEntrySource) archiveFile
+                .getEntrySource(TableBlock.FILE_NAME);
+        byte[] bytes = IOUtil.readFully(source.openStream());
+        archiveFile.close();
+        TableView tableView = TableView.of(bytes);
+        assertViewMatches(TableBlock.load(new java.io.ByteArrayInputStream(bytes)), tableView);
+        Assert.assertSame(tableView.toTableBlock(), tableView.toTableBlock());
+        Assert.assertEquals(bytes.length, tableView.toTableBlock().countBytes());
+    }
+
+    private void assertViewMatches(TableBlock tableBlock, TableView tableView) {
+        Assert.assertEquals(tableBlock.getPackageArray().size(), tableView.getPackageCount());
+        int checked = 0;
+        for(PackageBlock packageBlock : tableBlock.listPackages()){
+            PackageView packageView = tableView.getPackage(packageBlock.getName());
+            Assert.assertNotNull(packageView);
+            Assert.assertEquals(packageBlock.getId(), packageView.getId());
+            Iterator<ResourceEntry> resources = packageBlock.getResources();
+            while (resources.hasNext()){
+                ResourceEntry resourceEntry = resources.next();
+                int resourceId = resourceEntry.getResourceId();
+                List<EntryView> views = tableView.getEntries(resourceId);
+                int index = 0;
+                for(Entry entry : resourceEntry){
+                    if(entry.isNull()){
+                        continue;
+                    }
+                    EntryView view = views.get(index);
+                    assertEntry(entry, view);
+                    index ++;
+                    checked ++;
+                }
+                Assert.assertEquals(index, views.size());
+                if(index == 0){
+                    continue;
+                }
+                Assert.assertEquals(resourceId, tableView.getResourceId(packageBlock.getName(),
+                        resourceEntry.getType(), resourceEntry.getName()));
+                Assert.assertEquals(packageBlock.getName() + ":" + resourceEntry.getType()
+                        + "/" + resourceEntry.getName(), tableView.getResourceName(resourceId));
+            }
+        }
+        Assert.assertTrue(checked > 0);
+    }
+    private void assertEntry(Entry entry, EntryView view){
+        String message = entry.toString();
+        Assert.assertEquals(message, entry.getResourceId(), view.getResourceId());
+        Assert.assertEquals(message, entry.getName(), view.getName());
+        Assert.assertEquals(message, entry.getTypeName(), view.getTypeName());
+        Assert.assertEquals(message, entry.getResConfig(), view.getResConfig());
+        Assert.assertEquals(message, entry.isComplex(), view.isComplex());
+        if(!entry.isComplex()){
+            ResValue resValue = entry.getResValue();
+            Assert.assertEquals(message, resValue.getValueType(), view.getValueType());
+            Assert.assertEquals(message, resValue.getData(), view.getData());
+            if(view.getValueAsString() != null){
+                // raw string, the view does not apply style spans
+                Assert.assertEquals(message, entry.getPackageBlock().getTableBlock()
+                        .getStringPool().get(resValue.getData()).get(), view.getValueAsString());
+            }
+            return;
+        }
+        ResTableMapEntry mapEntry = entry.getResTableMapEntry();
+        Assert.assertEquals(message, mapEntry.getParentId(), view.getParentId());
+        Assert.assertEquals(message, mapEntry.childesCount(), view.getBagSize());
+        int i = 0;
+        for(ResValueMap valueMap : mapEntry){
+            Assert.assertEquals(message, valueMap.getNameId(), view.getBagName(i));
+            Assert.assertEquals(message, valueMap.getValueType(), view.getBagValueType(i));
+            Assert.assertEquals(message, valueMap.getData(), view.getBagData(i));
+            i ++;
+        }
+    }
+}
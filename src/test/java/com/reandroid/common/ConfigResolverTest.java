@@ -0,0 +1,86 @@
+package com.reandroid.common;
+
+import com.reandroid.arsc.chunk.PackageBlock;
+import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.arsc.value.Entry;
+import com.reandroid.arsc.value.ResConfig;
+import com.reandroid.arsc.value.ResValueMap;
+import com.reandroid.arsc.value.ValueItem;
+import com.reandroid.arsc.value.ValueType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfigResolverTest {
+
+    @Test
+    public void testBestMatch(){
+        TableBlock tableBlock = new TableBlock();
+        PackageBlock packageBlock = tableBlock.newPackage(0x7f, "com.example");
+        packageBlock.getOrCreate("", "string", "hello").setValueAsString("default");
+        packageBlock.getOrCreate("-en", "string", "hello").setValueAsString("en");
+        packageBlock.getOrCreate("-en-rGB", "string", "hello").setValueAsString("en-GB");
+        packageBlock.getOrCreate("-de", "string", "hello").setValueAsString("de");
+        packageBlock.getOrCreate("-v21", "string", "hello").setValueAsString("v21");
+        Entry hello = packageBlock.getOrCreate("", "string", "hello");
+        Entry alias = packageBlock.getOrCreate("", "string", "alias");
+        alias.setValueAsReference(hello.getResourceId());
+
+        packageBlock.getOrCreate("-mdpi", "dimen", "size").setValueAsString("mdpi");
+        packageBlock.getOrCreate("-xhdpi", "dimen", "size").setValueAsString("xhdpi");
+        packageBlock.getOrCreate("-xxxhdpi", "dimen", "size").setValueAsString("xxxhdpi");
+        int size = packageBlock.getOrCreate("", "dimen", "size").getResourceId();
+
+        ConfigResolver resolver = new ConfigResolver(tableBlock);
+        int id = hello.getResourceId();
+        Assert.assertEquals("en-GB", valueOf(resolver, id, "-en-rGB-v30"));
+        Assert.assertEquals("en", valueOf(resolver, id, "-en-rUS-v30"));
+        Assert.assertEquals("de", valueOf(resolver, id, "-de-rDE"));
+        Assert.assertEquals("v21", valueOf(resolver, id, "-fr-v26"));
+        Assert.assertEquals("default", valueOf(resolver, id, "-fr-v19"));
+        Assert.assertEquals("en-GB", valueOf(resolver, alias.getResourceId(), "-en-rGB"));
+        // cached result
+        Assert.assertSame(resolver.resolve(id, ResConfig.parse("-en-rGB")),
+                resolver.resolve(id, ResConfig.parse("-en-rGB")));
+
+        Assert.assertEquals("xhdpi", valueOf(resolver, size, "-xhdpi"));
+        Assert.assertEquals("xhdpi", valueOf(resolver, size, "-hdpi"));
+        Assert.assertEquals("xxxhdpi", valueOf(resolver, size, "-xxhdpi"));
+        Assert.assertEquals("mdpi", valueOf(resolver, size, "-ldpi"));
+
+        Assert.assertEquals("en", tableBlock.resolveBestMatch(id, ResConfig.parse("-en"))
+                .getResValue().getValueAsString());
+    }
+    @Test
+    public void testThemeAttribute(){
+        TableBlock tableBlock = new TableBlock();
+        PackageBlock packageBlock = tableBlock.newPackage(0x7f, "com.example");
+        Entry color = packageBlock.getOrCreate("", "color", "accent");
+        color.setValueAsString("#ff0000");
+        Entry attr = packageBlock.getOrCreate("", "attr", "colorAccent");
+        Entry parent = packageBlock.getOrCreate("", "style", "Parent");
+        Entry theme = packageBlock.getOrCreate("", "style", "Theme");
+        Entry reference = packageBlock.getOrCreate("", "color", "themed");
+
+        parent.ensureComplex(true);
+        ResValueMap valueMap = parent.getResTableMapEntry().getValue().createNext();
+        valueMap.setNameId(attr.getResourceId());
+        valueMap.setValueType(ValueType.REFERENCE);
+        valueMap.setData(color.getResourceId());
+        theme.ensureComplex(true);
+        theme.getResTableMapEntry().setParentId(parent.getResourceId());
+        reference.setValueAsReference(attr.getResourceId());
+        reference.getResValue().setValueType(ValueType.ATTRIBUTE);
+
+        ConfigResolver resolver = new ConfigResolver(tableBlock);
+        ValueItem valueItem = resolver.resolveValue(reference.getResourceId(),
+                null, theme.getResourceId());
+        Assert.assertNotNull(valueItem);
+        Assert.assertEquals("#ff0000", valueItem.getValueAsString());
+        Assert.assertNull(resolver.resolveValue(reference.getResourceId(), null, 0));
+    }
+    private static String valueOf(ConfigResolver resolver, int id, String qualifiers){
+        Entry entry = resolver.resolve(id, ResConfig.parse(qualifiers));
+        Assert.assertNotNull(qualifiers, entry);
+        return entry.getResValue().getValueAsString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.reandroid.common;
+
+import com.reandroid.arsc.chunk.PackageBlock;
+import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.arsc.value.Entry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ReferenceResolverTest {
+
+    @Test
+    public void testResolveChain() throws Exception {
+        TableBlock tableBlock = new TableBlock();
+        PackageBlock packageBlock = tableBlock.newPackage(0x7f, "com.example");
+        Entry target = packageBlock.getOrCreate("", "string", "target");
+        target.setValueAsString("value");
+        packageBlock.getOrCreate("-de", "string", "target").setValueAsString("wert");
+        Entry middle = packageBlock.getOrCreate("", "string", "middle");
+        middle.setValueAsReference(target.getResourceId());
+        Entry first = packageBlock.getOrCreate("", "string", "first");
+        first.setValueAsReference(middle.getResourceId());
+        Entry loop = packageBlock.getOrCreate("", "string", "loop");
+        loop.setValueAsReference(loop.getResourceId());
+
+        ReferenceResolver resolver = tableBlock.getReferenceResolver();
+        resolver.setMemoizeChains(true);
+        int id = first.getResourceId();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Future<?>[] futures = new Future<?>[8];
+        for(int i = 0; i < futures.length; i++){
+            futures[i] = executor.submit(() -> {
+                for(int j = 0; j < 200; j++){
+                    List<Entry> entries = resolver.resolveAll(id);
+                    Assert.assertEquals(2, entries.size());
+                    Assert.assertSame(target, entries.get(0));
+                }
+            });
+        }
+        for(Future<?> future : futures){
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        Assert.assertTrue(resolver.resolveAll(loop.getResourceId()).isEmpty());
+        Assert.assertEquals("wert", resolver.resolve(id, entry -> !entry.getResConfig().isDefault())
+                .getResValue().getValueAsString());
+
+        middle.setValueAsString("changed");
+        Assert.assertSame(middle, resolver.resolve(id));
+        middle.setValueAsReference(target.getResourceId());
+        Assert.assertSame(target, resolver.resolve(id));
+        first.setNull(true);
+        Assert.assertNull(resolver.resolve(id, entry -> entry.getResConfig().isDefault()));
+    }
+    @Test
+    public void testNotMemoizedByDefault() {
+        TableBlock tableBlock = new TableBlock();
+        PackageBlock packageBlock = tableBlock.newPackage(0x7f, "com.example");
+        Entry target = packageBlock.getOrCreate("", "string", "target");
+        target.setValueAsString("value");
+        Entry first = packageBlock.getOrCreate("", "string", "first");
+        first.setValueAsReference(target.getResourceId());
+
+        Assert.assertSame(target, tableBlock.resolveReference(first.getResourceId()).get(0));
+        first.setValueAsString("changed");
+        Assert.assertSame(first, tableBlock.resolveReference(first.getResourceId()).get(0));
+    }
+}
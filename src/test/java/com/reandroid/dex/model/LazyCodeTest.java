@@ -0,0 +1,105 @@
+package com.reandroid.dex.model;
+
+import com.reandroid.dex.data.CodeItem;
+import com.reandroid.dex.key.TypeKey;
+import com.reandroid.dex.sections.SectionType;
+import com.reandroid.dex.smali.SmaliReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+public class LazyCodeTest {
+
+    @Test
+    public void testUntouchedCodeIsWrittenAsRead() throws IOException {
+        byte[] bytes = createDexBytes(20, 6);
+        DexFile dexFile = DexFile.readLazyCode(bytes);
+        Assert.assertEquals(120, countLazy(dexFile));
+        dexFile.refresh();
+        Assert.assertArrayEquals(bytes, toBytes(dexFile));
+        Assert.assertEquals(120, countLazy(dexFile));
+    }
+    @Test
+    public void testDecodedCodeMatchesEagerRead() throws IOException {
+        byte[] bytes = createDexBytes(6, 4);
+        DexFile eager = DexFile.read(bytes);
+        DexFile lazy = DexFile.readLazyCode(bytes);
+        TypeKey typeKey = TypeKey.create("Lgen/C3;");
+        Assert.assertEquals(eager.getDexClass(typeKey).toSmali(), lazy.getDexClass(typeKey).toSmali());
+        Assert.assertEquals(20, countLazy(lazy));
+
+        lazy.getOrCreateFirst().fromSmali(SmaliReader.of(createSmaliClass("La/First;", 1)));
+        eager.getOrCreateFirst().fromSmali(SmaliReader.of(createSmaliClass("La/First;", 1)));
+        lazy.getContainerBlock().getFirst().sortStrings();
+        eager.getContainerBlock().getFirst().sortStrings();
+        lazy.refresh();
+        eager.refresh();
+        Assert.assertEquals(0, countLazy(lazy));
+        Assert.assertArrayEquals(toBytes(eager), toBytes(lazy));
+    }
+
+    private static int countLazy(DexFile dexFile) {
+        int result = 0;
+        Iterator<CodeItem> iterator = dexFile.getItems(SectionType.CODE);
+        while (iterator.hasNext()) {
+            if (iterator.next().isLazyCode()) {
+                result ++;
+            }
+        }
+        return result;
+    }
+    private static byte[] toBytes(DexFile dexFile) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        dexFile.write(outputStream);
+        return outputStream.toByteArray();
+    }
+    static byte[] createDexBytes(int classes, int methods) throws IOException {
+        DexFile dexFile = DexFile.createDefault();
+        DexLayout layout = dexFile.getOrCreateFirst();
+        for (int i = 0; i < classes; i++) {
+            layout.fromSmali(SmaliReader.of(createSmaliClass("Lgen/C" + i + ";", methods)));
+        }
+        dexFile.refreshFull();
+        return toBytes(dexFile);
+    }
+    static String createSmaliClass(String name, int methods) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(".class public ").append(name).append('\n');
+        builder.append(".super Ljava/lang/Object;\n");
+        builder.append(".field private count:I\n");
+        for (int i = 0; i < methods; i++) {
+            builder.append(".method public m").append(i).append("(I)I\n");
+            builder.append("    .registers 6\n");
+            builder.append("    .line ").append(i + 10).append('\n');
+            builder.append("    :try_start_0\n");
+            for (int j = 0; j < 4; j++) {
+                builder.append("    const-string v0, \"s").append(i).append('_').append(j).append("\"\n");
+                builder.append("    invoke-static {v0}, Ljava/lang/String;->valueOf(Ljava/lang/Object;)Ljava/lang/String;\n");
+                builder.append("    move-result-object v1\n");
+                builder.append("    invoke-virtual {v1}, Ljava/lang/String;->length()I\n");
+                builder.append("    move-result v2\n");
+                builder.append("    iget v3, p0, ").append(name).append("->count:I\n");
+                builder.append("    add-int/2addr v2, v3\n");
+                builder.append("    .line ").append(i + 11 + j).append('\n');
+            }
+            builder.append("    :try_end_0\n");
+            builder.append("    .catch Ljava/lang/Exception; {:try_start_0 .. :try_end_0} :catch_0\n");
+            builder.append("    packed-switch p1, :pswitch_data_0\n");
+            builder.append("    return v2\n");
+            builder.append("    :catch_0\n");
+            builder.append("    const/4 v2, 0x0\n");
+            builder.append("    return v2\n");
+            builder.append("    :pswitch_0\n");
+            builder.append("    return p1\n");
+            builder.append("    :pswitch_data_0\n");
+            builder.append("    .packed-switch 0x0\n");
+            builder.append("        :pswitch_0\n");
+            builder.append("    .end packed-switch\n");
+            builder.append(".end method\n");
+        }
+        return builder.toString();
+    }
+}
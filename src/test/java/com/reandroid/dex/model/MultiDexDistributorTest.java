@@ -0,0 +1,100 @@
+package com.reandroid.dex.model;
+
+import com.reandroid.dex.key.TypeKey;
+import com.reandroid.dex.sections.Section;
+import com.reandroid.dex.sections.SectionType;
+import com.reandroid.dex.smali.SmaliReader;
+import com.reandroid.utils.collection.ArrayCollection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class MultiDexDistributorTest {
+
+    private static final int MAX_IDS = 120;
+
+    @Test
+    public void testIdLimitsAreKept() throws IOException {
+        DexDirectory directory = createDirectory(100, false);
+        MultiDexDistributor distributor = new MultiDexDistributor()
+                .setMaxIdsPerDex(MAX_IDS)
+                .setReserveSpace(0);
+        int moved = directory.distributeClasses(distributor);
+        Assert.assertTrue(moved > 0);
+        Assert.assertTrue(directory.size() > 1);
+        Assert.assertEquals(100, directory.getDexClassesCount());
+        for (DexFile dexFile : directory) {
+            assertBelowLimit(dexFile, SectionType.STRING_ID);
+            assertBelowLimit(dexFile, SectionType.TYPE_ID);
+            assertBelowLimit(dexFile, SectionType.PROTO_ID);
+            assertBelowLimit(dexFile, SectionType.FIELD_ID);
+            assertBelowLimit(dexFile, SectionType.METHOD_ID);
+            dexFile.refresh();
+            dexFile.write(new ByteArrayOutputStream());
+        }
+    }
+    @Test
+    public void testMainDexAndHierarchies() throws IOException {
+        DexDirectory directory = createDirectory(100, true);
+        TypeKey mainClass = TypeKey.create("Lgen/C99;");
+        MultiDexDistributor distributor = new MultiDexDistributor()
+                .setMaxIdsPerDex(MAX_IDS)
+                .setReserveSpace(0)
+                .setMainDexFilter(mainClass::equals)
+                .setKeepHierarchies(true);
+        directory.distributeClasses(distributor);
+        Assert.assertTrue(directory.size() > 1);
+        Assert.assertEquals(100, directory.getDexClassesCount());
+        Assert.assertNotNull(directory.get(0).getDexClass(mainClass));
+        for (int i = 0; i < 100; i += 2) {
+            DexClass base = directory.getDexClass(TypeKey.create("Lgen/C" + i + ";"));
+            DexClass sub = directory.getDexClass(TypeKey.create("Lgen/C" + (i + 1) + ";"));
+            Assert.assertSame(base.getDexFile(), sub.getDexFile());
+        }
+    }
+    @Test
+    public void testFirstFitPlanReusesSharedIds() throws IOException {
+        DexDirectory directory = createDirectory(4, false);
+        int[] plan = new MultiDexDistributor()
+                .setReserveSpace(0)
+                .plan(ArrayCollection.of(directory.getClassIds()));
+        Assert.assertArrayEquals(new int[4], plan);
+    }
+    @Test
+    public void testClassesOfLaterLayoutStay() throws IOException {
+        DexDirectory directory = new DexDirectory();
+        DexFile dexFile = directory.createDefault();
+        dexFile.getOrCreateFirst().fromSmali(SmaliReader.of(
+                LazyCodeTest.createSmaliClass("Lgen/A;", 1)));
+        dexFile.getOrCreateAt(1).fromSmali(SmaliReader.of(
+                LazyCodeTest.createSmaliClass("Lgen/B;", 1)));
+        Assert.assertTrue(dexFile.isMultiLayout());
+        int moved = directory.distributeClasses(new MultiDexDistributor());
+        Assert.assertEquals(0, moved);
+        Assert.assertEquals(1, directory.size());
+        Assert.assertNotNull(dexFile.getLayout(1).getDexClass(TypeKey.create("Lgen/B;")));
+    }
+
+    private static void assertBelowLimit(DexFile dexFile, SectionType<?> sectionType) {
+        Section<?> section = dexFile.getFirst().getSection(sectionType);
+        if (section != null) {
+            Assert.assertTrue(sectionType.getName() + " = " + section.getCount(),
+                    section.getCount() < MAX_IDS);
+        }
+    }
+    private static DexDirectory createDirectory(int classes, boolean pairs) throws IOException {
+        DexDirectory directory = new DexDirectory();
+        DexLayout layout = directory.createDefault().getOrCreateFirst();
+        for (int i = 0; i < classes; i++) {
+            String smali = LazyCodeTest.createSmaliClass("Lgen/C" + i + ";", 2);
+            if (pairs && (i & 1) == 1) {
+                smali = smali.replace(".super Ljava/lang/Object;",
+                        ".super Lgen/C" + (i - 1) + ";");
+            }
+            layout.fromSmali(SmaliReader.of(smali));
+        }
+        return directory;
+    }
+}
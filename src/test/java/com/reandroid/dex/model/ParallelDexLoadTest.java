@@ -0,0 +1,88 @@
+package com.reandroid.dex.model;
+
+import com.reandroid.TestUtils;
+import com.reandroid.archive.ByteInputSource;
+import com.reandroid.archive.ZipEntryMap;
+import com.reandroid.dex.key.TypeKey;
+import com.reandroid.dex.smali.SmaliReader;
+import com.reandroid.utils.io.FileUtil;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class ParallelDexLoadTest {
+
+    @Test
+    public void testApkSameAsSequential() throws IOException {
+        ZipEntryMap zipEntryMap = createZipEntryMap(6);
+        DexDirectory sequential = new DexDirectory();
+        sequential.addApk(zipEntryMap);
+        DexDirectory parallel = new DexDirectory();
+        parallel.addApk(zipEntryMap, 4);
+        Assert.assertEquals(6, parallel.size());
+        Assert.assertEquals(sequential.getDexClassesCount(), parallel.getDexClassesCount());
+        for (int i = 0; i < 6; i++) {
+            DexFile dexFile = parallel.get(i);
+            Assert.assertSame(parallel, dexFile.getDexDirectory());
+            Assert.assertEquals(sequential.get(i).getSimpleName(), dexFile.getSimpleName());
+            Assert.assertArrayEquals(toBytes(sequential.get(i)), toBytes(dexFile));
+        }
+        Assert.assertNotNull(parallel.getDexClass(TypeKey.create("Ldex5/C0;")));
+    }
+    @Test
+    public void testDirectoryErrorsAreCollected() throws IOException {
+        File dir = new File(TestUtils.getTempDir(), "parallel_dex_load");
+        FileUtil.deleteDirectory(dir);
+        ZipEntryMap zipEntryMap = createZipEntryMap(4);
+        for (int i = 0; i < 4; i++) {
+            String name = dexName(i);
+            OutputStream outputStream = FileUtil.outputStream(new File(dir, name));
+            outputStream.write(IOUtil.readFully(zipEntryMap.getInputSource(name).openStream()));
+            outputStream.close();
+        }
+        DexDirectory directory = DexDirectory.fromDexFilesDirectory(dir, null, 3);
+        Assert.assertEquals(4, directory.size());
+        Assert.assertEquals(8, directory.getDexClassesCount());
+
+        IOUtil.writeUtf8("broken", new File(dir, dexName(4)));
+        IOUtil.writeUtf8("broken", new File(dir, dexName(5)));
+        DexDirectory failed = new DexDirectory();
+        IOException exception = null;
+        try {
+            failed.addDirectory(dir, 3);
+        } catch (IOException ex) {
+            exception = ex;
+        }
+        Assert.assertNotNull(exception);
+        Assert.assertEquals(1, exception.getSuppressed().length);
+        Assert.assertEquals(0, failed.size());
+    }
+
+    private static ZipEntryMap createZipEntryMap(int dexCount) throws IOException {
+        ZipEntryMap zipEntryMap = new ZipEntryMap();
+        for (int i = 0; i < dexCount; i++) {
+            DexFile dexFile = DexFile.createDefault();
+            DexLayout layout = dexFile.getOrCreateFirst();
+            for (int j = 0; j < 2; j++) {
+                layout.fromSmali(SmaliReader.of(
+                        LazyCodeTest.createSmaliClass("Ldex" + i + "/C" + j + ";", 2)));
+            }
+            dexFile.refreshFull();
+            zipEntryMap.add(new ByteInputSource(toBytes(dexFile), dexName(i)));
+        }
+        return zipEntryMap;
+    }
+    private static String dexName(int i) {
+        return DexFile.getDexName(i == 0 ? 0 : i + 1);
+    }
+    private static byte[] toBytes(DexFile dexFile) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        dexFile.write(outputStream);
+        return outputStream.toByteArray();
+    }
+}
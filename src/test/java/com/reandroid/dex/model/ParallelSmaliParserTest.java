@@ -0,0 +1,80 @@
+package com.reandroid.dex.model;
+
+import com.reandroid.TestUtils;
+import com.reandroid.utils.collection.CollectionUtil;
+import com.reandroid.utils.io.FileIterator;
+import com.reandroid.utils.io.FileUtil;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+public class ParallelSmaliParserTest {
+
+    @Test
+    public void testSameDexAsSequential() throws IOException {
+        File dir = createSmaliDirectory("parallel_smali", 40);
+        DexFile sequential = DexFile.createDefault();
+        sequential.parseSmaliDirectory(dir);
+        DexFile parallel = DexFile.createDefault();
+        parallel.parseSmaliDirectory(null, dir, 4);
+        Assert.assertEquals(40, parallel.getDexClassesCountForDebug());
+        Assert.assertArrayEquals(toBytes(sequential), toBytes(parallel));
+    }
+    @Test
+    public void testParseErrorsAreCollected() throws IOException {
+        File dir = createSmaliDirectory("parallel_smali_errors", 12);
+        IOUtil.writeUtf8(".class public Lgen/Broken1;\n.method", new File(dir, "gen/Broken1.smali"));
+        IOUtil.writeUtf8(".class public Lgen/Broken2;\n.field", new File(dir, "gen/Broken2.smali"));
+        DexLayout layout = DexFile.createDefault().getOrCreateFirst();
+        IOException exception = null;
+        try {
+            layout.parseSmaliDirectory(null, dir, 3);
+        } catch (IOException ex) {
+            exception = ex;
+        }
+        Assert.assertNotNull(exception);
+        Assert.assertEquals(1, exception.getSuppressed().length);
+    }
+    @Test
+    public void testInterruptIsNotParseError() throws IOException {
+        File dir = createSmaliDirectory("parallel_smali_interrupt", 12);
+        List<File> files = CollectionUtil.toList(new FileIterator(dir,
+                FileIterator.getExtensionFilter(".smali")));
+        ParallelSmaliParser parser = new ParallelSmaliParser(null, null, 2);
+        int[] accepted = new int[1];
+        IOException exception = null;
+        Thread.currentThread().interrupt();
+        try {
+            parser.parse(files, smaliClass -> accepted[0] ++);
+        } catch (IOException ex) {
+            exception = ex;
+        } finally {
+            Thread.interrupted();
+        }
+        Assert.assertTrue(exception instanceof InterruptedIOException);
+        Assert.assertEquals(0, exception.getSuppressed().length);
+        Assert.assertEquals(0, accepted[0]);
+    }
+
+    private static File createSmaliDirectory(String name, int classes) throws IOException {
+        File dir = new File(TestUtils.getTempDir(), name);
+        FileUtil.deleteDirectory(dir);
+        for (int i = 0; i < classes; i++) {
+            File file = new File(dir, "gen/C" + i + ".smali");
+            IOUtil.writeUtf8(LazyCodeTest.createSmaliClass("Lgen/C" + i + ";", 3), file);
+        }
+        return dir;
+    }
+    private static byte[] toBytes(DexFile dexFile) throws IOException {
+        dexFile.refresh();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        dexFile.write(outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,77 @@
+package com.reandroid.dex.model;
+
+import com.reandroid.TestUtils;
+import com.reandroid.dex.smali.SmaliWriterSetting;
+import com.reandroid.utils.io.FileIterator;
+import com.reandroid.utils.io.FileUtil;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class ParallelSmaliWriterTest {
+
+    @Test
+    public void testSameSmaliAsSequential() throws IOException {
+        DexFile dexFile = DexFile.read(LazyCodeTest.createDexBytes(60, 4));
+        File root = new File(TestUtils.getTempDir(), "parallel_baksmali");
+        File sequentialDir = new File(root, "sequential");
+        File parallelDir = new File(root, "parallel");
+        FileUtil.deleteDirectory(root);
+
+        dexFile.writeSmali(new SmaliWriterSetting(), sequentialDir);
+        SmaliWriteTimings timings = dexFile.writeSmali(new SmaliWriterSetting(), parallelDir, 3);
+
+        Assert.assertEquals(60, timings.getClassCount());
+        Assert.assertEquals(61, assertSameFiles(sequentialDir, parallelDir));
+    }
+    @Test
+    public void testCommentsRenderedOnCallingThread() throws IOException {
+        DexFile dexFile = DexFile.read(LazyCodeTest.createDexBytes(20, 2));
+        File root = new File(TestUtils.getTempDir(), "parallel_baksmali_comments");
+        File sequentialDir = new File(root, "sequential");
+        File parallelDir = new File(root, "parallel");
+        FileUtil.deleteDirectory(root);
+        SmaliWriterSetting setting = new SmaliWriterSetting();
+        setting.addMethodComments(dexFile);
+        setting.addClassComments(dexFile);
+
+        ParallelSmaliWriter smaliWriter = new ParallelSmaliWriter(setting, null, 3);
+        Assert.assertTrue(smaliWriter.isSequential());
+        smaliWriter.close();
+        smaliWriter = new ParallelSmaliWriter(new SmaliWriterSetting(), null, 1);
+        Assert.assertFalse(smaliWriter.isSequential());
+        smaliWriter.close();
+
+        dexFile.writeSmali(setting, sequentialDir);
+        SmaliWriteTimings timings = dexFile.writeSmali(setting, parallelDir, 3);
+        Assert.assertEquals(20, timings.getClassCount());
+        assertSameFiles(sequentialDir, parallelDir);
+    }
+
+    private static int assertSameFiles(File sequentialDir, File parallelDir) throws IOException {
+        int count = 0;
+        FileIterator iterator = new FileIterator(sequentialDir);
+        while (iterator.hasNext()) {
+            File file = iterator.next();
+            String path = file.getAbsolutePath().substring(sequentialDir.getAbsolutePath().length());
+            File parallel = new File(parallelDir, path);
+            Assert.assertTrue(path, parallel.isFile());
+            Assert.assertArrayEquals(path, IOUtil.readFully(file), IOUtil.readFully(parallel));
+            count ++;
+        }
+        Assert.assertEquals(count, countFiles(parallelDir));
+        return count;
+    }
+    private static int countFiles(File dir) {
+        int count = 0;
+        FileIterator iterator = new FileIterator(dir);
+        while (iterator.hasNext()) {
+            iterator.next();
+            count ++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,65 @@
+package com.reandroid.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+public class Crc32Test {
+
+    @Test
+    public void testTablesMatchJdk() {
+        byte[] bytes = randomBytes(10000);
+        int[] lengths = new int[]{0, 1, 7, 8, 9, 15, 16, 17, 63, 1000, 9990};
+        for (int length : lengths) {
+            for (int offset = 0; offset < 9; offset++) {
+                CRC32 expected = new CRC32();
+                expected.update(bytes, offset, length);
+                Crc32 crc32 = new Crc32(false);
+                crc32.update(bytes, offset, length);
+                Assert.assertEquals("length = " + length + ", offset = " + offset,
+                        expected.getValue(), crc32.getValue());
+                Assert.assertEquals(length, crc32.getLength());
+            }
+        }
+    }
+    @Test
+    public void testIncrementalAndByteBufferUpdates() {
+        byte[] bytes = randomBytes(5000);
+        long expected = Crc32.of(bytes);
+        for (boolean intrinsic : new boolean[]{true, false}) {
+            Crc32 crc32 = new Crc32(intrinsic);
+            crc32.update(bytes, 0, 3);
+            crc32.update(bytes[3]);
+            crc32.update(ByteBuffer.wrap(bytes, 4, 1000));
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - 1004);
+            direct.put(bytes, 1004, bytes.length - 1004);
+            direct.flip();
+            crc32.update(direct);
+            Assert.assertEquals(expected, crc32.getValue());
+            Assert.assertEquals(bytes.length, crc32.getLength());
+            crc32.reset();
+            Assert.assertEquals(0, crc32.getValue());
+        }
+    }
+    @Test
+    public void testCombine() {
+        byte[] bytes = randomBytes(100000);
+        long expected = Crc32.of(bytes);
+        int[] splits = new int[]{0, 1, 8, 4095, 65536, 99999, 100000};
+        for (int split : splits) {
+            long crc1 = Crc32.of(bytes, 0, split);
+            long crc2 = Crc32.of(bytes, split, bytes.length - split);
+            Assert.assertEquals("split = " + split, expected,
+                    Crc32.combine(crc1, crc2, bytes.length - split));
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
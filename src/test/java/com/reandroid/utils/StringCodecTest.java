@@ -0,0 +1,88 @@
+package com.reandroid.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class StringCodecTest {
+
+    @Test
+    public void testUtf8MatchesJdk() {
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomString(random, i % 64);
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(new String(bytes, StandardCharsets.UTF_8),
+                    StringCodec.decodeUtf8(bytes, 0, bytes.length));
+        }
+    }
+    @Test
+    public void testUtf8ThreeByteSurrogates() {
+        // U+1F600 as CESU-8 surrogate pair
+        byte[] bytes = new byte[]{(byte) 0xed, (byte) 0xa0, (byte) 0xbd,
+                (byte) 0xed, (byte) 0xb8, (byte) 0x80};
+        Assert.assertEquals("😀", StringCodec.decodeUtf8(bytes, 0, bytes.length));
+        bytes = new byte[]{'a', (byte) 0xc0, (byte) 0x80};
+        Assert.assertEquals(new String(bytes, StandardCharsets.UTF_8),
+                StringCodec.decodeUtf8(bytes, 0, bytes.length));
+        bytes = "x\uFFFDy".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("x\uFFFDy", StringCodec.decodeUtf8(bytes, 0, bytes.length));
+    }
+    @Test
+    public void testUtf16MatchesJdk() {
+        Random random = new Random(2);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomString(random, i % 64);
+            byte[] expected = text.getBytes(StandardCharsets.UTF_16LE);
+            byte[] bytes = new byte[text.length() * 2];
+            Assert.assertEquals(bytes.length, StringCodec.encodeUtf16(text, bytes, 0));
+            Assert.assertArrayEquals(expected, bytes);
+            Assert.assertEquals(new String(expected, StandardCharsets.UTF_16LE),
+                    StringCodec.decodeUtf16(bytes, 0, bytes.length));
+        }
+    }
+    @Test
+    public void testMutf8RoundTrip() throws IOException {
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomString(random, i % 64);
+            byte[] bytes = new byte[StringCodec.mutf8Length(text)];
+            Assert.assertEquals(bytes.length, StringCodec.encodeMutf8(text, bytes, 0));
+            for (byte b : bytes) {
+                Assert.assertNotEquals(0, b);
+            }
+            Assert.assertEquals(text, StringCodec.decodeMutf8(bytes, 0, text.length()));
+        }
+    }
+    @Test
+    public void testMutf8Malformed() {
+        try {
+            StringCodec.decodeMutf8(new byte[]{'a', (byte) 0x80, 'b'}, 0, 3);
+            Assert.fail("Malformed input decoded");
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int type = random.nextInt(8);
+            if (type < 4) {
+                builder.append((char) random.nextInt(0x80));
+            } else if (type == 4) {
+                builder.append((char) (0x80 + random.nextInt(0x780)));
+            } else if (type == 5) {
+                builder.append((char) (0x800 + random.nextInt(0xd000)));
+            } else if (type == 6) {
+                builder.appendCodePoint(0x10000 + random.nextInt(0xfffff));
+            } else {
+                // unpaired surrogate
+                builder.append((char) (0xd800 + random.nextInt(0x800)));
+            }
+        }
+        return builder.toString();
+    }
+}